@@ -0,0 +1,162 @@
+package es.cic.curso.practica004.carga;
+
+import java.net.http.HttpRequest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import es.cic.curso.practica004.Practica004Application;
+
+/*
+ * Aplicación servlet arrancada para una prueba de carga, con su catálogo
+ * sembrado y las operaciones que se pueden mezclar en la carga.
+ * Por defecto usa una base de datos H2 en memoria nueva. Con carga.datos
+ * (un directorio) arranca con el perfil persistente sobre ese directorio,
+ * que es lo recomendable a partir del millón de filas: la siembra se
+ * conserva entre ejecuciones y solo se insertan las filas que falten.
+ * carga.argumentos añade argumentos de la aplicación separados por espacios
+ * (por ejemplo --practica004.cache.tamano-maximo=0).
+ * La siembra va directamente por SQL (insert ... select sobre system_range
+ * de H2) en tramos de 100.000 filas, porque por JPA diez millones de filas
+ * llevarían horas. Las filas tienen ids 1..filas y después se adelanta
+ * pelicula_seq para que Hibernate no reparta esos ids.
+ */
+public class AplicacionCarga implements AutoCloseable {
+
+    private static final String[] GENEROS = {"Drama", "Comedia", "Suspense", "Terror"};
+    private static final int TRAMO_SIEMBRA = 100_000;
+
+    private final ServletWebServerApplicationContext contexto;
+    private final int filas;
+
+    public AplicacionCarga(int filas, String... argumentos) {
+        this.filas = filas;
+        SpringApplicationBuilder builder = new SpringApplicationBuilder(Practica004Application.class);
+        List<String> todos = new ArrayList<>(List.of("--server.port=0", "--logging.level.root=WARN"));
+        String datos = propiedad("carga.datos", "");
+        if (datos.isEmpty()) {
+            todos.add("--spring.datasource.url=jdbc:h2:mem:carga-" + UUID.randomUUID());
+        } else {
+            builder.profiles("persistente");
+            todos.add("--practica004.datos.directorio=" + datos);
+        }
+        todos.addAll(List.of(argumentos));
+        String extra = propiedad("carga.argumentos", "");
+        if (!extra.isEmpty()) {
+            todos.addAll(List.of(extra.split("\\s+")));
+        }
+        //Como argumentos, para que prevalezcan sobre application.properties
+        this.contexto = (ServletWebServerApplicationContext) builder.run(todos.toArray(String[]::new));
+        sembrar();
+    }
+
+    public ServletWebServerApplicationContext getContexto() {
+        return contexto;
+    }
+
+    public String getUrlBase() {
+        return "http://localhost:" + contexto.getWebServer().getPort();
+    }
+
+    private void sembrar() {
+        JdbcTemplate jdbcTemplate = contexto.getBean(JdbcTemplate.class);
+        //Con el perfil persistente las conexiones no están en autocommit
+        TransactionTemplate transaccion = new TransactionTemplate(contexto.getBean(PlatformTransactionManager.class));
+        for (long tramo = 1; tramo <= filas; tramo += TRAMO_SIEMBRA) {
+            long desde = tramo;
+            long hasta = Math.min(desde + TRAMO_SIEMBRA - 1, filas);
+            Long existentes = jdbcTemplate.queryForObject(
+                "select count(*) from pelicula where id between ? and ?", Long.class, desde, hasta);
+            if (existentes != null && existentes == hasta - desde + 1) {
+                continue;
+            }
+            transaccion.executeWithoutResult(estado -> jdbcTemplate.update("""
+                insert into pelicula (id, titulo, titulo_busqueda, director, ano, genero, disponible, version,
+                    ultima_modificacion)
+                select x, 'Pelicula ' || x, 'pelicula ' || x, 'Director ' || mod(x, 1000), 1950 + mod(x, 70),
+                    case mod(x, 4) when 0 then 'Drama' when 1 then 'Comedia' when 2 then 'Suspense' else 'Terror' end,
+                    true, 0, current_timestamp
+                from system_range(?, ?)
+                where not exists (select 1 from pelicula p where p.id = x)""", desde, hasta));
+        }
+        Long maximo = jdbcTemplate.queryForObject("select coalesce(max(id), 0) from pelicula", Long.class);
+        //Con el optimizador pooled cada valor v reserva los ids v-49..v
+        transaccion.executeWithoutResult(estado ->
+            jdbcTemplate.execute("alter sequence pelicula_seq restart with " + (maximo + 50)));
+    }
+
+    /*
+     * Operaciones de una mezcla escrita como nombre=peso separados por comas,
+     * por ejemplo lectura=70,busqueda=15,alta=10,modificacion=5:
+     * - lectura: GET de una película sembrada al azar.
+     * - busqueda: búsqueda por género y un rango de cinco años, 20 por página.
+     * - alta: POST de una película nueva (título único).
+     * - modificacion: PUT de una película sembrada cambiando género y
+     *   disponibilidad, con la misma clave natural.
+     */
+    public List<GeneradorCarga.Operacion> operaciones(String mezcla) {
+        List<GeneradorCarga.Operacion> operaciones = new ArrayList<>();
+        for (String parte : mezcla.split(",")) {
+            String[] nombreYPeso = parte.trim().split("=");
+            if (nombreYPeso.length != 2) {
+                throw new IllegalArgumentException("Mezcla no valida: " + mezcla);
+            }
+            int peso = Integer.parseInt(nombreYPeso[1].trim());
+            if (peso > 0) {
+                operaciones.add(new GeneradorCarga.Operacion(nombreYPeso[0].trim(), peso,
+                    peticion(nombreYPeso[0].trim())));
+            }
+        }
+        if (operaciones.isEmpty()) {
+            throw new IllegalArgumentException("Mezcla sin operaciones: " + mezcla);
+        }
+        return operaciones;
+    }
+
+    private Function<String, HttpRequest.Builder> peticion(String nombre) {
+        return switch (nombre) {
+            case "lectura" -> url -> GeneradorCarga.get(url, "/api/peliculas/" + sembrada());
+            case "busqueda" -> url -> {
+                ThreadLocalRandom aleatorio = ThreadLocalRandom.current();
+                int desde = 1950 + aleatorio.nextInt(65);
+                return GeneradorCarga.get(url, "/api/peliculas/search?genero=" + GENEROS[aleatorio.nextInt(4)]
+                    + "&anoDesde=" + desde + "&anoHasta=" + (desde + 4) + "&size=20");
+            };
+            case "alta" -> url -> GeneradorCarga.post(url, "/api/peliculas", "{\"titulo\":\"Carga "
+                + UUID.randomUUID() + "\",\"director\":\"Director\",\"ano\":2000,\"genero\":\"Drama\","
+                + "\"disponible\":true}");
+            case "modificacion" -> url -> {
+                ThreadLocalRandom aleatorio = ThreadLocalRandom.current();
+                long id = sembrada();
+                return GeneradorCarga.put(url, "/api/peliculas/" + id, "{\"titulo\":\"Pelicula " + id
+                    + "\",\"director\":\"Director " + id % 1000 + "\",\"ano\":" + (1950 + id % 70)
+                    + ",\"genero\":\"" + GENEROS[aleatorio.nextInt(4)] + "\",\"disponible\":"
+                    + aleatorio.nextBoolean() + "}");
+            };
+            default -> throw new IllegalArgumentException("Operacion desconocida: " + nombre);
+        };
+    }
+
+    //Las propiedades vacías (sin valor en el pom) cuentan como no indicadas
+    public static String propiedad(String nombre, String porDefecto) {
+        String valor = System.getProperty(nombre, "");
+        return valor.isBlank() ? porDefecto : valor.trim();
+    }
+
+    private long sembrada() {
+        return 1 + ThreadLocalRandom.current().nextLong(filas);
+    }
+
+    @Override
+    public void close() {
+        contexto.close();
+    }
+}
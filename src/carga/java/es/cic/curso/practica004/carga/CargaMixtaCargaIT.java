@@ -0,0 +1,59 @@
+package es.cic.curso.practica004.carga;
+
+import static es.cic.curso.practica004.carga.AplicacionCarga.propiedad;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+import org.junit.jupiter.api.Test;
+
+/*
+ * Prueba de carga con objetivos de nivel de servicio (SLO): lanza en bucle
+ * abierto una mezcla de lecturas, búsquedas, altas y modificaciones a un
+ * ritmo fijo y falla si hay errores, si el p99 supera el objetivo o si el
+ * rendimiento queda por debajo del mínimo. Así mvn -Pcarga verify falla
+ * cuando un cambio empeora la latencia o el rendimiento.
+ * Deja el histograma de cada operación y el total en target/carga
+ * (formato .hgrm de HdrHistogram, que se puede dibujar con HistogramLogAnalyzer
+ * o en hdrhistogram.github.io/HdrHistogram/plotFiles.html).
+ * Parámetros (propiedades del sistema):
+ * carga.filas (10000): películas sembradas, hasta decenas de millones (ver AplicacionCarga).
+ * carga.ritmo (50): peticiones por segundo.
+ * carga.duracion (30s): duración de la medida, tras 10 s de calentamiento.
+ * carga.mezcla (lectura=70,busqueda=15,alta=10,modificacion=5).
+ * carga.slo.p99 (250): p99 máximo en milisegundos, de todas las operaciones.
+ * carga.slo.rendimiento (45): rendimiento mínimo, en peticiones por segundo.
+ */
+public class CargaMixtaCargaIT {
+
+    private final int filas = Integer.getInteger("carga.filas", 10_000);
+    private final double ritmo = Double.parseDouble(propiedad("carga.ritmo", "50"));
+    private final Duration duracion = Duration.parse("PT" + propiedad("carga.duracion", "30s"));
+    private final String mezcla = propiedad("carga.mezcla", "lectura=70,busqueda=15,alta=10,modificacion=5");
+    private final double sloP99 = Double.parseDouble(propiedad("carga.slo.p99", "250"));
+    private final double sloRendimiento = Double.parseDouble(propiedad("carga.slo.rendimiento", "45"));
+
+    @Test
+    public void testCargaMixtaCumpleSlo() throws Exception {
+        GeneradorCarga.ResultadoMixto resultado;
+        try (AplicacionCarga aplicacion = new AplicacionCarga(filas)) {
+            GeneradorCarga generador = new GeneradorCarga(aplicacion.getUrlBase());
+            var operaciones = aplicacion.operaciones(mezcla);
+            //Calentamiento, para no medir la compilación JIT
+            generador.ejecutarARitmo(ritmo, Duration.ofSeconds(10), operaciones);
+            resultado = generador.ejecutarARitmo(ritmo, duracion, operaciones);
+        }
+        resultado.guardar(Path.of("target", "carga"), "carga-mixta");
+
+        System.out.printf("Carga mixta (%s) a %.0f peticiones/s durante %s sobre %d peliculas%n",
+            mezcla, ritmo, duracion, filas);
+        System.out.println("  " + resultado);
+        System.out.printf("  SLO: p99 <= %.0f ms, rendimiento >= %.0f peticiones/s%n", sloP99, sloRendimiento);
+
+        GeneradorCarga.Resultado total = resultado.total();
+        assertThat(total.errores()).as("errores").isZero();
+        assertThat(total.percentilMs(99)).as("p99 (ms)").isLessThanOrEqualTo(sloP99);
+        assertThat(total.peticionesPorSegundo()).as("rendimiento (peticiones/s)").isGreaterThanOrEqualTo(sloRendimiento);
+    }
+}
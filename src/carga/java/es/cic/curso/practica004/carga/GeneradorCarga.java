@@ -0,0 +1,248 @@
+package es.cic.curso.practica004.carga;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+/*
+ * Generador de carga HTTP con dos modos:
+ * - Bucle cerrado (ejecutar): N clientes concurrentes (cada uno en un hilo
+ *   virtual) hacen peticiones seguidas; el ritmo lo marca el servidor.
+ * - Bucle abierto (ejecutarARitmo): las peticiones salen a un ritmo fijo,
+ *   tarde lo que tarde el servidor, mezclando operaciones según su peso. La
+ *   latencia se mide desde el momento en que la petición debía salir, así que
+ *   si el servidor se atasca las peticiones que esperan cuentan todo su
+ *   retraso (sin omisión coordinada).
+ * Las latencias se guardan en histogramas HdrHistogram, con 3 cifras
+ * significativas, en nanosegundos.
+ */
+public class GeneradorCarga {
+
+    //Peticiones en vuelo como máximo en bucle abierto; las que no caben cuentan como error
+    private static final int MAXIMO_PENDIENTES = 10_000;
+
+    private final HttpClient httpClient;
+    private final String urlBase;
+
+    public GeneradorCarga(String urlBase) {
+        this.urlBase = urlBase;
+        this.httpClient = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(10))
+            .executor(Executors.newVirtualThreadPerTaskExecutor())
+            .build();
+    }
+
+    /*
+     * Ejecuta la carga en bucle cerrado y espera a que terminen todos los clientes.
+     * clientes: número de clientes concurrentes.
+     * peticionesPorCliente: peticiones que hace cada cliente, una detrás de otra.
+     * peticion: construye la petición a partir de la URL base; se llama en cada petición.
+     */
+    public Resultado ejecutar(int clientes, int peticionesPorCliente, Function<String, HttpRequest.Builder> peticion)
+            throws InterruptedException {
+        Recorder latencias = new Recorder(3);
+        AtomicLong errores = new AtomicLong();
+        long inicio = System.nanoTime();
+        try (ExecutorService ejecutor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int c = 0; c < clientes; c++) {
+                ejecutor.submit(() -> {
+                    for (int i = 0; i < peticionesPorCliente; i++) {
+                        long t0 = System.nanoTime();
+                        try {
+                            HttpResponse<Void> respuesta = httpClient.send(
+                                peticion.apply(urlBase).timeout(Duration.ofSeconds(60)).build(),
+                                HttpResponse.BodyHandlers.discarding());
+                            if (respuesta.statusCode() >= 400) {
+                                errores.incrementAndGet();
+                            }
+                        } catch (IOException ex) {
+                            errores.incrementAndGet();
+                        } catch (InterruptedException ex) {
+                            Thread.currentThread().interrupt();
+                            return;
+                        }
+                        latencias.recordValue(System.nanoTime() - t0);
+                    }
+                });
+            }
+        }
+        return new Resultado(errores.get(), System.nanoTime() - inicio, latencias.getIntervalHistogram());
+    }
+
+    /*
+     * Ejecuta la carga en bucle abierto: ritmo peticiones por segundo durante
+     * la duración indicada, eligiendo cada petición al azar según el peso de
+     * cada operación. Después espera a que respondan todas las enviadas; la
+     * duración del resultado incluye esa espera, así que si el servidor no
+     * aguanta el ritmo el rendimiento medido queda por debajo de él.
+     */
+    public ResultadoMixto ejecutarARitmo(double ritmo, Duration duracion, List<Operacion> operaciones)
+            throws InterruptedException {
+        int pesoTotal = operaciones.stream().mapToInt(Operacion::peso).sum();
+        Map<Operacion, Recorder> latencias = new LinkedHashMap<>();
+        Map<Operacion, AtomicLong> errores = new LinkedHashMap<>();
+        operaciones.forEach(operacion -> {
+            latencias.put(operacion, new Recorder(3));
+            errores.put(operacion, new AtomicLong());
+        });
+        Semaphore pendientes = new Semaphore(MAXIMO_PENDIENTES);
+        long intervalo = (long) (1e9 / ritmo);
+        long total = duracion.toNanos() / intervalo;
+        long inicio = System.nanoTime();
+        for (long i = 0; i < total; i++) {
+            long previsto = inicio + i * intervalo;
+            long espera = previsto - System.nanoTime();
+            if (espera > 0) {
+                LockSupport.parkNanos(espera);
+            }
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            Operacion operacion = elegir(operaciones, pesoTotal);
+            if (!pendientes.tryAcquire()) {
+                errores.get(operacion).incrementAndGet();
+                continue;
+            }
+            httpClient.sendAsync(operacion.peticion().apply(urlBase).timeout(Duration.ofSeconds(60)).build(),
+                    HttpResponse.BodyHandlers.discarding())
+                .whenComplete((respuesta, error) -> {
+                    latencias.get(operacion).recordValue(System.nanoTime() - previsto);
+                    if (error != null || respuesta.statusCode() >= 400) {
+                        errores.get(operacion).incrementAndGet();
+                    }
+                    pendientes.release();
+                });
+        }
+        pendientes.acquire(MAXIMO_PENDIENTES);
+        long duracionReal = System.nanoTime() - inicio;
+        Map<String, Resultado> porOperacion = new LinkedHashMap<>();
+        operaciones.forEach(operacion -> porOperacion.put(operacion.nombre(), new Resultado(
+            errores.get(operacion).get(), duracionReal, latencias.get(operacion).getIntervalHistogram())));
+        return new ResultadoMixto(porOperacion);
+    }
+
+    private static Operacion elegir(List<Operacion> operaciones, int pesoTotal) {
+        int eleccion = ThreadLocalRandom.current().nextInt(pesoTotal);
+        for (Operacion operacion : operaciones) {
+            eleccion -= operacion.peso();
+            if (eleccion < 0) {
+                return operacion;
+            }
+        }
+        return operaciones.get(operaciones.size() - 1);
+    }
+
+    //Petición GET a una ruta relativa a la URL base
+    public static HttpRequest.Builder get(String urlBase, String ruta) {
+        return HttpRequest.newBuilder(URI.create(urlBase + ruta)).GET();
+    }
+
+    //Petición POST con un cuerpo JSON a una ruta relativa a la URL base
+    public static HttpRequest.Builder post(String urlBase, String ruta, String json) {
+        return HttpRequest.newBuilder(URI.create(urlBase + ruta))
+            .header("Content-Type", "application/json")
+            .POST(HttpRequest.BodyPublishers.ofString(json));
+    }
+
+    //Petición PUT con un cuerpo JSON a una ruta relativa a la URL base
+    public static HttpRequest.Builder put(String urlBase, String ruta, String json) {
+        return HttpRequest.newBuilder(URI.create(urlBase + ruta))
+            .header("Content-Type", "application/json")
+            .PUT(HttpRequest.BodyPublishers.ofString(json));
+    }
+
+    //Elige una de las peticiones al azar, para mezclar operaciones
+    @SafeVarargs
+    public static Function<String, HttpRequest.Builder> mezcla(Function<String, HttpRequest.Builder>... peticiones) {
+        List<Function<String, HttpRequest.Builder>> lista = new ArrayList<>(List.of(peticiones));
+        return urlBase -> lista.get(ThreadLocalRandom.current().nextInt(lista.size())).apply(urlBase);
+    }
+
+    //Operación de una carga mixta: su nombre, su peso en la mezcla y cómo se construye la petición
+    public record Operacion(String nombre, int peso, Function<String, HttpRequest.Builder> peticion) {
+    }
+
+    /*
+     * Resultado de una ejecución: errores (respuestas 4xx/5xx, fallos de
+     * conexión y peticiones descartadas), duración total en nanosegundos e
+     * histograma de latencias en nanosegundos.
+     */
+    public record Resultado(long errores, long duracionNanos, Histogram latencias) {
+
+        public long peticiones() {
+            return latencias.getTotalCount();
+        }
+
+        public double peticionesPorSegundo() {
+            return peticiones() / (duracionNanos / 1e9);
+        }
+
+        //Percentil de latencia en milisegundos (p entre 0 y 100)
+        public double percentilMs(double p) {
+            return latencias.getValueAtPercentile(p) / 1e6;
+        }
+
+        //Distribución de percentiles en milisegundos, en el formato .hgrm de HdrHistogram
+        public void guardar(Path fichero) throws IOException {
+            Files.createDirectories(fichero.toAbsolutePath().getParent());
+            try (PrintStream salida = new PrintStream(Files.newOutputStream(fichero))) {
+                latencias.outputPercentileDistribution(salida, 1e6);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d peticiones, %d errores, %.0f peticiones/s, p50 %.1f ms, p99 %.1f ms, "
+                + "p99.9 %.1f ms, max %.1f ms", peticiones(), errores, peticionesPorSegundo(), percentilMs(50),
+                percentilMs(99), percentilMs(99.9), latencias.getMaxValue() / 1e6);
+        }
+    }
+
+    //Resultado de una carga mixta: el de cada operación y el total
+    public record ResultadoMixto(Map<String, Resultado> porOperacion) {
+
+        public Resultado total() {
+            Histogram todas = new Histogram(3);
+            porOperacion.values().forEach(resultado -> todas.add(resultado.latencias()));
+            long duracion = porOperacion.values().stream().mapToLong(Resultado::duracionNanos).max().orElse(0);
+            return new Resultado(porOperacion.values().stream().mapToLong(Resultado::errores).sum(), duracion, todas);
+        }
+
+        //Guarda el histograma de cada operación y el total en directorio/prefijo-operacion.hgrm
+        public void guardar(Path directorio, String prefijo) throws IOException {
+            for (Map.Entry<String, Resultado> entrada : porOperacion.entrySet()) {
+                entrada.getValue().guardar(directorio.resolve(prefijo + "-" + entrada.getKey() + ".hgrm"));
+            }
+            total().guardar(directorio.resolve(prefijo + "-total.hgrm"));
+        }
+
+        @Override
+        public String toString() {
+            return "total: " + total() + porOperacion.entrySet().stream()
+                .map(entrada -> "\n    " + entrada.getKey() + ": " + entrada.getValue())
+                .collect(Collectors.joining());
+        }
+    }
+}
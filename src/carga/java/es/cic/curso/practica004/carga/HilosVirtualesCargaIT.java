@@ -0,0 +1,78 @@
+package es.cic.curso.practica004.carga;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+
+import es.cic.curso.practica004.Practica004Application;
+import es.cic.curso.practica004.model.Pelicula;
+import es.cic.curso.practica004.service.PeliculaLoteService;
+
+/*
+ * Prueba de carga comparativa: arranca la aplicación con hilos de plataforma
+ * y después con el perfil hilos-virtuales, lanza la misma carga contra cada
+ * una (lecturas por id y búsquedas paginadas) y muestra el rendimiento y la
+ * latencia p99 de ambas.
+ * Se ejecuta con mvn -Pcarga verify. Parámetros (propiedades del sistema):
+ * carga.clientes (1000), carga.peticiones por cliente (20), carga.filas (10000).
+ */
+public class HilosVirtualesCargaIT {
+
+    private final int clientes = Integer.getInteger("carga.clientes", 1000);
+    private final int peticiones = Integer.getInteger("carga.peticiones", 20);
+    private final int filas = Integer.getInteger("carga.filas", 10_000);
+
+    @Test
+    public void testComparativaHilosPlataformaYVirtuales() throws Exception {
+        GeneradorCarga.Resultado plataforma = medir(false);
+        GeneradorCarga.Resultado virtuales = medir(true);
+
+        System.out.printf("Carga con %d clientes x %d peticiones sobre %d peliculas%n", clientes, peticiones, filas);
+        System.out.println("  Hilos de plataforma: " + plataforma);
+        System.out.println("  Hilos virtuales:     " + virtuales);
+
+        assertThat(plataforma.errores()).isZero();
+        assertThat(virtuales.errores()).isZero();
+    }
+
+    private GeneradorCarga.Resultado medir(boolean hilosVirtuales) throws InterruptedException {
+        SpringApplicationBuilder builder = new SpringApplicationBuilder(Practica004Application.class)
+            .properties(
+                "server.port=0",
+                "spring.datasource.url=jdbc:h2:mem:carga-" + UUID.randomUUID(),
+                "logging.level.root=WARN");
+        if (hilosVirtuales) {
+            builder.profiles("hilos-virtuales");
+        }
+        try (var contexto = (ServletWebServerApplicationContext) builder.run()) {
+            sembrar(contexto.getBean(PeliculaLoteService.class));
+            GeneradorCarga generador = new GeneradorCarga("http://localhost:" + contexto.getWebServer().getPort());
+            var mezcla = GeneradorCarga.mezcla(
+                url -> GeneradorCarga.get(url, "/api/peliculas/" + (1 + ThreadLocalRandom.current().nextInt(filas))),
+                url -> GeneradorCarga.get(url, "/api/peliculas/search?genero=Drama&size=20&page="
+                    + ThreadLocalRandom.current().nextInt(20)));
+            //Calentamiento, para no medir la compilación JIT
+            generador.ejecutar(Math.min(clientes, 50), peticiones, mezcla);
+            return generador.ejecutar(clientes, peticiones, mezcla);
+        }
+    }
+
+    private void sembrar(PeliculaLoteService lotes) {
+        String[] generos = {"Drama", "Comedia", "Suspense", "Terror"};
+        for (int inicio = 0; inicio < filas; inicio += 5000) {
+            List<Pelicula> peliculas = new ArrayList<>();
+            for (int i = inicio; i < Math.min(inicio + 5000, filas); i++) {
+                peliculas.add(new Pelicula(null, "Pelicula " + i, "Director " + (i % 100), 1950 + i % 70,
+                    generos[i % generos.length], true));
+            }
+            lotes.saveAll(peliculas);
+        }
+    }
+}
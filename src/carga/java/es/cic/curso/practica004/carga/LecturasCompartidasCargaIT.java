@@ -0,0 +1,109 @@
+package es.cic.curso.practica004.carga;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Function;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+
+import es.cic.curso.practica004.Practica004Application;
+import es.cic.curso.practica004.model.Pelicula;
+import es.cic.curso.practica004.service.PeliculaLoteService;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+
+/*
+ * Prueba de carga de lecturas compartidas: muchos clientes piden a la vez el
+ * listado con If-None-Match (la consulta de la huella del catálogo en cada
+ * petición, respuesta 304). Se ejecuta con las lecturas compartidas
+ * desactivadas y activadas y se muestran las consultas a la base de datos
+ * por petición de cada una, según las estadísticas de Hibernate y la
+ * métrica practica004.lecturas.
+ * Se ejecuta con mvn -Pcarga verify (mismos parámetros que HilosVirtualesCargaIT).
+ */
+public class LecturasCompartidasCargaIT {
+
+    private final int clientes = Integer.getInteger("carga.clientes", 1000);
+    private final int peticiones = Integer.getInteger("carga.peticiones", 20);
+    private final int filas = Integer.getInteger("carga.filas", 10_000);
+
+    @Test
+    public void testConsultasAhorradas() throws Exception {
+        Medida sinCompartir = medir(false);
+        Medida compartidas = medir(true);
+
+        System.out.printf("Manada de lecturas con %d clientes x %d peticiones sobre %d peliculas%n", clientes, peticiones, filas);
+        System.out.println("  Sin lecturas compartidas: " + sinCompartir);
+        System.out.println("  Con lecturas compartidas: " + compartidas);
+
+        assertThat(sinCompartir.resultado().errores()).isZero();
+        assertThat(compartidas.resultado().errores()).isZero();
+        assertThat(sinCompartir.consultas()).isGreaterThanOrEqualTo(sinCompartir.resultado().peticiones());
+        assertThat(compartidas.consultas()).isLessThan(sinCompartir.consultas());
+    }
+
+    private Medida medir(boolean habilitadas) throws Exception {
+        SpringApplicationBuilder builder = new SpringApplicationBuilder(Practica004Application.class)
+            .properties(
+                "server.port=0",
+                "spring.datasource.url=jdbc:h2:mem:carga-" + UUID.randomUUID(),
+                "logging.level.root=WARN");
+        //Como argumento, para que prevalezca sobre application.properties
+        try (var contexto = (ServletWebServerApplicationContext) builder.run(
+                "--practica004.lecturas-compartidas.habilitadas=" + habilitadas)) {
+            sembrar(contexto.getBean(PeliculaLoteService.class));
+            String urlBase = "http://localhost:" + contexto.getWebServer().getPort();
+            String etag = HttpClient.newHttpClient()
+                .send(GeneradorCarga.get(urlBase, "/api/peliculas").build(), HttpResponse.BodyHandlers.discarding())
+                .headers().firstValue("ETag").orElseThrow();
+            GeneradorCarga generador = new GeneradorCarga(urlBase);
+            Function<String, HttpRequest.Builder> listado =
+                url -> GeneradorCarga.get(url, "/api/peliculas").header("If-None-Match", etag);
+            //Calentamiento, para no medir la compilación JIT
+            generador.ejecutar(Math.min(clientes, 50), peticiones, listado);
+
+            Statistics estadisticas = contexto.getBean(EntityManagerFactory.class).unwrap(SessionFactory.class).getStatistics();
+            MeterRegistry meterRegistry = contexto.getBean(MeterRegistry.class);
+            estadisticas.clear();
+            double compartidasAntes = compartidas(meterRegistry);
+            GeneradorCarga.Resultado resultado = generador.ejecutar(clientes, peticiones, listado);
+            return new Medida(resultado, estadisticas.getPrepareStatementCount(),
+                (long) (compartidas(meterRegistry) - compartidasAntes));
+        }
+    }
+
+    private static double compartidas(MeterRegistry meterRegistry) {
+        var contador = meterRegistry.find("practica004.lecturas").tags("resultado", "compartida").counter();
+        return contador == null ? 0 : contador.count();
+    }
+
+    private void sembrar(PeliculaLoteService lotes) {
+        for (int inicio = 0; inicio < filas; inicio += 5000) {
+            List<Pelicula> peliculas = new ArrayList<>();
+            for (int i = inicio; i < Math.min(inicio + 5000, filas); i++) {
+                peliculas.add(new Pelicula(null, "Pelicula " + i, "Director " + (i % 100), 1950 + i % 70, "Drama", true));
+            }
+            lotes.saveAll(peliculas);
+        }
+    }
+
+    //Resultado de la carga, consultas preparadas por Hibernate y lecturas que se unieron a otra
+    private record Medida(GeneradorCarga.Resultado resultado, long consultas, long compartidas) {
+
+        @Override
+        public String toString() {
+            return String.format("%s; %d consultas (%.2f por peticion), %d lecturas compartidas",
+                resultado, consultas, (double) consultas / resultado.peticiones(), compartidas);
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package es.cic.curso.practica004.carga;
+
+import static es.cic.curso.practica004.carga.AplicacionCarga.propiedad;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+
+import com.sun.management.UnixOperatingSystemMXBean;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/*
+ * Prueba de resistencia (soak): mantiene una carga mixta en bucle abierto
+ * durante carga.resistencia (por ejemplo 2h) y, al final de cada intervalo
+ * de carga.resistencia.intervalo (1m), anota la memoria ocupada tras un GC,
+ * los hilos vivos, los descriptores de fichero abiertos y las conexiones del
+ * pool de Hikari. Falla si:
+ * - La memoria crece más de carga.resistencia.crecimiento-maximo (64) MB por
+ *   hora: pendiente por mínimos cuadrados desde el segundo intervalo (el
+ *   primero llena cachés y compila). Con pocos intervalos la pendiente es
+ *   muy ruidosa: para medir fugas hacen falta ejecuciones de horas.
+ * - Hilos o descriptores acaban por encima de lo que había tras el primer
+ *   intervalo más un margen.
+ * - Al parar la carga quedan conexiones prestadas o peticiones esperando
+ *   conexión: una conexión que no se devuelve al pool.
+ * - Hay errores o el p99 de algún intervalo, salvo el primero (arranque en
+ *   frío), supera carga.slo.p99.
+ * La mezcla por defecto no tiene altas (lectura=75,busqueda=15,modificacion=10):
+ * con la base de datos en memoria las altas hacen crecer la memoria sin que
+ * sea una fuga. Con carga.datos (perfil persistente) se pueden incluir.
+ * Sin carga.resistencia no se ejecuta. Usa el ritmo, los datos y los
+ * argumentos de la aplicación de CargaMixtaCargaIT.
+ * Se ejecuta con mvn -Pcarga verify -Dit.test=ResistenciaCargaIT -Dcarga.resistencia=2h
+ */
+public class ResistenciaCargaIT {
+
+    private static final int MARGEN_HILOS = 20;
+    private static final int MARGEN_DESCRIPTORES = 100;
+
+    private final int filas = Integer.getInteger("carga.filas", 10_000);
+    private final double ritmo = Double.parseDouble(propiedad("carga.ritmo", "50"));
+    private final String mezcla = propiedad("carga.resistencia.mezcla", "lectura=75,busqueda=15,modificacion=10");
+    private final Duration intervalo = Duration.parse("PT" + propiedad("carga.resistencia.intervalo", "1m"));
+    private final double crecimientoMaximo =
+        Double.parseDouble(propiedad("carga.resistencia.crecimiento-maximo", "64"));
+    private final double sloP99 = Double.parseDouble(propiedad("carga.slo.p99", "250"));
+
+    @Test
+    public void testResistencia() throws Exception {
+        String resistencia = propiedad("carga.resistencia", "");
+        Assumptions.assumeFalse(resistencia.isEmpty(), "Sin carga.resistencia no hay prueba de resistencia");
+        long intervalos = Math.max(3, Duration.parse("PT" + resistencia).toNanos() / intervalo.toNanos());
+
+        List<Muestra> muestras = new ArrayList<>();
+        List<GeneradorCarga.ResultadoMixto> resultados = new ArrayList<>();
+        try (AplicacionCarga aplicacion = new AplicacionCarga(filas)) {
+            GeneradorCarga generador = new GeneradorCarga(aplicacion.getUrlBase());
+            var operaciones = aplicacion.operaciones(mezcla);
+            MeterRegistry meterRegistry = aplicacion.getContexto().getBean(MeterRegistry.class);
+            long inicio = System.nanoTime();
+            for (int i = 0; i < intervalos; i++) {
+                GeneradorCarga.ResultadoMixto resultado = generador.ejecutarARitmo(ritmo, intervalo, operaciones);
+                resultados.add(resultado);
+                Muestra muestra = muestrear((System.nanoTime() - inicio) / 3.6e12, meterRegistry);
+                muestras.add(muestra);
+                System.out.printf("Intervalo %d: %s%n    %s%n", i + 1, muestra, resultado.total());
+            }
+        }
+        resultados.get(resultados.size() - 1).guardar(Path.of("target", "carga"), "resistencia-ultimo-intervalo");
+
+        double pendiente = pendienteMbPorHora(muestras.subList(1, muestras.size()));
+        Muestra primera = muestras.get(0);
+        Muestra ultima = muestras.get(muestras.size() - 1);
+        System.out.printf("Resistencia de %d intervalos de %s a %.0f peticiones/s: memoria %+.1f MB/h (maximo %.0f)%n",
+            intervalos, intervalo, ritmo, pendiente, crecimientoMaximo);
+
+        for (GeneradorCarga.ResultadoMixto resultado : resultados) {
+            assertThat(resultado.total().errores()).as("errores").isZero();
+        }
+        for (GeneradorCarga.ResultadoMixto resultado : resultados.subList(1, resultados.size())) {
+            assertThat(resultado.total().percentilMs(99)).as("p99 (ms)").isLessThanOrEqualTo(sloP99);
+        }
+        assertThat(pendiente).as("crecimiento de memoria (MB/h)").isLessThanOrEqualTo(crecimientoMaximo);
+        assertThat(ultima.hilos()).as("hilos vivos").isLessThanOrEqualTo(primera.hilos() + MARGEN_HILOS);
+        assertThat(ultima.descriptores()).as("descriptores abiertos")
+            .isLessThanOrEqualTo(primera.descriptores() + MARGEN_DESCRIPTORES);
+        for (Muestra muestra : muestras) {
+            assertThat(muestra.conexionesActivas()).as("conexiones prestadas sin carga").isZero();
+            assertThat(muestra.conexionesEsperando()).as("peticiones esperando conexion sin carga").isZero();
+        }
+    }
+
+    private Muestra muestrear(double horas, MeterRegistry meterRegistry) throws InterruptedException {
+        //Las respuestas ya han llegado, pero el pool puede tardar unos milisegundos en recibir la conexión
+        long fin = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (medidor(meterRegistry, "hikaricp.connections.active") > 0 && System.nanoTime() < fin) {
+            Thread.sleep(50);
+        }
+        System.gc();
+        Runtime runtime = Runtime.getRuntime();
+        long descriptores = ManagementFactory.getOperatingSystemMXBean() instanceof UnixOperatingSystemMXBean unix
+            ? unix.getOpenFileDescriptorCount() : 0;
+        return new Muestra(horas, (runtime.totalMemory() - runtime.freeMemory()) / (1024.0 * 1024.0),
+            ManagementFactory.getThreadMXBean().getThreadCount(), descriptores,
+            medidor(meterRegistry, "hikaricp.connections.active"),
+            medidor(meterRegistry, "hikaricp.connections.pending"));
+    }
+
+    private static long medidor(MeterRegistry meterRegistry, String nombre) {
+        Gauge gauge = meterRegistry.find(nombre).gauge();
+        return gauge == null ? 0 : Math.round(gauge.value());
+    }
+
+    //Pendiente de la recta de mínimos cuadrados de la memoria frente al tiempo
+    private static double pendienteMbPorHora(List<Muestra> muestras) {
+        double mediaHoras = muestras.stream().mapToDouble(Muestra::horas).average().orElse(0);
+        double mediaMemoria = muestras.stream().mapToDouble(Muestra::memoriaMb).average().orElse(0);
+        double covarianza = 0;
+        double varianza = 0;
+        for (Muestra muestra : muestras) {
+            covarianza += (muestra.horas() - mediaHoras) * (muestra.memoriaMb() - mediaMemoria);
+            varianza += (muestra.horas() - mediaHoras) * (muestra.horas() - mediaHoras);
+        }
+        return varianza == 0 ? 0 : covarianza / varianza;
+    }
+
+    //Estado de la JVM al final de un intervalo, sin carga
+    private record Muestra(double horas, double memoriaMb, int hilos, long descriptores, long conexionesActivas,
+            long conexionesEsperando) {
+
+        @Override
+        public String toString() {
+            return String.format("memoria %.1f MB, %d hilos, %d descriptores, %d conexiones prestadas, "
+                + "%d esperando", memoriaMb, hilos, descriptores, conexionesActivas, conexionesEsperando);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package es.cic.curso.practica004.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import es.cic.curso.practica004.repository.PeliculaRepository;
+
+/*
+ * Tiempo hasta que la aplicación está lista para servir el catálogo completo:
+ * persistente: arranque con el perfil persistente sobre un fichero H2 que ya
+ * tiene las películas (se siembra una vez por trial, fuera de la medida).
+ * memoriaResembrada: arranque en memoria más la carga de todas las películas,
+ * que es lo que hay que hacer tras cada reinicio sin el perfil persistente.
+ * El índice de texto completo se desactiva en ambos casos: se construye en
+ * segundo plano después del arranque y no forma parte de esta medida.
+ * Ejemplo: mvn -Pbenchmark verify -Djmh.include=ArranqueBenchmark -Djmh.args="-f 1 -wi 1 -i 3"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ArranqueBenchmark {
+
+    @Param({"1000000"})
+    public int filas;
+
+    private Path directorio;
+    private ConfigurableApplicationContext contexto;
+
+    @Setup(Level.Trial)
+    public void sembrarFichero() throws IOException {
+        directorio = Files.createTempDirectory("practica004-arranque");
+        try (ConfigurableApplicationContext inicial = ContextoBenchmark.arrancar(propiedadesPersistente())) {
+            ContextoBenchmark.sembrar(inicial, filas);
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void parar() {
+        contexto.close();
+    }
+
+    @TearDown(Level.Trial)
+    public void borrarFichero() throws IOException {
+        try (Stream<Path> ficheros = Files.walk(directorio)) {
+            for (Path fichero : ficheros.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(fichero);
+            }
+        }
+    }
+
+    @Benchmark
+    public long persistente() {
+        contexto = ContextoBenchmark.arrancar(propiedadesPersistente());
+        return contexto.getBean(PeliculaRepository.class).count();
+    }
+
+    @Benchmark
+    public long memoriaResembrada() {
+        contexto = ContextoBenchmark.arrancar(Map.of("practica004.busqueda.texto-completo.habilitada", "false"));
+        ContextoBenchmark.sembrar(contexto, filas);
+        return contexto.getBean(PeliculaRepository.class).count();
+    }
+
+    private Map<String, Object> propiedadesPersistente() {
+        return Map.of(
+            "spring.profiles.active", "persistente",
+            "practica004.datos.directorio", directorio.toString(),
+            "practica004.busqueda.texto-completo.habilitada", "false");
+    }
+}
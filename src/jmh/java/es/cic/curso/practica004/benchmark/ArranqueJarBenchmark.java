@@ -0,0 +1,161 @@
+package es.cic.curso.practica004.benchmark;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.ConnectException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/*
+ * Arranque en frío de la aplicación empaquetada, con un proceso nuevo en cada
+ * medida: tiempo desde que se lanza el proceso hasta que responde la primera
+ * petición a la API (que con inicialización perezosa incluye crear sus
+ * beans), y al terminar cada iteración imprime la memoria residente (RSS)
+ * del proceso en ese momento.
+ * Variantes:
+ * FAT_JAR: java -jar del jar ejecutable, como se despliega hasta ahora.
+ * EXTRAIDO: el mismo jar extraído en target/arranque.
+ * AOT: el jar extraído con -Dspring.aot.enabled=true.
+ * AOT_CDS: además con el archivo AppCDS de target/arranque.
+ * ARRANQUE: además con el perfil arranque (inicialización perezosa).
+ * NATIVO: el ejecutable target/practica004 de GraalVM (mvn -Parranque,native
+ *   native:compile). No está en la lista por defecto: -p variante=NATIVO.
+ * Usa lo que genera el perfil Maven arranque, así que se ejecuta con los dos:
+ * mvn -Parranque,benchmark verify -DskipTests -Djmh.include=ArranqueJarBenchmark -Djmh.args="-f 1 -wi 1 -i 5"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ArranqueJarBenchmark {
+
+    public enum Variante { FAT_JAR, EXTRAIDO, AOT, AOT_CDS, ARRANQUE, NATIVO }
+
+    private static final Path TARGET = Path.of("target");
+    private static final Path EXTRAIDO = TARGET.resolve("arranque");
+    private static final Pattern PUERTO = Pattern.compile("Tomcat started on port (\\d+)");
+
+    @Param({"FAT_JAR", "EXTRAIDO", "AOT", "AOT_CDS", "ARRANQUE"})
+    public Variante variante;
+
+    private final HttpClient httpClient = HttpClient.newHttpClient();
+    private final List<Long> rss = new ArrayList<>();
+    private List<String> comando;
+    private Process proceso;
+
+    @Setup(Level.Trial)
+    public void preparar() throws IOException {
+        String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+        Path jar = jarExtraido();
+        comando = switch (variante) {
+            case FAT_JAR -> List.of(java, "-jar", TARGET.resolve(jar.getFileName()).toString());
+            case EXTRAIDO -> List.of(java, "-jar", jar.toString());
+            case AOT -> List.of(java, "-Dspring.aot.enabled=true", "-jar", jar.toString());
+            case AOT_CDS -> List.of(java, "-XX:SharedArchiveFile=" + EXTRAIDO.resolve("practica004.jsa"),
+                "-Dspring.aot.enabled=true", "-jar", jar.toString());
+            case ARRANQUE -> List.of(java, "-XX:SharedArchiveFile=" + EXTRAIDO.resolve("practica004.jsa"),
+                "-Dspring.aot.enabled=true", "-jar", jar.toString(), "--spring.profiles.active=arranque");
+            case NATIVO -> List.of(TARGET.resolve("practica004").toString());
+        };
+    }
+
+    @TearDown(Level.Iteration)
+    public void parar() throws InterruptedException {
+        proceso.destroy();
+        if (!proceso.waitFor(30, TimeUnit.SECONDS)) {
+            proceso.destroyForcibly().waitFor();
+        }
+        System.out.printf("%n%s: RSS %d MB%n", variante, rss.get(rss.size() - 1) >> 10);
+    }
+
+    @TearDown(Level.Trial)
+    public void informar() {
+        System.out.printf("%n%s: RSS medio %d MB en %d arranques%n", variante,
+            (long) rss.stream().mapToLong(Long::longValue).average().orElse(0) >> 10, rss.size());
+    }
+
+    @Benchmark
+    public int primeraRespuesta() throws IOException, InterruptedException {
+        List<String> argumentos = new ArrayList<>(comando);
+        argumentos.add("--server.port=0");
+        proceso = new ProcessBuilder(argumentos).redirectErrorStream(true).start();
+        int puerto = esperarPuerto();
+        int estado = primeraPeticion(puerto);
+        rss.add(rssKb(proceso.pid()));
+        return estado;
+    }
+
+    //Lee la salida del proceso hasta que Tomcat indica el puerto; el resto se descarta en otro hilo
+    private int esperarPuerto() throws IOException {
+        BufferedReader salida = new BufferedReader(new InputStreamReader(proceso.getInputStream(), StandardCharsets.UTF_8));
+        List<String> ultimas = new ArrayList<>();
+        String linea;
+        while ((linea = salida.readLine()) != null) {
+            Matcher puerto = PUERTO.matcher(linea);
+            if (puerto.find()) {
+                Thread.ofVirtual().start(() -> salida.lines().forEach(descartada -> { }));
+                return Integer.parseInt(puerto.group(1));
+            }
+            ultimas.add(linea);
+            if (ultimas.size() > 20) {
+                ultimas.remove(0);
+            }
+        }
+        throw new IllegalStateException("La aplicacion termino sin arrancar:\n" + String.join("\n", ultimas));
+    }
+
+    //404 también vale: lo que se mide es que la API ya responde
+    private int primeraPeticion(int puerto) throws IOException, InterruptedException {
+        HttpRequest peticion = HttpRequest.newBuilder(URI.create("http://localhost:" + puerto + "/api/peliculas/1")).build();
+        while (true) {
+            try {
+                return httpClient.send(peticion, HttpResponse.BodyHandlers.discarding()).statusCode();
+            } catch (ConnectException ex) {
+                Thread.sleep(10);
+            }
+        }
+    }
+
+    private static long rssKb(long pid) throws IOException {
+        try (Stream<String> lineas = Files.lines(Path.of("/proc", String.valueOf(pid), "status"))) {
+            return lineas.filter(linea -> linea.startsWith("VmRSS:"))
+                .map(linea -> linea.replaceAll("\\D", ""))
+                .mapToLong(Long::parseLong)
+                .findFirst()
+                .orElse(0);
+        }
+    }
+
+    private static Path jarExtraido() throws IOException {
+        if (!Files.isDirectory(EXTRAIDO)) {
+            throw new IllegalStateException("No existe " + EXTRAIDO + ": hay que empaquetar con el perfil arranque");
+        }
+        try (Stream<Path> ficheros = Files.list(EXTRAIDO)) {
+            return ficheros.filter(fichero -> fichero.getFileName().toString().endsWith(".jar"))
+                .findFirst()
+                .orElseThrow(() -> new IllegalStateException("No hay ningun jar en " + EXTRAIDO));
+        }
+    }
+}
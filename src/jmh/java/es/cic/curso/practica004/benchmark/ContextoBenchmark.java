@@ -0,0 +1,79 @@
+package es.cic.curso.practica004.benchmark;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import es.cic.curso.practica004.Practica004Application;
+import es.cic.curso.practica004.model.Pelicula;
+import es.cic.curso.practica004.service.PeliculaLoteService;
+
+/*
+ * Utilidades comunes a los benchmarks: arrancan la aplicación sin servidor web
+ * sobre una base de datos H2 en memoria propia y la cargan con películas
+ * sintéticas a través de la inserción por lotes.
+ */
+public final class ContextoBenchmark {
+
+    private static final String[] GENEROS = {"Drama", "Comedia", "Suspense", "Terror", "Ciencia ficción", "Animación"};
+
+    private ContextoBenchmark() {
+    }
+
+    /*
+     * Arranca la aplicación con una base de datos en memoria nueva.
+     * propiedades: propiedades adicionales de Spring (pueden sobrescribir las de la base de datos).
+     */
+    public static ConfigurableApplicationContext arrancar(Map<String, Object> propiedades) {
+        Map<String, Object> configuracion = new HashMap<>();
+        configuracion.put("spring.datasource.url", "jdbc:h2:mem:bench-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE");
+        configuracion.put("spring.devtools.restart.enabled", "false");
+        configuracion.put("logging.level.root", "WARN");
+        configuracion.putAll(propiedades);
+        //Las propiedades adicionales también como argumentos, para que prevalezcan sobre application.properties
+        String[] argumentos = propiedades.entrySet().stream()
+            .map(propiedad -> "--" + propiedad.getKey() + "=" + propiedad.getValue())
+            .toArray(String[]::new);
+        return new SpringApplicationBuilder(Practica004Application.class)
+            .web(WebApplicationType.NONE)
+            .properties(configuracion)
+            .run(argumentos);
+    }
+
+    public static ConfigurableApplicationContext arrancar() {
+        return arrancar(Map.of());
+    }
+
+    /*
+     * Inserta el número de películas indicado y devuelve sus ids en orden.
+     */
+    public static long[] sembrar(ConfigurableApplicationContext contexto, int filas) {
+        PeliculaLoteService lotes = contexto.getBean(PeliculaLoteService.class);
+        long[] ids = new long[filas];
+        int tramo = 10_000;
+        for (int inicio = 0; inicio < filas; inicio += tramo) {
+            int fin = Math.min(inicio + tramo, filas);
+            List<Pelicula> peliculas = new ArrayList<>(fin - inicio);
+            for (int i = inicio; i < fin; i++) {
+                peliculas.add(pelicula(i));
+            }
+            int posicion = inicio;
+            for (var resultado : lotes.saveAll(peliculas)) {
+                ids[posicion++] = resultado.id();
+            }
+        }
+        return ids;
+    }
+
+    //Película sintética y determinista para el índice dado
+    public static Pelicula pelicula(int i) {
+        return new Pelicula(null, "Película número " + i, "Director " + (i % 500),
+            1950 + (i % 75), GENEROS[Math.floorMod(i, GENEROS.length)], i % 3 != 0);
+    }
+}
@@ -0,0 +1,88 @@
+package es.cic.curso.practica004.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.cfg.MapperBuilder;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+
+import es.cic.curso.practica004.model.CamposPelicula;
+import es.cic.curso.practica004.model.Pelicula;
+
+/*
+ * Benchmarks del tamaño y el coste de CPU de serializar una página del
+ * catálogo en cada formato de respuesta (JSON, CBOR y Smile), con todos los
+ * campos o solo id y titulo, y con o sin compresión gzip.
+ * Al preparar cada combinación se imprime el tamaño de la respuesta en bytes,
+ * sin comprimir y comprimida.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class FormatosBenchmark {
+
+    @Param({"json", "cbor", "smile"})
+    private String formato;
+
+    @Param({"", "id,titulo"})
+    private String campos;
+
+    @Param({"1000"})
+    private int filas;
+
+    private ObjectWriter writer;
+    private List<Pelicula> peliculas;
+
+    @Setup
+    public void preparar() throws IOException {
+        MapperBuilder<?, ?> builder = switch (formato) {
+            case "cbor" -> CBORMapper.builder();
+            case "smile" -> SmileMapper.builder();
+            default -> JsonMapper.builder();
+        };
+        writer = builder.findAndAddModules()
+            .addMixIn(Pelicula.class, CamposPelicula.MixIn.class)
+            .filterProvider(CamposPelicula.solo(campos))
+            .build()
+            .writerFor(new TypeReference<List<Pelicula>>() { });
+        peliculas = new ArrayList<>();
+        for (int i = 0; i < filas; i++) {
+            Pelicula pelicula = ContextoBenchmark.pelicula(i);
+            pelicula.setId((long) i + 1);
+            peliculas.add(pelicula);
+        }
+        System.out.printf("%nTamano %s [%s]: %d bytes, %d bytes con gzip%n",
+            formato, campos.isEmpty() ? "todos los campos" : campos, serializar().length, comprimir().length);
+    }
+
+    @Benchmark
+    public byte[] serializar() throws IOException {
+        return writer.writeValueAsBytes(peliculas);
+    }
+
+    @Benchmark
+    public byte[] comprimir() throws IOException {
+        ByteArrayOutputStream salida = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(salida)) {
+            writer.writeValue(gzip, peliculas);
+        }
+        return salida.toByteArray();
+    }
+}
@@ -0,0 +1,112 @@
+package es.cic.curso.practica004.benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+
+import es.cic.curso.practica004.lectura.CatalogoColumnar;
+import es.cic.curso.practica004.model.FiltroPeliculas;
+import es.cic.curso.practica004.model.Pelicula;
+import es.cic.curso.practica004.model.ResultadoBusqueda;
+import es.cic.curso.practica004.repository.PeliculaRepository;
+import es.cic.curso.practica004.repository.PeliculaSpecifications;
+
+/*
+ * Compara el catálogo columnar con JPA: lectura por id, búsqueda con filtro
+ * y memoria. Al preparar se imprimen los bytes fuera del heap del catálogo
+ * columnar frente al heap que ocupan las mismas películas como entidades.
+ * existeColumnar no crea ningún objeto; con -prof gc se ve la asignación
+ * de memoria por operación de cada camino.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class LecturaColumnarBenchmark {
+
+    @Param({"100000", "1000000"})
+    public int filas;
+
+    private static final FiltroPeliculas FILTRO = new FiltroPeliculas(null, null, "Drama", true, 1990, 2000);
+    private static final Pageable PAGINA = PageRequest.of(0, 20);
+
+    private ConfigurableApplicationContext contexto;
+    private CatalogoColumnar catalogo;
+    private PeliculaRepository peliculaRepository;
+    private long[] ids;
+
+    @Setup(Level.Trial)
+    public void arrancar() throws InterruptedException {
+        contexto = ContextoBenchmark.arrancar(Map.of("practica004.lectura.columnar.habilitada", "true"));
+        catalogo = contexto.getBean(CatalogoColumnar.class);
+        peliculaRepository = contexto.getBean(PeliculaRepository.class);
+        ids = ContextoBenchmark.sembrar(contexto, filas);
+        while (!catalogo.isListo()) {
+            Thread.sleep(10);
+        }
+        System.out.printf("%nMemoria para %d peliculas: columnar %d KB fuera del heap, entidades JPA %d KB de heap%n",
+            filas, catalogo.getBytesFueraDelHeap() / 1024, heapEntidades() / 1024);
+    }
+
+    @TearDown(Level.Trial)
+    public void parar() {
+        contexto.close();
+    }
+
+    @Benchmark
+    public Optional<Pelicula> findByIdJpa() {
+        return peliculaRepository.findById(idAleatorio());
+    }
+
+    @Benchmark
+    public Optional<Pelicula> findByIdColumnar() {
+        return catalogo.findById(idAleatorio());
+    }
+
+    @Benchmark
+    public boolean existeColumnar() {
+        return catalogo.existe(idAleatorio());
+    }
+
+    @Benchmark
+    public List<Pelicula> buscarJpa() {
+        return peliculaRepository.findAll(PeliculaSpecifications.conFiltro(FILTRO), PAGINA).getContent();
+    }
+
+    @Benchmark
+    public ResultadoBusqueda buscarColumnar() {
+        return catalogo.buscar(FILTRO, PAGINA).orElseThrow();
+    }
+
+    private long idAleatorio() {
+        return ids[ThreadLocalRandom.current().nextInt(ids.length)];
+    }
+
+    //Heap que ocupan todas las películas cargadas como entidades (aproximado)
+    private long heapEntidades() {
+        MemoryMXBean memoria = ManagementFactory.getMemoryMXBean();
+        System.gc();
+        long antes = memoria.getHeapMemoryUsage().getUsed();
+        List<Pelicula> peliculas = peliculaRepository.findAll();
+        System.gc();
+        long despues = memoria.getHeapMemoryUsage().getUsed();
+        return peliculas.isEmpty() ? 0 : despues - antes;
+    }
+}
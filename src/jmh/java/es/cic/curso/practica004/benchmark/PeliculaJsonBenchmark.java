@@ -0,0 +1,54 @@
+package es.cic.curso.practica004.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+
+import es.cic.curso.practica004.model.Pelicula;
+
+/*
+ * Benchmarks de serialización y deserialización JSON de Pelicula con Jackson,
+ * el coste que se paga por cada película en todas las respuestas de la API.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PeliculaJsonBenchmark {
+
+    private ObjectWriter writer;
+    private ObjectReader reader;
+    private Pelicula pelicula;
+    private byte[] json;
+
+    @Setup
+    public void preparar() throws IOException {
+        ObjectMapper objectMapper = JsonMapper.builder().findAndAddModules().build();
+        writer = objectMapper.writerFor(Pelicula.class);
+        reader = objectMapper.readerFor(Pelicula.class);
+        pelicula = ContextoBenchmark.pelicula(42);
+        pelicula.setId(42L);
+        json = writer.writeValueAsBytes(pelicula);
+    }
+
+    @Benchmark
+    public byte[] serializar() throws IOException {
+        return writer.writeValueAsBytes(pelicula);
+    }
+
+    @Benchmark
+    public Pelicula deserializar() throws IOException {
+        return reader.readValue(json);
+    }
+}
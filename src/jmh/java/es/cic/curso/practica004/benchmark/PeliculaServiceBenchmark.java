@@ -0,0 +1,124 @@
+package es.cic.curso.practica004.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import es.cic.curso.practica004.model.Pelicula;
+import es.cic.curso.practica004.model.ResultadoLote;
+import es.cic.curso.practica004.repository.PeliculaRepository;
+import es.cic.curso.practica004.service.PeliculaCache;
+import es.cic.curso.practica004.service.PeliculaLoteService;
+import es.cic.curso.practica004.service.PeliculaService;
+
+/*
+ * Benchmarks de PeliculaService sobre catálogos de distinto tamaño.
+ * filas: número de películas cargadas antes de medir.
+ * El número de hilos se elige al lanzar JMH (-Djmh.threads=N en el perfil benchmark).
+ * Ejemplo: mvn -Pbenchmark verify -Djmh.include=PeliculaServiceBenchmark -Djmh.args="-f 1 -p filas=1000"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class PeliculaServiceBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int filas;
+
+    private ConfigurableApplicationContext contexto;
+    private PeliculaService peliculaService;
+    private PeliculaLoteService peliculaLoteService;
+    private PeliculaRepository peliculaRepository;
+    private PeliculaCache peliculaCache;
+    private long[] ids;
+    //Siguiente índice sin usar: las altas no pueden repetir la clave natural de las ya sembradas
+    private AtomicInteger siguiente;
+
+    @Setup(Level.Trial)
+    public void arrancar() {
+        contexto = ContextoBenchmark.arrancar();
+        peliculaService = contexto.getBean(PeliculaService.class);
+        peliculaLoteService = contexto.getBean(PeliculaLoteService.class);
+        peliculaRepository = contexto.getBean(PeliculaRepository.class);
+        peliculaCache = contexto.getBean(PeliculaCache.class);
+        ids = ContextoBenchmark.sembrar(contexto, filas);
+        siguiente = new AtomicInteger(filas);
+    }
+
+    @TearDown(Level.Trial)
+    public void parar() {
+        contexto.close();
+    }
+
+    private long idAleatorio() {
+        return ids[ThreadLocalRandom.current().nextInt(ids.length)];
+    }
+
+    //findById a través de la caché (el caso habitual en producción)
+    @Benchmark
+    public Pelicula findById() {
+        return peliculaService.findById(idAleatorio());
+    }
+
+    //findById sin caché: coste de la consulta por clave primaria
+    @Benchmark
+    public Pelicula findByIdSinCache() {
+        return peliculaRepository.findById(idAleatorio()).orElseThrow();
+    }
+
+    //findAll materializando toda la tabla en una lista
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public List<Pelicula> findAll() {
+        return peliculaService.findAll();
+    }
+
+    //Recorrido en streaming de toda la tabla, como hace GET /api/peliculas
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void forEach(Blackhole blackhole) {
+        peliculaService.forEach(blackhole::consume);
+    }
+
+    //Inserción de una película con save (una transacción por película)
+    @Benchmark
+    public Pelicula save() {
+        return peliculaService.save(ContextoBenchmark.pelicula(siguiente.getAndIncrement()));
+    }
+
+    //Inserción de 1000 películas con el servicio de lotes; comparar con save() x 1000
+    @Benchmark
+    @OperationsPerInvocation(1000)
+    public List<ResultadoLote> saveAllLote() {
+        int primera = siguiente.getAndAdd(1000);
+        List<Pelicula> peliculas = new ArrayList<>(1000);
+        for (int i = 0; i < 1000; i++) {
+            peliculas.add(ContextoBenchmark.pelicula(primera + i));
+        }
+        return peliculaLoteService.saveAll(peliculas);
+    }
+
+    //Vacía la caché entre iteraciones para que cada una empiece en frío
+    @Setup(Level.Iteration)
+    public void vaciarCache() {
+        peliculaCache.invalidateAll();
+    }
+}
@@ -0,0 +1,68 @@
+package es.cic.curso.practica004.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Limit;
+
+import es.cic.curso.practica004.busqueda.IndiceTextoCompleto;
+import es.cic.curso.practica004.model.Pelicula;
+import es.cic.curso.practica004.repository.PeliculaRepository;
+
+/*
+ * Compara la búsqueda de texto con el índice invertido en memoria frente a
+ * la consulta LIKE '%texto%' sobre título y director.
+ * consulta: texto buscado; "4242" es muy selectiva y "director 7" no.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TextoCompletoBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    public int filas;
+
+    @Param({"4242", "director 7"})
+    public String consulta;
+
+    private ConfigurableApplicationContext contexto;
+    private IndiceTextoCompleto indice;
+    private PeliculaRepository peliculaRepository;
+
+    @Setup(Level.Trial)
+    public void arrancar() throws InterruptedException {
+        contexto = ContextoBenchmark.arrancar();
+        indice = contexto.getBean(IndiceTextoCompleto.class);
+        peliculaRepository = contexto.getBean(PeliculaRepository.class);
+        ContextoBenchmark.sembrar(contexto, filas);
+        while (!indice.isListo()) {
+            Thread.sleep(10);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void parar() {
+        contexto.close();
+    }
+
+    @Benchmark
+    public List<IndiceTextoCompleto.Coincidencia> indiceInvertido() {
+        return indice.buscar(consulta, 20);
+    }
+
+    @Benchmark
+    public List<Pelicula> consultaLike() {
+        return peliculaRepository.searchByTexto("%" + consulta + "%", Limit.of(20));
+    }
+}
@@ -0,0 +1,140 @@
+package es.cic.curso.practica004.benchmark;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import es.cic.curso.practica004.model.Pelicula;
+import es.cic.curso.practica004.model.ResultadoImportacion;
+import es.cic.curso.practica004.transferencia.ExportadorCatalogo;
+import es.cic.curso.practica004.transferencia.FormatoFichero;
+import es.cic.curso.practica004.transferencia.ImportadorCatalogo;
+
+/*
+ * Ida y vuelta del catálogo: importa un fichero de "filas" películas con el
+ * catálogo vacío y lo vuelve a exportar. Usa el perfil persistente (H2 en
+ * disco) para que el tamaño del catálogo no cuente en el heap, y al terminar
+ * cada iteración imprime el ritmo y el pico de heap, que debe ser el mismo
+ * sea cual sea el número de filas. Las vistas en memoria (estadísticas e
+ * índice de texto) se desactivan porque sí crecen con el catálogo.
+ * Para la prueba de 10 millones de filas: -Djmh.args="-p filas=10000000 -f 1 -wi 0 -i 1"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class TransferenciaBenchmark {
+
+    @Param({"1000000"})
+    public int filas;
+
+    @Param({"CSV", "NDJSON"})
+    public FormatoFichero formato;
+
+    private Path directorio;
+    private Path entrada;
+    private Path salida;
+    private ConfigurableApplicationContext contexto;
+    private ImportadorCatalogo importador;
+    private ExportadorCatalogo exportador;
+    private JdbcTemplate jdbcTemplate;
+
+    @Setup(Level.Trial)
+    public void arrancar() throws IOException {
+        directorio = Files.createTempDirectory("practica004-transferencia-");
+        contexto = ContextoBenchmark.arrancar(Map.of(
+            "spring.profiles.active", "persistente",
+            "practica004.datos.directorio", directorio.resolve("datos").toString(),
+            "practica004.estadisticas.habilitadas", "false",
+            "practica004.busqueda.texto-completo.habilitada", "false"));
+        importador = contexto.getBean(ImportadorCatalogo.class);
+        exportador = contexto.getBean(ExportadorCatalogo.class);
+        jdbcTemplate = contexto.getBean(JdbcTemplate.class);
+        entrada = directorio.resolve("entrada" + formato.getExtension());
+        salida = directorio.resolve("salida" + formato.getExtension());
+        generar(contexto.getBean(ObjectMapper.class));
+    }
+
+    @Setup(Level.Iteration)
+    public void vaciar() {
+        jdbcTemplate.execute("truncate table pelicula");
+        for (MemoryPoolMXBean zona : ManagementFactory.getMemoryPoolMXBeans()) {
+            zona.resetPeakUsage();
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void informar() throws IOException {
+        long picoHeap = ManagementFactory.getMemoryPoolMXBeans().stream()
+            .filter(zona -> zona.getType() == MemoryType.HEAP)
+            .mapToLong(zona -> zona.getPeakUsage().getUsed())
+            .sum();
+        System.out.printf("%n%s: fichero %d MB, pico de heap %d MB%n", formato,
+            Files.size(entrada) >> 20, picoHeap >> 20);
+    }
+
+    @TearDown(Level.Trial)
+    public void parar() throws IOException {
+        contexto.close();
+        try (Stream<Path> ficheros = Files.walk(directorio)) {
+            ficheros.sorted(Comparator.reverseOrder()).forEach(fichero -> fichero.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public long idaYVuelta() throws IOException {
+        long inicio = System.nanoTime();
+        ResultadoImportacion importacion = importador.importar(formato, entrada);
+        long mitad = System.nanoTime();
+        long exportadas = exportador.exportar(formato, salida);
+        long fin = System.nanoTime();
+        if (importacion.creadas() != filas || exportadas != filas) {
+            throw new IllegalStateException("Se esperaban " + filas + " filas: " + importacion + ", exportadas " + exportadas);
+        }
+        System.out.printf("%nimportacion %d filas/s, exportacion %d filas/s%n",
+            filas * 1_000_000_000L / (mitad - inicio), filas * 1_000_000_000L / (fin - mitad));
+        return exportadas;
+    }
+
+    //Fichero de entrada con las películas sintéticas de ContextoBenchmark
+    private void generar(ObjectMapper objectMapper) throws IOException {
+        try (BufferedWriter escritor = Files.newBufferedWriter(entrada, StandardCharsets.UTF_8)) {
+            if (formato == FormatoFichero.CSV) {
+                escritor.write("titulo,director,ano,genero,disponible\n");
+            }
+            for (int i = 0; i < filas; i++) {
+                Pelicula pelicula = ContextoBenchmark.pelicula(i);
+                if (formato == FormatoFichero.CSV) {
+                    escritor.write(pelicula.getTitulo() + "," + pelicula.getDirector() + "," + pelicula.getAno()
+                        + "," + pelicula.getGenero() + "," + pelicula.isDisponible() + "\n");
+                } else {
+                    escritor.write(objectMapper.writeValueAsString(pelicula));
+                    escritor.write('\n');
+                }
+            }
+        }
+    }
+}
@@ -2,8 +2,17 @@ package es.cic.curso.practica004;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcAutoConfiguration;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcTransactionManagerAutoConfiguration;
 
-@SpringBootApplication
+/*
+ * Además de arrancar la API, importa y exporta el catálogo desde la línea de
+ * comandos con --importar=fichero y --exportar=fichero (ver TransferenciaRunner).
+ * R2DBC solo lo usa la variante reactiva (PeliculaReactivaApplication, perfil
+ * Maven reactivo); si está en el classpath, aquí se excluye para que no haya un
+ * segundo gestor de transacciones junto al de JPA.
+ */
+@SpringBootApplication(exclude = {R2dbcAutoConfiguration.class, R2dbcTransactionManagerAutoConfiguration.class})
 public class Practica004Application {
 
 	public static void main(String[] args) {
@@ -0,0 +1,386 @@
+package es.cic.curso.practica004.busqueda;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import es.cic.curso.practica004.model.Pelicula;
+import es.cic.curso.practica004.repository.PeliculaRepository;
+import es.cic.curso.practica004.service.PeliculaCambiada;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+
+/*
+ * Índice invertido en memoria sobre el título y el director de las películas.
+ * Para cada término guarda los ids de las películas que lo contienen en un
+ * long[] ordenado, junto con un peso por película (las apariciones en el
+ * título pesan el doble que en el director).
+ * Se construye en segundo plano al arrancar la aplicación leyendo el
+ * repositorio en streaming, y después se mantiene con los eventos
+ * PeliculaCambiada que publican los servicios al confirmar cada escritura.
+ * Mientras se construye, isListo() devuelve false.
+ * Las búsquedas exigen todos los términos de la consulta (el último se trata
+ * como prefijo) y ordenan por la suma de peso x idf de cada término.
+ */
+@Component
+public class IndiceTextoCompleto {
+
+    private static final Logger log = LoggerFactory.getLogger(IndiceTextoCompleto.class);
+
+    private static final int PESO_TITULO = 2;
+    private static final int PESO_DIRECTOR = 1;
+
+    //Número máximo de términos en los que se expande el prefijo del último término
+    private static final int MAXIMO_EXPANSION_PREFIJO = 64;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    //Término -> películas que lo contienen
+    private final TreeMap<String, Postings> terminos = new TreeMap<>();
+
+    //Película -> términos que contiene, para poder quitarla del índice
+    private final Map<Long, String[]> documentos = new HashMap<>();
+
+    //Ids eliminados mientras se construye el índice, que la carga inicial no debe añadir
+    private final Set<Long> eliminadosDuranteConstruccion = new HashSet<>();
+
+    private boolean construyendo;
+    private volatile boolean listo;
+
+    @Autowired
+    private PeliculaRepository peliculaRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /*Ejecutor de tareas de Spring; con spring.threads.virtual.enabled
+    usa hilos virtuales. */
+    @Autowired
+    @Qualifier("applicationTaskExecutor")
+    private TaskExecutor taskExecutor;
+
+    @Value("${practica004.busqueda.texto-completo.habilitada:true}")
+    private boolean habilitada;
+
+    public boolean isListo() {
+        return listo;
+    }
+
+    public int getNumeroDocumentos() {
+        lock.readLock().lock();
+        try {
+            return documentos.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int getNumeroTerminos() {
+        lock.readLock().lock();
+        try {
+            return terminos.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    //Lanza la construcción del índice en segundo plano al terminar el arranque
+    @EventListener(ApplicationReadyEvent.class)
+    public void alArrancar() {
+        if (habilitada) {
+            taskExecutor.execute(this::construir);
+        }
+    }
+
+    /*
+     * Carga todas las películas del repositorio. Las películas que ya estén en
+     * el índice, o que se hayan eliminado mientras tanto, se saltan: los
+     * eventos recibidos durante la carga son más recientes que lo leído.
+     */
+    public void construir() {
+        long inicio = System.nanoTime();
+        lock.writeLock().lock();
+        try {
+            construyendo = true;
+            eliminadosDuranteConstruccion.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        try {
+            transactionTemplate.executeWithoutResult(estado -> {
+                try (Stream<Pelicula> peliculas = peliculaRepository.streamAll()) {
+                    peliculas.forEach(pelicula -> {
+                        lock.writeLock().lock();
+                        try {
+                            if (!documentos.containsKey(pelicula.getId())
+                                    && !eliminadosDuranteConstruccion.contains(pelicula.getId())) {
+                                agregar(pelicula);
+                            }
+                        } finally {
+                            lock.writeLock().unlock();
+                        }
+                        entityManager.detach(pelicula);
+                    });
+                }
+            });
+            listo = true;
+            log.info("Indice de texto completo construido: {} peliculas, {} terminos en {} ms",
+                getNumeroDocumentos(), getNumeroTerminos(), (System.nanoTime() - inicio) / 1_000_000);
+        } finally {
+            lock.writeLock().lock();
+            try {
+                construyendo = false;
+                eliminadosDuranteConstruccion.clear();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    /*
+     * Mantiene el índice al día con cada escritura confirmada. Las
+     * actualizaciones parciales que no tocan título ni director se ignoran.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void alCambiar(PeliculaCambiada cambio) {
+        if (!habilitada) {
+            return;
+        }
+        if (cambio.tipo() == PeliculaCambiada.Tipo.ELIMINADA) {
+            eliminar(cambio.id());
+        } else if (cambio.pelicula() != null) {
+            indexar(cambio.pelicula());
+        } else if (cambio.afectaA("titulo", "director")) {
+            //Actualización parcial del texto indexado: se lee el estado completo
+            peliculaRepository.findById(cambio.id()).ifPresent(this::indexar);
+        }
+    }
+
+    //Añade o reemplaza una película en el índice
+    public void indexar(Pelicula pelicula) {
+        lock.writeLock().lock();
+        try {
+            quitar(pelicula.getId());
+            agregar(pelicula);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void eliminar(Long id) {
+        lock.writeLock().lock();
+        try {
+            quitar(id);
+            if (construyendo) {
+                eliminadosDuranteConstruccion.add(id);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /*
+     * Busca las películas que contienen todos los términos de la consulta.
+     * Devuelve como mucho "limite" coincidencias, de mayor a menor puntuación.
+     */
+    public List<Coincidencia> buscar(String consulta, int limite) {
+        List<String> terminosConsulta = Tokenizador.tokenizar(consulta).stream().distinct().toList();
+        if (terminosConsulta.isEmpty() || limite <= 0) {
+            return List.of();
+        }
+        lock.readLock().lock();
+        try {
+            int total = Math.max(documentos.size(), 1);
+            List<Criterio> criterios = new ArrayList<>(terminosConsulta.size());
+            for (int i = 0; i < terminosConsulta.size(); i++) {
+                String termino = terminosConsulta.get(i);
+                List<Postings> postings = i == terminosConsulta.size() - 1
+                    ? conPrefijo(termino)
+                    : exacto(termino);
+                if (postings.isEmpty()) {
+                    return List.of();
+                }
+                criterios.add(Criterio.de(postings, total));
+            }
+            criterios.sort(Comparator.comparingInt(Criterio::frecuencia));
+
+            //Candidatos: las películas del criterio más selectivo
+            Map<Long, Double> puntuaciones = new LinkedHashMap<>();
+            Criterio primero = criterios.get(0);
+            for (Postings postings : primero.postings()) {
+                for (int i = 0; i < postings.tamano; i++) {
+                    puntuaciones.merge(postings.ids[i], postings.pesos[i] * primero.idf(), Math::max);
+                }
+            }
+            //El resto de criterios solo filtran y suman puntuación
+            for (int c = 1; c < criterios.size() && !puntuaciones.isEmpty(); c++) {
+                Criterio criterio = criterios.get(c);
+                puntuaciones.entrySet().removeIf(entrada -> {
+                    int peso = criterio.peso(entrada.getKey());
+                    if (peso == 0) {
+                        return true;
+                    }
+                    entrada.setValue(entrada.getValue() + peso * criterio.idf());
+                    return false;
+                });
+            }
+
+            PriorityQueue<Coincidencia> mejores = new PriorityQueue<>(Coincidencia.ORDEN.reversed());
+            puntuaciones.forEach((id, puntuacion) -> {
+                mejores.add(new Coincidencia(id, puntuacion));
+                if (mejores.size() > limite) {
+                    mejores.poll();
+                }
+            });
+            List<Coincidencia> resultado = new ArrayList<>(mejores);
+            resultado.sort(Coincidencia.ORDEN);
+            return resultado;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private List<Postings> exacto(String termino) {
+        Postings postings = terminos.get(termino);
+        return postings == null ? List.of() : List.of(postings);
+    }
+
+    private List<Postings> conPrefijo(String prefijo) {
+        NavigableMap<String, Postings> coincidentes = terminos.subMap(prefijo, true, prefijo + Character.MAX_VALUE, false);
+        List<Postings> postings = new ArrayList<>();
+        for (Postings p : coincidentes.values()) {
+            postings.add(p);
+            if (postings.size() == MAXIMO_EXPANSION_PREFIJO) {
+                break;
+            }
+        }
+        return postings;
+    }
+
+    //Se llama con el bloqueo de escritura adquirido
+    private void agregar(Pelicula pelicula) {
+        Map<String, Integer> pesos = new HashMap<>();
+        Tokenizador.tokenizar(pelicula.getTitulo()).forEach(t -> pesos.merge(t, PESO_TITULO, Integer::sum));
+        Tokenizador.tokenizar(pelicula.getDirector()).forEach(t -> pesos.merge(t, PESO_DIRECTOR, Integer::sum));
+        String[] terminosPelicula = new String[pesos.size()];
+        int i = 0;
+        for (Map.Entry<String, Integer> entrada : pesos.entrySet()) {
+            Postings postings = terminos.computeIfAbsent(entrada.getKey(), t -> new Postings());
+            postings.poner(pelicula.getId(), (byte) Math.min(entrada.getValue(), Byte.MAX_VALUE));
+            //Se guarda la instancia de la clave del mapa para no duplicar cadenas
+            terminosPelicula[i++] = terminos.ceilingKey(entrada.getKey());
+        }
+        documentos.put(pelicula.getId(), terminosPelicula);
+    }
+
+    //Se llama con el bloqueo de escritura adquirido
+    private void quitar(Long id) {
+        String[] anteriores = documentos.remove(id);
+        if (anteriores == null) {
+            return;
+        }
+        for (String termino : anteriores) {
+            Postings postings = terminos.get(termino);
+            if (postings != null && postings.quitar(id) && postings.tamano == 0) {
+                terminos.remove(termino);
+            }
+        }
+    }
+
+    //Una película encontrada y su puntuación
+    public record Coincidencia(long id, double puntuacion) {
+
+        static final Comparator<Coincidencia> ORDEN = Comparator.comparingDouble(Coincidencia::puntuacion).reversed()
+            .thenComparingLong(Coincidencia::id);
+    }
+
+    //Un término de la consulta: sus postings (varios si es un prefijo) y su idf
+    private record Criterio(List<Postings> postings, int frecuencia, double idf) {
+
+        static Criterio de(List<Postings> postings, int total) {
+            int frecuencia = postings.stream().mapToInt(p -> p.tamano).sum();
+            return new Criterio(postings, frecuencia, Math.log(1 + (double) total / frecuencia));
+        }
+
+        int peso(long id) {
+            int peso = 0;
+            for (Postings p : postings) {
+                peso = Math.max(peso, p.peso(id));
+            }
+            return peso;
+        }
+    }
+
+    /*
+     * Lista de películas de un término: ids ordenados en un long[] y su peso
+     * en un byte[] paralelo. Como los ids nuevos suelen ser mayores que los
+     * existentes, insertar suele ser añadir al final.
+     */
+    static final class Postings {
+
+        long[] ids = new long[4];
+        byte[] pesos = new byte[4];
+        int tamano;
+
+        void poner(long id, byte peso) {
+            int posicion = Arrays.binarySearch(ids, 0, tamano, id);
+            if (posicion >= 0) {
+                pesos[posicion] = peso;
+                return;
+            }
+            posicion = -posicion - 1;
+            if (tamano == ids.length) {
+                int capacidad = tamano + (tamano >> 1) + 1;
+                ids = Arrays.copyOf(ids, capacidad);
+                pesos = Arrays.copyOf(pesos, capacidad);
+            }
+            System.arraycopy(ids, posicion, ids, posicion + 1, tamano - posicion);
+            System.arraycopy(pesos, posicion, pesos, posicion + 1, tamano - posicion);
+            ids[posicion] = id;
+            pesos[posicion] = peso;
+            tamano++;
+        }
+
+        boolean quitar(long id) {
+            int posicion = Arrays.binarySearch(ids, 0, tamano, id);
+            if (posicion < 0) {
+                return false;
+            }
+            System.arraycopy(ids, posicion + 1, ids, posicion, tamano - posicion - 1);
+            System.arraycopy(pesos, posicion + 1, pesos, posicion, tamano - posicion - 1);
+            tamano--;
+            return true;
+        }
+
+        int peso(long id) {
+            int posicion = Arrays.binarySearch(ids, 0, tamano, id);
+            return posicion < 0 ? 0 : pesos[posicion];
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package es.cic.curso.practica004.busqueda;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/*
+ * Divide un texto en términos para el índice de texto completo:
+ * quita tildes y diéresis (la "ñ" pasa a "n"), pasa a minúsculas, corta
+ * por cualquier carácter que no sea letra o dígito y descarta las palabras
+ * vacías más comunes en español e inglés.
+ */
+public final class Tokenizador {
+
+    private static final Pattern MARCAS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARADORES = Pattern.compile("[^\\p{L}\\p{Nd}]+");
+
+    private static final Set<String> PALABRAS_VACIAS = Set.of(
+        "a", "al", "con", "de", "del", "el", "en", "la", "las", "lo", "los", "para", "por",
+        "se", "su", "un", "una", "y", "o", "u", "e",
+        "the", "of", "and", "an", "in", "on", "to");
+
+    private Tokenizador() {
+    }
+
+    //Minúsculas y sin marcas diacríticas
+    public static String normalizar(String texto) {
+        return MARCAS.matcher(Normalizer.normalize(texto, Normalizer.Form.NFD)).replaceAll("")
+            .toLowerCase(Locale.ROOT);
+    }
+
+    public static List<String> tokenizar(String texto) {
+        List<String> terminos = new ArrayList<>();
+        if (texto == null || texto.isBlank()) {
+            return terminos;
+        }
+        for (String termino : SEPARADORES.split(normalizar(texto))) {
+            if (!termino.isEmpty() && !PALABRAS_VACIAS.contains(termino)) {
+                terminos.add(termino);
+            }
+        }
+        return terminos;
+    }
+}
@@ -0,0 +1,331 @@
+package es.cic.curso.practica004.cambios;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import es.cic.curso.practica004.exception.CambiosNoDisponiblesException;
+import es.cic.curso.practica004.model.CambioPelicula;
+import es.cic.curso.practica004.model.PaginaCambios;
+import es.cic.curso.practica004.service.PeliculaCambiada;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/*
+ * Envío de los cambios del catálogo por Server-Sent Events.
+ * Cada suscripción empieza en una secuencia y recibe en orden todos los
+ * cambios posteriores: primero los que ya están en RegistroCambios y después
+ * los nuevos según se confirman. Cada evento lleva como id su secuencia, así
+ * que un cliente que se reconecta con Last-Event-ID sigue donde lo dejó.
+ * Un único hilo repartidor lee el registro y reparte los eventos a todas las
+ * suscripciones: las escrituras solo le avisan al confirmarse, y si no hay
+ * avisos envía un comentario de latido cada practica004.cambios.latido para
+ * mantener viva la conexión. Ese hilo también purga el registro cada hora.
+ * El repartidor nunca escribe en una conexión: deja los eventos en la cola
+ * acotada de cada suscripción (practica004.cambios.cola-suscripcion) y un
+ * hilo virtual por suscripción los envía. Si la cola de una suscripción está
+ * llena, esa suscripción se salta hasta que su hilo la vacíe; si en
+ * practica004.cambios.espera-maxima no consigue vaciar ni la mitad, el
+ * cliente no da abasto y se cierra su conexión (se reconectará con
+ * Last-Event-ID). Así un cliente lento no retrasa a los demás.
+ */
+@Component
+public class FlujoCambios implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(FlujoCambios.class);
+
+    private static final int TAMANO_LOTE = 500;
+    private static final Duration INTERVALO_PURGA = Duration.ofHours(1);
+
+    @Autowired
+    private RegistroCambios registroCambios;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${practica004.cambios.latido:15s}")
+    private Duration latido;
+
+    //Duración máxima de una conexión; después el cliente se reconecta con Last-Event-ID
+    @Value("${practica004.cambios.duracion-conexion:30m}")
+    private Duration duracionConexion;
+
+    //Eventos pendientes de enviar que admite cada suscripción
+    @Value("${practica004.cambios.cola-suscripcion:1000}")
+    private int tamanoCola;
+
+    //Tiempo que puede estar llena la cola de una suscripción antes de cerrarla
+    @Value("${practica004.cambios.espera-maxima:30s}")
+    private Duration esperaMaxima;
+
+    private final List<Suscripcion> suscripciones = new CopyOnWriteArrayList<>();
+    private final Semaphore avisos = new Semaphore(0);
+
+    private Thread repartidor;
+    private volatile boolean enMarcha;
+
+    /*
+     * Abre una suscripción a los cambios posteriores a "desde". Lanza
+     * CambiosNoDisponiblesException si alguno ya se ha purgado.
+     */
+    public SseEmitter suscribir(long desde) {
+        registroCambios.comprobarDisponible(desde);
+        SseEmitter emisor = new SseEmitter(duracionConexion.toMillis());
+        Suscripcion suscripcion = new Suscripcion(emisor, desde, tamanoCola);
+        emisor.onCompletion(() -> quitar(suscripcion));
+        emisor.onTimeout(emisor::complete);
+        emisor.onError(error -> quitar(suscripcion));
+        suscripciones.add(suscripcion);
+        suscripcion.arrancar();
+        avisar();
+        return emisor;
+    }
+
+    //Avisa al repartidor de cada escritura confirmada
+    @TransactionalEventListener(fallbackExecution = true)
+    public void alCambiar(PeliculaCambiada cambio) {
+        if (enMarcha) {
+            avisar();
+        }
+    }
+
+    private void avisar() {
+        if (avisos.availablePermits() == 0) {
+            avisos.release();
+        }
+    }
+
+    //Bucle del hilo repartidor
+    private void repartir() {
+        long ultimaPurga = System.nanoTime();
+        while (enMarcha) {
+            try {
+                boolean avisado = avisos.tryAcquire(latido.toNanos(), TimeUnit.NANOSECONDS);
+                avisos.drainPermits();
+                if (!suscripciones.isEmpty()) {
+                    enviarPendientes();
+                    if (!avisado) {
+                        enviarLatido();
+                    }
+                }
+                if (System.nanoTime() - ultimaPurga > INTERVALO_PURGA.toNanos()) {
+                    ultimaPurga = System.nanoTime();
+                    int purgados = registroCambios.purgar();
+                    if (purgados > 0) {
+                        log.info("Purgados {} cambios del registro", purgados);
+                    }
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException ex) {
+                log.warn("Error repartiendo los cambios del catalogo", ex);
+            }
+        }
+    }
+
+    /*
+     * Lee el registro desde la suscripción más atrasada y encola a cada una
+     * los cambios que aún no tiene. Una suscripción con la cola llena no
+     * recibe nada más en esta vuelta, para no desordenar sus eventos.
+     */
+    private void enviarPendientes() {
+        long desde = suscripciones.stream().mapToLong(Suscripcion::getCursor).min().orElse(Long.MAX_VALUE);
+        Set<Suscripcion> llenas = new HashSet<>();
+        PaginaCambios pagina;
+        do {
+            try {
+                pagina = registroCambios.leer(desde, TAMANO_LOTE);
+            } catch (CambiosNoDisponiblesException ex) {
+                //Las suscripciones tan atrasadas ya no pueden continuar
+                long atrasadas = desde;
+                suscripciones.removeIf(suscripcion -> {
+                    if (suscripcion.getCursor() == atrasadas) {
+                        suscripcion.parar();
+                        suscripcion.emisor().completeWithError(ex);
+                        return true;
+                    }
+                    return false;
+                });
+                return;
+            }
+            for (CambioPelicula cambio : pagina.cambios()) {
+                for (Suscripcion suscripcion : suscripciones) {
+                    if (cambio.getSecuencia() > suscripcion.getCursor() && !llenas.contains(suscripcion)) {
+                        boolean encolado = suscripcion.encolar(SseEmitter.event()
+                            .id(Long.toString(cambio.getSecuencia()))
+                            .name(cambio.getTipo())
+                            .data(cambio, MediaType.APPLICATION_JSON));
+                        if (encolado) {
+                            suscripcion.setCursor(cambio.getSecuencia());
+                        } else {
+                            llenas.add(suscripcion);
+                        }
+                    }
+                }
+            }
+            desde = pagina.ultimaSecuencia();
+        } while (pagina.hayMas() && enMarcha);
+        llenas.forEach(this::comprobarAtasco);
+    }
+
+    private void enviarLatido() {
+        for (Suscripcion suscripcion : suscripciones) {
+            //Con la cola llena el latido sobra: hay eventos esperando
+            suscripcion.encolar(SseEmitter.event().comment("latido"));
+        }
+    }
+
+    //Cierra la conexión si la cola de la suscripción lleva llena más de esperaMaxima
+    private void comprobarAtasco(Suscripcion suscripcion) {
+        if (System.nanoTime() - suscripcion.getLlenaDesde() > esperaMaxima.toNanos()) {
+            log.warn("Se cierra una suscripcion a los cambios que no da abasto (cursor {})", suscripcion.getCursor());
+            quitar(suscripcion);
+            suscripcion.emisor().complete();
+        }
+    }
+
+    private void quitar(Suscripcion suscripcion) {
+        suscripciones.remove(suscripcion);
+        suscripcion.parar();
+    }
+
+    @Override
+    public void start() {
+        if (!registroCambios.isHabilitado()) {
+            return;
+        }
+        Gauge.builder("practica004.cambios.suscripciones", suscripciones, List::size)
+            .register(meterRegistry);
+        enMarcha = true;
+        repartidor = Thread.ofPlatform().name("flujo-cambios").daemon().start(this::repartir);
+    }
+
+    //Cierra las conexiones abiertas; los clientes se reconectarán a otra instancia
+    @Override
+    public void stop() {
+        if (!enMarcha) {
+            return;
+        }
+        enMarcha = false;
+        repartidor.interrupt();
+        try {
+            repartidor.join(Duration.ofSeconds(10));
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        suscripciones.forEach(suscripcion -> {
+            suscripcion.parar();
+            suscripcion.emisor().complete();
+        });
+        suscripciones.clear();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return enMarcha;
+    }
+
+    //Se para antes que el servidor web, para cerrar las conexiones abiertas
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE;
+    }
+
+    /*
+     * Una conexión SSE, la secuencia del último cambio encolado para ella y
+     * su cola de eventos, que vacía su propio hilo de envío.
+     */
+    private final class Suscripcion {
+
+        private final SseEmitter emisor;
+        private final BlockingQueue<SseEmitter.SseEventBuilder> pendientes;
+        private volatile long cursor;
+        //Desde cuándo está llena la cola; vuelve a 0 cuando el hilo de envío la vacía hasta la mitad
+        private volatile long llenaDesde;
+        private volatile Thread envio;
+
+        Suscripcion(SseEmitter emisor, long cursor, int tamanoCola) {
+            this.emisor = emisor;
+            this.cursor = cursor;
+            this.pendientes = new ArrayBlockingQueue<>(tamanoCola);
+        }
+
+        SseEmitter emisor() {
+            return emisor;
+        }
+
+        long getCursor() {
+            return cursor;
+        }
+
+        void setCursor(long cursor) {
+            this.cursor = cursor;
+        }
+
+        long getLlenaDesde() {
+            return llenaDesde;
+        }
+
+        //Encola sin esperar; devuelve false si la cola está llena
+        boolean encolar(SseEmitter.SseEventBuilder evento) {
+            if (pendientes.offer(evento)) {
+                return true;
+            }
+            if (llenaDesde == 0) {
+                llenaDesde = System.nanoTime();
+            }
+            return false;
+        }
+
+        void arrancar() {
+            envio = Thread.ofVirtual().name("flujo-cambios-envio").start(this::enviar);
+        }
+
+        void parar() {
+            if (envio != null) {
+                envio.interrupt();
+            }
+        }
+
+        /*
+         * Bucle del hilo de envío. Si la cola estaba llena avisa al
+         * repartidor en cuanto vuelve a tener sitio, para que siga
+         * encolando sin esperar al siguiente cambio. Si el cliente se ha
+         * desconectado se quita la suscripción.
+         */
+        private void enviar() {
+            try {
+                while (!Thread.currentThread().isInterrupted()) {
+                    emisor.send(pendientes.take());
+                    if (llenaDesde != 0 && pendientes.remainingCapacity() > pendientes.size()) {
+                        llenaDesde = 0;
+                        avisar();
+                    }
+                }
+            } catch (InterruptedException ex) {
+                //Suscripción cerrada
+            } catch (IOException | IllegalStateException ex) {
+                suscripciones.remove(this);
+                emisor.completeWithError(ex);
+            }
+        }
+    }
+}
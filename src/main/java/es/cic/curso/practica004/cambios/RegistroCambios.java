@@ -0,0 +1,150 @@
+package es.cic.curso.practica004.cambios;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import es.cic.curso.practica004.exception.CambiosNoDisponiblesException;
+import es.cic.curso.practica004.model.CambioPelicula;
+import es.cic.curso.practica004.model.ContadorCambios;
+import es.cic.curso.practica004.model.PaginaCambios;
+import es.cic.curso.practica004.repository.CambioPeliculaRepository;
+import es.cic.curso.practica004.service.PeliculaCambiada;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.PersistenceContext;
+
+/*
+ * Registro ordenado de los cambios del catálogo (change data capture).
+ * Se activa con practica004.cambios.habilitado=true.
+ * Cada PeliculaCambiada se guarda como un CambioPelicula en la misma
+ * transacción que la escritura, justo antes de confirmarla: si la escritura
+ * se deshace, el cambio tampoco queda registrado. La secuencia la da la fila
+ * de ContadorCambios, que se bloquea hasta el commit; así los números siguen
+ * el orden de confirmación y un cliente que lee "desde N" nunca se salta un
+ * cambio que se confirme más tarde con un número menor.
+ * Los cambios más antiguos que practica004.cambios.retencion se purgan
+ * (FlujoCambios lo hace periódicamente).
+ */
+@Component
+public class RegistroCambios {
+
+    public static final int TAMANO_PAGINA_MAXIMO = 1000;
+
+    @Autowired
+    private CambioPeliculaRepository cambioPeliculaRepository;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${practica004.cambios.habilitado:false}")
+    private boolean habilitado;
+
+    @Value("${practica004.cambios.retencion:7d}")
+    private Duration retencion;
+
+    public boolean isHabilitado() {
+        return habilitado;
+    }
+
+    /*
+     * Anota el cambio antes de confirmar la transacción de la escritura. Si
+     * la escritura no tenía transacción (ya confirmada) se anota en una propia.
+     */
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT, fallbackExecution = true)
+    public void alCambiar(PeliculaCambiada cambio) {
+        if (!habilitado) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            registrar(cambio);
+        } else {
+            transactionTemplate.executeWithoutResult(estado -> registrar(cambio));
+        }
+    }
+
+    private void registrar(PeliculaCambiada cambio) {
+        ContadorCambios contador = entityManager.find(ContadorCambios.class, ContadorCambios.ID,
+            LockModeType.PESSIMISTIC_WRITE);
+        entityManager.persist(new CambioPelicula(contador.siguiente(), tipo(cambio), cambio.id(), datos(cambio),
+            Instant.now()));
+    }
+
+    /*
+     * Devuelve como mucho "limite" cambios con secuencia mayor que "desde".
+     * Lanza CambiosNoDisponiblesException si alguno de los cambios
+     * posteriores a "desde" ya se ha purgado.
+     */
+    public PaginaCambios leer(long desde, int limite) {
+        int tamano = Math.min(Math.max(limite, 1), TAMANO_PAGINA_MAXIMO);
+        return transactionTemplate.execute(estado -> {
+            comprobarDisponible(desde);
+            List<CambioPelicula> cambios = cambioPeliculaRepository
+                .findBySecuenciaGreaterThanOrderBySecuenciaAsc(desde, Limit.of(tamano + 1));
+            boolean hayMas = cambios.size() > tamano;
+            List<CambioPelicula> pagina = hayMas ? List.copyOf(cambios.subList(0, tamano)) : cambios;
+            long ultima = pagina.isEmpty() ? desde : pagina.get(pagina.size() - 1).getSecuencia();
+            return new PaginaCambios(pagina, ultima, hayMas);
+        });
+    }
+
+    /*
+     * Secuencia del último cambio confirmado. Un cliente que vuelve a leer el
+     * catálogo completo puede pedirla antes y seguir los cambios desde ella.
+     */
+    public long getUltimaSecuencia() {
+        return transactionTemplate.execute(estado ->
+            entityManager.find(ContadorCambios.class, ContadorCambios.ID).getUltima());
+    }
+
+    //Comprueba que no se ha purgado ningún cambio posterior a "desde"
+    public void comprobarDisponible(long desde) {
+        Long primera = cambioPeliculaRepository.findPrimeraSecuencia();
+        long ultima = getUltimaSecuencia();
+        long primeraDisponible = primera == null ? ultima + 1 : primera;
+        if (desde < ultima && desde + 1 < primeraDisponible) {
+            throw new CambiosNoDisponiblesException("Los cambios posteriores a " + desde + " ya no estan disponibles");
+        }
+    }
+
+    //Elimina los cambios más antiguos que la retención; devuelve cuántos
+    public int purgar() {
+        return transactionTemplate.execute(estado ->
+            cambioPeliculaRepository.deleteAnteriores(Instant.now().minus(retencion)));
+    }
+
+    private static String tipo(PeliculaCambiada cambio) {
+        return cambio.tipo() == PeliculaCambiada.Tipo.ACTUALIZADA && cambio.pelicula() == null
+            ? "PARCIAL" : cambio.tipo().name();
+    }
+
+    private String datos(PeliculaCambiada cambio) {
+        Object datos = cambio.pelicula() != null ? cambio.pelicula() : cambio.cambios();
+        if (datos == null) {
+            return null;
+        }
+        try {
+            return objectMapper.writeValueAsString(datos);
+        } catch (JsonProcessingException ex) {
+            throw new IllegalStateException("No se pudo serializar el cambio de la pelicula " + cambio.id(), ex);
+        }
+    }
+}
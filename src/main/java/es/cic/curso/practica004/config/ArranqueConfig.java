@@ -0,0 +1,45 @@
+package es.cic.curso.practica004.config;
+
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.boot.autoconfigure.flyway.FlywayMigrationInitializer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.MethodIntrospector;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import jakarta.persistence.EntityManagerFactory;
+
+/*
+ * Componentes que se crean al arrancar aunque la inicialización perezosa
+ * esté activada (spring.main.lazy-initialization, perfil arranque):
+ * - El DataSource, las migraciones de Flyway y el EntityManagerFactory: un
+ *   error de conexión o de esquema debe impedir el arranque, y la primera
+ *   petición no debe pagar el arranque de Hibernate.
+ * - Los beans con métodos @Scheduled: si nadie los pide no se crean y sus
+ *   tareas no se programarían nunca.
+ * Sin inicialización perezosa este filtro no tiene efecto.
+ */
+@Configuration(proxyBeanMethods = false)
+public class ArranqueConfig {
+
+    private static final List<Class<?>> CRITICOS =
+        List.of(DataSource.class, FlywayMigrationInitializer.class, EntityManagerFactory.class);
+
+    //Estático porque se consulta al procesar las definiciones, antes de crear ningún bean
+    @Bean
+    public static LazyInitializationExcludeFilter componentesCriticos() {
+        return (nombre, definicion, tipo) -> tipo != null
+            && (CRITICOS.stream().anyMatch(critico -> critico.isAssignableFrom(tipo)) || programado(tipo));
+    }
+
+    private static boolean programado(Class<?> tipo) {
+        return !MethodIntrospector.selectMethods(tipo,
+            (MethodIntrospector.MetadataLookup<Boolean>) metodo ->
+                AnnotatedElementUtils.hasAnnotation(metodo, Scheduled.class) ? Boolean.TRUE : null).isEmpty();
+    }
+}
@@ -0,0 +1,37 @@
+package es.cic.curso.practica004.config;
+
+import java.time.Duration;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+/*
+ * Activa el límite de concurrencia JDBC cuando practica004.jdbc.concurrencia-maxima
+ * es mayor que 0 (lo hace el perfil hilos-virtuales). Envuelve el DataSource de
+ * la aplicación en un DataSourceConLimite.
+ * practica004.jdbc.espera-maxima: tiempo máximo de espera por un permiso (5s por defecto).
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnExpression("${practica004.jdbc.concurrencia-maxima:0} > 0")
+public class ConcurrenciaJdbcConfig {
+
+    @Bean
+    public static BeanPostProcessor limiteConcurrenciaJdbc(Environment environment) {
+        int concurrenciaMaxima = environment.getRequiredProperty("practica004.jdbc.concurrencia-maxima", Integer.class);
+        Duration esperaMaxima = environment.getProperty("practica004.jdbc.espera-maxima", Duration.class, Duration.ofSeconds(5));
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String nombre) {
+                if (bean instanceof DataSource dataSource && !(bean instanceof DataSourceConLimite)) {
+                    return new DataSourceConLimite(dataSource, concurrenciaMaxima, esperaMaxima);
+                }
+                return bean;
+            }
+        };
+    }
+}
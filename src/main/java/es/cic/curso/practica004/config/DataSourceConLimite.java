@@ -0,0 +1,104 @@
+package es.cic.curso.practica004.config;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+/*
+ * DataSource que limita cuántas conexiones pueden estar en uso a la vez.
+ * Antes de pedir una conexión al DataSource real se adquiere un permiso de un
+ * semáforo, que se devuelve al cerrar la conexión. Se usa con hilos virtuales:
+ * los que no consiguen permiso quedan aparcados en el semáforo (sin ocupar un
+ * hilo portador) en lugar de amontonarse en el pool de conexiones.
+ * Si no hay permiso disponible en el tiempo de espera máximo se lanza
+ * SQLTransientConnectionException, igual que haría el pool.
+ */
+public class DataSourceConLimite extends DelegatingDataSource {
+
+    private final Semaphore permisos;
+    private final long esperaMaximaNanos;
+
+    public DataSourceConLimite(DataSource destino, int concurrenciaMaxima, Duration esperaMaxima) {
+        super(destino);
+        this.permisos = new Semaphore(concurrenciaMaxima, true);
+        this.esperaMaximaNanos = esperaMaxima.toNanos();
+    }
+
+    public int getPermisosDisponibles() {
+        return permisos.availablePermits();
+    }
+
+    public int getHilosEsperando() {
+        return permisos.getQueueLength();
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        adquirir();
+        try {
+            return envolver(super.getConnection());
+        } catch (SQLException | RuntimeException ex) {
+            permisos.release();
+            throw ex;
+        }
+    }
+
+    @Override
+    public Connection getConnection(String usuario, String clave) throws SQLException {
+        adquirir();
+        try {
+            return envolver(super.getConnection(usuario, clave));
+        } catch (SQLException | RuntimeException ex) {
+            permisos.release();
+            throw ex;
+        }
+    }
+
+    private void adquirir() throws SQLException {
+        try {
+            if (!permisos.tryAcquire(esperaMaximaNanos, TimeUnit.NANOSECONDS)) {
+                throw new SQLTransientConnectionException("No hay conexiones disponibles: limite de concurrencia JDBC alcanzado");
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new SQLTransientConnectionException("Interrumpido esperando una conexion", ex);
+        }
+    }
+
+    //Devuelve un proxy de la conexión que libera el permiso una sola vez al cerrarla
+    private Connection envolver(Connection conexion) {
+        AtomicBoolean liberado = new AtomicBoolean();
+        InvocationHandler manejador = (proxy, metodo, argumentos) -> {
+            if (metodo.getName().equals("close") && liberado.compareAndSet(false, true)) {
+                try {
+                    return invocar(conexion, metodo, argumentos);
+                } finally {
+                    permisos.release();
+                }
+            }
+            return invocar(conexion, metodo, argumentos);
+        };
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+            new Class<?>[] {Connection.class}, manejador);
+    }
+
+    private static Object invocar(Connection conexion, Method metodo, Object[] argumentos) throws Throwable {
+        try {
+            return metodo.invoke(conexion, argumentos);
+        } catch (InvocationTargetException ex) {
+            throw ex.getTargetException();
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package es.cic.curso.practica004.config;
+
+import org.springframework.boot.autoconfigure.jackson.Jackson2ObjectMapperBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+import es.cic.curso.practica004.model.CamposPelicula;
+import es.cic.curso.practica004.model.Pelicula;
+
+/*
+ * Formatos de respuesta de la API además de JSON: CBOR (application/cbor) y
+ * Smile (application/x-jackson-smile), elegidos por la cabecera Accept.
+ * Los convertidores se crean con el mismo Jackson2ObjectMapperBuilder que el
+ * ObjectMapper de Spring Boot, así que comparten su configuración, incluida
+ * la selección de campos de CamposPelicula.
+ */
+@Configuration(proxyBeanMethods = false)
+public class FormatosConfig {
+
+    @Bean
+    public Jackson2ObjectMapperBuilderCustomizer camposPelicula() {
+        return builder -> builder.mixIn(Pelicula.class, CamposPelicula.MixIn.class).filters(CamposPelicula.todos());
+    }
+
+    @Bean
+    public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2CborHttpMessageConverter(builder.factory(new CBORFactory()).build());
+    }
+
+    @Bean
+    public MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2SmileHttpMessageConverter(builder.factory(new SmileFactory()).build());
+    }
+}
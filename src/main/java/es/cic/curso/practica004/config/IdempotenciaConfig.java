@@ -0,0 +1,42 @@
+package es.cic.curso.practica004.config;
+
+import java.time.Duration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+import es.cic.curso.practica004.idempotencia.IdempotenciaFilter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/*
+ * Peticiones idempotentes con Idempotency-Key (ver IdempotenciaFilter). Solo
+ * actúa en las peticiones que traen la cabecera.
+ * - practica004.idempotencia.tiempo-de-vida (24h): cuánto se recuerda cada clave.
+ * - practica004.idempotencia.memoria-maxima (64MB): tamaño máximo de las
+ *   respuestas guardadas; al superarlo se olvidan las menos usadas.
+ * - practica004.idempotencia.espera-maxima (30s): cuánto espera un reintento
+ *   a que termine la petición original.
+ * - practica004.idempotencia.cuerpo-maximo (1MB): cuerpo más grande que se
+ *   admite con Idempotency-Key; por encima se responde 413.
+ * Va después del límite de peticiones, así que los reintentos también cuentan.
+ */
+@Configuration(proxyBeanMethods = false)
+public class IdempotenciaConfig {
+
+    @Bean
+    public FilterRegistrationBean<IdempotenciaFilter> idempotenciaFilter(MeterRegistry meterRegistry,
+            @Value("${practica004.idempotencia.tiempo-de-vida:24h}") Duration tiempoDeVida,
+            @Value("${practica004.idempotencia.memoria-maxima:64MB}") DataSize memoriaMaxima,
+            @Value("${practica004.idempotencia.espera-maxima:30s}") Duration esperaMaxima,
+            @Value("${practica004.idempotencia.cuerpo-maximo:1MB}") DataSize cuerpoMaximo,
+            @Value("${practica004.limites.cabecera-cliente:X-API-Key}") String cabeceraCliente) {
+        FilterRegistrationBean<IdempotenciaFilter> registro = new FilterRegistrationBean<>(new IdempotenciaFilter(
+            tiempoDeVida, memoriaMaxima.toBytes(), esperaMaxima, Math.toIntExact(cuerpoMaximo.toBytes()),
+            cabeceraCliente, meterRegistry));
+        registro.addUrlPatterns("/api/*");
+        return registro;
+    }
+}
@@ -0,0 +1,91 @@
+package es.cic.curso.practica004.config;
+
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+import es.cic.curso.practica004.limites.LimitadorPeticiones;
+import es.cic.curso.practica004.limites.LimitePeticionesFilter;
+import es.cic.curso.practica004.limites.LimitePeticionesFilter.TipoPeticion;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/*
+ * Límite de peticiones por cliente y descarte de carga (ver
+ * LimitePeticionesFilter). Se activa con practica004.limites.habilitado=true.
+ * - practica004.limites.capacidad y reposicion: fichas del cubo de cada
+ *   cliente y fichas por segundo que se reponen. La capacidad debe ser al
+ *   menos el coste más alto.
+ * - practica004.limites.coste.*: fichas que gasta cada tipo de petición.
+ * - practica004.limites.cabecera-cliente: cabecera con la API key del cliente.
+ * - practica004.limites.claves: API keys conocidas, separadas por comas. Solo
+ *   estas tienen cubo propio; sin clave o con otra, el cubo es el de la IP.
+ * - practica004.limites.descarte.peticiones-en-curso y esperas-conexion:
+ *   valores a partir de los cuales se empieza a descartar carga. Las esperas
+ *   de conexión son los hilos esperando al pool (hikaricp.connections.pending)
+ *   más los que esperan permiso en DataSourceConLimite.
+ * El filtro va antes que el resto de la aplicación para que una petición
+ * rechazada no cueste nada más.
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty(value = "practica004.limites.habilitado", havingValue = "true")
+public class LimitesConfig {
+
+    @Bean
+    public FilterRegistrationBean<LimitePeticionesFilter> limitePeticionesFilter(DataSource dataSource,
+            MeterRegistry meterRegistry,
+            @Value("${practica004.limites.capacidad:100}") int capacidad,
+            @Value("${practica004.limites.reposicion:50}") double reposicion,
+            @Value("${practica004.limites.maximo-clientes:100000}") long maximoClientes,
+            @Value("${practica004.limites.cabecera-cliente:X-API-Key}") String cabeceraCliente,
+            @Value("${practica004.limites.claves:}") Set<String> claves,
+            @Value("${practica004.limites.coste.listado:50}") int costeListado,
+            @Value("${practica004.limites.coste.busqueda:5}") int costeBusqueda,
+            @Value("${practica004.limites.coste.lote:20}") int costeLote,
+            @Value("${practica004.limites.coste.lectura:1}") int costeLectura,
+            @Value("${practica004.limites.coste.escritura:2}") int costeEscritura,
+            @Value("${practica004.limites.descarte.peticiones-en-curso:200}") int maximoEnCurso,
+            @Value("${practica004.limites.descarte.esperas-conexion:10}") int maximoEsperasConexion) {
+        Map<TipoPeticion, Integer> costes = Map.of(
+            TipoPeticion.LISTADO, costeListado,
+            TipoPeticion.BUSQUEDA, costeBusqueda,
+            TipoPeticion.LOTE, costeLote,
+            TipoPeticion.LECTURA, costeLectura,
+            TipoPeticion.ESCRITURA, costeEscritura);
+        DataSourceConLimite limite = dataSourceConLimite(dataSource);
+        LimitePeticionesFilter filtro = new LimitePeticionesFilter(
+            new LimitadorPeticiones(capacidad, reposicion, maximoClientes), costes, cabeceraCliente,
+            claves.stream().filter(clave -> !clave.isBlank()).collect(Collectors.toSet()), maximoEnCurso, maximoEsperasConexion,
+            () -> esperasPool(meterRegistry) + (limite != null ? limite.getHilosEsperando() : 0),
+            meterRegistry);
+        FilterRegistrationBean<LimitePeticionesFilter> registro = new FilterRegistrationBean<>(filtro);
+        registro.addUrlPatterns("/api/*");
+        registro.setOrder(Ordered.HIGHEST_PRECEDENCE + 100);
+        return registro;
+    }
+
+    //Hilos esperando conexión en todos los pools de Hikari (primaria y réplicas)
+    private static int esperasPool(MeterRegistry meterRegistry) {
+        return (int) meterRegistry.find("hikaricp.connections.pending").gauges().stream()
+            .mapToDouble(Gauge::value)
+            .sum();
+    }
+
+    private static DataSourceConLimite dataSourceConLimite(DataSource dataSource) {
+        try {
+            return dataSource.isWrapperFor(DataSourceConLimite.class) ? dataSource.unwrap(DataSourceConLimite.class) : null;
+        } catch (SQLException ex) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package es.cic.curso.practica004.config;
+
+import javax.sql.DataSource;
+
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import es.cic.curso.practica004.metricas.ContadorSentenciasJdbc;
+import es.cic.curso.practica004.metricas.DataSourceMedido;
+import es.cic.curso.practica004.metricas.MetricasPeticionFilter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/*
+ * Métricas por petición de la API: sentencias SQL y espera de conexiones
+ * (ver MetricasPeticionFilter). El resto de métricas las da Spring Boot:
+ * http.server.requests por endpoint, spring.data.repository.invocations por
+ * método del repositorio, hikaricp.* del pool y hibernate.* (estadísticas
+ * de Hibernate). Todas se exponen en /actuator/prometheus.
+ */
+@Configuration(proxyBeanMethods = false)
+public class MetricasConfig {
+
+    //Si ya se ha configurado otro StatementInspector (por ejemplo en los tests) se respeta
+    @Bean
+    public HibernatePropertiesCustomizer contadorSentenciasJdbc() {
+        return propiedades -> propiedades.putIfAbsent(AvailableSettings.STATEMENT_INSPECTOR, new ContadorSentenciasJdbc());
+    }
+
+    @Bean
+    public static BeanPostProcessor dataSourceMedido() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String nombre) {
+                if (bean instanceof DataSource dataSource && !(bean instanceof DataSourceMedido)) {
+                    return new DataSourceMedido(dataSource);
+                }
+                return bean;
+            }
+        };
+    }
+
+    @Bean
+    public FilterRegistrationBean<MetricasPeticionFilter> metricasPeticionFilter(MeterRegistry meterRegistry) {
+        FilterRegistrationBean<MetricasPeticionFilter> registro =
+            new FilterRegistrationBean<>(new MetricasPeticionFilter(meterRegistry));
+        registro.addUrlPatterns("/api/*");
+        return registro;
+    }
+}
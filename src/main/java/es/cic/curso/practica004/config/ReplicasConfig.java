@@ -0,0 +1,134 @@
+package es.cic.curso.practica004.config;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+import org.flywaydb.core.Flyway;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+
+import es.cic.curso.practica004.replicas.ComprobadorReplicas;
+import es.cic.curso.practica004.replicas.DataSourceReplicado;
+import es.cic.curso.practica004.replicas.LecturaEnPrimariaFilter;
+import es.cic.curso.practica004.service.PeliculaCache;
+import es.cic.curso.practica004.service.PeliculaCambiada;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/*
+ * Separación de lecturas y escrituras. Se activa al definir
+ * practica004.replicas.urls (lo hace el perfil replicas):
+ * - La primaria es la base de datos de spring.datasource.* con el pool de
+ *   spring.datasource.hikari.*.
+ * - Cada URL de practica004.replicas.urls es una réplica de solo lectura con
+ *   su propio pool (practica004.replicas.tamano-pool conexiones, 10 por defecto).
+ * - practica004.replicas.retraso-maximo (5s): retraso a partir del cual una
+ *   réplica deja de recibir lecturas.
+ * - practica004.replicas.adherencia (5s): tiempo que un cliente lee de la
+ *   primaria después de escribir.
+ * - practica004.replicas.migrar (false): aplica también a las réplicas las
+ *   migraciones de Flyway. Solo para réplicas locales que no se replican de
+ *   verdad; una réplica real recibe el esquema de la primaria.
+ * Las réplicas deben tener el mismo usuario y clave que la primaria.
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty("practica004.replicas.urls")
+@EnableScheduling
+public class ReplicasConfig {
+
+    @Autowired
+    private PeliculaCache peliculaCache;
+
+    @Value("${practica004.replicas.retraso-maximo:5s}")
+    private Duration retrasoMaximo;
+
+    @Value("${practica004.replicas.comprobacion:PT2S}")
+    private Duration comprobacion;
+
+    @Bean
+    public ComprobadorReplicas comprobadorReplicas(DataSourceProperties propiedades, Environment environment,
+            MeterRegistry meterRegistry, @Value("${practica004.replicas.urls}") List<String> urls,
+            @Value("${practica004.replicas.tamano-pool:10}") int tamanoPool,
+            @Value("${practica004.replicas.migrar:false}") boolean migrar) {
+        HikariDataSource primaria = propiedades.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        Binder.get(environment).bind("spring.datasource.hikari", Bindable.ofInstance(primaria));
+        primaria.setPoolName(DataSourceReplicado.PRIMARIA);
+        primaria.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(meterRegistry));
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        for (int i = 0; i < urls.size(); i++) {
+            if (migrar) {
+                Flyway.configure()
+                    .dataSource(urls.get(i), propiedades.determineUsername(), propiedades.determinePassword())
+                    .load()
+                    .migrate();
+            }
+            HikariDataSource replica = propiedades.initializeDataSourceBuilder().type(HikariDataSource.class)
+                .url(urls.get(i)).build();
+            replica.setPoolName("replica-" + i);
+            replica.setReadOnly(true);
+            replica.setAutoCommit(primaria.isAutoCommit());
+            replica.setMaximumPoolSize(tamanoPool);
+            replica.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(meterRegistry));
+            replicas.put(replica.getPoolName(), replica);
+        }
+        DataSourceReplicado dataSource = new DataSourceReplicado(primaria, replicas, retrasoMaximo);
+        dataSource.afterPropertiesSet();
+        return new ComprobadorReplicas(dataSource, meterRegistry);
+    }
+
+    /*
+     * DataSource de la aplicación. El proxy perezoso retrasa la conexión real
+     * hasta la primera sentencia, cuando ya se sabe si la transacción es de
+     * solo lectura y por tanto a dónde enrutarla.
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(ComprobadorReplicas comprobadorReplicas) {
+        return new LazyConnectionDataSourceProxy(comprobadorReplicas.getDataSource());
+    }
+
+    @Bean
+    public FilterRegistrationBean<LecturaEnPrimariaFilter> lecturaEnPrimariaFilter(
+            @Value("${practica004.replicas.adherencia:5s}") Duration adherencia) {
+        FilterRegistrationBean<LecturaEnPrimariaFilter> registro =
+            new FilterRegistrationBean<>(new LecturaEnPrimariaFilter(adherencia));
+        registro.addUrlPatterns("/api/*");
+        return registro;
+    }
+
+    /*
+     * Con cada escritura el cliente pasa a leer de la primaria. Además la
+     * película se vuelve a quitar de la caché cuando ya no puede haber una
+     * réplica con la versión antigua, por si otra petición la cargó de una
+     * réplica retrasada después de la invalidación normal. Hasta entonces esa
+     * entrada solo la ven los clientes sin la cookie: los que acaban de
+     * escribir no usan la caché (ver PeliculaService.findById).
+     */
+    @EventListener
+    public void alEscribir(PeliculaCambiada cambio) {
+        LecturaEnPrimariaFilter.escrituraRealizada();
+        Long id = cambio.id();
+        CompletableFuture.delayedExecutor(retrasoMaximo.plus(comprobacion).toMillis(), TimeUnit.MILLISECONDS)
+            .execute(() -> peliculaCache.invalidate(id));
+    }
+}
@@ -0,0 +1,36 @@
+package es.cic.curso.practica004.controller;
+
+import org.springframework.core.MethodParameter;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.MappingJacksonValue;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.AbstractMappingJacksonResponseBodyAdvice;
+
+import es.cic.curso.practica004.model.CamposPelicula;
+
+/*
+ * Aplica el parámetro ?fields=campo1,campo2 a las respuestas de
+ * PeliculaController que se escriben con Jackson (JSON, CBOR o Smile):
+ * de cada película solo se serializan los campos pedidos.
+ * El listado completo (GET /api/peliculas) se escribe en streaming y
+ * aplica el parámetro por su cuenta.
+ */
+@RestControllerAdvice(assignableTypes = PeliculaController.class)
+public class CamposPeliculaAdvice extends AbstractMappingJacksonResponseBodyAdvice {
+
+    public static final String PARAMETRO = "fields";
+
+    @Override
+    protected void beforeBodyWriteInternal(MappingJacksonValue cuerpo, MediaType contentType,
+            MethodParameter returnType, ServerHttpRequest request, ServerHttpResponse response) {
+        if (request instanceof ServletServerHttpRequest servletRequest) {
+            String campos = servletRequest.getServletRequest().getParameter(PARAMETRO);
+            if (campos != null) {
+                cuerpo.setFilters(CamposPelicula.solo(campos));
+            }
+        }
+    }
+}
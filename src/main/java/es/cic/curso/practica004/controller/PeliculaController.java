@@ -1,22 +1,71 @@
 package es.cic.curso.practica004.controller;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.web.PageableDefault;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.util.MimeTypeUtils;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import es.cic.curso.practica004.cambios.FlujoCambios;
+import es.cic.curso.practica004.cambios.RegistroCambios;
+import es.cic.curso.practica004.estadisticas.EstadisticasCatalogo;
+import es.cic.curso.practica004.exception.CambiosNoDisponiblesException;
+import es.cic.curso.practica004.exception.ColaEscrituraLlenaException;
+import es.cic.curso.practica004.exception.PeliculaDuplicadaException;
+import es.cic.curso.practica004.exception.PeliculaModificadaException;
 import es.cic.curso.practica004.exception.PeliculaNotFoundException;
+import es.cic.curso.practica004.ingesta.EscrituraDiferida;
+import es.cic.curso.practica004.model.CamposPelicula;
+import es.cic.curso.practica004.model.EstadisticasPeliculas;
+import es.cic.curso.practica004.model.EstadoEscritura;
+import es.cic.curso.practica004.model.FiltroPeliculas;
+import es.cic.curso.practica004.model.GrupoEstadistica;
+import es.cic.curso.practica004.model.PaginaCambios;
+import es.cic.curso.practica004.model.PaginaPeliculas;
 import es.cic.curso.practica004.model.Pelicula;
+import es.cic.curso.practica004.model.ResultadoBusqueda;
+import es.cic.curso.practica004.model.ResultadoImportacion;
+import es.cic.curso.practica004.model.ResultadoLote;
+import es.cic.curso.practica004.model.VersionPelicula;
+import es.cic.curso.practica004.service.PeliculaLoteService;
 import es.cic.curso.practica004.service.PeliculaService;
+import es.cic.curso.practica004.transferencia.ExportadorCatalogo;
+import es.cic.curso.practica004.transferencia.FormatoFichero;
+import es.cic.curso.practica004.transferencia.ImportadorCatalogo;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 
 /*
  * @RestController: Marca la clase como un controlador REST, 
@@ -39,17 +88,155 @@ public class PeliculaController {
     @Autowired
     private PeliculaService peliculaService;
 
+    @Autowired
+    private PeliculaLoteService peliculaLoteService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private EscrituraDiferida escrituraDiferida;
+
+    @Autowired
+    private EstadisticasCatalogo estadisticasCatalogo;
+
+    @Autowired
+    private RegistroCambios registroCambios;
+
+    @Autowired
+    private FlujoCambios flujoCambios;
+
+    @Autowired
+    private ImportadorCatalogo importadorCatalogo;
+
+    @Autowired
+    private ExportadorCatalogo exportadorCatalogo;
+
+    //Convertidores de los formatos binarios, para el listado en streaming (ver FormatosConfig)
+    @Autowired
+    private MappingJackson2CborHttpMessageConverter cborConverter;
+
+    @Autowired
+    private MappingJackson2SmileHttpMessageConverter smileConverter;
+
+    private static final String SMILE = "application/x-jackson-smile";
+    private static final MediaType MEDIA_TYPE_SMILE = MediaType.parseMediaType(SMILE);
+
 
     /*
     * OBTENER TODAS LAS PELICULAS
     * @GetMapping: Maneja solicitudes HTTP GET en la ruta base /peliculas.
     * Método: getAllPeliculas().
-    * Propósito: Recuperar y devolver una lista de todas las películas. 
-    * Retorno: Devuelve una lista de objetos Pelicula en formato JSON.
+    * Propósito: Recuperar y devolver todas las películas.
+    * Retorno: Escribe las películas en la respuesta a medida que se leen
+    * de la base de datos, sin construir antes una lista con todo el
+    * catálogo. Por defecto devuelve un array JSON; si el cliente envía
+    * Accept: application/x-ndjson devuelve una película JSON por línea, y con
+    * application/cbor o application/x-jackson-smile un array en ese formato
+    * binario, más compacto y rápido de generar que JSON.
+    * @RequestParam fields (opcional): campos de cada película que se devuelven,
+    * separados por comas (por ejemplo id,titulo).
+    * La respuesta lleva un ETag débil calculado con agregados del catálogo,
+    * distinto para cada formato y selección de campos; si el cliente lo envía
+    * en If-None-Match y nada ha cambiado, se responde 304 (Not Modified) sin
+    * leer ni serializar ninguna película.
     */
     @GetMapping
-    public List <Pelicula> getAllPeliculas() {
-        return peliculaService.findAll();
+    public void getAllPeliculas(
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+            @RequestParam(value = CamposPeliculaAdvice.PARAMETRO, required = false) String campos,
+            WebRequest webRequest, HttpServletResponse response) throws IOException {
+        MediaType formato = formato(accept, MediaType.APPLICATION_JSON, MediaType.APPLICATION_NDJSON,
+            MediaType.APPLICATION_CBOR, MEDIA_TYPE_SMILE);
+        //También en el 304: la respuesta depende de Accept
+        response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+        if (webRequest.checkNotModified(peliculaService.findHuella().etagDebil(representacion(formato, campos)))) {
+            return;
+        }
+        boolean ndjson = formato.equals(MediaType.APPLICATION_NDJSON);
+        ObjectMapper mapper = formato.equals(MediaType.APPLICATION_CBOR) ? cborConverter.getObjectMapper()
+            : formato.equals(MEDIA_TYPE_SMILE) ? smileConverter.getObjectMapper()
+            : objectMapper;
+        response.setContentType(formato.toString());
+        response.setCharacterEncoding("UTF-8");
+        ObjectWriter writer = mapper.writerFor(Pelicula.class)
+            .with(CamposPelicula.solo(campos))
+            .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        try (JsonGenerator generador = mapper.createGenerator(response.getOutputStream())) {
+            //Los generadores binarios no tienen separador entre valores
+            if (!generador.canWriteBinaryNatively()) {
+                generador.setRootValueSeparator(null);
+            }
+            if (!ndjson) {
+                generador.writeStartArray();
+            }
+            peliculaService.forEach(pelicula -> {
+                try {
+                    writer.writeValue(generador, pelicula);
+                    if (ndjson) {
+                        generador.writeRaw('\n');
+                    }
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            });
+            if (!ndjson) {
+                generador.writeEndArray();
+            }
+        }
+    }
+
+    /*
+    * OBTENER UNA PAGINA DE PELICULAS
+    * @GetMapping("/page"): Maneja solicitudes HTTP GET en la ruta /peliculas/page.
+    * @RequestParam cursor: valor opaco devuelto por la página anterior (opcional).
+    * @RequestParam size: número de películas por página, acotado a 1000.
+    * Retorno: Devuelve la página con estado 200 (OK), o 400 (Bad Request)
+    * si el cursor no es válido.
+    */
+    @GetMapping("/page")
+    public ResponseEntity<PaginaPeliculas> getPeliculasPage(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "" + PeliculaService.TAMANO_PAGINA_POR_DEFECTO) int size) {
+        try {
+            return ResponseEntity.ok(peliculaService.findPage(cursor, size));
+        } catch (IllegalArgumentException ex) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+    }
+
+    /*
+    * BUSCAR PELICULAS
+    * @GetMapping("/search"): Maneja solicitudes HTTP GET en la ruta /peliculas/search.
+    * FiltroPeliculas filtro: se rellena con los parámetros titulo (prefijo, sin
+    * distinguir mayúsculas), director, genero, disponible, anoDesde y anoHasta.
+    * Pageable: parámetros page, size (máximo 1000) y sort (por ejemplo sort=ano,desc).
+    * Retorno: Devuelve la página de resultados con estado 200 (OK), o 400
+    * (Bad Request) si se pide ordenar por un campo no permitido.
+    */
+    @GetMapping("/search")
+    public ResponseEntity<ResultadoBusqueda> searchPeliculas(FiltroPeliculas filtro,
+            @PageableDefault(size = 20, sort = "id", direction = Sort.Direction.ASC) Pageable pageable) {
+        try {
+            return ResponseEntity.ok(peliculaService.search(filtro, pageable));
+        } catch (IllegalArgumentException ex) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+    }
+
+    /*
+    * BUSQUEDA DE TEXTO COMPLETO
+    * @GetMapping("/search/fulltext"): Maneja solicitudes HTTP GET en la ruta
+    * /peliculas/search/fulltext.
+    * @RequestParam q: texto a buscar en título y director. No distingue
+    * mayúsculas ni tildes, y la última palabra puede estar incompleta.
+    * @RequestParam limit: número máximo de resultados, acotado a 100.
+    * Retorno: Devuelve las películas de más a menos relevante con estado 200 (OK).
+    */
+    @GetMapping("/search/fulltext")
+    public List<Pelicula> searchPeliculasFullText(@RequestParam String q,
+            @RequestParam(defaultValue = "20") int limit) {
+        return peliculaService.searchText(q, Math.min(Math.max(limit, 1), 100));
     }
 
     /*
@@ -70,17 +257,85 @@ public class PeliculaController {
      * try catch para intentar ejecutar el código que podría lanzar una excepción
      * ResponseEntity<>(): Los corchetes angulares vacíos <> se utilizan 
      * para especificar el tipo genérico al crear una instancia de ResponseEntity
+     * La respuesta lleva ETag (la versión, más el formato y los campos si no
+     * es JSON completo) y Last-Modified. Si la petición es
+     * condicional (If-None-Match o If-Modified-Since) primero se comprueba solo
+     * la versión, desde la caché o leyendo esas dos columnas, y si no ha
+     * cambiado se responde 304 (Not Modified) sin cargar ni serializar la película.
+     * WebRequest.checkNotModified ya añade ETag y Last-Modified a la respuesta.
      */
     @GetMapping("/{id}")
-    public ResponseEntity<Pelicula> getPeliculaById(@PathVariable Long id) {
+    public ResponseEntity<Pelicula> getPeliculaById(@PathVariable Long id,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+            @RequestParam(value = CamposPeliculaAdvice.PARAMETRO, required = false) String campos,
+            WebRequest webRequest, HttpServletResponse response) {
+        MediaType formato = formato(accept, MediaType.APPLICATION_JSON, MediaType.APPLICATION_CBOR, MEDIA_TYPE_SMILE);
+        String representacion = representacion(formato, campos);
+        response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
         try {
+            if (webRequest.getHeader(HttpHeaders.IF_NONE_MATCH) != null
+                    || webRequest.getHeader(HttpHeaders.IF_MODIFIED_SINCE) != null) {
+                VersionPelicula version = peliculaService.findVersion(id);
+                if (webRequest.checkNotModified(version.etag(representacion), version.ultimaModificacionMillis())) {
+                    return null;
+                }
+                return ResponseEntity.ok().contentType(formato).body(peliculaService.findById(id));
+            }
             Pelicula pelicula = peliculaService.findById(id);
-            return ResponseEntity.ok(pelicula);
+            VersionPelicula version = VersionPelicula.de(pelicula);
+            return ResponseEntity.ok()
+                .contentType(formato)
+                .eTag(version.etag(representacion))
+                .lastModified(version.ultimaModificacionMillis())
+                .body(pelicula);
         } catch (PeliculaNotFoundException ex) {
             return new ResponseEntity<>(HttpStatus.NOT_FOUND);
         }
     }
 
+    /*
+     * Formato de la respuesta: el primero de los admitidos que acepte el
+     * cliente, por orden de preferencia de Accept. JSON si no envía Accept o
+     * no acepta ninguno.
+     */
+    private static MediaType formato(String accept, MediaType... admitidos) {
+        if (accept == null || accept.isBlank()) {
+            return admitidos[0];
+        }
+        List<MediaType> pedidos;
+        try {
+            pedidos = new ArrayList<>(MediaType.parseMediaTypes(accept));
+        } catch (InvalidMediaTypeException ex) {
+            return admitidos[0];
+        }
+        MimeTypeUtils.sortBySpecificity(pedidos);
+        for (MediaType pedido : pedidos) {
+            if (pedido.getQualityValue() == 0) {
+                continue;
+            }
+            for (MediaType admitido : admitidos) {
+                if (pedido.isCompatibleWith(admitido)) {
+                    return admitido;
+                }
+            }
+        }
+        return admitidos[0];
+    }
+
+    /*
+     * Parte del ETag que distingue las representaciones de un mismo estado:
+     * vacía para JSON con todos los campos; si no, el formato y un resumen
+     * de los campos pedidos.
+     */
+    private static String representacion(MediaType formato, String campos) {
+        String representacion = formato.equals(MediaType.APPLICATION_JSON) ? ""
+            : formato.getSubtype().replace("x-jackson-", "").replace("x-", "");
+        if (campos != null) {
+            representacion += (representacion.isEmpty() ? "" : "-") + "f" + Integer.toHexString(campos.hashCode());
+        }
+        return representacion;
+    }
+
     /*
      * CREAR UNA NUEVA PELICULA
      * @PostMapping: Maneja solicitudes HTTP POST en la ruta base /peliculas.
@@ -90,11 +345,147 @@ public class PeliculaController {
      * Propósito: Crear una nueva película.
      * Retorno: Devuelve un ResponseEntity<Pelicula> con la película guardada 
      * y un estado HTTP 201 (Created).
+     * En modo escritura diferida (practica004.escritura-diferida.habilitada)
+     * la película se encola y se devuelve 202 (Accepted) con su EstadoEscritura
+     * y la URL para consultarlo en Location. Si la cola está llena se devuelve
+     * 503 (Service Unavailable) con Retry-After.
+     * Si ya existe una película con el mismo título, director y año se
+     * devuelve 409 (Conflict) con la URL de esa película en Location.
+     * Con la cabecera Idempotency-Key los reintentos devuelven la respuesta
+     * original sin volver a crearla (ver IdempotenciaFilter).
+     * El id que traiga el cuerpo se ignora: siempre se crea una película nueva.
      */
     @PostMapping
-    public ResponseEntity<Pelicula> createPelicula(@RequestBody Pelicula pelicula) {
-        Pelicula savedPelicula = peliculaService.save(pelicula);
-        return ResponseEntity.status (HttpStatus.CREATED).body(savedPelicula);
+    public ResponseEntity<?> createPelicula(@RequestBody Pelicula pelicula) {
+        pelicula.setId(null);
+        if (escrituraDiferida.isHabilitada()) {
+            try {
+                EstadoEscritura estado = escrituraDiferida.encolar(pelicula);
+                return ResponseEntity.accepted()
+                    .location(URI.create("/api/peliculas/escrituras/" + estado.seguimiento()))
+                    .body(estado);
+            } catch (ColaEscrituraLlenaException ex) {
+                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "1").build();
+            }
+        }
+        try {
+            Pelicula savedPelicula = peliculaService.save(pelicula);
+            return ResponseEntity.status (HttpStatus.CREATED).body(savedPelicula);
+        } catch (PeliculaDuplicadaException ex) {
+            return conflicto(ex);
+        }
+    }
+
+    /*
+     * ESTADO DE UNA ESCRITURA DIFERIDA
+     * Devuelve el EstadoEscritura del seguimiento indicado (PENDIENTE, GUARDADA
+     * con el id de la película, DUPLICADA con el id de la que ya existía, o
+     * ERROR), o 404 si no se conoce.
+     */
+    @GetMapping("/escrituras/{seguimiento}")
+    public ResponseEntity<EstadoEscritura> getEstadoEscritura(@PathVariable String seguimiento) {
+        return escrituraDiferida.getEstado(seguimiento)
+            .map(ResponseEntity::ok)
+            .orElseGet(() -> new ResponseEntity<>(HttpStatus.NOT_FOUND));
+    }
+
+    /*
+     * ESTADISTICAS DEL CATALOGO
+     * @GetMapping("/stats"): Número de películas, disponibles y recuentos por
+     * género y por década. Se calculan al escribir (ver EstadisticasCatalogo),
+     * así que la consulta no recorre el catálogo.
+     * Retorno: 200 (OK) con las EstadisticasPeliculas, 404 (Not Found) si están
+     * deshabilitadas y 503 (Service Unavailable) con Retry-After mientras se
+     * construyen.
+     */
+    @GetMapping("/stats")
+    public ResponseEntity<EstadisticasPeliculas> getEstadisticas() {
+        if (!estadisticasCatalogo.isHabilitadas()) {
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        }
+        if (!estadisticasCatalogo.isListo()) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "1").build();
+        }
+        return ResponseEntity.ok(estadisticasCatalogo.getEstadisticas());
+    }
+
+    /*
+     * DIRECTORES CON MAS PELICULAS
+     * @GetMapping("/stats/directores"): Los limit directores (acotado a 1000)
+     * con más películas, con sus disponibles. Mismos estados que /stats.
+     */
+    @GetMapping("/stats/directores")
+    public ResponseEntity<List<GrupoEstadistica>> getEstadisticasDirectores(
+            @RequestParam(defaultValue = "20") int limit) {
+        if (!estadisticasCatalogo.isHabilitadas()) {
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        }
+        if (!estadisticasCatalogo.isListo()) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "1").build();
+        }
+        return ResponseEntity.ok(estadisticasCatalogo.getDirectores(Math.min(Math.max(limit, 1), 1000)));
+    }
+
+    /*
+     * RECONSTRUIR LAS ESTADISTICAS
+     * @PostMapping("/stats/rebuild"): Vuelve a calcular las estadísticas desde
+     * la base de datos en segundo plano y responde 202 (Accepted) sin esperar.
+     * Mientras tanto /stats responde 503.
+     */
+    @PostMapping("/stats/rebuild")
+    public ResponseEntity<Void> reconstruirEstadisticas() {
+        if (!estadisticasCatalogo.isHabilitadas()) {
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        }
+        estadisticasCatalogo.reconstruirEnSegundoPlano();
+        return new ResponseEntity<>(HttpStatus.ACCEPTED);
+    }
+
+    /*
+     * CAMBIOS DEL CATALOGO
+     * @GetMapping("/changes"): Devuelve en orden los cambios (altas,
+     * actualizaciones y bajas) con secuencia mayor que since, como mucho limit
+     * (acotado a 1000). Para seguir leyendo se vuelve a pedir con
+     * since=ultimaSecuencia mientras hayMas sea true.
+     * Retorno: 200 (OK) con la PaginaCambios, 404 (Not Found) si el registro de
+     * cambios no está habilitado (practica004.cambios.habilitado) y 410 (Gone)
+     * si algún cambio posterior a since ya se ha purgado; en ese caso el cliente
+     * debe volver a leer el catálogo completo.
+     */
+    @GetMapping("/changes")
+    public ResponseEntity<PaginaCambios> getCambios(@RequestParam(defaultValue = "0") long since,
+            @RequestParam(defaultValue = "500") int limit) {
+        if (!registroCambios.isHabilitado()) {
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        }
+        try {
+            return ResponseEntity.ok(registroCambios.leer(since, limit));
+        } catch (CambiosNoDisponiblesException ex) {
+            return new ResponseEntity<>(HttpStatus.GONE);
+        }
+    }
+
+    /*
+     * FLUJO DE CAMBIOS DEL CATALOGO
+     * @GetMapping("/changes/stream"): Server-Sent Events con los mismos cambios
+     * que /changes. Cada evento tiene como id la secuencia y como nombre el
+     * tipo (CREADA, ACTUALIZADA, PARCIAL o ELIMINADA). Se empieza después de
+     * since o, si el navegador se reconecta, después de la cabecera Last-Event-ID.
+     * Retorno: el flujo de eventos, 404 si el registro no está habilitado o 410
+     * si los cambios pedidos ya se han purgado.
+     */
+    @GetMapping(value = "/changes/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> getFlujoCambios(@RequestParam(required = false) Long since,
+            @RequestHeader(value = "Last-Event-ID", required = false) Long ultimoEvento) {
+        if (!registroCambios.isHabilitado()) {
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        }
+        long desde = ultimoEvento != null ? ultimoEvento : since != null ? since : 0;
+        try {
+            return ResponseEntity.ok(flujoCambios.suscribir(desde));
+        } catch (CambiosNoDisponiblesException ex) {
+            return new ResponseEntity<>(HttpStatus.GONE);
+        }
     }
 
     /*
@@ -110,23 +501,77 @@ public class PeliculaController {
      * película actualizada con un estado HTTP 200 (OK).
      * Si la película no existe, devuelve un estado HTTP 404 (Not Found).
      * Modificamos el código metiendo un try catch para el manejo de excepciones
+     * La actualización se hace en el servicio para no modificar la película
+     * que devuelve la caché de findById.
+     * @RequestHeader If-Match (opcional): ETag que el cliente leyó. Si la película
+     * ha cambiado desde entonces se devuelve 412 (Precondition Failed) y no se
+     * escribe nada. La comprobación va en el propio UPDATE, así que es atómica.
+     * Con If-Match la respuesta lleva el ETag de la nueva versión (la leída + 1);
+     * sin él no se conoce la versión nueva sin otra consulta y no se envía ETag.
+     * Si los datos coinciden con la clave natural de otra película se devuelve
+     * 409 (Conflict), como en la creación.
      */
     @PutMapping ("/{id}")
-    public ResponseEntity<Pelicula> updatePelicula(@PathVariable Long id, @RequestBody Pelicula peliculaDetails) {
+    public ResponseEntity<Pelicula> updatePelicula(@PathVariable Long id, @RequestBody Pelicula peliculaDetails,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
         try {
-            Pelicula pelicula = peliculaService.findById(id);
-            pelicula.setTitulo(peliculaDetails.getTitulo());
-            pelicula.setDirector(peliculaDetails.getDirector());
-            pelicula.setAno(peliculaDetails.getAno());
-            pelicula.setGenero(peliculaDetails.getGenero());
-            pelicula.setDisponible(peliculaDetails.isDisponible());
-            Pelicula updatedPelicula = peliculaService.save(pelicula);
-            return ResponseEntity.ok(updatedPelicula);
+            Long versionEsperada = VersionPelicula.deIfMatch(ifMatch);
+            Pelicula updatedPelicula = peliculaService.update(id, peliculaDetails, versionEsperada);
+            ResponseEntity.BodyBuilder respuesta = ResponseEntity.ok();
+            if (versionEsperada != null) {
+                respuesta.eTag(new VersionPelicula(versionEsperada + 1, null).etag());
+            }
+            return respuesta.body(updatedPelicula);
+        } catch (PeliculaNotFoundException ex) {
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        } catch (PeliculaModificadaException ex) {
+            return new ResponseEntity<>(HttpStatus.PRECONDITION_FAILED);
+        } catch (PeliculaDuplicadaException ex) {
+            return conflicto(ex);
+        }
+    }
+
+    /*
+     * @PatchMapping("/{id}"): Actualización parcial de una película.
+     * El cuerpo es un objeto JSON solo con los campos que cambian
+     * (titulo, director, ano, genero, disponible); se escriben únicamente
+     * esas columnas, sin leer antes la película.
+     * Retorno: 204 (No Content) si se actualiza, 400 (Bad Request) si hay
+     * campos desconocidos o de tipo incorrecto, 404 (Not Found) si no existe
+     * 412 (Precondition Failed) si If-Match no coincide y 409 (Conflict) si
+     * choca con la clave natural de otra película. Con If-Match la
+     * respuesta lleva el ETag de la nueva versión.
+     */
+    @PatchMapping(value = "/{id}", consumes = {MediaType.APPLICATION_JSON_VALUE, "application/merge-patch+json"})
+    public ResponseEntity<Void> patchPelicula(@PathVariable Long id, @RequestBody Map<String, Object> cambios,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        try {
+            Long versionEsperada = VersionPelicula.deIfMatch(ifMatch);
+            peliculaService.patch(id, cambios, versionEsperada);
+            ResponseEntity.HeadersBuilder<?> respuesta = ResponseEntity.noContent();
+            if (versionEsperada != null) {
+                respuesta.eTag(new VersionPelicula(versionEsperada + 1, null).etag());
+            }
+            return respuesta.build();
+        } catch (IllegalArgumentException ex) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
         } catch (PeliculaNotFoundException ex) {
             return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        } catch (PeliculaModificadaException ex) {
+            return new ResponseEntity<>(HttpStatus.PRECONDITION_FAILED);
+        } catch (PeliculaDuplicadaException ex) {
+            return conflicto(ex);
         }
     }
 
+    //409 (Conflict) con la URL de la película que ya tiene esa clave natural
+    private static <T> ResponseEntity<T> conflicto(PeliculaDuplicadaException ex) {
+        ResponseEntity.BodyBuilder respuesta = ResponseEntity.status(HttpStatus.CONFLICT);
+        if (ex.getIdExistente() != null) {
+            respuesta.location(URI.create("/api/peliculas/" + ex.getIdExistente()));
+        }
+        return respuesta.build();
+    }
 
     /*
      * ELIMINAR UNA PELICULA POR ID
@@ -151,10 +596,91 @@ public class PeliculaController {
         
     }
 
+    /*
+     * OPERACIONES POR LOTES
+     * @PostMapping("/batch"), @PutMapping("/batch") y @DeleteMapping("/batch"):
+     * Crean, actualizan o eliminan muchas películas en una sola petición.
+     * @RequestBody: array de películas (o de ids, en el borrado).
+     * Propósito: Cargar o modificar el catálogo sin una petición HTTP por película.
+     * Retorno: Devuelve un ResponseEntity<List<ResultadoLote>> con estado 200 (OK)
+     * y un resultado por elemento, en el mismo orden que la entrada. Una película
+     * que ya existe (mismo título, director y año) queda como DUPLICADA con el
+     * id de la existente, así que reenviar un lote no crea duplicados.
+     * Si el array supera el máximo configurado devuelve 413 (Payload Too Large).
+     */
+    @PostMapping("/batch")
+    public ResponseEntity<List<ResultadoLote>> createPeliculas(@RequestBody List<Pelicula> peliculas) {
+        if (peliculas.size() > peliculaLoteService.getMaximoElementos()) {
+            return new ResponseEntity<>(HttpStatus.PAYLOAD_TOO_LARGE);
+        }
+        return ResponseEntity.ok(peliculaLoteService.saveAll(peliculas));
+    }
 
-            
-}   
+    @PutMapping("/batch")
+    public ResponseEntity<List<ResultadoLote>> updatePeliculas(@RequestBody List<Pelicula> peliculas) {
+        if (peliculas.size() > peliculaLoteService.getMaximoElementos()) {
+            return new ResponseEntity<>(HttpStatus.PAYLOAD_TOO_LARGE);
+        }
+        return ResponseEntity.ok(peliculaLoteService.updateAll(peliculas));
+    }
 
-    
+    @DeleteMapping("/batch")
+    public ResponseEntity<List<ResultadoLote>> deletePeliculas(@RequestBody List<Long> ids) {
+        if (ids.size() > peliculaLoteService.getMaximoElementos()) {
+            return new ResponseEntity<>(HttpStatus.PAYLOAD_TOO_LARGE);
+        }
+        return ResponseEntity.ok(peliculaLoteService.deleteAllById(ids));
+    }
 
+    /*
+     * EXPORTAR EL CATALOGO
+     * @GetMapping("/export"): Descarga todas las películas como fichero.
+     * @RequestParam format: csv o ndjson (por defecto ndjson).
+     * Propósito: Copias de seguridad y carga de otros entornos sin recorrer
+     * la API página a página.
+     * Retorno: El fichero se escribe según se lee de la base de datos, sin
+     * cargar el catálogo en memoria. Si el formato no existe devuelve 400.
+     */
+    @GetMapping("/export")
+    public void exportPeliculas(@RequestParam(value = "format", defaultValue = "ndjson") String format,
+            HttpServletResponse response) throws IOException {
+        FormatoFichero formato;
+        try {
+            formato = FormatoFichero.de(format);
+        } catch (IllegalArgumentException ex) {
+            response.setStatus(HttpStatus.BAD_REQUEST.value());
+            return;
+        }
+        response.setContentType(formato.getTipoContenido());
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+            "attachment; filename=\"peliculas" + formato.getExtension() + "\"");
+        exportadorCatalogo.exportar(formato, response.getOutputStream());
+    }
+
+    /*
+     * IMPORTAR PELICULAS
+     * @PostMapping("/import"): Crea las películas de un fichero CSV (con
+     * cabecera) o NDJSON enviado como cuerpo de la petición.
+     * @RequestParam format (opcional): csv o ndjson; si no se indica se toma
+     * del Content-Type (text/csv o application/x-ndjson).
+     * Retorno: 200 (OK) con las líneas leídas, las películas creadas, las
+     * rechazadas y, de estas, las duplicadas. 400 (Bad Request) si el formato no se reconoce o el CSV no
+     * tiene una cabecera válida.
+     */
+    @PostMapping("/import")
+    public ResponseEntity<ResultadoImportacion> importPeliculas(
+            @RequestParam(value = "format", required = false) String format,
+            HttpServletRequest request) throws IOException {
+        try {
+            String valor = format != null ? format : request.getContentType();
+            if (valor == null) {
+                return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+            }
+            return ResponseEntity.ok(importadorCatalogo.importar(FormatoFichero.de(valor), request.getInputStream()));
+        } catch (IllegalArgumentException ex) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+    }
 
+}
@@ -0,0 +1,303 @@
+package es.cic.curso.practica004.estadisticas;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.LongStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import es.cic.curso.practica004.model.EstadisticasPeliculas;
+import es.cic.curso.practica004.model.GrupoEstadistica;
+import es.cic.curso.practica004.model.ResumenPelicula;
+import es.cic.curso.practica004.repository.PeliculaRepository;
+import es.cic.curso.practica004.service.PeliculaCambiada;
+
+/*
+ * Estadísticas del catálogo (recuentos por género, director y década, y
+ * disponibilidad) mantenidas de forma incremental: cada PeliculaCambiada
+ * resta la película de los grupos en los que estaba y la suma en los nuevos,
+ * sin recorrer el catálogo.
+ * Para saber en qué grupos estaba una película se guarda su ResumenPelicula
+ * por id; así las actualizaciones parciales se aplican sin leer la base de datos.
+ * Los contadores son LongAdder y los mapas ConcurrentHashMap, de modo que
+ * las escrituras concurrentes no se bloquean entre sí. Una consulta suma los
+ * contadores en ese momento: puede no incluir del todo una escritura que se
+ * está aplicando a la vez, pero el recuento no se desvía.
+ * Se construye en segundo plano al arrancar, repartiendo el rango de ids en
+ * tramos que se leen en paralelo en un ForkJoinPool propio
+ * (practica004.estadisticas.paralelismo hilos, cada uno con su conexión).
+ * reconstruir() vuelve a calcularlo todo desde la base de datos; mientras
+ * tanto isListo() devuelve false.
+ */
+@Component
+public class EstadisticasCatalogo {
+
+    private static final Logger log = LoggerFactory.getLogger(EstadisticasCatalogo.class);
+
+    //Ids que lee cada tarea de la reconstrucción
+    private static final long TAMANO_TRAMO = 10_000;
+
+    //Claves de las películas sin género/director o sin año (los mapas no admiten null)
+    private static final String SIN_VALOR = "\0";
+    private static final int SIN_DECADA = Integer.MIN_VALUE;
+
+    //Marca de película eliminada mientras se construye, para que la carga no la añada
+    private static final ResumenPelicula ELIMINADA = new ResumenPelicula(null, null, null, null, false);
+
+    @Autowired
+    private PeliculaRepository peliculaRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    @Qualifier("applicationTaskExecutor")
+    private TaskExecutor taskExecutor;
+
+    @Value("${practica004.estadisticas.habilitadas:true}")
+    private boolean habilitadas;
+
+    @Value("${practica004.estadisticas.paralelismo:4}")
+    private int paralelismo;
+
+    /*Agregados vigentes. Cada reconstrucción empieza con unos nuevos, así
+    las escrituras que llegan mientras tanto no se mezclan con los anteriores. */
+    private volatile Agregados agregados = new Agregados();
+
+    public boolean isHabilitadas() {
+        return habilitadas;
+    }
+
+    public boolean isListo() {
+        return agregados.listo;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void alArrancar() {
+        if (habilitadas) {
+            reconstruirEnSegundoPlano();
+        }
+    }
+
+    public void reconstruirEnSegundoPlano() {
+        taskExecutor.execute(this::reconstruir);
+    }
+
+    /*
+     * Calcula de nuevo todas las estadísticas. Las películas que ya estén en
+     * los agregados nuevos, o que se hayan eliminado mientras tanto, se saltan:
+     * los eventos recibidos durante la carga son más recientes que lo leído.
+     * Si ya hay una reconstrucción en marcha espera a que termine.
+     */
+    public synchronized void reconstruir() {
+        long inicio = System.nanoTime();
+        Agregados nuevos = new Agregados();
+        agregados = nuevos;
+        Long minimo = transactionTemplate.execute(estado -> peliculaRepository.findMinId());
+        Long maximo = transactionTemplate.execute(estado -> peliculaRepository.findMaxId());
+        if (minimo != null) {
+            long tramos = (maximo - minimo) / TAMANO_TRAMO + 1;
+            ForkJoinPool pool = new ForkJoinPool(Math.max(paralelismo, 1));
+            try {
+                pool.submit(() -> LongStream.range(0, tramos).parallel().forEach(tramo -> {
+                    long desde = minimo + tramo * TAMANO_TRAMO;
+                    cargar(nuevos, desde, Math.min(desde + TAMANO_TRAMO - 1, maximo));
+                })).get();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Reconstruccion de las estadisticas interrumpida", ex);
+            } catch (ExecutionException ex) {
+                throw new IllegalStateException("No se pudieron reconstruir las estadisticas", ex.getCause());
+            } finally {
+                pool.shutdown();
+            }
+        }
+        //Relee las películas con actualizaciones parciales que llegaron antes de cargarlas
+        Set<Long> pendientes = Set.copyOf(nuevos.pendientes);
+        if (!pendientes.isEmpty()) {
+            transactionTemplate.execute(estado -> peliculaRepository.findResumenesById(pendientes))
+                .forEach(nuevos::poner);
+        }
+        nuevos.terminarCarga();
+        log.info("Estadisticas del catalogo construidas: {} peliculas en {} ms",
+            nuevos.total.sum(), (System.nanoTime() - inicio) / 1_000_000);
+    }
+
+    //Las lecturas usan transacciones de escritura para ir a la primaria, no a una réplica con retraso
+    private void cargar(Agregados destino, long desde, long hasta) {
+        List<ResumenPelicula> resumenes = transactionTemplate.execute(estado ->
+            peliculaRepository.findResumenesEntre(desde, hasta));
+        resumenes.forEach(destino::cargar);
+    }
+
+    /*
+     * Mantiene las estadísticas al día con cada escritura confirmada. Las
+     * actualizaciones parciales que solo tocan el título se ignoran.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void alCambiar(PeliculaCambiada cambio) {
+        if (!habilitadas) {
+            return;
+        }
+        Agregados actuales = agregados;
+        if (cambio.tipo() == PeliculaCambiada.Tipo.ELIMINADA) {
+            actuales.eliminar(cambio.id());
+        } else if (cambio.pelicula() != null) {
+            actuales.poner(ResumenPelicula.de(cambio.pelicula()));
+        } else if (cambio.afectaA("genero", "director", "ano", "disponible")) {
+            actuales.modificar(cambio.id(), cambio.cambios());
+        }
+    }
+
+    public EstadisticasPeliculas getEstadisticas() {
+        Agregados actuales = agregados;
+        long total = actuales.total.sum();
+        long disponibles = actuales.disponibles.sum();
+        List<GrupoEstadistica> porGenero = grupos(actuales.porGenero).stream()
+            .sorted(Comparator.comparingLong(GrupoEstadistica::peliculas).reversed()
+                .thenComparing(GrupoEstadistica::valor, Comparator.nullsLast(Comparator.naturalOrder())))
+            .toList();
+        List<GrupoEstadistica> porDecada = actuales.porDecada.entrySet().stream()
+            .sorted(Map.Entry.comparingByKey())
+            .map(entrada -> entrada.getValue().aGrupo(
+                entrada.getKey() == SIN_DECADA ? null : entrada.getKey().toString()))
+            .filter(grupo -> grupo.peliculas() > 0)
+            .toList();
+        return new EstadisticasPeliculas(total, disponibles, total == 0 ? 0 : (double) disponibles / total,
+            porGenero, porDecada);
+    }
+
+    //Los "limite" directores con más películas
+    public List<GrupoEstadistica> getDirectores(int limite) {
+        return grupos(agregados.porDirector).stream()
+            .sorted(Comparator.comparingLong(GrupoEstadistica::peliculas).reversed()
+                .thenComparing(GrupoEstadistica::valor, Comparator.nullsLast(Comparator.naturalOrder())))
+            .limit(limite)
+            .toList();
+    }
+
+    private static List<GrupoEstadistica> grupos(Map<String, Contador> contadores) {
+        return contadores.entrySet().stream()
+            .map(entrada -> entrada.getValue().aGrupo(
+                SIN_VALOR.equals(entrada.getKey()) ? null : entrada.getKey()))
+            .filter(grupo -> grupo.peliculas() > 0)
+            .toList();
+    }
+
+    private static String clave(String valor) {
+        return valor == null ? SIN_VALOR : valor;
+    }
+
+    private static int decada(Integer ano) {
+        return ano == null ? SIN_DECADA : Math.floorDiv(ano, 10) * 10;
+    }
+
+    //Películas y disponibles de un grupo
+    private static final class Contador {
+
+        private final LongAdder peliculas = new LongAdder();
+        private final LongAdder disponibles = new LongAdder();
+
+        void sumar(ResumenPelicula resumen, int signo) {
+            peliculas.add(signo);
+            if (resumen.disponible()) {
+                disponibles.add(signo);
+            }
+        }
+
+        GrupoEstadistica aGrupo(String valor) {
+            return GrupoEstadistica.de(valor, peliculas.sum(), disponibles.sum());
+        }
+    }
+
+    //Un juego completo de agregados y el resumen de cada película que contienen
+    private static final class Agregados {
+
+        private final Map<Long, ResumenPelicula> resumenes = new ConcurrentHashMap<>();
+        private final LongAdder total = new LongAdder();
+        private final LongAdder disponibles = new LongAdder();
+        private final Map<String, Contador> porGenero = new ConcurrentHashMap<>();
+        private final Map<String, Contador> porDirector = new ConcurrentHashMap<>();
+        private final Map<Integer, Contador> porDecada = new ConcurrentHashMap<>();
+
+        //Actualizaciones parciales de películas que la carga aún no había leído
+        private final Set<Long> pendientes = ConcurrentHashMap.newKeySet();
+
+        private volatile boolean listo;
+
+        //Película leída en la carga: solo se añade si no ha llegado antes un evento suyo
+        void cargar(ResumenPelicula resumen) {
+            if (resumenes.putIfAbsent(resumen.id(), resumen) == null) {
+                sumar(resumen, 1);
+            }
+        }
+
+        void poner(ResumenPelicula resumen) {
+            ResumenPelicula anterior = resumenes.put(resumen.id(), resumen);
+            if (anterior != null && anterior != ELIMINADA) {
+                sumar(anterior, -1);
+            }
+            sumar(resumen, 1);
+        }
+
+        void eliminar(Long id) {
+            ResumenPelicula anterior = listo ? resumenes.remove(id) : resumenes.put(id, ELIMINADA);
+            if (anterior != null && anterior != ELIMINADA) {
+                sumar(anterior, -1);
+            }
+        }
+
+        void modificar(Long id, Map<String, Object> cambios) {
+            ResumenPelicula[] anterior = new ResumenPelicula[1];
+            ResumenPelicula nuevo = resumenes.computeIfPresent(id, (clave, actual) -> {
+                if (actual == ELIMINADA) {
+                    return actual;
+                }
+                anterior[0] = actual;
+                return new ResumenPelicula(id,
+                    cambios.containsKey("genero") ? (String) cambios.get("genero") : actual.genero(),
+                    cambios.containsKey("director") ? (String) cambios.get("director") : actual.director(),
+                    cambios.containsKey("ano") ? (Integer) cambios.get("ano") : actual.ano(),
+                    cambios.containsKey("disponible") ? (Boolean) cambios.get("disponible") : actual.disponible());
+            });
+            if (anterior[0] != null) {
+                sumar(anterior[0], -1);
+                sumar(nuevo, 1);
+            } else if (nuevo == null && !listo) {
+                pendientes.add(id);
+            }
+        }
+
+        //Quita las marcas de eliminadas y da la carga por terminada
+        void terminarCarga() {
+            listo = true;
+            resumenes.values().removeIf(resumen -> resumen == ELIMINADA);
+        }
+
+        private void sumar(ResumenPelicula resumen, int signo) {
+            total.add(signo);
+            if (resumen.disponible()) {
+                disponibles.add(signo);
+            }
+            porGenero.computeIfAbsent(clave(resumen.genero()), valor -> new Contador()).sumar(resumen, signo);
+            porDirector.computeIfAbsent(clave(resumen.director()), valor -> new Contador()).sumar(resumen, signo);
+            porDecada.computeIfAbsent(decada(resumen.ano()), valor -> new Contador()).sumar(resumen, signo);
+        }
+    }
+}
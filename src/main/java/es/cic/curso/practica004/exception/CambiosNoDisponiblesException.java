@@ -0,0 +1,14 @@
+package es.cic.curso.practica004.exception;
+
+
+public class CambiosNoDisponiblesException extends RuntimeException {
+
+        /*
+         * Excepción que se lanza cuando se piden los cambios desde una
+         * secuencia que ya se ha purgado del registro de cambios. El cliente
+         * debe volver a descargar el catálogo completo.
+         */
+        public CambiosNoDisponiblesException(String mensaje) {
+            super(mensaje);
+        }
+    }
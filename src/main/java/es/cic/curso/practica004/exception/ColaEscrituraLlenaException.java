@@ -0,0 +1,22 @@
+package es.cic.curso.practica004.exception;
+
+
+public class ColaEscrituraLlenaException extends RuntimeException {
+
+        /*
+         * Excepción que se lanza cuando la cola de escrituras diferidas está
+         * llena (o parada) y no admite más películas. El cliente debe
+         * reintentar más tarde.
+         */
+        public ColaEscrituraLlenaException(String mensaje) {
+            super(mensaje);
+        }
+
+        /*
+         * Constructor que acepta un mensaje de error y una causa 
+         * (otra excepción) para proporcionar más contexto sobre el error.
+         */
+        public ColaEscrituraLlenaException(String mensaje, Throwable causa) {
+            super(mensaje, causa);
+        }
+    }
@@ -0,0 +1,22 @@
+package es.cic.curso.practica004.exception;
+
+
+public class PeliculaDuplicadaException extends RuntimeException {
+
+        private final Long idExistente;
+
+        /*
+         * Excepción que se lanza cuando se intenta guardar una película con
+         * el mismo título, director y año que otra ya existente (la clave
+         * natural del catálogo). idExistente es el id de esa otra película,
+         * o null si no se ha podido encontrar.
+         */
+        public PeliculaDuplicadaException(String mensaje, Long idExistente, Throwable causa) {
+            super(mensaje, causa);
+            this.idExistente = idExistente;
+        }
+
+        public Long getIdExistente() {
+            return idExistente;
+        }
+    }
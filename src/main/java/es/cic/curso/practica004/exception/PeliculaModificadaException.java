@@ -0,0 +1,22 @@
+package es.cic.curso.practica004.exception;
+
+
+public class PeliculaModificadaException extends RuntimeException {
+
+        /*
+         * Excepción que se lanza cuando se intenta actualizar una película
+         * que ha cambiado desde que el cliente la leyó (su versión ya no
+         * coincide con la de la cabecera If-Match).
+         */
+        public PeliculaModificadaException(String mensaje) {
+            super(mensaje);
+        }
+
+        /*
+         * Constructor que acepta un mensaje de error y una causa 
+         * (otra excepción) para proporcionar más contexto sobre el error.
+         */
+        public PeliculaModificadaException(String mensaje, Throwable causa) {
+            super(mensaje, causa);
+        }
+    }
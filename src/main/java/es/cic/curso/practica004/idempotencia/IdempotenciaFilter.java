@@ -0,0 +1,212 @@
+package es.cic.curso.practica004.idempotencia;
+
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.regex.Pattern;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/*
+ * Peticiones idempotentes con la cabecera Idempotency-Key en las altas
+ * (POST /api/peliculas) y las actualizaciones (PUT /api/peliculas/{id}).
+ * Los lotes y las importaciones no pasan por aquí: su cuerpo puede ser muy
+ * grande y este filtro lo lee entero en memoria. Aun así, un cuerpo de más
+ * de cuerpoMaximo bytes se rechaza con 413 (Payload Too Large).
+ * La primera petición con una clave se ejecuta y su respuesta se guarda; los
+ * reintentos con la misma clave reciben esa misma respuesta, con la cabecera
+ * Idempotent-Replayed, sin llegar al controlador ni a la base de datos.
+ * - Si llega un reintento mientras la original aún se ejecuta, espera a que
+ *   termine y recibe su respuesta (como mucho el tiempo de espera; si no, 409).
+ * - La clave se asocia a la huella del cuerpo: la misma clave con otro cuerpo
+ *   se rechaza con 422 (Unprocessable Entity).
+ * - Las respuestas 5xx no se guardan, para que el cliente pueda reintentar.
+ * - La clave de cada cliente se distingue por su API key, el método y la URL.
+ * Las respuestas se guardan en una caché de Caffeine acotada por memoria y
+ * que las olvida pasado el tiempo de vida (métricas de caché "idempotencia").
+ */
+public class IdempotenciaFilter extends OncePerRequestFilter {
+
+    public static final String CABECERA = "Idempotency-Key";
+    public static final String CABECERA_REPETIDA = "Idempotent-Replayed";
+
+    //Cabeceras de la respuesta que se guardan para repetirla
+    private static final List<String> CABECERAS_GUARDADAS = List.of(
+        HttpHeaders.LOCATION, HttpHeaders.ETAG, HttpHeaders.LAST_MODIFIED, HttpHeaders.RETRY_AFTER);
+
+    private static final int LONGITUD_MAXIMA_CLAVE = 255;
+
+    private static final String RUTA = "/api/peliculas";
+    private static final Pattern RUTA_PELICULA = Pattern.compile(Pattern.quote(RUTA) + "/\\d+");
+
+    private final Cache<String, RespuestaGuardada> completadas;
+    private final Map<String, CompletableFuture<RespuestaGuardada>> enCurso = new ConcurrentHashMap<>();
+    private final String cabeceraCliente;
+    private final Duration esperaMaxima;
+    private final int cuerpoMaximo;
+    private final MeterRegistry meterRegistry;
+
+    public IdempotenciaFilter(Duration tiempoDeVida, long memoriaMaxima, Duration esperaMaxima, int cuerpoMaximo,
+            String cabeceraCliente, MeterRegistry meterRegistry) {
+        this.completadas = Caffeine.newBuilder()
+            .expireAfterWrite(tiempoDeVida)
+            .maximumWeight(memoriaMaxima)
+            .weigher((String clave, RespuestaGuardada respuesta) -> clave.length() + respuesta.peso())
+            .recordStats()
+            .build();
+        this.esperaMaxima = esperaMaxima;
+        this.cuerpoMaximo = cuerpoMaximo;
+        this.cabeceraCliente = cabeceraCliente;
+        this.meterRegistry = meterRegistry;
+        CaffeineCacheMetrics.monitor(meterRegistry, completadas, "idempotencia");
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        if (request.getHeader(CABECERA) == null) {
+            return true;
+        }
+        String ruta = request.getRequestURI().substring(request.getContextPath().length());
+        return !("POST".equals(request.getMethod()) && ruta.equals(RUTA)
+            || "PUT".equals(request.getMethod()) && RUTA_PELICULA.matcher(ruta).matches());
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String claveCliente = request.getHeader(CABECERA);
+        if (claveCliente.isBlank() || claveCliente.length() > LONGITUD_MAXIMA_CLAVE) {
+            response.setStatus(HttpStatus.BAD_REQUEST.value());
+            return;
+        }
+        //Se lee como mucho un byte más del máximo, lo justo para saber que lo supera
+        byte[] cuerpo = request.getContentLengthLong() > cuerpoMaximo
+            ? null : request.getInputStream().readNBytes(cuerpoMaximo + 1);
+        if (cuerpo == null || cuerpo.length > cuerpoMaximo) {
+            contar("demasiado-grande");
+            response.setStatus(HttpStatus.PAYLOAD_TOO_LARGE.value());
+            return;
+        }
+        byte[] huella = huella(cuerpo);
+        String clave = clave(request, claveCliente);
+        while (true) {
+            RespuestaGuardada guardada = completadas.getIfPresent(clave);
+            if (guardada != null) {
+                repetir(guardada, huella, response, "repetida");
+                return;
+            }
+            CompletableFuture<RespuestaGuardada> propia = new CompletableFuture<>();
+            CompletableFuture<RespuestaGuardada> original = enCurso.putIfAbsent(clave, propia);
+            if (original == null) {
+                ejecutar(new PeticionConCuerpo(request, cuerpo), response, chain, clave, huella, propia);
+                return;
+            }
+            try {
+                repetir(original.get(esperaMaxima.toMillis(), TimeUnit.MILLISECONDS), huella, response, "combinada");
+                return;
+            } catch (TimeoutException ex) {
+                contar("conflicto");
+                response.setStatus(HttpStatus.CONFLICT.value());
+                response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+                return;
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new ServletException("Espera de la peticion original interrumpida", ex);
+            } catch (ExecutionException ex) {
+                //La original falló sin respuesta: se vuelve a intentar con esta
+            }
+        }
+    }
+
+    /*
+     * Ejecuta la petición original. La respuesta se guarda antes de quitarla
+     * de las peticiones en curso, para que un reintento siempre encuentre una
+     * de las dos.
+     */
+    private void ejecutar(HttpServletRequest request, HttpServletResponse response, FilterChain chain,
+            String clave, byte[] huella, CompletableFuture<RespuestaGuardada> propia)
+            throws ServletException, IOException {
+        contar("nueva");
+        ContentCachingResponseWrapper respuesta = new ContentCachingResponseWrapper(response);
+        try {
+            chain.doFilter(request, respuesta);
+            Map<String, String> cabeceras = new LinkedHashMap<>();
+            for (String cabecera : CABECERAS_GUARDADAS) {
+                String valor = respuesta.getHeader(cabecera);
+                if (valor != null) {
+                    cabeceras.put(cabecera, valor);
+                }
+            }
+            RespuestaGuardada guardada = new RespuestaGuardada(huella, respuesta.getStatus(),
+                respuesta.getContentType(), cabeceras, respuesta.getContentAsByteArray());
+            if (guardada.estado() < 500) {
+                completadas.put(clave, guardada);
+            }
+            propia.complete(guardada);
+            respuesta.copyBodyToResponse();
+        } catch (ServletException | IOException | RuntimeException ex) {
+            propia.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            enCurso.remove(clave, propia);
+        }
+    }
+
+    private void repetir(RespuestaGuardada guardada, byte[] huella, HttpServletResponse response, String resultado)
+            throws IOException {
+        if (!guardada.esDeLaMismaPeticion(huella)) {
+            contar("distinta");
+            response.setStatus(HttpStatus.UNPROCESSABLE_ENTITY.value());
+            return;
+        }
+        contar(resultado);
+        response.setStatus(guardada.estado());
+        guardada.cabeceras().forEach(response::setHeader);
+        response.setHeader(CABECERA_REPETIDA, "true");
+        if (guardada.contentType() != null) {
+            response.setContentType(guardada.contentType());
+        }
+        response.setContentLength(guardada.cuerpo().length);
+        response.getOutputStream().write(guardada.cuerpo());
+    }
+
+    private String clave(HttpServletRequest request, String claveCliente) {
+        String cliente = request.getHeader(cabeceraCliente);
+        return (cliente != null ? cliente : "") + "|" + request.getMethod() + " " + request.getRequestURI()
+            + "|" + claveCliente;
+    }
+
+    private void contar(String resultado) {
+        meterRegistry.counter("practica004.idempotencia.peticiones", "resultado", resultado).increment();
+    }
+
+    private static byte[] huella(byte[] cuerpo) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(cuerpo);
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package es.cic.curso.practica004.idempotencia;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+
+/*
+ * Petición cuyo cuerpo ya se ha leído entero (para calcular su huella) y
+ * que se vuelve a ofrecer al resto de la cadena desde memoria.
+ */
+class PeticionConCuerpo extends HttpServletRequestWrapper {
+
+    private final byte[] cuerpo;
+
+    PeticionConCuerpo(HttpServletRequest request, byte[] cuerpo) {
+        super(request);
+        this.cuerpo = cuerpo;
+    }
+
+    @Override
+    public ServletInputStream getInputStream() {
+        ByteArrayInputStream entrada = new ByteArrayInputStream(cuerpo);
+        return new ServletInputStream() {
+            private boolean conListener;
+
+            @Override
+            public int read() {
+                return entrada.read();
+            }
+
+            @Override
+            public int read(byte[] destino, int desde, int longitud) {
+                return entrada.read(destino, desde, longitud);
+            }
+
+            @Override
+            public boolean isFinished() {
+                return entrada.available() == 0;
+            }
+
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            /*
+             * Lectura no bloqueante: como el cuerpo ya está en memoria (isReady
+             * siempre es true), el listener recibe los datos en la misma llamada
+             * y, si los lee todos, también el aviso de final.
+             * Como pide la especificación, solo se admite con la petición en
+             * modo asíncrono y una sola vez.
+             */
+            @Override
+            public void setReadListener(ReadListener listener) {
+                Objects.requireNonNull(listener, "Falta el ReadListener");
+                if (!isAsyncStarted()) {
+                    throw new IllegalStateException("La lectura no bloqueante requiere una peticion asincrona");
+                }
+                if (conListener) {
+                    throw new IllegalStateException("Ya hay un ReadListener");
+                }
+                conListener = true;
+                try {
+                    if (!isFinished()) {
+                        listener.onDataAvailable();
+                    }
+                    if (isFinished()) {
+                        listener.onAllDataRead();
+                    }
+                } catch (IOException | RuntimeException ex) {
+                    listener.onError(ex);
+                }
+            }
+        };
+    }
+
+    @Override
+    public BufferedReader getReader() {
+        String codificacion = getCharacterEncoding();
+        Charset charset = codificacion != null ? Charset.forName(codificacion) : StandardCharsets.UTF_8;
+        return new BufferedReader(new InputStreamReader(getInputStream(), charset));
+    }
+}
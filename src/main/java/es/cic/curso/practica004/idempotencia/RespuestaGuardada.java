@@ -0,0 +1,25 @@
+package es.cic.curso.practica004.idempotencia;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/*
+ * Respuesta completada de una petición con Idempotency-Key, para repetirla
+ * tal cual a los reintentos.
+ * huella: SHA-256 del cuerpo de la petición original; un reintento con la
+ * misma clave y otro cuerpo no es un reintento y se rechaza.
+ * cabeceras: solo las que describen el resultado (Location, ETag...).
+ */
+record RespuestaGuardada(byte[] huella, int estado, String contentType, Map<String, String> cabeceras,
+        byte[] cuerpo) {
+
+    boolean esDeLaMismaPeticion(byte[] otraHuella) {
+        return Arrays.equals(huella, otraHuella);
+    }
+
+    //Memoria aproximada que ocupa, para acotar el almacén por tamaño
+    int peso() {
+        return 128 + cuerpo.length + cabeceras.entrySet().stream()
+            .mapToInt(cabecera -> cabecera.getKey().length() + cabecera.getValue().length()).sum();
+    }
+}
@@ -0,0 +1,151 @@
+package es.cic.curso.practica004.ingesta;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JacksonException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import es.cic.curso.practica004.model.Pelicula;
+
+/*
+ * Diario de solo añadir de las escrituras diferidas, en NDJSON: una línea
+ * ALTA por cada película encolada y una línea HECHAS por cada lote guardado.
+ * Al abrirlo se devuelven las altas sin su HECHAS (las que quedaron en la
+ * cola al caerse la aplicación) y el fichero se compacta para dejar solo
+ * esas. Cuando no queda ninguna pendiente el fichero se vacía.
+ * sincronizar: si es true cada alta se fuerza a disco antes de responder.
+ */
+class DiarioEscrituras implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(DiarioEscrituras.class);
+
+    private final Path fichero;
+    private final ObjectMapper objectMapper;
+    private final boolean sincronizar;
+
+    private FileChannel canal;
+    private int pendientes;
+
+    DiarioEscrituras(Path fichero, ObjectMapper objectMapper, boolean sincronizar) {
+        this.fichero = fichero;
+        this.objectMapper = objectMapper;
+        this.sincronizar = sincronizar;
+    }
+
+    synchronized List<Entrada> abrir() throws IOException {
+        Map<String, Pelicula> altas = new LinkedHashMap<>();
+        if (Files.exists(fichero)) {
+            try (BufferedReader lector = Files.newBufferedReader(fichero, StandardCharsets.UTF_8)) {
+                String linea;
+                while ((linea = lector.readLine()) != null) {
+                    if (linea.isBlank()) {
+                        continue;
+                    }
+                    try {
+                        Entrada entrada = objectMapper.readValue(linea, Entrada.class);
+                        if (entrada.tipo() == Tipo.ALTA) {
+                            altas.put(entrada.seguimiento(), entrada.pelicula());
+                        } else {
+                            entrada.hechas().forEach(altas::remove);
+                        }
+                    } catch (JacksonException ex) {
+                        //Una línea a medio escribir al caerse: nunca se confirmó al cliente
+                        log.warn("Linea del diario ignorada: {}", ex.getOriginalMessage());
+                    }
+                }
+            }
+        } else if (fichero.getParent() != null) {
+            Files.createDirectories(fichero.getParent());
+        }
+        List<Entrada> recuperadas = new ArrayList<>();
+        altas.forEach((seguimiento, pelicula) -> recuperadas.add(Entrada.alta(seguimiento, pelicula)));
+        compactar(recuperadas);
+        canal = FileChannel.open(fichero, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        pendientes = recuperadas.size();
+        return recuperadas;
+    }
+
+    //Reescribe el diario solo con las entradas indicadas, de forma atómica
+    private void compactar(List<Entrada> entradas) throws IOException {
+        Path temporal = fichero.resolveSibling(fichero.getFileName() + ".tmp");
+        try (FileChannel salida = FileChannel.open(temporal, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            for (Entrada entrada : entradas) {
+                escribir(salida, entrada);
+            }
+            salida.force(true);
+        }
+        Files.move(temporal, fichero, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    synchronized void anotarAlta(String seguimiento, Pelicula pelicula) throws IOException {
+        escribir(canal, Entrada.alta(seguimiento, pelicula));
+        if (sincronizar) {
+            canal.force(false);
+        }
+        pendientes++;
+    }
+
+    synchronized void anotarHechas(Collection<String> seguimientos) throws IOException {
+        pendientes -= seguimientos.size();
+        if (pendientes <= 0) {
+            pendientes = 0;
+            canal.truncate(0);
+        } else {
+            escribir(canal, Entrada.hechas(List.copyOf(seguimientos)));
+        }
+        if (sincronizar) {
+            canal.force(false);
+        }
+    }
+
+    private void escribir(FileChannel destino, Entrada entrada) throws IOException {
+        byte[] linea = (objectMapper.writeValueAsString(entrada) + "\n").getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.wrap(linea);
+        while (buffer.hasRemaining()) {
+            destino.write(buffer);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (canal != null) {
+            canal.close();
+        }
+    }
+
+    enum Tipo {
+        ALTA, HECHAS
+    }
+
+    //Línea del diario: ALTA con seguimiento y película, o HECHAS con los seguimientos guardados
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    record Entrada(Tipo tipo, String seguimiento, Pelicula pelicula, List<String> hechas) {
+
+        static Entrada alta(String seguimiento, Pelicula pelicula) {
+            return new Entrada(Tipo.ALTA, seguimiento, pelicula, null);
+        }
+
+        static Entrada hechas(List<String> seguimientos) {
+            return new Entrada(Tipo.HECHAS, null, null, seguimientos);
+        }
+    }
+}
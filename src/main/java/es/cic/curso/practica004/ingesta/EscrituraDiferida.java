@@ -0,0 +1,266 @@
+package es.cic.curso.practica004.ingesta;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.aot.hint.annotation.RegisterReflectionForBinding;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import es.cic.curso.practica004.exception.ColaEscrituraLlenaException;
+import es.cic.curso.practica004.model.EstadoEscritura;
+import es.cic.curso.practica004.model.Pelicula;
+import es.cic.curso.practica004.model.ResultadoLote;
+import es.cic.curso.practica004.service.PeliculaLoteService;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/*
+ * Modo de escritura diferida para POST /api/peliculas. Se activa con
+ * practica004.escritura-diferida.habilitada=true.
+ * encolar() anota la película en el diario (DiarioEscrituras) y la deja en
+ * una cola acotada; la petición responde 202 sin esperar al INSERT. Un hilo
+ * escritor saca las películas de la cola y las guarda con
+ * PeliculaLoteService.saveAll en lotes de hasta tamano-lote, o con las que
+ * haya cuando pasa el intervalo desde la primera.
+ * Contrapresión: la cola admite como mucho capacidad películas; si está
+ * llena, encolar() espera hasta espera-maxima y después lanza
+ * ColaEscrituraLlenaException (la API responde 503).
+ * Al arrancar se vuelven a encolar las películas del diario que no llegaron
+ * a guardarse. La entrega es "al menos una vez": si la aplicación cae entre
+ * guardar un lote y anotarlo en el diario, ese lote se guarda otra vez.
+ * El estado de cada escritura se conserva en memoria durante una hora.
+ * Las entradas del diario se leen con Jackson por reflexión: se registran
+ * para la imagen nativa (perfil Maven native).
+ */
+@Component
+@RegisterReflectionForBinding(DiarioEscrituras.Entrada.class)
+public class EscrituraDiferida implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(EscrituraDiferida.class);
+
+    @Autowired
+    private PeliculaLoteService peliculaLoteService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${practica004.escritura-diferida.habilitada:false}")
+    private boolean habilitada;
+
+    @Value("${practica004.escritura-diferida.capacidad:10000}")
+    private int capacidad;
+
+    @Value("${practica004.escritura-diferida.tamano-lote:500}")
+    private int tamanoLote;
+
+    @Value("${practica004.escritura-diferida.intervalo:200ms}")
+    private Duration intervalo;
+
+    @Value("${practica004.escritura-diferida.espera-maxima:100ms}")
+    private Duration esperaMaxima;
+
+    @Value("${practica004.escritura-diferida.diario:./datos/escrituras-diferidas.ndjson}")
+    private Path ficheroDiario;
+
+    @Value("${practica004.escritura-diferida.sincronizar:true}")
+    private boolean sincronizar;
+
+    private final BlockingQueue<Pendiente> cola = new LinkedBlockingQueue<>();
+
+    private final Cache<String, EstadoEscritura> estados = Caffeine.newBuilder()
+        .maximumSize(1_000_000)
+        .expireAfterWrite(Duration.ofHours(1))
+        .build();
+
+    private Semaphore huecos;
+    private DiarioEscrituras diario;
+    private Thread escritor;
+    private volatile boolean enMarcha;
+
+    public boolean isHabilitada() {
+        return habilitada;
+    }
+
+    /*
+     * Encola una película para crearla más tarde. El id que traiga se ignora.
+     * Devuelve el estado PENDIENTE con el identificador de seguimiento.
+     */
+    public EstadoEscritura encolar(Pelicula pelicula) {
+        if (!enMarcha) {
+            throw new ColaEscrituraLlenaException("La escritura diferida no esta en marcha");
+        }
+        try {
+            if (!huecos.tryAcquire(esperaMaxima.toNanos(), TimeUnit.NANOSECONDS)) {
+                throw new ColaEscrituraLlenaException("La cola de escrituras esta llena");
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new ColaEscrituraLlenaException("Interrumpido esperando hueco en la cola", ex);
+        }
+        String seguimiento = UUID.randomUUID().toString();
+        pelicula.setId(null);
+        try {
+            diario.anotarAlta(seguimiento, pelicula);
+        } catch (IOException ex) {
+            huecos.release();
+            throw new UncheckedIOException("No se pudo anotar la pelicula en el diario", ex);
+        }
+        EstadoEscritura estado = EstadoEscritura.pendiente(seguimiento);
+        estados.put(seguimiento, estado);
+        cola.add(new Pendiente(seguimiento, pelicula));
+        return estado;
+    }
+
+    public Optional<EstadoEscritura> getEstado(String seguimiento) {
+        return Optional.ofNullable(estados.getIfPresent(seguimiento));
+    }
+
+    //Bucle del hilo escritor: forma lotes por tamaño o por tiempo y los guarda
+    private void escribirLotes() {
+        while (enMarcha || !cola.isEmpty()) {
+            try {
+                Pendiente primero = cola.poll(intervalo.toNanos(), TimeUnit.NANOSECONDS);
+                if (primero == null) {
+                    continue;
+                }
+                List<Pendiente> lote = new ArrayList<>(tamanoLote);
+                lote.add(primero);
+                long limite = System.nanoTime() + intervalo.toNanos();
+                while (lote.size() < tamanoLote) {
+                    cola.drainTo(lote, tamanoLote - lote.size());
+                    long restante = limite - System.nanoTime();
+                    if (lote.size() >= tamanoLote || restante <= 0) {
+                        break;
+                    }
+                    Pendiente siguiente = cola.poll(restante, TimeUnit.NANOSECONDS);
+                    if (siguiente == null) {
+                        break;
+                    }
+                    lote.add(siguiente);
+                }
+                guardar(lote);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /*
+     * Guarda un lote. Si falla la base de datos se reintenta tras el
+     * intervalo; si mientras tanto se para la aplicación, el lote queda en
+     * el diario y se guarda en el siguiente arranque.
+     */
+    private void guardar(List<Pendiente> lote) throws InterruptedException {
+        List<ResultadoLote> resultados;
+        while (true) {
+            try {
+                resultados = peliculaLoteService.saveAll(lote.stream().map(Pendiente::pelicula).toList());
+                break;
+            } catch (RuntimeException ex) {
+                log.warn("No se pudo guardar un lote de {} escrituras diferidas: {}", lote.size(), ex.getMessage());
+                if (!enMarcha) {
+                    return;
+                }
+                Thread.sleep(intervalo.toMillis());
+            }
+        }
+        List<String> seguimientos = new ArrayList<>(lote.size());
+        for (int i = 0; i < lote.size(); i++) {
+            String seguimiento = lote.get(i).seguimiento();
+            ResultadoLote resultado = resultados.get(i);
+            estados.put(seguimiento, switch (resultado.estado()) {
+                case CREADA -> EstadoEscritura.guardada(seguimiento, resultado.id());
+                case DUPLICADA -> EstadoEscritura.duplicada(seguimiento, resultado.id(), resultado.error());
+                default -> EstadoEscritura.error(seguimiento, resultado.error());
+            });
+            seguimientos.add(seguimiento);
+        }
+        try {
+            diario.anotarHechas(seguimientos);
+        } catch (IOException ex) {
+            log.warn("No se pudo anotar en el diario un lote guardado: {}", ex.getMessage());
+        }
+        huecos.release(lote.size());
+    }
+
+    @Override
+    public void start() {
+        if (!habilitada) {
+            return;
+        }
+        diario = new DiarioEscrituras(ficheroDiario, objectMapper, sincronizar);
+        List<DiarioEscrituras.Entrada> recuperadas;
+        try {
+            recuperadas = diario.abrir();
+        } catch (IOException ex) {
+            throw new UncheckedIOException("No se pudo abrir el diario " + ficheroDiario, ex);
+        }
+        //Las recuperadas ocupan hueco aunque superen la capacidad (los permisos pueden quedar negativos)
+        huecos = new Semaphore(capacidad - recuperadas.size(), true);
+        for (DiarioEscrituras.Entrada entrada : recuperadas) {
+            estados.put(entrada.seguimiento(), EstadoEscritura.pendiente(entrada.seguimiento()));
+            cola.add(new Pendiente(entrada.seguimiento(), entrada.pelicula()));
+        }
+        if (!recuperadas.isEmpty()) {
+            log.info("Recuperadas {} escrituras diferidas del diario", recuperadas.size());
+        }
+        Gauge.builder("practica004.escritura.diferida.pendientes", cola, BlockingQueue::size)
+            .register(meterRegistry);
+        enMarcha = true;
+        escritor = Thread.ofPlatform().name("escritura-diferida").daemon().start(this::escribirLotes);
+    }
+
+    //Deja de aceptar escrituras, guarda las que quedan en la cola y cierra el diario
+    @Override
+    public void stop() {
+        if (!enMarcha) {
+            return;
+        }
+        enMarcha = false;
+        try {
+            escritor.join(Duration.ofSeconds(30));
+            diario.close();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (IOException ex) {
+            log.warn("No se pudo cerrar el diario: {}", ex.getMessage());
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return enMarcha;
+    }
+
+    //Se para después del servidor web, para no perder las peticiones en curso
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE - 4096;
+    }
+
+    private record Pendiente(String seguimiento, Pelicula pelicula) {
+    }
+}
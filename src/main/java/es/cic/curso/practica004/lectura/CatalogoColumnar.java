@@ -0,0 +1,742 @@
+package es.cic.curso.practica004.lectura;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import es.cic.curso.practica004.model.FiltroPeliculas;
+import es.cic.curso.practica004.model.Pelicula;
+import es.cic.curso.practica004.model.ResultadoBusqueda;
+import es.cic.curso.practica004.model.VersionPelicula;
+import es.cic.curso.practica004.repository.PeliculaRepository;
+import es.cic.curso.practica004.service.PeliculaCambiada;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+
+/*
+ * Modelo de lectura del catálogo completo en columnas fuera del heap.
+ * Cada campo de Pelicula es una columna en un ByteBuffer directo, con una
+ * posición por fila y las filas ordenadas por id:
+ * - id, versión y fecha de modificación en columnas de long,
+ * - año en una columna de int,
+ * - disponible (y si la fila está viva) en bitsets de long,
+ * - género y director codificados con un diccionario (Diccionario) en
+ *   columnas de int,
+ * - el título en UTF-8, en un área de texto común, con su inicio y longitud
+ *   en columnas de int. El prefijo del título se compara pasando cada
+ *   carácter a minúsculas al vuelo; solo si eso no da lo mismo que
+ *   Pelicula.normalizarTitulo se guarda también el título normalizado.
+ * Las búsquedas por id son búsquedas binarias en la columna de ids y los
+ * filtros recorren las columnas sin crear objetos por fila: solo se crean
+ * las Pelicula que se devuelven.
+ * Se activa con practica004.lectura.columnar.habilitada. Igual que
+ * IndiceTextoCompleto, se construye en segundo plano al arrancar y después
+ * se mantiene con los eventos PeliculaCambiada; mientras se construye,
+ * isListo() devuelve false y PeliculaService usa JPA.
+ * Las filas eliminadas solo se marcan; cuando más de la mitad de las filas o
+ * del texto son desechos, las columnas se reorganizan.
+ */
+@Component
+public class CatalogoColumnar {
+
+    private static final Logger log = LoggerFactory.getLogger(CatalogoColumnar.class);
+
+    private static final int CAPACIDAD_INICIAL = 1024;
+    private static final int BYTES_TEXTO_POR_FILA = 64;
+
+    //Marcas de versión y fecha nulas en las columnas de long
+    private static final long NULO = Long.MIN_VALUE;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Diccionario generos = new Diccionario();
+    private final Diccionario directores = new Diccionario();
+
+    //Ids eliminados mientras se construye, que la carga inicial no debe añadir
+    private final Set<Long> eliminadosDuranteConstruccion = new HashSet<>();
+
+    private Columnas columnas = new Columnas(CAPACIDAD_INICIAL, CAPACIDAD_INICIAL * BYTES_TEXTO_POR_FILA);
+
+    //Filas ocupadas (vivas o eliminadas) y filas vivas
+    private int filas;
+    private int filasVivas;
+
+    //Bytes del área de texto que ya no usa ninguna fila viva
+    private int textoDesechado;
+
+    private boolean construyendo;
+    private volatile boolean listo;
+
+    @Autowired
+    private PeliculaRepository peliculaRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    @Qualifier("applicationTaskExecutor")
+    private TaskExecutor taskExecutor;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${practica004.lectura.columnar.habilitada:false}")
+    private boolean habilitada;
+
+    public boolean isListo() {
+        return listo;
+    }
+
+    public int getNumeroPeliculas() {
+        lock.readLock().lock();
+        try {
+            return filasVivas;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    //Memoria reservada fuera del heap por las columnas, en bytes
+    public long getBytesFueraDelHeap() {
+        lock.readLock().lock();
+        try {
+            return columnas.bytes();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void alArrancar() {
+        if (habilitada) {
+            Gauge.builder("practica004.lectura.columnar.peliculas", this, CatalogoColumnar::getNumeroPeliculas)
+                .register(meterRegistry);
+            Gauge.builder("practica004.lectura.columnar.memoria", this, CatalogoColumnar::getBytesFueraDelHeap)
+                .baseUnit("bytes")
+                .register(meterRegistry);
+            taskExecutor.execute(this::construir);
+        }
+    }
+
+    /*
+     * Carga todas las películas del repositorio. Las que ya estén en el
+     * catálogo, o que se hayan eliminado mientras tanto, se saltan: los
+     * eventos recibidos durante la carga son más recientes que lo leído.
+     */
+    public void construir() {
+        long inicio = System.nanoTime();
+        lock.writeLock().lock();
+        try {
+            construyendo = true;
+            eliminadosDuranteConstruccion.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        try {
+            transactionTemplate.executeWithoutResult(estado -> {
+                try (Stream<Pelicula> peliculas = peliculaRepository.streamAll()) {
+                    peliculas.forEach(pelicula -> {
+                        lock.writeLock().lock();
+                        try {
+                            int fila = buscarFila(pelicula.getId());
+                            if ((fila < 0 || !columnas.viva(fila))
+                                    && !eliminadosDuranteConstruccion.contains(pelicula.getId())) {
+                                escribir(pelicula);
+                            }
+                        } finally {
+                            lock.writeLock().unlock();
+                        }
+                        entityManager.detach(pelicula);
+                    });
+                }
+            });
+            listo = true;
+            log.info("Catalogo columnar construido: {} peliculas, {} KB fuera del heap en {} ms",
+                getNumeroPeliculas(), getBytesFueraDelHeap() / 1024, (System.nanoTime() - inicio) / 1_000_000);
+        } finally {
+            lock.writeLock().lock();
+            try {
+                construyendo = false;
+                eliminadosDuranteConstruccion.clear();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    /*
+     * Mantiene el catálogo al día con cada escritura confirmada. Si el evento
+     * no trae la película con su versión (PUT y PATCH hacen un UPDATE directo)
+     * se lee su estado completo de la base de datos.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void alCambiar(PeliculaCambiada cambio) {
+        if (!habilitada) {
+            return;
+        }
+        if (cambio.tipo() == PeliculaCambiada.Tipo.ELIMINADA) {
+            eliminar(cambio.id());
+        } else if (cambio.pelicula() != null && cambio.pelicula().getVersion() != null) {
+            poner(cambio.pelicula());
+        } else {
+            peliculaRepository.findById(cambio.id()).ifPresentOrElse(this::poner, () -> eliminar(cambio.id()));
+        }
+    }
+
+    /*
+     * Añade o reemplaza una película. Si ya hay una versión más reciente de
+     * la misma película no se hace nada, por si los eventos llegan desordenados.
+     */
+    public void poner(Pelicula pelicula) {
+        lock.writeLock().lock();
+        try {
+            int fila = buscarFila(pelicula.getId());
+            if (fila >= 0 && columnas.viva(fila) && pelicula.getVersion() != null
+                    && columnas.versiones.get(fila) > pelicula.getVersion()) {
+                return;
+            }
+            escribir(pelicula);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void eliminar(Long id) {
+        lock.writeLock().lock();
+        try {
+            int fila = buscarFila(id);
+            if (fila >= 0 && columnas.viva(fila)) {
+                textoDesechado += columnas.bytesTexto(fila);
+                columnas.marcar(columnas.vivas, fila, false);
+                filasVivas--;
+                if (filas - filasVivas > filas / 2 && filas > CAPACIDAD_INICIAL) {
+                    reorganizar(columnas.capacidad, columnas.textos.capacity());
+                }
+            }
+            if (construyendo) {
+                eliminadosDuranteConstruccion.add(id);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public Optional<Pelicula> findById(Long id) {
+        lock.readLock().lock();
+        try {
+            int fila = filaViva(id);
+            return fila < 0 ? Optional.empty() : Optional.of(materializar(fila));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public Optional<VersionPelicula> findVersion(Long id) {
+        lock.readLock().lock();
+        try {
+            int fila = filaViva(id);
+            return fila < 0 ? Optional.empty()
+                : Optional.of(new VersionPelicula(leerNulo(columnas.versiones, fila), instante(columnas.modificaciones.get(fila))));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    //Comprueba si existe una película sin crear ningún objeto
+    public boolean existe(long id) {
+        lock.readLock().lock();
+        try {
+            return filaViva(id) >= 0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    //Cuenta las películas que cumplen el filtro recorriendo las columnas
+    public int contar(FiltroPeliculas filtro) {
+        lock.readLock().lock();
+        try {
+            Criterios criterios = Criterios.de(filtro, generos, directores);
+            int total = 0;
+            for (int fila = 0; fila < filas; fila++) {
+                if (cumple(fila, criterios)) {
+                    total++;
+                }
+            }
+            return total;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /*
+     * Búsqueda con filtro y paginación, con el mismo resultado que la
+     * consulta de PeliculaSpecifications. Solo se puede resolver en columnas
+     * sin ordenar o con orden por id, que es el de las filas; con cualquier
+     * otro orden devuelve Optional vacío y la búsqueda debe hacerse con JPA.
+     */
+    public Optional<ResultadoBusqueda> buscar(FiltroPeliculas filtro, Pageable pageable) {
+        boolean descendente = false;
+        Iterator<Sort.Order> ordenes = pageable.getSort().iterator();
+        if (ordenes.hasNext()) {
+            Sort.Order orden = ordenes.next();
+            if (!orden.getProperty().equals("id") || ordenes.hasNext()) {
+                return Optional.empty();
+            }
+            descendente = orden.isDescending();
+        }
+        long desde = pageable.isPaged() ? pageable.getOffset() : 0;
+        long hasta = pageable.isPaged() ? desde + pageable.getPageSize() : Long.MAX_VALUE;
+        List<Pelicula> contenido = new ArrayList<>();
+        long total = 0;
+        lock.readLock().lock();
+        try {
+            Criterios criterios = Criterios.de(filtro, generos, directores);
+            for (int i = 0; i < filas; i++) {
+                int fila = descendente ? filas - 1 - i : i;
+                if (cumple(fila, criterios)) {
+                    if (total >= desde && total < hasta) {
+                        contenido.add(materializar(fila));
+                    }
+                    total++;
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        int tamano = pageable.isPaged() ? pageable.getPageSize() : (int) total;
+        int paginas = tamano == 0 ? 1 : (int) Math.ceil((double) total / tamano);
+        int pagina = pageable.isPaged() ? pageable.getPageNumber() : 0;
+        return Optional.of(new ResultadoBusqueda(contenido, pagina, tamano, total, paginas));
+    }
+
+    /*
+     * Escribe la película en su fila, insertándola en orden de id si no
+     * existía. Se llama con el bloqueo de escritura.
+     */
+    private void escribir(Pelicula pelicula) {
+        byte[] titulo = pelicula.getTitulo() == null ? null : pelicula.getTitulo().getBytes(StandardCharsets.UTF_8);
+        String normalizado = Pelicula.normalizarTitulo(pelicula.getTitulo());
+        byte[] busqueda = normalizado == null || normalizado.equals(minusculasPorCaracter(pelicula.getTitulo()))
+            ? null : normalizado.getBytes(StandardCharsets.UTF_8);
+        asegurarTexto((titulo == null ? 0 : titulo.length) + (busqueda == null ? 0 : busqueda.length));
+
+        int fila = buscarFila(pelicula.getId());
+        if (fila < 0) {
+            asegurarCapacidad(filas + 1);
+            fila = -buscarFila(pelicula.getId()) - 1;
+            for (int f = filas; f > fila; f--) {
+                columnas.moverFila(f - 1, f);
+            }
+            filas++;
+            filasVivas++;
+        } else if (columnas.viva(fila)) {
+            textoDesechado += columnas.bytesTexto(fila);
+        } else {
+            filasVivas++;
+        }
+
+        Columnas c = columnas;
+        c.ids.put(fila, pelicula.getId());
+        c.versiones.put(fila, pelicula.getVersion() == null ? NULO : pelicula.getVersion());
+        c.modificaciones.put(fila, nanos(pelicula.getUltimaModificacion()));
+        c.anos.put(fila, pelicula.getAno());
+        c.generos.put(fila, generos.codificar(pelicula.getGenero()));
+        c.directores.put(fila, directores.codificar(pelicula.getDirector()));
+        c.tituloInicio.put(fila, titulo == null ? 0 : c.anadirTexto(titulo));
+        c.tituloLongitud.put(fila, titulo == null ? -1 : titulo.length);
+        c.busquedaInicio.put(fila, busqueda == null ? c.tituloInicio.get(fila) : c.anadirTexto(busqueda));
+        c.busquedaLongitud.put(fila, busqueda == null ? c.tituloLongitud.get(fila) : busqueda.length);
+        c.marcar(c.disponibles, fila, pelicula.isDisponible());
+        c.marcar(c.vivas, fila, true);
+    }
+
+    /*
+     * Deja sitio en el área de texto: primero descartando el texto desechado
+     * si es más de la mitad y, si no basta, duplicando su tamaño.
+     */
+    private void asegurarTexto(int bytes) {
+        if (columnas.finTextos + bytes <= columnas.textos.capacity()) {
+            return;
+        }
+        if (textoDesechado > columnas.finTextos / 2) {
+            reorganizar(columnas.capacidad, columnas.textos.capacity());
+        }
+        if (columnas.finTextos + bytes > columnas.textos.capacity()) {
+            int capacidad = columnas.textos.capacity();
+            reorganizar(columnas.capacidad, Math.max(capacidad + (capacidad >> 1), columnas.finTextos + bytes));
+        }
+    }
+
+    /*
+     * Crece la capacidad de filas al doble cuando se llena. Si la mitad de
+     * las filas están eliminadas basta con reorganizar sin crecer.
+     */
+    private void asegurarCapacidad(int necesarias) {
+        if (necesarias <= columnas.capacidad) {
+            return;
+        }
+        int capacidad = filas - filasVivas > filas / 2 ? columnas.capacidad : columnas.capacidad + (columnas.capacidad >> 1);
+        reorganizar(capacidad, columnas.textos.capacity());
+    }
+
+    /*
+     * Copia las filas vivas, en orden, a columnas nuevas con la capacidad
+     * indicada. Descarta las filas eliminadas y el texto desechado.
+     */
+    private void reorganizar(int capacidad, int capacidadTextos) {
+        Columnas nuevas = new Columnas(capacidad, Math.max(capacidadTextos, columnas.finTextos - textoDesechado));
+        int destino = 0;
+        for (int fila = 0; fila < filas; fila++) {
+            if (columnas.viva(fila)) {
+                nuevas.copiarFila(columnas, fila, destino++);
+            }
+        }
+        columnas = nuevas;
+        filas = destino;
+        filasVivas = destino;
+        textoDesechado = 0;
+    }
+
+    //Búsqueda binaria en la columna de ids: la fila, o -(posición de inserción) - 1
+    private int buscarFila(long id) {
+        LongBuffer ids = columnas.ids;
+        int bajo = 0;
+        int alto = filas - 1;
+        while (bajo <= alto) {
+            int medio = (bajo + alto) >>> 1;
+            long valor = ids.get(medio);
+            if (valor < id) {
+                bajo = medio + 1;
+            } else if (valor > id) {
+                alto = medio - 1;
+            } else {
+                return medio;
+            }
+        }
+        return -(bajo + 1);
+    }
+
+    private int filaViva(long id) {
+        int fila = buscarFila(id);
+        return fila >= 0 && columnas.viva(fila) ? fila : -1;
+    }
+
+    private boolean cumple(int fila, Criterios criterios) {
+        Columnas c = columnas;
+        if (!c.viva(fila) || criterios.vacio()) {
+            return false;
+        }
+        int ano = c.anos.get(fila);
+        if (ano < criterios.anoDesde() || ano > criterios.anoHasta()) {
+            return false;
+        }
+        if (criterios.genero() >= 0 && c.generos.get(fila) != criterios.genero()) {
+            return false;
+        }
+        if (criterios.director() >= 0 && c.directores.get(fila) != criterios.director()) {
+            return false;
+        }
+        if (criterios.disponible() != null && c.leer(c.disponibles, fila) != criterios.disponible()) {
+            return false;
+        }
+        return criterios.prefijo() == null || c.empiezaPor(fila, criterios.prefijo(), criterios.caracteresPrefijo());
+    }
+
+    private Pelicula materializar(int fila) {
+        Columnas c = columnas;
+        return new Pelicula(c.ids.get(fila), c.titulo(fila), directores.valor(c.directores.get(fila)),
+            c.anos.get(fila), generos.valor(c.generos.get(fila)), c.leer(c.disponibles, fila),
+            leerNulo(c.versiones, fila), instante(c.modificaciones.get(fila)));
+    }
+
+    //Minúsculas carácter a carácter, como las compara empiezaPor
+    private static String minusculasPorCaracter(String texto) {
+        StringBuilder resultado = new StringBuilder(texto.length());
+        texto.codePoints().map(Character::toLowerCase).forEach(resultado::appendCodePoint);
+        return resultado.toString();
+    }
+
+    private static Long leerNulo(LongBuffer columna, int fila) {
+        long valor = columna.get(fila);
+        return valor == NULO ? null : valor;
+    }
+
+    private static long nanos(Instant instante) {
+        return instante == null ? NULO : instante.getEpochSecond() * 1_000_000_000L + instante.getNano();
+    }
+
+    private static Instant instante(long nanos) {
+        return nanos == NULO ? null : Instant.ofEpochSecond(Math.floorDiv(nanos, 1_000_000_000L),
+            Math.floorMod(nanos, 1_000_000_000L));
+    }
+
+    /*
+     * Criterios del filtro ya traducidos a las columnas: códigos de
+     * diccionario (-1 si no se filtra por ese campo) y el prefijo del título
+     * normalizado, en UTF-8 y en caracteres (code points). vacio indica que ninguna película puede cumplirlo
+     * (un género o director que no aparece en el catálogo).
+     */
+    private record Criterios(byte[] prefijo, int[] caracteresPrefijo, int genero, int director, Boolean disponible,
+            int anoDesde, int anoHasta, boolean vacio) {
+
+        static Criterios de(FiltroPeliculas filtro, Diccionario generos, Diccionario directores) {
+            String titulo = filtro.titulo();
+            String normalizado = titulo == null || titulo.isBlank() ? null : Pelicula.normalizarTitulo(titulo);
+            int genero = filtro.genero() == null ? -1 : generos.codigo(filtro.genero());
+            int director = filtro.director() == null ? -1 : directores.codigo(filtro.director());
+            boolean vacio = (filtro.genero() != null && genero < 0) || (filtro.director() != null && director < 0);
+            return new Criterios(normalizado == null ? null : normalizado.getBytes(StandardCharsets.UTF_8),
+                normalizado == null ? null : normalizado.codePoints().toArray(), genero, director, filtro.disponible(),
+                filtro.anoDesde() == null ? Integer.MIN_VALUE : filtro.anoDesde(),
+                filtro.anoHasta() == null ? Integer.MAX_VALUE : filtro.anoHasta(), vacio);
+        }
+    }
+
+    /*
+     * Diccionario de valores de texto repetidos (géneros, directores): cada
+     * valor distinto se guarda una vez en el heap y las columnas guardan su
+     * código. El código 0 es null. Los valores no se quitan nunca.
+     */
+    static final class Diccionario {
+
+        private final Map<String, Integer> codigos = new HashMap<>();
+        private final List<String> valores = new ArrayList<>(List.of(""));
+
+        //Se llama con el bloqueo de escritura y el resto con el de lectura
+        int codificar(String valor) {
+            if (valor == null) {
+                return 0;
+            }
+            return codigos.computeIfAbsent(valor, v -> {
+                valores.add(v);
+                return valores.size() - 1;
+            });
+        }
+
+        //Código de un valor, o -1 si no está en el diccionario
+        int codigo(String valor) {
+            Integer codigo = codigos.get(valor);
+            return codigo == null ? -1 : codigo;
+        }
+
+        String valor(int codigo) {
+            return codigo == 0 ? null : valores.get(codigo);
+        }
+    }
+
+    /*
+     * Las columnas en ByteBuffer directos, con capacidad para un número fijo
+     * de filas y de bytes de texto. Para crecer se crean otras y se copian.
+     */
+    private static final class Columnas {
+
+        final int capacidad;
+        final LongBuffer ids;
+        final LongBuffer versiones;
+        final LongBuffer modificaciones;
+        final IntBuffer anos;
+        final IntBuffer generos;
+        final IntBuffer directores;
+        final IntBuffer tituloInicio;
+        final IntBuffer tituloLongitud;
+        final IntBuffer busquedaInicio;
+        final IntBuffer busquedaLongitud;
+        final LongBuffer disponibles;
+        final LongBuffer vivas;
+        final ByteBuffer textos;
+        int finTextos;
+
+        Columnas(int capacidad, int capacidadTextos) {
+            this.capacidad = capacidad;
+            ids = longs(capacidad);
+            versiones = longs(capacidad);
+            modificaciones = longs(capacidad);
+            anos = ints(capacidad);
+            generos = ints(capacidad);
+            directores = ints(capacidad);
+            tituloInicio = ints(capacidad);
+            tituloLongitud = ints(capacidad);
+            busquedaInicio = ints(capacidad);
+            busquedaLongitud = ints(capacidad);
+            disponibles = longs((capacidad + 63) >>> 6);
+            vivas = longs((capacidad + 63) >>> 6);
+            textos = ByteBuffer.allocateDirect(capacidadTextos);
+        }
+
+        long bytes() {
+            return (long) capacidad * (3 * Long.BYTES + 7 * Integer.BYTES)
+                + 2L * disponibles.capacity() * Long.BYTES + textos.capacity();
+        }
+
+        boolean viva(int fila) {
+            return leer(vivas, fila);
+        }
+
+        boolean leer(LongBuffer bits, int fila) {
+            return (bits.get(fila >>> 6) & (1L << fila)) != 0;
+        }
+
+        void marcar(LongBuffer bits, int fila, boolean valor) {
+            long palabra = bits.get(fila >>> 6);
+            bits.put(fila >>> 6, valor ? palabra | (1L << fila) : palabra & ~(1L << fila));
+        }
+
+        int anadirTexto(byte[] bytes) {
+            int inicio = finTextos;
+            textos.put(inicio, bytes);
+            finTextos += bytes.length;
+            return inicio;
+        }
+
+        //Bytes de texto que ocupa una fila
+        int bytesTexto(int fila) {
+            int total = Math.max(tituloLongitud.get(fila), 0);
+            if (busquedaInicio.get(fila) != tituloInicio.get(fila)) {
+                total += busquedaLongitud.get(fila);
+            }
+            return total;
+        }
+
+        String titulo(int fila) {
+            int longitud = tituloLongitud.get(fila);
+            if (longitud < 0) {
+                return null;
+            }
+            byte[] bytes = new byte[longitud];
+            textos.get(tituloInicio.get(fila), bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        /*
+         * Compara el título normalizado con un prefijo ya normalizado, sin
+         * copiarlo: si hay título normalizado guardado, byte a byte en UTF-8;
+         * si no, decodificando el título y pasando cada carácter a minúsculas.
+         */
+        boolean empiezaPor(int fila, byte[] prefijo, int[] caracteresPrefijo) {
+            if (busquedaInicio.get(fila) == tituloInicio.get(fila)) {
+                return empiezaPorEnMinusculas(tituloInicio.get(fila), tituloLongitud.get(fila), caracteresPrefijo);
+            }
+            int longitud = busquedaLongitud.get(fila);
+            if (longitud < prefijo.length) {
+                return false;
+            }
+            int inicio = busquedaInicio.get(fila);
+            for (int i = 0; i < prefijo.length; i++) {
+                if (textos.get(inicio + i) != prefijo[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private boolean empiezaPorEnMinusculas(int inicio, int longitud, int[] caracteres) {
+            int posicion = inicio;
+            int fin = inicio + longitud;
+            for (int esperado : caracteres) {
+                if (posicion >= fin) {
+                    return false;
+                }
+                int primero = textos.get(posicion) & 0xFF;
+                int bytes = primero < 0x80 ? 1 : primero < 0xE0 ? 2 : primero < 0xF0 ? 3 : 4;
+                int caracter = bytes == 1 ? primero : primero & (0xFF >> (bytes + 1));
+                if (posicion + bytes > fin) {
+                    return false;
+                }
+                for (int i = 1; i < bytes; i++) {
+                    caracter = (caracter << 6) | (textos.get(posicion + i) & 0x3F);
+                }
+                if (Character.toLowerCase(caracter) != esperado) {
+                    return false;
+                }
+                posicion += bytes;
+            }
+            return true;
+        }
+
+        //Copia una fila dentro de las mismas columnas; el texto se comparte
+        void moverFila(int desde, int hacia) {
+            ids.put(hacia, ids.get(desde));
+            versiones.put(hacia, versiones.get(desde));
+            modificaciones.put(hacia, modificaciones.get(desde));
+            anos.put(hacia, anos.get(desde));
+            generos.put(hacia, generos.get(desde));
+            directores.put(hacia, directores.get(desde));
+            tituloInicio.put(hacia, tituloInicio.get(desde));
+            tituloLongitud.put(hacia, tituloLongitud.get(desde));
+            busquedaInicio.put(hacia, busquedaInicio.get(desde));
+            busquedaLongitud.put(hacia, busquedaLongitud.get(desde));
+            marcar(disponibles, hacia, leer(disponibles, desde));
+            marcar(vivas, hacia, leer(vivas, desde));
+        }
+
+        //Copia una fila de otras columnas, con su texto
+        void copiarFila(Columnas origen, int desde, int hacia) {
+            ids.put(hacia, origen.ids.get(desde));
+            versiones.put(hacia, origen.versiones.get(desde));
+            modificaciones.put(hacia, origen.modificaciones.get(desde));
+            anos.put(hacia, origen.anos.get(desde));
+            generos.put(hacia, origen.generos.get(desde));
+            directores.put(hacia, origen.directores.get(desde));
+            int longitud = origen.tituloLongitud.get(desde);
+            int inicio = copiarTexto(origen, origen.tituloInicio.get(desde), Math.max(longitud, 0));
+            tituloInicio.put(hacia, inicio);
+            tituloLongitud.put(hacia, longitud);
+            if (origen.busquedaInicio.get(desde) == origen.tituloInicio.get(desde)) {
+                busquedaInicio.put(hacia, inicio);
+            } else {
+                busquedaInicio.put(hacia, copiarTexto(origen, origen.busquedaInicio.get(desde), origen.busquedaLongitud.get(desde)));
+            }
+            busquedaLongitud.put(hacia, origen.busquedaLongitud.get(desde));
+            marcar(disponibles, hacia, origen.leer(origen.disponibles, desde));
+            marcar(vivas, hacia, origen.leer(origen.vivas, desde));
+        }
+
+        private int copiarTexto(Columnas origen, int inicio, int longitud) {
+            int destino = finTextos;
+            textos.put(destino, origen.textos, inicio, longitud);
+            finTextos += longitud;
+            return destino;
+        }
+
+        private static LongBuffer longs(int tamano) {
+            return ByteBuffer.allocateDirect(tamano * Long.BYTES).order(ByteOrder.nativeOrder()).asLongBuffer();
+        }
+
+        private static IntBuffer ints(int tamano) {
+            return ByteBuffer.allocateDirect(tamano * Integer.BYTES).order(ByteOrder.nativeOrder()).asIntBuffer();
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package es.cic.curso.practica004.limites;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+/*
+ * Cubo de fichas (token bucket) por cliente, sin bloqueos.
+ * Cada cliente tiene "capacidad" fichas que se reponen a "reposicion" fichas
+ * por segundo, y cada petición gasta tantas fichas como su coste.
+ * Se implementa como GCRA: en lugar de las fichas se guarda un único long,
+ * el instante teórico en el que el cubo volvería a estar lleno, y cada
+ * petición lo adelanta coste x intervalo con un compareAndSet. Si eso lo
+ * llevaría más allá de capacidad x intervalo en el futuro, no hay fichas
+ * suficientes y se devuelve cuánto hay que esperar.
+ * Los cubos se guardan en una caché acotada que los olvida cuando llevan sin
+ * usarse el tiempo de llenarse, porque entonces olvidarlos equivale a
+ * tenerlos llenos.
+ */
+public class LimitadorPeticiones {
+
+    private final long intervaloNanos;
+    private final long toleranciaNanos;
+    private final Cache<String, AtomicLong> cubos;
+
+    public LimitadorPeticiones(int capacidad, double reposicion, long maximoClientes) {
+        this.intervaloNanos = (long) (1_000_000_000L / reposicion);
+        this.toleranciaNanos = capacidad * intervaloNanos;
+        this.cubos = Caffeine.newBuilder()
+            .maximumSize(maximoClientes)
+            .expireAfterAccess(Duration.ofNanos(toleranciaNanos).plusSeconds(1))
+            .build();
+    }
+
+    /*
+     * Gasta "coste" fichas del cubo del cliente. Devuelve 0 si la petición
+     * se admite, o los nanosegundos que faltan para tener fichas suficientes.
+     */
+    public long consumir(String cliente, int coste) {
+        AtomicLong llenoEn = cubos.get(cliente, clave -> new AtomicLong(Long.MIN_VALUE));
+        while (true) {
+            long actual = llenoEn.get();
+            long ahora = System.nanoTime();
+            long nuevo = Math.max(actual, ahora) + coste * intervaloNanos;
+            long espera = nuevo - ahora - toleranciaNanos;
+            if (espera > 0) {
+                return espera;
+            }
+            if (llenoEn.compareAndSet(actual, nuevo)) {
+                return 0;
+            }
+        }
+    }
+
+    public long getNumeroClientes() {
+        return cubos.estimatedSize();
+    }
+}
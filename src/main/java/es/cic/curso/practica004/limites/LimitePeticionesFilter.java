@@ -0,0 +1,170 @@
+package es.cic.curso.practica004.limites;
+
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntSupplier;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/*
+ * Limita las peticiones de cada cliente y descarta carga cuando el servidor
+ * está saturado.
+ * - El cliente es el valor de la cabecera de API key si es una de las claves
+ *   conocidas y, si no, su dirección IP: una clave inventada no da un cubo
+ *   nuevo ni hace sitio expulsando el de otro cliente. Cada petición gasta
+ *   del cubo del cliente (LimitadorPeticiones)
+ *   las fichas de su tipo: el listado completo cuesta mucho más que una
+ *   lectura por id. Sin fichas se responde 429 (Too Many Requests).
+ * - La presión es el mayor de peticiones en curso / máximo de peticiones
+ *   y esperas de conexión / máximo de esperas. Con presión 1 o más se
+ *   descartan las peticiones caras (listado, búsquedas y lotes); con 2 o más,
+ *   todas. Se responde 503 (Service Unavailable).
+ * Las dos respuestas llevan Retry-After. Cada decisión se cuenta en
+ * practica004.limites.peticiones, por tipo y resultado.
+ */
+public class LimitePeticionesFilter extends OncePerRequestFilter {
+
+    //Tipos de petición, de los que depende su coste
+    public enum TipoPeticion {
+        LISTADO, BUSQUEDA, LOTE, LECTURA, ESCRITURA;
+
+        static TipoPeticion de(HttpServletRequest request) {
+            String ruta = request.getRequestURI().substring(request.getContextPath().length());
+            boolean lectura = "GET".equals(request.getMethod()) || "HEAD".equals(request.getMethod());
+            if (ruta.startsWith(RUTA + "/batch") || ruta.startsWith(RUTA + "/import")) {
+                return LOTE;
+            }
+            if (!lectura) {
+                return ESCRITURA;
+            }
+            if (ruta.equals(RUTA) || ruta.equals(RUTA + "/") || ruta.startsWith(RUTA + "/export")) {
+                return LISTADO;
+            }
+            for (String busqueda : BUSQUEDAS) {
+                if (ruta.startsWith(RUTA + busqueda)) {
+                    return BUSQUEDA;
+                }
+            }
+            return LECTURA;
+        }
+
+        boolean isCara() {
+            return this == LISTADO || this == BUSQUEDA || this == LOTE;
+        }
+    }
+
+    private static final String RUTA = "/api/peliculas";
+    private static final String[] BUSQUEDAS = {"/search", "/page", "/stats", "/changes"};
+
+    //La presión se vuelve a medir como mucho cada este tiempo
+    private static final long INTERVALO_MEDICION_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final LimitadorPeticiones limitador;
+    private final Map<TipoPeticion, Integer> costes;
+    private final String cabeceraCliente;
+    private final Set<String> clavesConocidas;
+    private final int maximoEnCurso;
+    private final int maximoEsperasConexion;
+    private final IntSupplier esperasConexion;
+
+    private final AtomicInteger enCurso = new AtomicInteger();
+    private volatile double presionConexiones;
+    private volatile long ultimaMedicion = System.nanoTime();
+
+    private final Map<TipoPeticion, Counter> permitidas = new EnumMap<>(TipoPeticion.class);
+    private final Map<TipoPeticion, Counter> limitadas = new EnumMap<>(TipoPeticion.class);
+    private final Map<TipoPeticion, Counter> descartadas = new EnumMap<>(TipoPeticion.class);
+
+    public LimitePeticionesFilter(LimitadorPeticiones limitador, Map<TipoPeticion, Integer> costes,
+            String cabeceraCliente, Set<String> clavesConocidas, int maximoEnCurso, int maximoEsperasConexion, IntSupplier esperasConexion,
+            MeterRegistry meterRegistry) {
+        this.limitador = limitador;
+        this.costes = new EnumMap<>(costes);
+        this.cabeceraCliente = cabeceraCliente;
+        this.clavesConocidas = Set.copyOf(clavesConocidas);
+        this.maximoEnCurso = maximoEnCurso;
+        this.maximoEsperasConexion = maximoEsperasConexion;
+        this.esperasConexion = esperasConexion;
+        for (TipoPeticion tipo : TipoPeticion.values()) {
+            permitidas.put(tipo, contador(meterRegistry, tipo, "permitida"));
+            limitadas.put(tipo, contador(meterRegistry, tipo, "limitada"));
+            descartadas.put(tipo, contador(meterRegistry, tipo, "descartada"));
+        }
+        Gauge.builder("practica004.limites.en-curso", enCurso, AtomicInteger::get).register(meterRegistry);
+        Gauge.builder("practica004.limites.presion", this,
+            filtro -> Math.max(filtro.presionConexiones, (double) filtro.enCurso.get() / filtro.maximoEnCurso))
+            .register(meterRegistry);
+        Gauge.builder("practica004.limites.clientes", limitador, LimitadorPeticiones::getNumeroClientes)
+            .register(meterRegistry);
+    }
+
+    private static Counter contador(MeterRegistry meterRegistry, TipoPeticion tipo, String resultado) {
+        return Counter.builder("practica004.limites.peticiones")
+            .tag("tipo", tipo.name().toLowerCase())
+            .tag("resultado", resultado)
+            .register(meterRegistry);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        TipoPeticion tipo = TipoPeticion.de(request);
+        int actuales = enCurso.incrementAndGet();
+        try {
+            double presionActual = medirPresion(actuales);
+            if (presionActual >= 2 || (presionActual >= 1 && tipo.isCara())) {
+                descartadas.get(tipo).increment();
+                rechazar(response, HttpStatus.SERVICE_UNAVAILABLE, (long) Math.ceil(presionActual));
+                return;
+            }
+            long espera = limitador.consumir(cliente(request), costes.get(tipo));
+            if (espera > 0) {
+                limitadas.get(tipo).increment();
+                rechazar(response, HttpStatus.TOO_MANY_REQUESTS,
+                    Math.max(1, (long) Math.ceil(espera / 1_000_000_000.0)));
+                return;
+            }
+            permitidas.get(tipo).increment();
+            chain.doFilter(request, response);
+        } finally {
+            enCurso.decrementAndGet();
+        }
+    }
+
+    /*
+     * Las peticiones en curso se miden en cada petición; las esperas de
+     * conexión, que cuestan más de leer, solo cada INTERVALO_MEDICION_NANOS.
+     */
+    private double medirPresion(int actuales) {
+        long ahora = System.nanoTime();
+        if (ahora - ultimaMedicion > INTERVALO_MEDICION_NANOS) {
+            ultimaMedicion = ahora;
+            presionConexiones = (double) esperasConexion.getAsInt() / maximoEsperasConexion;
+        }
+        return Math.max(presionConexiones, (double) actuales / maximoEnCurso);
+    }
+
+    private String cliente(HttpServletRequest request) {
+        String clave = request.getHeader(cabeceraCliente);
+        return clave != null && clavesConocidas.contains(clave) ? "clave:" + clave : "ip:" + request.getRemoteAddr();
+    }
+
+    private static void rechazar(HttpServletResponse response, HttpStatus estado, long segundos) {
+        response.setStatus(estado.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(segundos));
+    }
+}
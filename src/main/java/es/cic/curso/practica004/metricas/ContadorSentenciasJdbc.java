@@ -0,0 +1,17 @@
+package es.cic.curso.practica004.metricas;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+/*
+ * StatementInspector de Hibernate que cuenta las sentencias que se preparan
+ * en la petición en curso. No modifica el SQL. Un lote JDBC cuenta como una
+ * sola sentencia, porque se prepara una vez.
+ */
+public class ContadorSentenciasJdbc implements StatementInspector {
+
+    @Override
+    public String inspect(String sql) {
+        MetricasPeticion.sentenciaPreparada();
+        return sql;
+    }
+}
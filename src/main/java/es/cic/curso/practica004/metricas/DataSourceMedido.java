@@ -0,0 +1,36 @@
+package es.cic.curso.practica004.metricas;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+/*
+ * DataSource que mide cuánto tarda en obtenerse cada conexión (la espera en
+ * el pool) y lo anota en la petición en curso. El tiempo global de espera
+ * del pool ya lo publica Hikari como hikaricp.connections.acquire.
+ */
+public class DataSourceMedido extends DelegatingDataSource {
+
+    public DataSourceMedido(DataSource destino) {
+        super(destino);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        long inicio = System.nanoTime();
+        Connection conexion = super.getConnection();
+        MetricasPeticion.conexionObtenida(System.nanoTime() - inicio);
+        return conexion;
+    }
+
+    @Override
+    public Connection getConnection(String usuario, String clave) throws SQLException {
+        long inicio = System.nanoTime();
+        Connection conexion = super.getConnection(usuario, clave);
+        MetricasPeticion.conexionObtenida(System.nanoTime() - inicio);
+        return conexion;
+    }
+}
@@ -0,0 +1,56 @@
+package es.cic.curso.practica004.metricas;
+
+/*
+ * Contadores de una petición HTTP: sentencias SQL preparadas por Hibernate,
+ * conexiones pedidas al DataSource y tiempo total esperando por ellas.
+ * Viven en un ThreadLocal mientras dura la petición (los abre y cierra
+ * MetricasPeticionFilter); fuera de una petición las anotaciones se ignoran.
+ */
+public final class MetricasPeticion {
+
+    private static final ThreadLocal<MetricasPeticion> ACTUAL = new ThreadLocal<>();
+
+    private int sentencias;
+    private int conexiones;
+    private long esperaConexionNanos;
+
+    private MetricasPeticion() {
+    }
+
+    static MetricasPeticion iniciar() {
+        MetricasPeticion metricas = new MetricasPeticion();
+        ACTUAL.set(metricas);
+        return metricas;
+    }
+
+    static void terminar() {
+        ACTUAL.remove();
+    }
+
+    static void sentenciaPreparada() {
+        MetricasPeticion metricas = ACTUAL.get();
+        if (metricas != null) {
+            metricas.sentencias++;
+        }
+    }
+
+    static void conexionObtenida(long esperaNanos) {
+        MetricasPeticion metricas = ACTUAL.get();
+        if (metricas != null) {
+            metricas.conexiones++;
+            metricas.esperaConexionNanos += esperaNanos;
+        }
+    }
+
+    public int getSentencias() {
+        return sentencias;
+    }
+
+    public int getConexiones() {
+        return conexiones;
+    }
+
+    public long getEsperaConexionNanos() {
+        return esperaConexionNanos;
+    }
+}
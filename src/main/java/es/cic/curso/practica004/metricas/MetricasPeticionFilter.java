@@ -0,0 +1,67 @@
+package es.cic.curso.practica004.metricas;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/*
+ * Filtro que abre un MetricasPeticion para cada petición y, al terminar,
+ * publica por endpoint (method y uri, igual que http.server.requests):
+ * peliculas.peticion.sentencias: sentencias SQL preparadas en la petición.
+ * peliculas.peticion.conexiones: conexiones pedidas al pool.
+ * peliculas.peticion.espera.conexion: tiempo total esperando conexiones.
+ */
+public class MetricasPeticionFilter extends OncePerRequestFilter {
+
+    private static final double[] LIMITES_SENTENCIAS = {1, 2, 3, 5, 10, 20, 50, 100};
+
+    private final MeterRegistry meterRegistry;
+
+    public MetricasPeticionFilter(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        MetricasPeticion metricas = MetricasPeticion.iniciar();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            MetricasPeticion.terminar();
+            publicar(request, metricas);
+        }
+    }
+
+    private void publicar(HttpServletRequest request, MetricasPeticion metricas) {
+        Object patron = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        Tags tags = Tags.of("method", request.getMethod(), "uri", patron != null ? patron.toString() : "UNKNOWN");
+        DistributionSummary.builder("peliculas.peticion.sentencias")
+            .baseUnit("sentencias")
+            .serviceLevelObjectives(LIMITES_SENTENCIAS)
+            .tags(tags)
+            .register(meterRegistry)
+            .record(metricas.getSentencias());
+        DistributionSummary.builder("peliculas.peticion.conexiones")
+            .baseUnit("conexiones")
+            .tags(tags)
+            .register(meterRegistry)
+            .record(metricas.getConexiones());
+        Timer.builder("peliculas.peticion.espera.conexion")
+            .publishPercentileHistogram()
+            .tags(tags)
+            .register(meterRegistry)
+            .record(metricas.getEsperaConexionNanos(), TimeUnit.NANOSECONDS);
+    }
+}
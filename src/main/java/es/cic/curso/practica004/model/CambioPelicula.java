@@ -0,0 +1,72 @@
+package es.cic.curso.practica004.model;
+
+import java.time.Instant;
+
+import com.fasterxml.jackson.annotation.JsonRawValue;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+
+/*
+ * Una entrada del registro de cambios del catálogo (RegistroCambios).
+ * secuencia: número de orden del cambio, sin huecos y en el orden en que
+ * se confirmaron las transacciones.
+ * tipo: CREADA, ACTUALIZADA, PARCIAL o ELIMINADA.
+ * datos: JSON con la película completa (CREADA y ACTUALIZADA), solo con los
+ * campos modificados (PARCIAL, para aplicar como JSON merge patch) o null
+ * (ELIMINADA).
+ */
+@Entity
+@Table(name = "cambio_pelicula", indexes = @Index(name = "idx_cambio_pelicula_momento", columnList = "momento"))
+public class CambioPelicula {
+
+    @Id
+    private Long secuencia;
+
+    @Column(length = 16, nullable = false)
+    private String tipo;
+
+    @Column(name = "pelicula_id", nullable = false)
+    private Long peliculaId;
+
+    @JsonRawValue
+    @Column(length = 4000)
+    private String datos;
+
+    @Column(nullable = false)
+    private Instant momento;
+
+    protected CambioPelicula() {
+    }
+
+    public CambioPelicula(Long secuencia, String tipo, Long peliculaId, String datos, Instant momento) {
+        this.secuencia = secuencia;
+        this.tipo = tipo;
+        this.peliculaId = peliculaId;
+        this.datos = datos;
+        this.momento = momento;
+    }
+
+    public Long getSecuencia() {
+        return secuencia;
+    }
+
+    public String getTipo() {
+        return tipo;
+    }
+
+    public Long getPeliculaId() {
+        return peliculaId;
+    }
+
+    public String getDatos() {
+        return datos;
+    }
+
+    public Instant getMomento() {
+        return momento;
+    }
+}
@@ -0,0 +1,47 @@
+package es.cic.curso.practica004.model;
+
+import java.util.Arrays;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import com.fasterxml.jackson.annotation.JsonFilter;
+import com.fasterxml.jackson.databind.ser.FilterProvider;
+import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+
+/*
+ * Selección de campos de Pelicula en las respuestas (?fields=id,titulo).
+ * Pelicula no lleva @JsonFilter: se le añade con el mix-in MixIn solo en
+ * los ObjectMapper de la aplicación (ver FormatosConfig), que además tienen
+ * por defecto el filtro que serializa todos los campos. Así cualquier otro
+ * ObjectMapper sigue serializando Pelicula sin configuración adicional.
+ * Los nombres de campo desconocidos se ignoran.
+ */
+public final class CamposPelicula {
+
+    public static final String FILTRO = "camposPelicula";
+
+    private CamposPelicula() {
+    }
+
+    @JsonFilter(FILTRO)
+    public interface MixIn {
+    }
+
+    //Filtros con todos los campos
+    public static FilterProvider todos() {
+        return new SimpleFilterProvider().addFilter(FILTRO, SimpleBeanPropertyFilter.serializeAll());
+    }
+
+    //Filtros con solo los campos indicados, separados por comas (todos si es null o vacío)
+    public static FilterProvider solo(String campos) {
+        if (campos == null || campos.isBlank()) {
+            return todos();
+        }
+        Set<String> nombres = Arrays.stream(campos.split(","))
+            .map(String::trim)
+            .filter(nombre -> !nombre.isEmpty())
+            .collect(Collectors.toSet());
+        return new SimpleFilterProvider().addFilter(FILTRO, SimpleBeanPropertyFilter.filterOutAllExcept(nombres));
+    }
+}
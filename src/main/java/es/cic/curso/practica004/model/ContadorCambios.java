@@ -0,0 +1,34 @@
+package es.cic.curso.practica004.model;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+/*
+ * Última secuencia asignada en el registro de cambios. Hay una sola fila
+ * (id = 1); cada transacción que escribe cambios la bloquea al confirmar,
+ * así las secuencias siguen el orden de confirmación y no quedan huecos.
+ */
+@Entity
+@Table(name = "contador_cambios")
+public class ContadorCambios {
+
+    public static final int ID = 1;
+
+    @Id
+    private Integer id;
+
+    private long ultima;
+
+    protected ContadorCambios() {
+    }
+
+    public long getUltima() {
+        return ultima;
+    }
+
+    //Reserva y devuelve la secuencia siguiente
+    public long siguiente() {
+        return ++ultima;
+    }
+}
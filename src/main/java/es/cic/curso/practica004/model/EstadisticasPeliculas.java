@@ -0,0 +1,12 @@
+package es.cic.curso.practica004.model;
+
+import java.util.List;
+
+/*
+ * Estadísticas del catálogo completo: número de películas, cuántas están
+ * disponibles y los recuentos por género (de más a menos películas) y por
+ * década (valor = primer año de la década, en orden).
+ */
+public record EstadisticasPeliculas(long total, long disponibles, double ratioDisponibles,
+        List<GrupoEstadistica> porGenero, List<GrupoEstadistica> porDecada) {
+}
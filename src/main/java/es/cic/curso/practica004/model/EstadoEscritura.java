@@ -0,0 +1,34 @@
+package es.cic.curso.practica004.model;
+
+/*
+ * Estado de una escritura diferida (POST en modo escritura diferida).
+ * seguimiento: identificador devuelto al cliente en la respuesta 202.
+ * estado: PENDIENTE mientras está en la cola, GUARDADA, DUPLICADA o ERROR al
+ * procesarse. DUPLICADA: ya había una película con el mismo título, director
+ * y año (por ejemplo, porque el cliente ha repetido el envío).
+ * id: id de la película creada cuando estado es GUARDADA, o de la que ya
+ * existía cuando es DUPLICADA.
+ * error: descripción del fallo cuando estado es ERROR o DUPLICADA.
+ */
+public record EstadoEscritura(String seguimiento, Estado estado, Long id, String error) {
+
+    public enum Estado {
+        PENDIENTE, GUARDADA, DUPLICADA, ERROR
+    }
+
+    public static EstadoEscritura pendiente(String seguimiento) {
+        return new EstadoEscritura(seguimiento, Estado.PENDIENTE, null, null);
+    }
+
+    public static EstadoEscritura guardada(String seguimiento, Long id) {
+        return new EstadoEscritura(seguimiento, Estado.GUARDADA, id, null);
+    }
+
+    public static EstadoEscritura duplicada(String seguimiento, Long idExistente, String error) {
+        return new EstadoEscritura(seguimiento, Estado.DUPLICADA, idExistente, error);
+    }
+
+    public static EstadoEscritura error(String seguimiento, String error) {
+        return new EstadoEscritura(seguimiento, Estado.ERROR, null, error);
+    }
+}
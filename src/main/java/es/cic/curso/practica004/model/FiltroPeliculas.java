@@ -0,0 +1,11 @@
+package es.cic.curso.practica004.model;
+
+/*
+ * Criterios de búsqueda de películas. Todos son opcionales y se combinan con AND.
+ * titulo: prefijo del título, sin distinguir mayúsculas.
+ * director, genero, disponible: igualdad exacta.
+ * anoDesde, anoHasta: rango de años, ambos incluidos.
+ */
+public record FiltroPeliculas(String titulo, String director, String genero, Boolean disponible,
+        Integer anoDesde, Integer anoHasta) {
+}
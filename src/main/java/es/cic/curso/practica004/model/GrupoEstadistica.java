@@ -0,0 +1,14 @@
+package es.cic.curso.practica004.model;
+
+/*
+ * Recuento de las películas de un grupo (un género, un director o una
+ * década). valor es null para las películas sin ese dato.
+ * ratioDisponibles: disponibles / peliculas, 0 si el grupo está vacío.
+ */
+public record GrupoEstadistica(String valor, long peliculas, long disponibles, double ratioDisponibles) {
+
+    public static GrupoEstadistica de(String valor, long peliculas, long disponibles) {
+        return new GrupoEstadistica(valor, peliculas, disponibles,
+            peliculas == 0 ? 0 : (double) disponibles / peliculas);
+    }
+}
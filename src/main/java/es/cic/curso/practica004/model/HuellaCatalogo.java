@@ -0,0 +1,32 @@
+package es.cic.curso.practica004.model;
+
+import java.time.Instant;
+
+/*
+ * Resumen del estado del catálogo completo, calculado con una consulta de
+ * agregados: número de películas, suma de ids, suma de versiones y última
+ * modificación. Cualquier alta, baja o modificación cambia al menos uno de
+ * los valores, así que sirve para construir el ETag del listado sin leer
+ * las películas.
+ */
+public record HuellaCatalogo(Long total, Long sumaIds, Long sumaVersiones, Instant ultimaModificacion) {
+
+    public String etag() {
+        return "\"" + valor() + "\"";
+    }
+
+    /*
+     * ETag débil de una representación concreta (formato, campos). Es débil
+     * para que el servidor pueda comprimir la respuesta: Tomcat no comprime
+     * las que llevan un ETag fuerte.
+     */
+    public String etagDebil(String representacion) {
+        return "W/\"" + valor() + (representacion.isEmpty() ? "" : "-" + representacion) + "\"";
+    }
+
+    private String valor() {
+        long modificacion = ultimaModificacion == null ? 0 : ultimaModificacion.toEpochMilli();
+        return Long.toHexString(total) + "-" + Long.toHexString(sumaIds) + "-"
+            + Long.toHexString(sumaVersiones) + "-" + Long.toHexString(modificacion);
+    }
+}
@@ -0,0 +1,13 @@
+package es.cic.curso.practica004.model;
+
+import java.util.List;
+
+/*
+ * Una página del registro de cambios.
+ * cambios: los cambios de la página, por orden de secuencia.
+ * ultimaSecuencia: la secuencia del último cambio devuelto (o la pedida si
+ * no hay ninguno); es el valor de since para pedir la página siguiente.
+ * hayMas: indica si quedan más cambios después de esta página.
+ */
+public record PaginaCambios(List<CambioPelicula> cambios, long ultimaSecuencia, boolean hayMas) {
+}
@@ -0,0 +1,12 @@
+package es.cic.curso.practica004.model;
+
+import java.util.List;
+
+/*
+ * Una página del catálogo obtenida por cursor.
+ * contenido: las películas de la página, ordenadas por id.
+ * siguienteCursor: valor opaco que el cliente debe enviar para pedir
+ * la página siguiente; es null cuando no quedan más películas.
+ */
+public record PaginaPeliculas(List<Pelicula> contenido, String siguienteCursor) {
+}
@@ -1,16 +1,43 @@
 package es.cic.curso.practica004.model;
 
+import java.time.Instant;
+import java.util.Locale;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.PreUpdate;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+import jakarta.persistence.Version;
 
 /*
  * Esta anotación marca la clase Pelicula como una entidad JPA. 
  * Esto significa que esta clase se mapeará a una tabla en la 
  * base de datos con el mismo nombre (por defecto).
+ * @Table(indexes = ...): Declara los índices que usan las búsquedas de
+ * PeliculaSpecifications: prefijo de título, igualdad por género o director
+ * combinada con rango de año, y rango de año solo.
+ * @UniqueConstraint: título, director y año son la clave natural de una
+ * película; no puede haber dos iguales y se buscan por su índice. Como en
+ * cualquier restricción única de SQL, las películas sin director no se
+ * consideran iguales entre sí.
  */
 @Entity
+@Table(uniqueConstraints = @UniqueConstraint(name = "uk_pelicula_titulo_director_ano",
+    columnNames = {"titulo", "director", "ano"}), indexes = {
+    @Index(name = "idx_pelicula_titulo_busqueda", columnList = "titulo_busqueda"),
+    @Index(name = "idx_pelicula_genero_ano", columnList = "genero, ano"),
+    @Index(name = "idx_pelicula_director_ano", columnList = "director, ano"),
+    @Index(name = "idx_pelicula_ano", columnList = "ano")
+})
 public class Pelicula {
 
     /*
@@ -18,9 +45,13 @@ public class Pelicula {
      * @GeneratedValue(strategy = GenerationType.AUTO): Especifica que el proveedor de persistencia elegirá la 
      * estrategia para generar el valor del id. GenerationType.AUTO permite a JPA decidir la mejor estrategia 
      * según la base de datos (por ejemplo, secuencias, auto-incrementos, etc.).
+     * Ahora usamos GenerationType.SEQUENCE con una secuencia explícita y allocationSize = 50:
+     * Hibernate reserva los ids de 50 en 50 (optimizador pooled), así que no necesita
+     * consultar la secuencia en cada INSERT y puede agrupar las inserciones en lotes JDBC.
      */
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "pelicula_seq")
+    @SequenceGenerator(name = "pelicula_seq", sequenceName = "pelicula_seq", allocationSize = 50)
     private Long id;
 
     private String titulo;
@@ -29,6 +60,33 @@ public class Pelicula {
     private String genero;
     private boolean disponible;
 
+    /*
+     * Título en minúsculas, mantenido por Hibernate antes de cada INSERT/UPDATE.
+     * Permite buscar por prefijo sin distinguir mayúsculas usando un índice
+     * normal, sin aplicar lower() a la columna en la consulta.
+     * No forma parte del JSON de la API.
+     */
+    @JsonIgnore
+    @Column(name = "titulo_busqueda")
+    private String tituloBusqueda;
+
+    /*
+     * @Version: versión para el bloqueo optimista. Hibernate la incrementa en
+     * cada UPDATE y rechaza la escritura si otra transacción la cambió antes.
+     * Se publica como ETag en la API, no en el JSON.
+     */
+    @JsonIgnore
+    @Version
+    private Long version;
+
+    /*
+     * Momento de la última escritura, mantenido por Hibernate antes de cada
+     * INSERT/UPDATE. Se publica como cabecera Last-Modified, no en el JSON.
+     */
+    @JsonIgnore
+    @Column(name = "ultima_modificacion")
+    private Instant ultimaModificacion;
+
     
 
     public Pelicula() {
@@ -44,6 +102,18 @@ public class Pelicula {
         this.disponible = disponible;
     }
 
+    /*
+     * Película con su versión y fecha de modificación, para las vistas de
+     * solo lectura del catálogo que no se cargan con JPA (CatalogoColumnar).
+     */
+    public Pelicula(Long id, String titulo, String director, int ano, String genero, boolean disponible,
+            Long version, Instant ultimaModificacion) {
+        this(id, titulo, director, ano, genero, disponible);
+        this.tituloBusqueda = normalizarTitulo(titulo);
+        this.version = version;
+        this.ultimaModificacion = ultimaModificacion;
+    }
+
 
     //Getters y Setters
 
@@ -118,4 +188,34 @@ public class Pelicula {
         this.disponible = disponible;
     }
 
-}
\ No newline at end of file
+
+
+    public String getTituloBusqueda() {
+        return tituloBusqueda;
+    }
+
+
+
+    public Long getVersion() {
+        return version;
+    }
+
+
+
+    public Instant getUltimaModificacion() {
+        return ultimaModificacion;
+    }
+
+    //Normaliza un texto igual que tituloBusqueda, para construir las búsquedas
+    public static String normalizarTitulo(String titulo) {
+        return titulo == null ? null : titulo.toLowerCase(Locale.ROOT);
+    }
+
+    @PrePersist
+    @PreUpdate
+    void antesDeGuardar() {
+        tituloBusqueda = normalizarTitulo(titulo);
+        ultimaModificacion = Instant.now();
+    }
+
+}
@@ -0,0 +1,13 @@
+package es.cic.curso.practica004.model;
+
+import java.util.List;
+
+/*
+ * Una página de resultados de búsqueda.
+ * contenido: las películas de la página.
+ * pagina y tamano: la página pedida (empezando en 0) y su tamaño.
+ * totalElementos y totalPaginas: totales de la búsqueda completa.
+ */
+public record ResultadoBusqueda(List<Pelicula> contenido, int pagina, int tamano,
+        long totalElementos, int totalPaginas) {
+}
@@ -0,0 +1,13 @@
+package es.cic.curso.practica004.model;
+
+/*
+ * Resultado de importar un fichero de películas.
+ * leidas: líneas con datos leídas del fichero (sin contar la cabecera).
+ * creadas: películas guardadas.
+ * rechazadas: líneas que no se pudieron leer o guardar, incluidas las duplicadas.
+ * duplicadas: de las rechazadas, las películas que ya existían (mismo título,
+ * director y año).
+ * milisegundos: duración de la importación.
+ */
+public record ResultadoImportacion(long leidas, long creadas, long rechazadas, long duplicadas, long milisegundos) {
+}
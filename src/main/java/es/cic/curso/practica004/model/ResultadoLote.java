@@ -0,0 +1,28 @@
+package es.cic.curso.practica004.model;
+
+/*
+ * Resultado de un elemento dentro de una operación por lotes.
+ * indice: posición del elemento en el array recibido.
+ * id: id de la película afectada (null si no se pudo determinar). Con
+ * DUPLICADA, el id de la película que ya tiene ese título, director y año.
+ * estado: qué ha pasado con el elemento.
+ * error: descripción del fallo cuando estado es ERROR o DUPLICADA.
+ */
+public record ResultadoLote(int indice, Long id, Estado estado, String error) {
+
+    public enum Estado {
+        CREADA, ACTUALIZADA, ELIMINADA, NO_ENCONTRADA, DUPLICADA, ERROR
+    }
+
+    public static ResultadoLote ok(int indice, Long id, Estado estado) {
+        return new ResultadoLote(indice, id, estado, null);
+    }
+
+    public static ResultadoLote duplicada(int indice, Long idExistente, String error) {
+        return new ResultadoLote(indice, idExistente, Estado.DUPLICADA, error);
+    }
+
+    public static ResultadoLote error(int indice, Long id, String error) {
+        return new ResultadoLote(indice, id, Estado.ERROR, error);
+    }
+}
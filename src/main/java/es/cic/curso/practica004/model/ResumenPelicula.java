@@ -0,0 +1,14 @@
+package es.cic.curso.practica004.model;
+
+/*
+ * Los campos de una película que cuentan en las estadísticas del catálogo,
+ * sin el título ni la versión. Se lee con una proyección al reconstruir las
+ * estadísticas para no cargar las entidades.
+ */
+public record ResumenPelicula(Long id, String genero, String director, Integer ano, boolean disponible) {
+
+    public static ResumenPelicula de(Pelicula pelicula) {
+        return new ResumenPelicula(pelicula.getId(), pelicula.getGenero(), pelicula.getDirector(),
+            pelicula.getAno(), pelicula.isDisponible());
+    }
+}
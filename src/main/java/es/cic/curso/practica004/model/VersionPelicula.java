@@ -0,0 +1,55 @@
+package es.cic.curso.practica004.model;
+
+import java.time.Instant;
+
+/*
+ * Versión y fecha de última modificación de una película, sin el resto de
+ * campos. Basta para responder a las peticiones condicionales (ETag y
+ * Last-Modified) sin cargar la entidad completa.
+ */
+public record VersionPelicula(Long version, Instant ultimaModificacion) {
+
+    public static VersionPelicula de(Pelicula pelicula) {
+        return new VersionPelicula(pelicula.getVersion(), pelicula.getUltimaModificacion());
+    }
+
+    //ETag fuerte de la película: su versión entre comillas
+    public String etag() {
+        return "\"" + version + "\"";
+    }
+
+    /*
+     * ETag fuerte de una representación concreta (formato, campos): la
+     * versión seguida de la representación, o solo la versión si está vacía.
+     */
+    public String etag(String representacion) {
+        return representacion.isEmpty() ? etag() : "\"" + version + "-" + representacion + "\"";
+    }
+
+    /*
+     * Convierte la cabecera If-Match en la versión esperada: null si no viene
+     * o es "*". Vale el ETag de cualquier representación, porque todas
+     * empiezan por la versión. Un ETag débil o que no es una versión nunca
+     * coincide (-1), porque If-Match exige comparación fuerte.
+     */
+    public static Long deIfMatch(String ifMatch) {
+        if (ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        String valor = ifMatch.trim();
+        if (valor.length() < 2 || !valor.startsWith("\"") || !valor.endsWith("\"")) {
+            return -1L;
+        }
+        String etiqueta = valor.substring(1, valor.length() - 1);
+        int guion = etiqueta.indexOf('-');
+        try {
+            return Long.parseLong(guion < 0 ? etiqueta : etiqueta.substring(0, guion));
+        } catch (NumberFormatException ex) {
+            return -1L;
+        }
+    }
+
+    public long ultimaModificacionMillis() {
+        return ultimaModificacion == null ? -1 : ultimaModificacion.toEpochMilli();
+    }
+}
@@ -0,0 +1,66 @@
+package es.cic.curso.practica004.replicas;
+
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/*
+ * Lanza periódicamente la comprobación de réplicas de un DataSourceReplicado
+ * (practica004.replicas.comprobacion, en formato ISO-8601; PT2S por defecto) y publica su estado:
+ * - En /actuator/health como "replicas", con el estado y el retraso de cada
+ *   una. Siempre es UP: sin réplicas disponibles se sigue leyendo de la primaria.
+ * - En Micrometer como practica004.replicas.disponible (1 o 0) y
+ *   practica004.replicas.retraso (segundos), con la etiqueta replica.
+ */
+public class ComprobadorReplicas implements HealthIndicator {
+
+    private final DataSourceReplicado dataSource;
+
+    public ComprobadorReplicas(DataSourceReplicado dataSource, MeterRegistry meterRegistry) {
+        this.dataSource = dataSource;
+        for (DataSourceReplicado.EstadoReplica estado : dataSource.getEstadoReplicas()) {
+            String nombre = estado.nombre();
+            Gauge.builder("practica004.replicas.disponible", () -> estadoDe(nombre).disponible() ? 1 : 0)
+                .tag("replica", nombre)
+                .register(meterRegistry);
+            Gauge.builder("practica004.replicas.retraso", () -> {
+                    var retraso = estadoDe(nombre).retraso();
+                    return retraso == null ? Double.NaN : retraso.toNanos() / 1e9;
+                })
+                .tag("replica", nombre)
+                .baseUnit("seconds")
+                .register(meterRegistry);
+        }
+    }
+
+    public DataSourceReplicado getDataSource() {
+        return dataSource;
+    }
+
+    @Scheduled(initialDelayString = "${practica004.replicas.comprobacion:PT2S}",
+        fixedDelayString = "${practica004.replicas.comprobacion:PT2S}")
+    public void comprobar() {
+        dataSource.comprobarReplicas();
+    }
+
+    @Override
+    public Health health() {
+        Health.Builder salud = Health.up();
+        for (DataSourceReplicado.EstadoReplica estado : dataSource.getEstadoReplicas()) {
+            salud.withDetail(estado.nombre(), estado.disponible()
+                ? "disponible, retraso " + estado.retraso().toMillis() + " ms"
+                : "no disponible");
+        }
+        return salud.build();
+    }
+
+    private DataSourceReplicado.EstadoReplica estadoDe(String nombre) {
+        return dataSource.getEstadoReplicas().stream()
+            .filter(estado -> estado.nombre().equals(nombre))
+            .findFirst()
+            .orElseThrow();
+    }
+}
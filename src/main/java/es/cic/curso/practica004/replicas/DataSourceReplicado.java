@@ -0,0 +1,158 @@
+package es.cic.curso.practica004.replicas;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/*
+ * DataSource que reparte las conexiones entre la base de datos primaria y
+ * sus réplicas de lectura:
+ * - Las transacciones de solo lectura (@Transactional(readOnly = true) y los
+ *   métodos de lectura de Spring Data) van a una réplica disponible, por turnos.
+ * - Todo lo demás, y las lecturas de un cliente que acaba de escribir
+ *   (ver LecturaEnPrimariaFilter), va a la primaria.
+ * - Si no hay ninguna réplica disponible se lee de la primaria.
+ * Debe usarse detrás de un LazyConnectionDataSourceProxy: así la conexión
+ * real se pide cuando la transacción ya está marcada como de solo lectura.
+ *
+ * Salud y retraso: comprobarReplicas() lee en la primaria el último latido
+ * (tabla latido_replicacion), lo compara con el que ve cada réplica y
+ * escribe uno nuevo. El retraso de una réplica es la diferencia entre ambos;
+ * si supera el máximo, o la réplica no responde, deja de recibir lecturas
+ * hasta la siguiente comprobación correcta.
+ */
+public class DataSourceReplicado extends AbstractRoutingDataSource {
+
+    private static final Logger log = LoggerFactory.getLogger(DataSourceReplicado.class);
+
+    public static final String PRIMARIA = "primaria";
+
+    private final DataSource primaria;
+    private final List<Replica> replicas;
+    private final Duration retrasoMaximo;
+    private final AtomicInteger turno = new AtomicInteger();
+
+    public DataSourceReplicado(DataSource primaria, Map<String, DataSource> replicas, Duration retrasoMaximo) {
+        this.primaria = primaria;
+        this.replicas = replicas.entrySet().stream()
+            .map(replica -> new Replica(replica.getKey(), replica.getValue()))
+            .toList();
+        this.retrasoMaximo = retrasoMaximo;
+        Map<Object, Object> destinos = new HashMap<>(replicas);
+        destinos.put(PRIMARIA, primaria);
+        setTargetDataSources(destinos);
+        setDefaultTargetDataSource(primaria);
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (TransactionSynchronizationManager.isCurrentTransactionReadOnly()
+                && !LecturaEnPrimariaFilter.debeLeerDePrimaria()) {
+            Replica replica = siguienteReplicaDisponible();
+            if (replica != null) {
+                return replica.nombre;
+            }
+        }
+        return PRIMARIA;
+    }
+
+    private Replica siguienteReplicaDisponible() {
+        int inicio = Math.floorMod(turno.getAndIncrement(), Math.max(replicas.size(), 1));
+        for (int i = 0; i < replicas.size(); i++) {
+            Replica replica = replicas.get((inicio + i) % replicas.size());
+            if (replica.disponible) {
+                return replica;
+            }
+        }
+        return null;
+    }
+
+    /*
+     * Comprueba la salud y el retraso de cada réplica y escribe un latido
+     * nuevo en la primaria. Se ejecuta periódicamente (ReplicasConfig).
+     */
+    public void comprobarReplicas() {
+        OffsetDateTime latidoPrimaria;
+        try {
+            latidoPrimaria = leerLatido(primaria);
+        } catch (SQLException ex) {
+            log.warn("No se puede leer el latido de la primaria: {}", ex.getMessage());
+            return;
+        }
+        for (Replica replica : replicas) {
+            try {
+                OffsetDateTime latidoReplica = leerLatido(replica.dataSource);
+                Duration retraso = Duration.between(latidoReplica, latidoPrimaria);
+                replica.retraso = retraso.isNegative() ? Duration.ZERO : retraso;
+                replica.disponible = replica.retraso.compareTo(retrasoMaximo) <= 0;
+            } catch (SQLException ex) {
+                replica.disponible = false;
+                log.warn("Replica {} no disponible: {}", replica.nombre, ex.getMessage());
+            }
+        }
+        try {
+            escribirLatido();
+        } catch (SQLException ex) {
+            log.warn("No se puede escribir el latido en la primaria: {}", ex.getMessage());
+        }
+    }
+
+    private static OffsetDateTime leerLatido(DataSource dataSource) throws SQLException {
+        try (Connection conexion = dataSource.getConnection();
+                PreparedStatement consulta = conexion.prepareStatement("select instante from latido_replicacion where id = 1");
+                ResultSet fila = consulta.executeQuery()) {
+            if (!fila.next()) {
+                throw new SQLException("No hay latido de replicacion");
+            }
+            return fila.getObject(1, OffsetDateTime.class);
+        }
+    }
+
+    private void escribirLatido() throws SQLException {
+        try (Connection conexion = primaria.getConnection();
+                PreparedStatement actualizacion = conexion.prepareStatement("update latido_replicacion set instante = ? where id = 1")) {
+            actualizacion.setObject(1, OffsetDateTime.now().truncatedTo(ChronoUnit.MICROS));
+            actualizacion.executeUpdate();
+            if (!conexion.getAutoCommit()) {
+                conexion.commit();
+            }
+        }
+    }
+
+    //Estado de cada réplica tras la última comprobación
+    public List<EstadoReplica> getEstadoReplicas() {
+        return replicas.stream().map(replica -> new EstadoReplica(replica.nombre, replica.disponible, replica.retraso)).toList();
+    }
+
+    public record EstadoReplica(String nombre, boolean disponible, Duration retraso) {
+    }
+
+    //Una réplica empieza no disponible hasta que pasa la primera comprobación
+    private static final class Replica {
+
+        private final String nombre;
+        private final DataSource dataSource;
+        private volatile boolean disponible;
+        private volatile Duration retraso;
+
+        private Replica(String nombre, DataSource dataSource) {
+            this.nombre = nombre;
+            this.dataSource = dataSource;
+        }
+    }
+}
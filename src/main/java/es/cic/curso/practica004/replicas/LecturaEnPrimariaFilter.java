@@ -0,0 +1,106 @@
+package es.cic.curso.practica004.replicas;
+
+import java.io.IOException;
+import java.time.Duration;
+
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/*
+ * Consistencia "lee lo que escribes" con réplicas: cuando un cliente escribe,
+ * se le envía la cookie practica004-escritura con el momento de la escritura.
+ * Mientras no haya pasado el tiempo de adherencia, sus lecturas van a la
+ * primaria aunque sean de solo lectura, porque las réplicas podrían no tener
+ * todavía su cambio. En la propia petición que escribe también se lee ya
+ * de la primaria.
+ * La cookie no guarda nada en el servidor, así que funciona con varias instancias.
+ */
+public class LecturaEnPrimariaFilter extends OncePerRequestFilter {
+
+    public static final String COOKIE = "practica004-escritura";
+
+    private static final ThreadLocal<Peticion> ACTUAL = new ThreadLocal<>();
+
+    private final Duration adherencia;
+
+    public LecturaEnPrimariaFilter(Duration adherencia) {
+        this.adherencia = adherencia;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        ACTUAL.set(new Peticion(response, adherencia, escrituraReciente(request)));
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            ACTUAL.remove();
+        }
+    }
+
+    private boolean escrituraReciente(HttpServletRequest request) {
+        if (request.getCookies() == null) {
+            return false;
+        }
+        for (Cookie cookie : request.getCookies()) {
+            if (COOKIE.equals(cookie.getName())) {
+                try {
+                    return System.currentTimeMillis() - Long.parseLong(cookie.getValue()) < adherencia.toMillis();
+                } catch (NumberFormatException ex) {
+                    return false;
+                }
+            }
+        }
+        return false;
+    }
+
+    /*
+     * Indica si la petición en curso debe leer de la primaria. Además del
+     * enrutado lo consultan la caché por id y las lecturas compartidas, que
+     * pueden tener datos leídos de una réplica retrasada.
+     */
+    public static boolean debeLeerDePrimaria() {
+        Peticion peticion = ACTUAL.get();
+        return peticion != null && peticion.leerDePrimaria;
+    }
+
+    /*
+     * Anota que la petición en curso ha escrito: el resto de la petición lee
+     * de la primaria y la respuesta lleva la cookie. Fuera de una petición
+     * no hace nada.
+     */
+    public static void escrituraRealizada() {
+        Peticion peticion = ACTUAL.get();
+        if (peticion == null || peticion.cookieEnviada) {
+            return;
+        }
+        peticion.leerDePrimaria = true;
+        peticion.cookieEnviada = true;
+        if (!peticion.response.isCommitted()) {
+            Cookie cookie = new Cookie(COOKIE, Long.toString(System.currentTimeMillis()));
+            cookie.setPath("/");
+            cookie.setHttpOnly(true);
+            cookie.setMaxAge((int) Math.max(1, peticion.adherencia.toSeconds()));
+            peticion.response.addCookie(cookie);
+        }
+    }
+
+    private static final class Peticion {
+
+        private final HttpServletResponse response;
+        private final Duration adherencia;
+        private boolean leerDePrimaria;
+        private boolean cookieEnviada;
+
+        private Peticion(HttpServletResponse response, Duration adherencia, boolean leerDePrimaria) {
+            this.response = response;
+            this.adherencia = adherencia;
+            this.leerDePrimaria = leerDePrimaria;
+        }
+    }
+}
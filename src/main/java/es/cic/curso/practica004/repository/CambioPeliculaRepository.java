@@ -0,0 +1,25 @@
+package es.cic.curso.practica004.repository;
+
+import java.time.Instant;
+import java.util.List;
+
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+import es.cic.curso.practica004.model.CambioPelicula;
+
+public interface CambioPeliculaRepository extends JpaRepository<CambioPelicula, Long> {
+
+    //Cambios posteriores a una secuencia, en orden; se apoya en la clave primaria
+    List<CambioPelicula> findBySecuenciaGreaterThanOrderBySecuenciaAsc(long secuencia, Limit limit);
+
+    //Secuencia más antigua que sigue en el registro (null si está vacío)
+    @Query("select min(c.secuencia) from CambioPelicula c")
+    Long findPrimeraSecuencia();
+
+    @Modifying
+    @Query("delete from CambioPelicula c where c.momento < :limite")
+    int deleteAnteriores(Instant limite);
+}
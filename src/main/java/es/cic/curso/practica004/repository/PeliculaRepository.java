@@ -1,8 +1,24 @@
 package es.cic.curso.practica004.repository;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
+import es.cic.curso.practica004.model.HuellaCatalogo;
 import es.cic.curso.practica004.model.Pelicula;
+import es.cic.curso.practica004.model.ResumenPelicula;
+import es.cic.curso.practica004.model.VersionPelicula;
+import jakarta.persistence.QueryHint;
 
 /*El repositorio es la capa que interactúa directamente con la
  base de datos. Usaremos Spring Data JPA para esto. Extiende 
@@ -14,6 +30,93 @@ hereda el comportamiento de JpaRepository.*/
 
 
 /*El repositorio extiende JpaRepository, lo que le proporciona 
-métodos CRUD básicos automáticamente. */
-public interface PeliculaRepository extends JpaRepository <Pelicula, Long>{
+métodos CRUD básicos automáticamente. 
+También extiende JpaSpecificationExecutor para las búsquedas con
+filtros combinables (ver PeliculaSpecifications) y
+PeliculaRepositoryCustom para las actualizaciones parciales. */
+public interface PeliculaRepository extends JpaRepository <Pelicula, Long>, JpaSpecificationExecutor<Pelicula>,
+        PeliculaRepositoryCustom {
+
+    /*
+     * Paginación por cursor (keyset): devuelve las películas con id mayor
+     * que el último id visto, ordenadas por id. A diferencia de OFFSET, el
+     * coste no crece con el número de página porque se apoya en la clave
+     * primaria.
+     */
+    List<Pelicula> findByIdGreaterThanOrderByIdAsc(Long id, Limit limit);
+
+    /*
+     * Recorre todas las películas como un Stream respaldado por un cursor
+     * JDBC. El fetch size limita las filas que el driver trae en cada viaje.
+     * Debe consumirse dentro de una transacción y cerrarse al terminar.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("select p from Pelicula p order by p.id")
+    Stream<Pelicula> streamAll();
+
+    /*
+     * Devuelve cuáles de los ids indicados existen, en una sola consulta.
+     * Se usa en los borrados por lotes para informar de los no encontrados.
+     */
+    @Query("select p.id from Pelicula p where p.id in :ids")
+    List<Long> findExistingIds(@Param("ids") Collection<Long> ids);
+
+    /*
+     * Búsqueda de texto por subcadena con LIKE sobre título y director.
+     * Recorre la tabla completa; solo se usa mientras el índice de texto
+     * completo no está disponible.
+     */
+    @Query("""
+        select p from Pelicula p
+        where lower(p.titulo) like :patron escape '\\' or lower(p.director) like :patron escape '\\'
+        order by p.id""")
+    List<Pelicula> searchByTexto(@Param("patron") String patron, Limit limit);
+
+    /*
+     * Solo la versión y la fecha de modificación de una película, para
+     * responder a peticiones condicionales sin cargar la entidad.
+     */
+    @Query("""
+        select new es.cic.curso.practica004.model.VersionPelicula(p.version, p.ultimaModificacion)
+        from Pelicula p where p.id = :id""")
+    Optional<VersionPelicula> findVersionById(@Param("id") Long id);
+
+    //Agregados del catálogo completo con los que se calcula el ETag del listado
+    @Query("""
+        select new es.cic.curso.practica004.model.HuellaCatalogo(
+            count(p), coalesce(sum(p.id), 0L), coalesce(sum(p.version), 0L), max(p.ultimaModificacion))
+        from Pelicula p""")
+    HuellaCatalogo findHuella();
+
+    /*
+     * Busca una película por su clave natural, con el índice de la
+     * restricción única. Un director null se compara con "is null".
+     */
+    Optional<Pelicula> findByTituloAndDirectorAndAno(String titulo, String director, int ano);
+
+    //Menor y mayor id del catálogo, para repartir la reconstrucción de las estadísticas en tramos
+    @Query("select min(p.id) from Pelicula p")
+    Long findMinId();
+
+    @Query("select max(p.id) from Pelicula p")
+    Long findMaxId();
+
+    //Campos de las estadísticas de las películas de un tramo de ids
+    @Query("""
+        select new es.cic.curso.practica004.model.ResumenPelicula(p.id, p.genero, p.director, p.ano, p.disponible)
+        from Pelicula p where p.id between :desde and :hasta""")
+    List<ResumenPelicula> findResumenesEntre(@Param("desde") Long desde, @Param("hasta") Long hasta);
+
+    @Query("""
+        select new es.cic.curso.practica004.model.ResumenPelicula(p.id, p.genero, p.director, p.ano, p.disponible)
+        from Pelicula p where p.id in :ids""")
+    List<ResumenPelicula> findResumenesById(@Param("ids") Collection<Long> ids);
+
+    /*
+     * Borra una película con una única sentencia DELETE, sin leerla antes.
+     * Devuelve el número de filas borradas: 0 si no existía.
+     */
+    @Modifying(clearAutomatically = true)
+    @Query("delete from Pelicula p where p.id = :id")
+    int deleteDirectById(@Param("id") Long id);
 }
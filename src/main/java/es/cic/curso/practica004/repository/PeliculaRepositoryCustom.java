@@ -0,0 +1,20 @@
+package es.cic.curso.practica004.repository;
+
+import java.util.Map;
+
+/*
+ * Operaciones del repositorio que no se pueden expresar con métodos
+ * derivados ni con @Query. Las implementa PeliculaRepositoryImpl.
+ */
+public interface PeliculaRepositoryCustom {
+
+    /*
+     * Actualiza solo los campos indicados de una película con una única
+     * sentencia UPDATE, sin leerla antes. Incrementa la versión y la fecha
+     * de modificación, y recalcula tituloBusqueda si cambia el título.
+     * campos: nombre del atributo y su nuevo valor (puede ser null).
+     * versionEsperada: si no es null, solo se actualiza si la versión actual coincide.
+     * Devuelve el número de filas actualizadas (0 o 1).
+     */
+    int updateCampos(Long id, Map<String, Object> campos, Long versionEsperada);
+}
@@ -0,0 +1,53 @@
+package es.cic.curso.practica004.repository;
+
+import java.time.Instant;
+import java.util.Map;
+
+import es.cic.curso.practica004.model.Pelicula;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaUpdate;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+
+/*
+ * Implementación de PeliculaRepositoryCustom. Spring Data la encuentra por
+ * el sufijo Impl y la combina con PeliculaRepository.
+ */
+public class PeliculaRepositoryImpl implements PeliculaRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /*
+     * Construye el UPDATE con CriteriaUpdate para que el SET lleve solo las
+     * columnas recibidas. Es una actualización masiva: no pasa por el
+     * contexto de persistencia ni por @PreUpdate, por eso la versión, la
+     * fecha y tituloBusqueda se fijan aquí. Después se vacía el contexto de
+     * persistencia (como @Modifying(clearAutomatically = true)) para que una
+     * lectura posterior en la misma transacción no devuelva la entidad antigua.
+     */
+    @Override
+    public int updateCampos(Long id, Map<String, Object> campos, Long versionEsperada) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaUpdate<Pelicula> update = cb.createCriteriaUpdate(Pelicula.class);
+        Root<Pelicula> pelicula = update.from(Pelicula.class);
+        campos.forEach(update::set);
+        if (campos.containsKey("titulo")) {
+            update.set("tituloBusqueda", Pelicula.normalizarTitulo((String) campos.get("titulo")));
+        }
+        Path<Long> version = pelicula.get("version");
+        update.set(version, cb.sum(version, 1L));
+        update.set("ultimaModificacion", Instant.now());
+        Predicate condicion = cb.equal(pelicula.get("id"), id);
+        if (versionEsperada != null) {
+            condicion = cb.and(condicion, cb.equal(version, versionEsperada));
+        }
+        update.where(condicion);
+        int filas = entityManager.createQuery(update).executeUpdate();
+        entityManager.clear();
+        return filas;
+    }
+}
@@ -0,0 +1,53 @@
+package es.cic.curso.practica004.repository;
+
+import org.springframework.data.jpa.domain.Specification;
+
+import es.cic.curso.practica004.model.FiltroPeliculas;
+import es.cic.curso.practica004.model.Pelicula;
+
+/*
+ * Specifications de Spring Data JPA para buscar películas. Cada criterio
+ * del filtro que venga informado añade una condición; los que son null se
+ * ignoran. Las condiciones están pensadas para los índices declarados en
+ * la entidad Pelicula.
+ */
+public final class PeliculaSpecifications {
+
+    private PeliculaSpecifications() {
+    }
+
+    public static Specification<Pelicula> conFiltro(FiltroPeliculas filtro) {
+        return Specification.where(tituloEmpiezaPor(filtro.titulo()))
+            .and(igual("director", filtro.director()))
+            .and(igual("genero", filtro.genero()))
+            .and(igual("disponible", filtro.disponible()))
+            .and(anoDesde(filtro.anoDesde()))
+            .and(anoHasta(filtro.anoHasta()));
+    }
+
+    /*
+     * Prefijo del título sin distinguir mayúsculas, sobre la columna
+     * normalizada titulo_busqueda. Se escapan los comodines de LIKE que
+     * pueda traer el texto del cliente.
+     */
+    public static Specification<Pelicula> tituloEmpiezaPor(String prefijo) {
+        if (prefijo == null || prefijo.isBlank()) {
+            return null;
+        }
+        String patron = Pelicula.normalizarTitulo(prefijo)
+            .replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
+        return (root, query, cb) -> cb.like(root.get("tituloBusqueda"), patron, '\\');
+    }
+
+    public static Specification<Pelicula> anoDesde(Integer ano) {
+        return ano == null ? null : (root, query, cb) -> cb.greaterThanOrEqualTo(root.get("ano"), ano);
+    }
+
+    public static Specification<Pelicula> anoHasta(Integer ano) {
+        return ano == null ? null : (root, query, cb) -> cb.lessThanOrEqualTo(root.get("ano"), ano);
+    }
+
+    private static Specification<Pelicula> igual(String atributo, Object valor) {
+        return valor == null ? null : (root, query, cb) -> cb.equal(root.get(atributo), valor);
+    }
+}
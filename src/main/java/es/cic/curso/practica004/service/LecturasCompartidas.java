@@ -0,0 +1,101 @@
+package es.cic.curso.practica004.service;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import es.cic.curso.practica004.replicas.LecturaEnPrimariaFilter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/*
+ * Lecturas compartidas (single-flight): si varias peticiones hacen a la vez
+ * la misma lectura, solo la primera consulta la base de datos y las demás
+ * esperan y reciben su mismo resultado (o su misma excepción). No es una
+ * caché: en cuanto la consulta termina se olvida, y la siguiente lectura
+ * vuelve a la base de datos.
+ * Una lectura nunca se une a una consulta empezada antes de la última
+ * escritura confirmada: cada PeliculaCambiada cambia de generación, y la
+ * generación forma parte de la clave. Como el evento se procesa antes de
+ * responder a la escritura, un cliente siempre ve sus propias escrituras.
+ * Dentro de una transacción no se comparte nada, porque la transacción
+ * puede tener cambios sin confirmar que las demás no ven. Tampoco cuando la
+ * petición tiene que leer de la primaria (LecturaEnPrimariaFilter): la
+ * consulta en curso podría ir a una réplica retrasada.
+ * Los resultados son compartidos entre peticiones: no deben modificarse.
+ * Métricas: practica004.lecturas{operacion, resultado=consulta|compartida}
+ * (la diferencia entre ambas es el número de consultas ahorradas) y
+ * practica004.lecturas.en-curso.
+ */
+@Component
+public class LecturasCompartidas {
+
+    private final Map<Clave, CompletableFuture<Object>> enCurso = new ConcurrentHashMap<>();
+    private final AtomicLong generacion = new AtomicLong();
+    private final boolean habilitadas;
+    private final MeterRegistry meterRegistry;
+
+    public LecturasCompartidas(
+            @Value("${practica004.lecturas-compartidas.habilitadas:true}") boolean habilitadas,
+            MeterRegistry meterRegistry) {
+        this.habilitadas = habilitadas;
+        this.meterRegistry = meterRegistry;
+        Gauge.builder("practica004.lecturas.en-curso", enCurso, Map::size).register(meterRegistry);
+    }
+
+    /*
+     * Ejecuta la lectura o, si ya hay una igual en curso, espera su resultado.
+     * operacion y argumentos identifican la lectura; argumentos debe tener
+     * equals y hashCode (puede ser null).
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T compartir(String operacion, Object argumentos, Supplier<T> lectura) {
+        if (!habilitadas || TransactionSynchronizationManager.isActualTransactionActive()
+                || LecturaEnPrimariaFilter.debeLeerDePrimaria()) {
+            return lectura.get();
+        }
+        Clave clave = new Clave(operacion, argumentos, generacion.get());
+        CompletableFuture<Object> propia = new CompletableFuture<>();
+        CompletableFuture<Object> existente = enCurso.putIfAbsent(clave, propia);
+        if (existente != null) {
+            contar(operacion, "compartida");
+            try {
+                return (T) existente.join();
+            } catch (CompletionException ex) {
+                throw ex.getCause() instanceof RuntimeException causa ? causa : ex;
+            }
+        }
+        contar(operacion, "consulta");
+        try {
+            T resultado = lectura.get();
+            propia.complete(resultado);
+            return resultado;
+        } catch (RuntimeException | Error ex) {
+            propia.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            enCurso.remove(clave, propia);
+        }
+    }
+
+    //Las lecturas que empiecen a partir de ahora ya no se unen a las anteriores
+    @TransactionalEventListener(fallbackExecution = true)
+    public void alCambiar(PeliculaCambiada cambio) {
+        generacion.incrementAndGet();
+    }
+
+    private void contar(String operacion, String resultado) {
+        meterRegistry.counter("practica004.lecturas", "operacion", operacion, "resultado", resultado).increment();
+    }
+
+    private record Clave(String operacion, Object argumentos, long generacion) {
+    }
+}
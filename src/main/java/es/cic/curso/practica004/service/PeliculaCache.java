@@ -0,0 +1,146 @@
+package es.cic.curso.practica004.service;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+
+import es.cic.curso.practica004.model.Pelicula;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+/*
+ * Caché en memoria de películas por id, delante de PeliculaRepository.findById.
+ * Está acotada por número de entradas y caduca por tiempo. Las películas que
+ * no existen también se guardan (como Optional vacío) pero con un tiempo de
+ * vida más corto, para no consultar la base de datos una y otra vez por ids
+ * desconocidos.
+ * Los aciertos, fallos, cargas y expulsiones se publican en Micrometer con el
+ * nombre de caché "peliculas" (métricas cache.gets, cache.load,
+ * cache.evictions, cache.size...).
+ * Las películas devueltas son compartidas entre peticiones: no deben modificarse.
+ * Internamente es una AsyncCache: la carga desde la base de datos se hace en
+ * el hilo que la pide, fuera de cualquier bloqueo de la caché, y el resto de
+ * hilos que piden el mismo id esperan al CompletableFuture. Así ningún hilo
+ * virtual se queda fijado a su portador mientras espera a JDBC.
+ */
+@Component
+public class PeliculaCache {
+
+    public static final String NOMBRE = "peliculas";
+
+    private final AsyncCache<Long, Optional<Pelicula>> cache;
+
+    public PeliculaCache(
+            @Value("${practica004.cache.tamano-maximo:10000}") long tamanoMaximo,
+            @Value("${practica004.cache.ttl:10m}") Duration ttl,
+            @Value("${practica004.cache.ttl-no-encontradas:30s}") Duration ttlNoEncontradas,
+            MeterRegistry meterRegistry) {
+        this.cache = Caffeine.newBuilder()
+            .maximumSize(tamanoMaximo)
+            .expireAfter(new Caducidad(ttl, ttlNoEncontradas))
+            .recordStats()
+            .buildAsync();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, NOMBRE);
+        //CaffeineCacheMetrics solo publica las cargas de una LoadingCache
+        FunctionCounter.builder("cache.load", cache, c -> c.synchronous().stats().loadSuccessCount())
+            .tags("cache", NOMBRE, "result", "success")
+            .register(meterRegistry);
+        FunctionCounter.builder("cache.load", cache, c -> c.synchronous().stats().loadFailureCount())
+            .tags("cache", NOMBRE, "result", "failure")
+            .register(meterRegistry);
+    }
+
+    /*
+     * Devuelve la película guardada en caché o la carga con la función
+     * indicada. Si varias peticiones piden a la vez el mismo id que no está
+     * en caché, solo una ejecuta la carga y las demás esperan su resultado.
+     * Si la carga falla no se guarda nada y se relanza la excepción.
+     */
+    public Optional<Pelicula> get(Long id, Function<Long, Optional<Pelicula>> cargar) {
+        //La caché guarda el futuro y anota el acierto o la carga; quien lo ha creado lo completa
+        CompletableFuture<Optional<Pelicula>> nuevo = new CompletableFuture<>();
+        CompletableFuture<Optional<Pelicula>> existente = cache.get(id, (clave, executor) -> nuevo);
+        if (existente == nuevo) {
+            try {
+                nuevo.complete(cargar.apply(id));
+            } catch (RuntimeException ex) {
+                //Al completarse con error la caché descarta la entrada
+                nuevo.completeExceptionally(ex);
+                throw ex;
+            }
+        }
+        try {
+            return existente.join();
+        } catch (CompletionException ex) {
+            throw ex.getCause() instanceof RuntimeException causa ? causa : ex;
+        }
+    }
+
+    /*
+     * Devuelve la película si ya está en caché y existe, sin ir nunca a la
+     * base de datos. Devuelve Optional vacío en cualquier otro caso.
+     */
+    public Optional<Pelicula> getIfPresent(Long id) {
+        CompletableFuture<Optional<Pelicula>> existente = cache.getIfPresent(id);
+        if (existente == null || !existente.isDone() || existente.isCompletedExceptionally()) {
+            return Optional.empty();
+        }
+        return existente.join();
+    }
+
+    /*
+     * Elimina la entrada de un id. Si hay una transacción en curso se vuelve
+     * a eliminar al terminarla, para descartar lo que otra petición haya
+     * cargado de la base de datos antes de que la escritura fuese visible.
+     */
+    public void invalidate(Long id) {
+        cache.synchronous().invalidate(id);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    cache.synchronous().invalidate(id);
+                }
+            });
+        }
+    }
+
+    //Vacía la caché completa
+    public void invalidateAll() {
+        cache.synchronous().invalidateAll();
+    }
+
+    /*
+     * Tiempo de vida de cada entrada: distinto según la película exista o no.
+     * Una lectura no alarga la vida de la entrada.
+     */
+    private record Caducidad(Duration ttl, Duration ttlNoEncontradas) implements Expiry<Long, Optional<Pelicula>> {
+
+        @Override
+        public long expireAfterCreate(Long id, Optional<Pelicula> pelicula, long ahora) {
+            return (pelicula.isPresent() ? ttl : ttlNoEncontradas).toNanos();
+        }
+
+        @Override
+        public long expireAfterUpdate(Long id, Optional<Pelicula> pelicula, long ahora, long duracionActual) {
+            return expireAfterCreate(id, pelicula, ahora);
+        }
+
+        @Override
+        public long expireAfterRead(Long id, Optional<Pelicula> pelicula, long ahora, long duracionActual) {
+            return duracionActual;
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package es.cic.curso.practica004.service;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import es.cic.curso.practica004.model.Pelicula;
+
+/*
+ * Evento de aplicación que publican los servicios cada vez que se crea,
+ * actualiza o elimina una película. Lo consumen los componentes que
+ * mantienen vistas derivadas del catálogo (índices, estadísticas...).
+ * pelicula: el estado nuevo de la película; es null en las eliminaciones
+ * y en las actualizaciones parciales.
+ * cambios: en las actualizaciones parciales (PATCH), los campos modificados
+ * y su nuevo valor, que puede ser null; null en el resto de casos. El consumidor que necesite
+ * el estado completo de la película debe leerlo.
+ * Los consumidores no deben modificar la película recibida.
+ */
+public record PeliculaCambiada(Tipo tipo, Long id, Pelicula pelicula, Map<String, Object> cambios) {
+
+    public enum Tipo {
+        CREADA, ACTUALIZADA, ELIMINADA
+    }
+
+    public static PeliculaCambiada creada(Pelicula pelicula) {
+        return new PeliculaCambiada(Tipo.CREADA, pelicula.getId(), pelicula, null);
+    }
+
+    public static PeliculaCambiada actualizada(Pelicula pelicula) {
+        return new PeliculaCambiada(Tipo.ACTUALIZADA, pelicula.getId(), pelicula, null);
+    }
+
+    public static PeliculaCambiada actualizadaParcialmente(Long id, Map<String, Object> cambios) {
+        //Map.copyOf no admite valores null, y un PATCH puede vaciar un campo
+        return new PeliculaCambiada(Tipo.ACTUALIZADA, id, null, Collections.unmodifiableMap(new HashMap<>(cambios)));
+    }
+
+    public static PeliculaCambiada eliminada(Long id) {
+        return new PeliculaCambiada(Tipo.ELIMINADA, id, null, null);
+    }
+
+    //Indica si el cambio afecta a alguno de los campos dados
+    public boolean afectaA(String... campos) {
+        if (pelicula != null || tipo != Tipo.ACTUALIZADA) {
+            return true;
+        }
+        for (String campo : campos) {
+            if (cambios.containsKey(campo)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
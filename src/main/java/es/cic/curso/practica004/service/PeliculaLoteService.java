@@ -0,0 +1,208 @@
+package es.cic.curso.practica004.service;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import es.cic.curso.practica004.exception.PeliculaDuplicadaException;
+import es.cic.curso.practica004.model.Pelicula;
+import es.cic.curso.practica004.model.ResultadoLote;
+import es.cic.curso.practica004.model.ResultadoLote.Estado;
+import es.cic.curso.practica004.repository.PeliculaRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.PersistenceException;
+
+/*
+ * Servicio para crear, actualizar y eliminar muchas películas en una sola
+ * petición. Los elementos se procesan en tramos de tamaño fijo y cada tramo
+ * va en su propia transacción: así una carga de miles de películas no deja
+ * una transacción enorme abierta ni llena el contexto de persistencia.
+ * Dentro de cada tramo Hibernate agrupa las sentencias en lotes JDBC
+ * (hibernate.jdbc.batch_size) y los ids se reservan de la secuencia de 50 en 50.
+ * Cada elemento recibe su propio ResultadoLote, en el mismo orden de entrada.
+ * Los que repiten la clave natural de otra película quedan como DUPLICADA.
+ */
+@Service
+public class PeliculaLoteService {
+
+    @Autowired
+    private PeliculaRepository peliculaRepository;
+
+    @Autowired
+    private PeliculaCache peliculaCache;
+
+    @Autowired
+    private PeliculaService peliculaService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    //Número de elementos que se procesan en cada transacción
+    @Value("${practica004.lote.tamano-transaccion:500}")
+    private int tamanoTransaccion;
+
+    //Número máximo de elementos admitidos en una petición
+    @Value("${practica004.lote.maximo-elementos:10000}")
+    private int maximoElementos;
+
+    public int getMaximoElementos() {
+        return maximoElementos;
+    }
+
+    /*Crea todas las películas recibidas. El id que traigan se ignora.
+      Si un tramo falla, se repite elemento a elemento para saber qué
+      películas han fallado y guardar el resto.*/
+    public List<ResultadoLote> saveAll(List<Pelicula> peliculas) {
+        List<ResultadoLote> resultados = new ArrayList<>(peliculas.size());
+        for (int inicio = 0; inicio < peliculas.size(); inicio += tamanoTransaccion) {
+            List<Pelicula> tramo = peliculas.subList(inicio, Math.min(inicio + tamanoTransaccion, peliculas.size()));
+            try {
+                transactionTemplate.executeWithoutResult(estado -> insertar(tramo));
+                for (int i = 0; i < tramo.size(); i++) {
+                    resultados.add(ResultadoLote.ok(inicio + i, tramo.get(i).getId(), Estado.CREADA));
+                }
+            } catch (DataAccessException | PersistenceException ex) {
+                for (int i = 0; i < tramo.size(); i++) {
+                    Pelicula pelicula = tramo.get(i);
+                    try {
+                        transactionTemplate.executeWithoutResult(estado -> insertar(List.of(pelicula)));
+                        resultados.add(ResultadoLote.ok(inicio + i, pelicula.getId(), Estado.CREADA));
+                    } catch (DataAccessException | PersistenceException exElemento) {
+                        resultados.add(fallo(inicio + i, null, pelicula, exElemento, "No se pudo crear la pelicula"));
+                    }
+                }
+            }
+        }
+        return resultados;
+    }
+
+    /*Actualiza las películas recibidas, que deben traer id. Cada tramo
+      carga las películas existentes con una sola consulta y Hibernate
+      envía los UPDATE agrupados al hacer flush. Si un tramo falla, se
+      repite elemento a elemento, como en saveAll.*/
+    public List<ResultadoLote> updateAll(List<Pelicula> peliculas) {
+        List<ResultadoLote> resultados = new ArrayList<>(peliculas.size());
+        for (int inicio = 0; inicio < peliculas.size(); inicio += tamanoTransaccion) {
+            List<Pelicula> tramo = peliculas.subList(inicio, Math.min(inicio + tamanoTransaccion, peliculas.size()));
+            int desplazamiento = inicio;
+            try {
+                resultados.addAll(transactionTemplate.execute(estado -> actualizar(tramo, desplazamiento)));
+            } catch (DataAccessException | PersistenceException ex) {
+                for (int i = 0; i < tramo.size(); i++) {
+                    Pelicula pelicula = tramo.get(i);
+                    int posicion = inicio + i;
+                    try {
+                        resultados.addAll(transactionTemplate.execute(estado -> actualizar(List.of(pelicula), posicion)));
+                    } catch (DataAccessException | PersistenceException exElemento) {
+                        resultados.add(fallo(posicion, pelicula.getId(), pelicula, exElemento,
+                            "No se pudo actualizar la pelicula"));
+                    }
+                }
+            }
+        }
+        return resultados;
+    }
+
+    /*Elimina las películas con los ids recibidos. Cada tramo comprueba
+      qué ids existen con una consulta y los borra con un único DELETE.*/
+    public List<ResultadoLote> deleteAllById(List<Long> ids) {
+        List<ResultadoLote> resultados = new ArrayList<>(ids.size());
+        for (int inicio = 0; inicio < ids.size(); inicio += tamanoTransaccion) {
+            List<Long> tramo = ids.subList(inicio, Math.min(inicio + tamanoTransaccion, ids.size()));
+            Set<Long> existentes = transactionTemplate.execute(estado -> eliminar(tramo));
+            for (int i = 0; i < tramo.size(); i++) {
+                Long id = tramo.get(i);
+                resultados.add(existentes.contains(id)
+                    ? ResultadoLote.ok(inicio + i, id, Estado.ELIMINADA)
+                    : ResultadoLote.ok(inicio + i, id, Estado.NO_ENCONTRADA));
+            }
+        }
+        return resultados;
+    }
+
+    /*Resultado de un elemento que ha fallado al repetirlo solo. Si choca con
+      la clave natural de otra película es DUPLICADA, con el id de esa otra,
+      como el 409 de POST y PUT; así un cliente que reenvía un lote sabe qué
+      elementos ya estaban guardados.*/
+    private ResultadoLote fallo(int indice, Long id, Pelicula datos, RuntimeException ex, String error) {
+        if (peliculaService.duplicada(ex, datos.getTitulo(), datos.getDirector(), datos.getAno())
+                instanceof PeliculaDuplicadaException duplicada) {
+            return ResultadoLote.duplicada(indice, duplicada.getIdExistente(), duplicada.getMessage());
+        }
+        return ResultadoLote.error(indice, id, error);
+    }
+
+    private void insertar(List<Pelicula> tramo) {
+        /*persist y no saveAll: tras un tramo fallido las películas conservan
+          la versión asignada, y saveAll las trataría como existentes (merge)
+          sin asignarles id.*/
+        tramo.forEach(pelicula -> {
+            pelicula.setId(null);
+            entityManager.persist(pelicula);
+        });
+        entityManager.flush();
+        entityManager.clear();
+        tramo.forEach(pelicula -> {
+            peliculaCache.invalidate(pelicula.getId());
+            eventPublisher.publishEvent(PeliculaCambiada.creada(pelicula));
+        });
+    }
+
+    private List<ResultadoLote> actualizar(List<Pelicula> tramo, int desplazamiento) {
+        List<Long> ids = tramo.stream().map(Pelicula::getId).filter(id -> id != null).toList();
+        Map<Long, Pelicula> existentes = peliculaRepository.findAllById(ids).stream()
+            .collect(Collectors.toMap(Pelicula::getId, Function.identity()));
+        List<ResultadoLote> resultados = new ArrayList<>(tramo.size());
+        for (int i = 0; i < tramo.size(); i++) {
+            Pelicula datos = tramo.get(i);
+            Pelicula pelicula = datos.getId() == null ? null : existentes.get(datos.getId());
+            if (datos.getId() == null) {
+                resultados.add(ResultadoLote.error(desplazamiento + i, null, "Falta el id de la pelicula"));
+            } else if (pelicula == null) {
+                resultados.add(ResultadoLote.ok(desplazamiento + i, datos.getId(), Estado.NO_ENCONTRADA));
+            } else {
+                pelicula.setTitulo(datos.getTitulo());
+                pelicula.setDirector(datos.getDirector());
+                pelicula.setAno(datos.getAno());
+                pelicula.setGenero(datos.getGenero());
+                pelicula.setDisponible(datos.isDisponible());
+                peliculaCache.invalidate(pelicula.getId());
+                eventPublisher.publishEvent(PeliculaCambiada.actualizada(pelicula));
+                resultados.add(ResultadoLote.ok(desplazamiento + i, pelicula.getId(), Estado.ACTUALIZADA));
+            }
+        }
+        entityManager.flush();
+        entityManager.clear();
+        return resultados;
+    }
+
+    private Set<Long> eliminar(List<Long> tramo) {
+        Set<Long> existentes = new HashSet<>(peliculaRepository.findExistingIds(tramo));
+        if (!existentes.isEmpty()) {
+            peliculaRepository.deleteAllByIdInBatch(existentes);
+            existentes.forEach(id -> {
+                peliculaCache.invalidate(id);
+                eventPublisher.publishEvent(PeliculaCambiada.eliminada(id));
+            });
+        }
+        return existentes;
+    }
+}
@@ -1,14 +1,46 @@
 package es.cic.curso.practica004.service;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.HashMap;
 import java.util.List;
-
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import es.cic.curso.practica004.busqueda.IndiceTextoCompleto;
+import es.cic.curso.practica004.exception.PeliculaDuplicadaException;
+import es.cic.curso.practica004.exception.PeliculaModificadaException;
+import es.cic.curso.practica004.lectura.CatalogoColumnar;
 import es.cic.curso.practica004.exception.PeliculaNotFoundException;
+import es.cic.curso.practica004.model.FiltroPeliculas;
+import es.cic.curso.practica004.model.HuellaCatalogo;
+import es.cic.curso.practica004.model.PaginaPeliculas;
 import es.cic.curso.practica004.model.Pelicula;
+import es.cic.curso.practica004.model.ResultadoBusqueda;
+import es.cic.curso.practica004.model.VersionPelicula;
+import es.cic.curso.practica004.replicas.LecturaEnPrimariaFilter;
 import es.cic.curso.practica004.repository.PeliculaRepository;
+import es.cic.curso.practica004.repository.PeliculaSpecifications;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
 
 /* Marca la clase como un servicio de Spring, lo que permite 
 que Spring la gestione e inyecte en otras partes de la 
@@ -16,16 +48,96 @@ aplicación. */
 @Service
 public class PeliculaService {
 
+    //Tamaño de página por defecto y máximo para la paginación por cursor
+    public static final int TAMANO_PAGINA_POR_DEFECTO = 100;
+    public static final int TAMANO_PAGINA_MAXIMO = 1000;
+
+    //Restricción única de la clave natural de Pelicula
+    public static final String CLAVE_NATURAL = "uk_pelicula_titulo_director_ano";
+
+    //Campos por los que se puede ordenar una búsqueda
+    private static final Set<String> ORDENES_PERMITIDOS = Set.of("id", "titulo", "director", "ano", "genero");
+
+    //Campos que admite la actualización parcial y su tipo en el JSON
+    private static final Map<String, Class<?>> CAMPOS_MODIFICABLES = Map.of(
+        "titulo", String.class, "director", String.class, "ano", Integer.class,
+        "genero", String.class, "disponible", Boolean.class);
+
     /*Inyección de Dependencias (@Autowired): Inyecta una 
     instancia del repositorio PeliculaRepository. */
     @Autowired
     private PeliculaRepository peliculaRepository;
 
+    /*El EntityManager se usa en el recorrido en streaming para
+    desvincular cada película en cuanto se ha procesado. */
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /*Caché de películas por id. Las escrituras invalidan la entrada
+    afectada para que la siguiente lectura vaya a la base de datos. */
+    @Autowired
+    private PeliculaCache peliculaCache;
+
+    /*Publica un PeliculaCambiada por cada escritura para que los
+    componentes con vistas derivadas del catálogo se actualicen. */
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private IndiceTextoCompleto indiceTextoCompleto;
+
+    /*Modelo de lectura en columnas fuera del heap. Cuando está habilitado
+    y construido, las lecturas por id y las búsquedas se sirven de él. */
+    @Autowired
+    private CatalogoColumnar catalogoColumnar;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    /*Las lecturas iguales y simultáneas comparten una sola consulta a la
+    base de datos. Va por debajo de la caché: solo se usa al cargar. */
+    @Autowired
+    private LecturasCompartidas lecturasCompartidas;
+
     //Métodos CRUD
 
-    //Método para obtener todas las películas 
+    /*Método para obtener todas las películas. Las peticiones simultáneas
+      comparten una sola consulta (ver LecturasCompartidas), así que la
+      lista devuelta no se puede modificar.*/
     public List <Pelicula> findAll() {
-        return peliculaRepository.findAll();
+        return lecturasCompartidas.compartir("findAll", null, () -> List.copyOf(peliculaRepository.findAll()));
+    }
+
+    /*Método para recorrer todas las películas sin cargarlas a la vez
+      en memoria. Cada película se entrega al consumidor según se lee
+      del cursor JDBC y después se desvincula del contexto de
+      persistencia, de modo que la memoria usada no depende del tamaño
+      del catálogo. La conexión queda ocupada mientras dura el recorrido.*/
+    @Transactional(readOnly = true)
+    public void forEach(Consumer<Pelicula> consumidor) {
+        try (Stream<Pelicula> peliculas = peliculaRepository.streamAll()) {
+            peliculas.forEach(pelicula -> {
+                consumidor.accept(pelicula);
+                entityManager.detach(pelicula);
+            });
+        }
+    }
+
+    /*Método para obtener una página de películas por cursor.
+      El cursor es opaco para el cliente: codifica el último id
+      devuelto. Se pide una fila de más para saber si hay página
+      siguiente sin lanzar otra consulta.
+      Lanza IllegalArgumentException si el cursor no es válido.*/
+    @Transactional(readOnly = true)
+    public PaginaPeliculas findPage(String cursor, int size) {
+        int limite = Math.min(Math.max(size, 1), TAMANO_PAGINA_MAXIMO);
+        long desde = (cursor == null || cursor.isBlank()) ? Long.MIN_VALUE : decodificarCursor(cursor);
+        List<Pelicula> peliculas = peliculaRepository.findByIdGreaterThanOrderByIdAsc(desde, Limit.of(limite + 1));
+        if (peliculas.size() <= limite) {
+            return new PaginaPeliculas(peliculas, null);
+        }
+        List<Pelicula> contenido = peliculas.subList(0, limite);
+        return new PaginaPeliculas(List.copyOf(contenido), codificarCursor(contenido.get(limite - 1).getId()));
     }
 
      /*Método para obtener una película por su id, utilizamos 
@@ -34,28 +146,240 @@ public class PeliculaService {
      * después de crear la clase exception
      * peliculaRepository.findById(id): Esto devuelve un Optional<Pelicula>,
      * Generamos las excepciones, por eso ahora hemos quitado el Optional
+     * La consulta pasa por la caché: los ids inexistentes también se
+     * guardan durante un tiempo corto.
+     * Con el catálogo columnar listo no se consulta ni la caché ni la base de datos.
+     * Si la petición tiene que leer de la primaria (acaba de escribir, ver
+     * LecturaEnPrimariaFilter) tampoco se usa la caché: otra petición puede
+     * haberla llenado desde una réplica que aún no tenía la escritura.
      */
     public Pelicula findById(Long id) {
-        return peliculaRepository.findById(id)
-        .orElseThrow (() -> new PeliculaNotFoundException("Pelicula no encontrada con id" + id));
+        if (catalogoColumnar.isListo()) {
+            return catalogoColumnar.findById(id).orElseThrow(() -> noEncontrada(id, "findById"));
+        }
+        if (LecturaEnPrimariaFilter.debeLeerDePrimaria()) {
+            return peliculaRepository.findById(id).orElseThrow(() -> noEncontrada(id, "findById"));
+        }
+        return peliculaCache.get(id, clave -> lecturasCompartidas.compartir("findById", clave,
+            () -> peliculaRepository.findById(clave)))
+        .orElseThrow (() -> noEncontrada(id, "findById"));
     }
     
 
-    //Método para guardar una nueva o actualizar una película
+    /*Método para guardar una nueva o actualizar una película.
+      Si ya existe otra con el mismo título, director y año lanza
+      PeliculaDuplicadaException con el id de esa otra.
+      Es transaccional para que los consumidores de PeliculaCambiada que
+      escriben antes de confirmar (el registro de cambios) lo hagan en la
+      misma transacción; el INSERT se envía dentro del try para detectar
+      aquí la clave natural duplicada y no al confirmar.*/
+    @Transactional
     public Pelicula save (Pelicula pelicula) {
-        return peliculaRepository.save(pelicula);
+        Long idAnterior = pelicula.getId();
+        Pelicula guardada;
+        try {
+            guardada = peliculaRepository.saveAndFlush(pelicula);
+        } catch (DataIntegrityViolationException ex) {
+            //El INSERT fallido sigue pendiente en el contexto: se descarta antes de buscar la otra película
+            entityManager.clear();
+            throw duplicada(ex, pelicula.getTitulo(), pelicula.getDirector(), pelicula.getAno());
+        }
+        peliculaCache.invalidate(guardada.getId());
+        eventPublisher.publishEvent(guardada.getId().equals(idAnterior)
+            ? PeliculaCambiada.actualizada(guardada)
+            : PeliculaCambiada.creada(guardada));
+        return guardada;
+    }
+
+    /*Método para obtener solo la versión y la fecha de modificación de
+      una película. Si la película está en caché no consulta la base de
+      datos; si no, lee únicamente esas dos columnas. Como en findById, la
+      caché no se usa si la petición tiene que leer de la primaria.*/
+    public VersionPelicula findVersion(Long id) {
+        if (catalogoColumnar.isListo()) {
+            return catalogoColumnar.findVersion(id).orElseThrow(() -> noEncontrada(id, "findVersion"));
+        }
+        Optional<Pelicula> enCache = LecturaEnPrimariaFilter.debeLeerDePrimaria()
+            ? Optional.empty()
+            : peliculaCache.getIfPresent(id);
+        return enCache.map(VersionPelicula::de)
+        .or(() -> peliculaRepository.findVersionById(id))
+        .orElseThrow (() -> noEncontrada(id, "findVersion"));
+    }
+
+    /*Método para obtener la huella del catálogo completo (ETag del listado).
+      Se consulta en cada listado, así que las peticiones simultáneas
+      comparten una sola consulta. No abre transacción propia: la consulta
+      del repositorio ya es de solo lectura.*/
+    public HuellaCatalogo findHuella() {
+        return lecturasCompartidas.compartir("findHuella", null, peliculaRepository::findHuella);
+    }
+
+    /*Método para actualizar una película existente con los datos recibidos.
+      Se hace con un único UPDATE, sin leer antes la película: si no
+      actualiza ninguna fila es que no existe.
+      versionEsperada: si no es null, la versión que el cliente leyó (If-Match).
+      Forma parte de la condición del UPDATE, así que la comprobación y la
+      escritura son atómicas; si no coincide se lanza PeliculaModificadaException.
+      Devuelve la película con los datos recibidos; no incluye la versión nueva.
+      Si los datos coinciden con la clave natural de otra película lanza
+      PeliculaDuplicadaException.*/
+    @Transactional
+    public Pelicula update(Long id, Pelicula datos, Long versionEsperada) {
+        Map<String, Object> campos = new HashMap<>();
+        campos.put("titulo", datos.getTitulo());
+        campos.put("director", datos.getDirector());
+        campos.put("ano", datos.getAno());
+        campos.put("genero", datos.getGenero());
+        campos.put("disponible", datos.isDisponible());
+        try {
+            actualizarCampos(id, campos, versionEsperada);
+        } catch (DataIntegrityViolationException ex) {
+            throw duplicada(ex, datos.getTitulo(), datos.getDirector(), datos.getAno());
+        }
+        Pelicula actualizada = new Pelicula(id, datos.getTitulo(), datos.getDirector(), datos.getAno(),
+            datos.getGenero(), datos.isDisponible());
+        eventPublisher.publishEvent(PeliculaCambiada.actualizada(actualizada));
+        return actualizada;
+    }
+
+    /*Método para la actualización parcial (PATCH): solo se escriben las
+      columnas de los campos recibidos, con un único UPDATE.
+      Solo se admiten los campos de CAMPOS_MODIFICABLES con su tipo; si no,
+      lanza IllegalArgumentException. versionEsperada y la clave natural
+      igual que en update.*/
+    @Transactional
+    public void patch(Long id, Map<String, Object> cambios, Long versionEsperada) {
+        validarCambios(cambios);
+        try {
+            actualizarCampos(id, cambios, versionEsperada);
+        } catch (DataIntegrityViolationException ex) {
+            Pelicula actual = peliculaRepository.findById(id).orElseThrow(() -> ex);
+            throw duplicada(ex,
+                (String) cambios.getOrDefault("titulo", actual.getTitulo()),
+                (String) cambios.getOrDefault("director", actual.getDirector()),
+                (Integer) cambios.getOrDefault("ano", actual.getAno()));
+        }
+        eventPublisher.publishEvent(PeliculaCambiada.actualizadaParcialmente(id, cambios));
+    }
+
+    private void actualizarCampos(Long id, Map<String, Object> campos, Long versionEsperada) {
+        if (peliculaRepository.updateCampos(id, campos, versionEsperada) == 0) {
+            //Solo cuando falla se consulta si existe, para distinguir 404 de 412
+            if (versionEsperada != null && peliculaRepository.existsById(id)) {
+                throw new PeliculaModificadaException("La pelicula " + id + " ha cambiado");
+            }
+            throw noEncontrada(id, "update");
+        }
+        peliculaCache.invalidate(id);
+    }
+
+    private static void validarCambios(Map<String, Object> cambios) {
+        if (cambios == null || cambios.isEmpty()) {
+            throw new IllegalArgumentException("No hay campos que modificar");
+        }
+        cambios.forEach((campo, valor) -> {
+            Class<?> tipo = CAMPOS_MODIFICABLES.get(campo);
+            if (tipo == null) {
+                throw new IllegalArgumentException("No se puede modificar el campo " + campo);
+            }
+            boolean admiteNull = tipo == String.class;
+            if (valor == null ? !admiteNull : !tipo.isInstance(valor)) {
+                throw new IllegalArgumentException("Valor no valido para " + campo + ": " + valor);
+            }
+        });
     }
 
     /*Método para eliminar una película por su id
       Utilizamos void para métodos que realizan una acción 
       pero no necesitan devolver un valor. Ideal para 
       operaciones de eliminación que no requieren un resultado
-      Después de crear la clase de excepciones las metemos en el método*/
+      Después de crear la clase de excepciones las metemos en el método
+      El borrado es un único DELETE: si no borra ninguna fila es que
+      la película no existía.*/
+    @Transactional
     public void deleteById(Long id) {
-        if (!peliculaRepository.existsById(id)) {
-            throw new PeliculaNotFoundException("Pelicula no encontrada con id" + id);
+        if (peliculaRepository.deleteDirectById(id) == 0) {
+            throw noEncontrada(id, "deleteById");
+        }
+        peliculaCache.invalidate(id);
+        eventPublisher.publishEvent(PeliculaCambiada.eliminada(id));
+    }
+
+    /*Método para buscar películas con filtros, paginación y orden.
+      Solo se admite ordenar por los campos de ORDENES_PERMITIDOS; si se
+      pide otro lanza IllegalArgumentException.
+      Con el catálogo columnar listo se resuelve en él si el orden lo permite.*/
+    @Transactional(readOnly = true)
+    public ResultadoBusqueda search(FiltroPeliculas filtro, Pageable pageable) {
+        pageable.getSort().forEach(orden -> {
+            if (!ORDENES_PERMITIDOS.contains(orden.getProperty())) {
+                throw new IllegalArgumentException("No se puede ordenar por " + orden.getProperty());
+            }
+        });
+        if (catalogoColumnar.isListo()) {
+            Optional<ResultadoBusqueda> resultado = catalogoColumnar.buscar(filtro, pageable);
+            if (resultado.isPresent()) {
+                return resultado.get();
+            }
+        }
+        Page<Pelicula> pagina = peliculaRepository.findAll(PeliculaSpecifications.conFiltro(filtro), pageable);
+        return new ResultadoBusqueda(pagina.getContent(), pagina.getNumber(), pagina.getSize(),
+            pagina.getTotalElements(), pagina.getTotalPages());
+    }
+
+    /*Método para la búsqueda de texto completo en título y director.
+      Devuelve las películas ordenadas por relevancia usando el índice
+      invertido en memoria. Mientras el índice se está construyendo
+      recurre a una consulta LIKE, más lenta y sin orden por relevancia.*/
+    @Transactional(readOnly = true)
+    public List<Pelicula> searchText(String consulta, int limite) {
+        if (!indiceTextoCompleto.isListo()) {
+            String patron = "%" + consulta.toLowerCase(Locale.ROOT)
+                .replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
+            return peliculaRepository.searchByTexto(patron, Limit.of(limite));
+        }
+        List<Long> ids = indiceTextoCompleto.buscar(consulta, limite).stream()
+            .map(IndiceTextoCompleto.Coincidencia::id).toList();
+        Map<Long, Pelicula> peliculas = peliculaRepository.findAllById(ids).stream()
+            .collect(Collectors.toMap(Pelicula::getId, Function.identity()));
+        return ids.stream().map(peliculas::get).filter(Objects::nonNull).toList();
+    }
+
+    /*Traduce la violación de la clave natural (título, director, año) a
+      PeliculaDuplicadaException, con el id de la película que ya la tiene.
+      Cualquier otra excepción se devuelve tal cual. También la usa
+      PeliculaLoteService, donde el error llega sin traducir desde Hibernate.*/
+    RuntimeException duplicada(RuntimeException ex, String titulo, String director, int ano) {
+        String mensaje = NestedExceptionUtils.getMostSpecificCause(ex).getMessage();
+        if (mensaje == null || !mensaje.toLowerCase(Locale.ROOT).contains(CLAVE_NATURAL)) {
+            return ex;
+        }
+        Long idExistente = peliculaRepository.findByTituloAndDirectorAndAno(titulo, director, ano)
+            .map(Pelicula::getId).orElse(null);
+        return new PeliculaDuplicadaException("Ya existe la pelicula " + titulo + " (" + director + ", " + ano + ")",
+            idExistente, ex);
+    }
+
+    /*Crea la excepción de película no encontrada y la cuenta en la métrica
+      peliculas.no.encontradas, etiquetada con la operación.*/
+    private PeliculaNotFoundException noEncontrada(Long id, String operacion) {
+        meterRegistry.counter("peliculas.no.encontradas", "operacion", operacion).increment();
+        return new PeliculaNotFoundException("Pelicula no encontrada con id" + id);
+    }
+
+    //Codificación del cursor: el id en Base64 apto para URL
+    private static String codificarCursor(Long id) {
+        return Base64.getUrlEncoder().withoutPadding()
+            .encodeToString(Long.toString(id).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static long decodificarCursor(String cursor) {
+        try {
+            return Long.parseLong(new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8));
+        } catch (IllegalArgumentException ex) {
+            throw new IllegalArgumentException("Cursor no valido: " + cursor, ex);
         }
-        peliculaRepository.deleteById(id);
     }
 
 }
@@ -0,0 +1,158 @@
+package es.cic.curso.practica004.transferencia;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import es.cic.curso.practica004.model.Pelicula;
+
+/*
+ * Lectura y escritura de películas en CSV (RFC 4180), una por línea.
+ * Los campos con comas, comillas o saltos de línea van entre comillas
+ * dobles y las comillas se duplican. Un campo vacío sin comillas es null
+ * y "" es la cadena vacía, así que null y "" se conservan al volver a leer.
+ * Al importar, un salto de línea dentro de un campo entre comillas parte el
+ * registro en dos (el fichero se lee por líneas en paralelo) y ambas
+ * mitades se rechazan; las exportaciones lo sustituyen por un espacio.
+ */
+final class Csv {
+
+    static final String CABECERA = "id,titulo,director,ano,genero,disponible";
+
+    private static final String[] COLUMNAS = {"titulo", "director", "ano", "genero", "disponible"};
+    private static final int TITULO = 0;
+    private static final int DIRECTOR = 1;
+    private static final int ANO = 2;
+    private static final int GENERO = 3;
+    private static final int DISPONIBLE = 4;
+
+    private Csv() {
+    }
+
+    //Añade la película a la línea, sin el salto de línea final
+    static void escribir(Pelicula pelicula, StringBuilder linea) {
+        linea.append(pelicula.getId() != null ? pelicula.getId().toString() : "").append(',');
+        escribirCampo(pelicula.getTitulo(), linea);
+        linea.append(',');
+        escribirCampo(pelicula.getDirector(), linea);
+        linea.append(',').append(pelicula.getAno()).append(',');
+        escribirCampo(pelicula.getGenero(), linea);
+        linea.append(',').append(pelicula.isDisponible());
+    }
+
+    private static void escribirCampo(String valor, StringBuilder linea) {
+        if (valor == null) {
+            return;
+        }
+        if (valor.isEmpty() || valor.indexOf(',') >= 0 || valor.indexOf('"') >= 0
+                || valor.indexOf('\n') >= 0 || valor.indexOf('\r') >= 0) {
+            linea.append('"');
+            for (int i = 0; i < valor.length(); i++) {
+                char c = valor.charAt(i);
+                if (c == '"') {
+                    linea.append("\"\"");
+                } else if (c == '\n' || c == '\r') {
+                    linea.append(' ');
+                } else {
+                    linea.append(c);
+                }
+            }
+            linea.append('"');
+        } else {
+            linea.append(valor);
+        }
+    }
+
+    /*
+     * Posición de cada columna de la película en la cabecera, para admitir
+     * ficheros con las columnas en otro orden. La columna id es opcional
+     * (se ignora al importar). Lanza IllegalArgumentException si falta alguna.
+     */
+    static int[] columnas(String cabecera) {
+        List<String> nombres = campos(cabecera);
+        int[] posiciones = new int[COLUMNAS.length];
+        for (int i = 0; i < COLUMNAS.length; i++) {
+            posiciones[i] = -1;
+            for (int j = 0; j < nombres.size(); j++) {
+                if (nombres.get(j) != null && COLUMNAS[i].equals(nombres.get(j).trim().toLowerCase(Locale.ROOT))) {
+                    posiciones[i] = j;
+                }
+            }
+            if (posiciones[i] < 0) {
+                throw new IllegalArgumentException("Falta la columna " + COLUMNAS[i] + " en la cabecera CSV");
+            }
+        }
+        return posiciones;
+    }
+
+    /*
+     * Película de una línea de datos, sin id.
+     * Lanza IllegalArgumentException si la línea no es válida.
+     */
+    static Pelicula leer(String linea, int[] columnas) {
+        List<String> campos = campos(linea);
+        String ano = campo(campos, columnas[ANO]);
+        String disponible = campo(campos, columnas[DISPONIBLE]);
+        if (ano == null || disponible == null) {
+            throw new IllegalArgumentException("Faltan el año o la disponibilidad");
+        }
+        boolean estaDisponible;
+        if ("true".equalsIgnoreCase(disponible)) {
+            estaDisponible = true;
+        } else if ("false".equalsIgnoreCase(disponible)) {
+            estaDisponible = false;
+        } else {
+            throw new IllegalArgumentException("Disponibilidad no valida: " + disponible);
+        }
+        return new Pelicula(null, campo(campos, columnas[TITULO]), campo(campos, columnas[DIRECTOR]),
+            Integer.parseInt(ano.trim()), campo(campos, columnas[GENERO]), estaDisponible);
+    }
+
+    private static String campo(List<String> campos, int posicion) {
+        if (posicion >= campos.size()) {
+            throw new IllegalArgumentException("La linea tiene " + campos.size() + " campos");
+        }
+        return campos.get(posicion);
+    }
+
+    //Separa los campos de una línea; los vacíos sin comillas son null
+    private static List<String> campos(String linea) {
+        List<String> campos = new ArrayList<>(6);
+        StringBuilder campo = new StringBuilder();
+        int i = 0;
+        while (true) {
+            campo.setLength(0);
+            boolean entreComillas = i < linea.length() && linea.charAt(i) == '"';
+            if (entreComillas) {
+                i++;
+                while (true) {
+                    if (i >= linea.length()) {
+                        throw new IllegalArgumentException("Comillas sin cerrar");
+                    }
+                    char c = linea.charAt(i++);
+                    if (c != '"') {
+                        campo.append(c);
+                    } else if (i < linea.length() && linea.charAt(i) == '"') {
+                        campo.append('"');
+                        i++;
+                    } else {
+                        break;
+                    }
+                }
+                if (i < linea.length() && linea.charAt(i) != ',') {
+                    throw new IllegalArgumentException("Texto despues de las comillas");
+                }
+                campos.add(campo.toString());
+            } else {
+                int fin = linea.indexOf(',', i);
+                String valor = linea.substring(i, fin < 0 ? linea.length() : fin);
+                campos.add(valor.isEmpty() ? null : valor);
+                i = fin < 0 ? linea.length() : fin;
+            }
+            if (i >= linea.length()) {
+                return campos;
+            }
+            i++;
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package es.cic.curso.practica004.transferencia;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import es.cic.curso.practica004.model.Pelicula;
+import es.cic.curso.practica004.service.PeliculaService;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/*
+ * Exportación del catálogo completo a CSV o NDJSON.
+ * Las películas se leen con el cursor JDBC de PeliculaService.forEach y se
+ * escriben según llegan, así que la memoria usada no depende del tamaño del
+ * catálogo. Las películas salen ordenadas por id.
+ */
+@Service
+public class ExportadorCatalogo {
+
+    private static final int TAMANO_BUFFER = 64 * 1024;
+
+    @Autowired
+    private PeliculaService peliculaService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${practica004.transferencia.informe:5s}")
+    private Duration intervaloInforme;
+
+    /*
+     * Escribe el catálogo en la salida, que no se cierra.
+     * Devuelve el número de películas exportadas.
+     */
+    public long exportar(FormatoFichero formato, OutputStream salida) throws IOException {
+        Progreso progreso = new Progreso("exportacion", 0, intervaloInforme, meterRegistry);
+        try {
+            if (formato == FormatoFichero.CSV) {
+                exportarCsv(salida, progreso);
+            } else {
+                exportarNdjson(salida, progreso);
+            }
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+        progreso.terminar();
+        return progreso.getFilas();
+    }
+
+    /*
+     * Escribe el catálogo en un fichero. Se escribe primero en un fichero
+     * temporal junto al destino y se renombra al terminar, para no dejar
+     * nunca una exportación a medias con el nombre final.
+     */
+    public long exportar(FormatoFichero formato, Path fichero) throws IOException {
+        Path directorio = fichero.toAbsolutePath().getParent();
+        Files.createDirectories(directorio);
+        Path temporal = Files.createTempFile(directorio, fichero.getFileName().toString(), ".tmp");
+        try {
+            long filas;
+            try (OutputStream salida = Files.newOutputStream(temporal)) {
+                filas = exportar(formato, salida);
+            }
+            Files.move(temporal, fichero, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return filas;
+        } finally {
+            Files.deleteIfExists(temporal);
+        }
+    }
+
+    private void exportarCsv(OutputStream salida, Progreso progreso) throws IOException {
+        Writer escritor = new BufferedWriter(new OutputStreamWriter(salida, StandardCharsets.UTF_8), TAMANO_BUFFER);
+        escritor.write(Csv.CABECERA);
+        escritor.write('\n');
+        StringBuilder linea = new StringBuilder(128);
+        peliculaService.forEach(pelicula -> {
+            linea.setLength(0);
+            Csv.escribir(pelicula, linea);
+            linea.append('\n');
+            try {
+                escritor.append(linea);
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+            progreso.sumar(1, linea.length());
+        });
+        escritor.flush();
+    }
+
+    private void exportarNdjson(OutputStream salida, Progreso progreso) throws IOException {
+        ObjectWriter writer = objectMapper.writerFor(Pelicula.class)
+            .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        try (JsonGenerator generador = objectMapper.getFactory().createGenerator(salida)) {
+            generador.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generador.setRootValueSeparator(null);
+            peliculaService.forEach(pelicula -> {
+                try {
+                    writer.writeValue(generador, pelicula);
+                    generador.writeRaw('\n');
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+                progreso.sumar(1, 0);
+            });
+        }
+    }
+}
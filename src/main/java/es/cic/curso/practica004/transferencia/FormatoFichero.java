@@ -0,0 +1,61 @@
+package es.cic.curso.practica004.transferencia;
+
+import java.nio.file.Path;
+import java.util.Locale;
+
+import org.springframework.http.MediaType;
+
+/*
+ * Formatos de fichero para importar y exportar el catálogo: CSV con cabecera
+ * o NDJSON (una película JSON por línea).
+ */
+public enum FormatoFichero {
+
+    CSV("text/csv", ".csv"),
+    NDJSON(MediaType.APPLICATION_NDJSON_VALUE, ".ndjson");
+
+    private final String tipoContenido;
+    private final String extension;
+
+    FormatoFichero(String tipoContenido, String extension) {
+        this.tipoContenido = tipoContenido;
+        this.extension = extension;
+    }
+
+    public String getTipoContenido() {
+        return tipoContenido;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    /*
+     * Formato por su nombre (csv, ndjson) o su tipo de contenido.
+     * Lanza IllegalArgumentException si no es ninguno de los dos.
+     */
+    public static FormatoFichero de(String valor) {
+        String normalizado = valor.trim().toLowerCase(Locale.ROOT);
+        for (FormatoFichero formato : values()) {
+            if (normalizado.equals(formato.name().toLowerCase(Locale.ROOT))
+                    || normalizado.startsWith(formato.tipoContenido)) {
+                return formato;
+            }
+        }
+        throw new IllegalArgumentException("Formato de fichero no soportado: " + valor);
+    }
+
+    //Formato según la extensión del fichero (.csv, .ndjson o .jsonl)
+    public static FormatoFichero deFichero(Path fichero) {
+        String nombre = fichero.getFileName().toString().toLowerCase(Locale.ROOT);
+        if (nombre.endsWith(".jsonl")) {
+            return NDJSON;
+        }
+        for (FormatoFichero formato : values()) {
+            if (nombre.endsWith(formato.extension)) {
+                return formato;
+            }
+        }
+        throw new IllegalArgumentException("No se reconoce el formato del fichero " + fichero);
+    }
+}
@@ -0,0 +1,275 @@
+package es.cic.curso.practica004.transferencia;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import com.fasterxml.jackson.core.JacksonException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+import es.cic.curso.practica004.model.Pelicula;
+import es.cic.curso.practica004.model.ResultadoImportacion;
+import es.cic.curso.practica004.model.ResultadoLote;
+import es.cic.curso.practica004.service.PeliculaLoteService;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/*
+ * Importación de películas desde ficheros CSV o NDJSON de cualquier tamaño.
+ * El fichero se proyecta en memoria (FileChannel.map) y se parte en trozos
+ * de como mucho practica004.transferencia.tamano-trozo que terminan en un
+ * salto de línea. Cada trozo lo lee un hilo (practica004.transferencia.paralelismo)
+ * y guarda las películas a través de PeliculaLoteService, en lotes de
+ * practica004.transferencia.tamano-lote, así que se mantienen la caché, las
+ * estadísticas y el registro de cambios igual que con POST /batch.
+ * Las páginas del fichero proyectado no ocupan heap: en memoria solo hay un
+ * lote de películas por hilo, sea cual sea el tamaño del fichero.
+ * El id del fichero se ignora; las líneas que no se pueden leer o guardar
+ * se cuentan como rechazadas (las películas repetidas, además, como
+ * duplicadas) y la importación sigue. Con varios hilos las películas no se guardan en el
+ * orden del fichero.
+ */
+@Service
+public class ImportadorCatalogo {
+
+    private static final Logger log = LoggerFactory.getLogger(ImportadorCatalogo.class);
+
+    //Una proyección de FileChannel.map no puede pasar de 2 GB
+    private static final long TAMANO_TROZO_MAXIMO = 1L << 30;
+    private static final long TAMANO_TROZO_MINIMO = 64 * 1024;
+
+    @Autowired
+    private PeliculaLoteService peliculaLoteService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${practica004.transferencia.paralelismo:4}")
+    private int paralelismo;
+
+    @Value("${practica004.transferencia.tamano-lote:500}")
+    private int tamanoLote;
+
+    @Value("${practica004.transferencia.tamano-trozo:64MB}")
+    private DataSize tamanoTrozo;
+
+    @Value("${practica004.transferencia.informe:5s}")
+    private Duration intervaloInforme;
+
+    /*
+     * Importa un fichero. Lanza IllegalArgumentException si es un CSV sin
+     * una cabecera válida.
+     */
+    public ResultadoImportacion importar(FormatoFichero formato, Path fichero) throws IOException {
+        try (FileChannel canal = FileChannel.open(fichero, StandardOpenOption.READ)) {
+            long tamano = canal.size();
+            Progreso progreso = new Progreso("importacion", tamano, intervaloInforme, meterRegistry);
+            long inicio = 0;
+            int[] columnas = null;
+            if (formato == FormatoFichero.CSV) {
+                inicio = finDeLinea(canal, 0);
+                columnas = Csv.columnas(cabecera(canal, inicio));
+            }
+            List<Trozo> trozos = trocear(canal, inicio);
+            Totales totales = new Totales();
+            int[] columnasCsv = columnas;
+            List<Callable<Void>> tareas = new ArrayList<>(trozos.size());
+            for (Trozo trozo : trozos) {
+                tareas.add(() -> {
+                    importarTrozo(canal, trozo, formato, columnasCsv, totales, progreso);
+                    return null;
+                });
+            }
+            ejecutar(tareas);
+            progreso.terminar();
+            return new ResultadoImportacion(totales.leidas.sum(), totales.creadas.sum(),
+                totales.leidas.sum() - totales.creadas.sum(), totales.duplicadas.sum(), progreso.getMilisegundos());
+        }
+    }
+
+    /*
+     * Importa el contenido de un flujo (por ejemplo, el cuerpo de una
+     * petición): se copia a un fichero temporal, que se importa y se borra.
+     */
+    public ResultadoImportacion importar(FormatoFichero formato, InputStream entrada) throws IOException {
+        Path temporal = Files.createTempFile("practica004-importacion-", formato.getExtension());
+        try {
+            Files.copy(entrada, temporal, StandardCopyOption.REPLACE_EXISTING);
+            return importar(formato, temporal);
+        } finally {
+            Files.deleteIfExists(temporal);
+        }
+    }
+
+    private void ejecutar(List<Callable<Void>> tareas) throws IOException {
+        ExecutorService ejecutor = Executors.newFixedThreadPool(Math.max(1, Math.min(paralelismo, tareas.size())),
+            Thread.ofPlatform().name("importacion-", 0).daemon().factory());
+        try {
+            for (Future<Void> tarea : ejecutor.invokeAll(tareas)) {
+                tarea.get();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Importacion interrumpida", ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof IOException io) {
+                throw io;
+            }
+            if (ex.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IOException(ex.getCause());
+        } finally {
+            ejecutor.shutdownNow();
+        }
+    }
+
+    /*
+     * Parte el fichero desde "inicio" en trozos de tamano-trozo que acaban
+     * justo después de un salto de línea (o al final del fichero).
+     */
+    private List<Trozo> trocear(FileChannel canal, long inicio) throws IOException {
+        long tamano = canal.size();
+        //Al menos cuatro trozos por hilo, para repartir bien la carga, pero no de menos de 64 KB
+        long paso = Math.min(Math.min(tamanoTrozo.toBytes(), TAMANO_TROZO_MAXIMO),
+            Math.max(TAMANO_TROZO_MINIMO, (tamano - inicio) / (paralelismo * 4L)));
+        List<Trozo> trozos = new ArrayList<>();
+        while (inicio < tamano) {
+            long fin = inicio + paso >= tamano ? tamano : finDeLinea(canal, inicio + paso - 1);
+            trozos.add(new Trozo(inicio, fin));
+            inicio = fin;
+        }
+        return trozos;
+    }
+
+    //Posición siguiente al primer salto de línea desde "desde", o el final del fichero
+    private static long finDeLinea(FileChannel canal, long desde) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+        long posicion = desde;
+        while (true) {
+            buffer.clear();
+            int leidos = canal.read(buffer, posicion);
+            if (leidos < 0) {
+                return canal.size();
+            }
+            for (int i = 0; i < leidos; i++) {
+                if (buffer.get(i) == '\n') {
+                    return posicion + i + 1;
+                }
+            }
+            posicion += leidos;
+        }
+    }
+
+    private static String cabecera(FileChannel canal, long fin) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) fin);
+        canal.read(buffer, 0);
+        String cabecera = new String(buffer.array(), StandardCharsets.UTF_8).strip();
+        //Marca de orden de bytes que añaden algunas hojas de cálculo
+        return cabecera.startsWith("\uFEFF") ? cabecera.substring(1) : cabecera;
+    }
+
+    private void importarTrozo(FileChannel canal, Trozo trozo, FormatoFichero formato, int[] columnas,
+            Totales totales, Progreso progreso) throws IOException {
+        MappedByteBuffer mapa = canal.map(FileChannel.MapMode.READ_ONLY, trozo.inicio(), trozo.fin() - trozo.inicio());
+        ObjectReader lectorJson = objectMapper.readerFor(Pelicula.class);
+        byte[] linea = new byte[1024];
+        List<Pelicula> lote = new ArrayList<>(tamanoLote);
+        int longitud = mapa.limit();
+        int inicioLote = 0;
+        int inicioLinea = 0;
+        long erroneas = 0;
+        for (int posicion = 0; posicion <= longitud; posicion++) {
+            if (posicion < longitud && mapa.get(posicion) != '\n') {
+                continue;
+            }
+            int fin = posicion;
+            if (fin > inicioLinea && mapa.get(fin - 1) == '\r') {
+                fin--;
+            }
+            int tamano = fin - inicioLinea;
+            if (tamano > 0) {
+                if (tamano > linea.length) {
+                    linea = new byte[Math.max(tamano, linea.length * 2)];
+                }
+                mapa.get(inicioLinea, linea, 0, tamano);
+                Pelicula pelicula = leer(linea, tamano, formato, columnas, lectorJson);
+                if (pelicula != null) {
+                    lote.add(pelicula);
+                } else {
+                    erroneas++;
+                }
+            }
+            inicioLinea = posicion + 1;
+            if (lote.size() + erroneas >= tamanoLote || (posicion >= longitud && lote.size() + erroneas > 0)) {
+                guardar(lote, erroneas, totales);
+                progreso.sumar(lote.size() + erroneas, Math.min(inicioLinea, longitud) - inicioLote);
+                inicioLote = Math.min(inicioLinea, longitud);
+                lote.clear();
+                erroneas = 0;
+            }
+        }
+    }
+
+    private Pelicula leer(byte[] linea, int tamano, FormatoFichero formato, int[] columnas, ObjectReader lectorJson) {
+        try {
+            if (formato == FormatoFichero.CSV) {
+                return Csv.leer(new String(linea, 0, tamano, StandardCharsets.UTF_8), columnas);
+            }
+            return lectorJson.readValue(linea, 0, tamano);
+        } catch (IllegalArgumentException | IOException ex) {
+            log.debug("Linea rechazada: {}", ex instanceof JacksonException json ? json.getOriginalMessage() : ex.getMessage());
+            return null;
+        }
+    }
+
+    private void guardar(List<Pelicula> lote, long erroneas, Totales totales) {
+        totales.leidas.add(lote.size() + erroneas);
+        if (lote.isEmpty()) {
+            return;
+        }
+        for (ResultadoLote resultado : peliculaLoteService.saveAll(lote)) {
+            if (resultado.estado() == ResultadoLote.Estado.CREADA) {
+                totales.creadas.increment();
+            } else if (resultado.estado() == ResultadoLote.Estado.DUPLICADA) {
+                totales.duplicadas.increment();
+            }
+        }
+    }
+
+    //Parte del fichero entre dos posiciones, de inicio (incluida) a fin (excluida)
+    private record Trozo(long inicio, long fin) {
+    }
+
+    private static final class Totales {
+        final LongAdder leidas = new LongAdder();
+        final LongAdder creadas = new LongAdder();
+        final LongAdder duplicadas = new LongAdder();
+    }
+}
@@ -0,0 +1,77 @@
+package es.cic.curso.practica004.transferencia;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/*
+ * Progreso de una importación o exportación: cuenta las filas, las suma a la
+ * métrica practica004.transferencia.filas{operacion} y escribe en el log
+ * cada intervalo las filas hechas, el ritmo y, si se conoce el tamaño
+ * total en bytes, el porcentaje. Se puede actualizar desde varios hilos.
+ */
+final class Progreso {
+
+    private static final Logger log = LoggerFactory.getLogger(Progreso.class);
+
+    private final String operacion;
+    private final long bytesTotales;
+    private final long intervalo;
+    private final Counter contador;
+    private final long inicio = System.nanoTime();
+    private final LongAdder filas = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+    private final AtomicLong siguienteInforme;
+
+    Progreso(String operacion, long bytesTotales, Duration intervalo, MeterRegistry meterRegistry) {
+        this.operacion = operacion;
+        this.bytesTotales = bytesTotales;
+        this.intervalo = intervalo.toNanos();
+        this.contador = Counter.builder("practica004.transferencia.filas")
+            .tag("operacion", operacion)
+            .register(meterRegistry);
+        this.siguienteInforme = new AtomicLong(inicio + this.intervalo);
+    }
+
+    void sumar(long nuevasFilas, long nuevosBytes) {
+        filas.add(nuevasFilas);
+        bytes.add(nuevosBytes);
+        contador.increment(nuevasFilas);
+        long ahora = System.nanoTime();
+        long siguiente = siguienteInforme.get();
+        //Solo informa el hilo que consigue mover el siguiente informe
+        if (ahora - siguiente >= 0 && siguienteInforme.compareAndSet(siguiente, ahora + intervalo)) {
+            informar("en curso", ahora);
+        }
+    }
+
+    long getFilas() {
+        return filas.sum();
+    }
+
+    long getMilisegundos() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio);
+    }
+
+    void terminar() {
+        informar("terminada", System.nanoTime());
+    }
+
+    private void informar(String estado, long ahora) {
+        long hechas = filas.sum();
+        double segundos = Math.max((ahora - inicio) / 1e9, 1e-3);
+        if (bytesTotales > 0) {
+            log.info("{} {}: {} filas, {}% ({} filas/s)", operacion, estado, hechas,
+                Math.min(100, bytes.sum() * 100 / bytesTotales), Math.round(hechas / segundos));
+        } else {
+            log.info("{} {}: {} filas ({} filas/s)", operacion, estado, hechas, Math.round(hechas / segundos));
+        }
+    }
+}
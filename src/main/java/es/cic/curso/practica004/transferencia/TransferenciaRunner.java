@@ -0,0 +1,68 @@
+package es.cic.curso.practica004.transferencia;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.stereotype.Component;
+
+import es.cic.curso.practica004.model.ResultadoImportacion;
+
+/*
+ * Importación y exportación desde la línea de comandos, al arrancar:
+ *   java -jar practica004.jar --spring.main.web-application-type=none \
+ *       --importar=peliculas.csv --exportar=copia.ndjson
+ * --importar se puede repetir; --exportar se hace después de las
+ * importaciones. El formato sale de la extensión (.csv, .ndjson, .jsonl) o
+ * de --formato=csv|ndjson. Sin servidor web la aplicación termina al
+ * acabar; con servidor web sigue arrancada.
+ */
+@Component
+public class TransferenciaRunner implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(TransferenciaRunner.class);
+
+    @Autowired
+    private ImportadorCatalogo importadorCatalogo;
+
+    @Autowired
+    private ExportadorCatalogo exportadorCatalogo;
+
+    @Autowired
+    private ConfigurableApplicationContext contexto;
+
+    @Override
+    public void run(ApplicationArguments argumentos) throws Exception {
+        List<String> importar = argumentos.getOptionValues("importar");
+        List<String> exportar = argumentos.getOptionValues("exportar");
+        if (importar == null && exportar == null) {
+            return;
+        }
+        List<String> formato = argumentos.getOptionValues("formato");
+        for (String ruta : importar != null ? importar : List.<String>of()) {
+            Path fichero = Path.of(ruta);
+            ResultadoImportacion resultado = importadorCatalogo.importar(formato(formato, fichero), fichero);
+            log.info("Importado {}: {} peliculas creadas y {} rechazadas ({} duplicadas) en {} ms", fichero,
+                resultado.creadas(), resultado.rechazadas(), resultado.duplicadas(), resultado.milisegundos());
+        }
+        for (String ruta : exportar != null ? exportar : List.<String>of()) {
+            Path fichero = Path.of(ruta);
+            long filas = exportadorCatalogo.exportar(formato(formato, fichero), fichero);
+            log.info("Exportadas {} peliculas a {}", filas, fichero);
+        }
+        if (!(contexto instanceof WebServerApplicationContext)) {
+            SpringApplication.exit(contexto);
+        }
+    }
+
+    private static FormatoFichero formato(List<String> formato, Path fichero) {
+        return formato != null && !formato.isEmpty() ? FormatoFichero.de(formato.get(0)) : FormatoFichero.deFichero(fichero);
+    }
+}
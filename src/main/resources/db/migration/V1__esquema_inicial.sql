@@ -0,0 +1,23 @@
+-- Esquema inicial del catálogo: tabla pelicula, su secuencia e índices.
+-- Debe coincidir con el mapeo de la entidad Pelicula (Hibernate lo valida
+-- al arrancar con el perfil persistente).
+
+create sequence pelicula_seq start with 1 increment by 50;
+
+create table pelicula (
+    id bigint not null,
+    titulo varchar(255),
+    titulo_busqueda varchar(255),
+    director varchar(255),
+    ano integer not null,
+    genero varchar(255),
+    disponible boolean not null,
+    version bigint,
+    ultima_modificacion timestamp(6) with time zone,
+    primary key (id)
+);
+
+create index idx_pelicula_titulo_busqueda on pelicula (titulo_busqueda);
+create index idx_pelicula_genero_ano on pelicula (genero, ano);
+create index idx_pelicula_director_ano on pelicula (director, ano);
+create index idx_pelicula_ano on pelicula (ano);
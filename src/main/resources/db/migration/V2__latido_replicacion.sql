@@ -0,0 +1,11 @@
+-- Latido para medir el retraso de las réplicas de lectura (perfil replicas):
+-- la aplicación actualiza el instante en la primaria y lo compara con el que
+-- ve cada réplica.
+
+create table latido_replicacion (
+    id integer not null,
+    instante timestamp(6) with time zone not null,
+    primary key (id)
+);
+
+insert into latido_replicacion (id, instante) values (1, current_timestamp);
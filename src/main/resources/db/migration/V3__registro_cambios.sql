@@ -0,0 +1,22 @@
+-- Registro de cambios del catálogo (RegistroCambios): una fila por cada
+-- creación, actualización o eliminación, numeradas sin huecos por el
+-- contador, que tiene una sola fila.
+
+create table cambio_pelicula (
+    secuencia bigint not null,
+    tipo varchar(16) not null,
+    pelicula_id bigint not null,
+    datos varchar(4000),
+    momento timestamp(6) with time zone not null,
+    primary key (secuencia)
+);
+
+create index idx_cambio_pelicula_momento on cambio_pelicula (momento);
+
+create table contador_cambios (
+    id integer not null,
+    ultima bigint not null,
+    primary key (id)
+);
+
+insert into contador_cambios (id, ultima) values (1, 0);
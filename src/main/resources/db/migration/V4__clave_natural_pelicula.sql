@@ -0,0 +1,41 @@
+-- Clave natural del catálogo: no puede haber dos películas con el mismo
+-- título, director y año. Antes de crear la restricción se eliminan los
+-- duplicados que ya hubiera, conservando la película más antigua (menor id).
+-- Las que se eliminan se copian antes en pelicula_duplicada, junto con el id
+-- de la que se conserva, para poder revisarlas o recuperar sus datos.
+
+create table pelicula_duplicada (
+    id bigint not null,
+    id_conservada bigint not null,
+    titulo varchar(255),
+    titulo_busqueda varchar(255),
+    director varchar(255),
+    ano integer not null,
+    genero varchar(255),
+    disponible boolean not null,
+    version bigint,
+    ultima_modificacion timestamp(6) with time zone,
+    eliminada timestamp(6) with time zone not null,
+    primary key (id)
+);
+
+insert into pelicula_duplicada (id, id_conservada, titulo, titulo_busqueda, director, ano, genero,
+    disponible, version, ultima_modificacion, eliminada)
+select p.id,
+    (select min(o.id) from pelicula o
+     where o.titulo = p.titulo and o.director = p.director and o.ano = p.ano),
+    p.titulo, p.titulo_busqueda, p.director, p.ano, p.genero,
+    p.disponible, p.version, p.ultima_modificacion, current_timestamp
+from pelicula p
+where exists (
+    select 1 from pelicula o
+    where o.titulo = p.titulo and o.director = p.director and o.ano = p.ano and o.id < p.id
+);
+
+delete from pelicula p
+where exists (
+    select 1 from pelicula o
+    where o.titulo = p.titulo and o.director = p.director and o.ano = p.ano and o.id < p.id
+);
+
+alter table pelicula add constraint uk_pelicula_titulo_director_ano unique (titulo, director, ano);
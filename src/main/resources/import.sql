@@ -0,0 +1,3 @@
+-- Datos iniciales cuando Hibernate crea el esquema (base de datos en memoria).
+-- Con el perfil persistente los inserta la migración V3 de Flyway.
+insert into contador_cambios (id, ultima) values (1, 0);
@@ -0,0 +1,151 @@
+package es.cic.curso.practica004.carga;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.http.HttpRequest;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.r2dbc.core.DatabaseClient;
+
+import es.cic.curso.practica004.Practica004Application;
+import es.cic.curso.practica004.model.Pelicula;
+import es.cic.curso.practica004.reactivo.PeliculaReactivaApplication;
+import es.cic.curso.practica004.service.PeliculaLoteService;
+import reactor.core.publisher.Flux;
+
+/*
+ * Prueba de carga comparativa de la variante reactiva: lanza la misma carga
+ * contra la aplicación servlet (con hilos de plataforma y con hilos
+ * virtuales) y contra PeliculaReactivaApplication, y muestra el rendimiento,
+ * la latencia y el máximo de hilos vivos en la JVM durante cada una.
+ * La carga mezcla lecturas por id (80 %) y altas (20 %). La caché por id de
+ * la aplicación servlet se desactiva para que las tres lean de la base de
+ * datos en cada petición, como la reactiva.
+ * Cada variante usa su propia base de datos en memoria.
+ * Se ejecuta con mvn -Pcarga,reactivo,carga-reactivo verify (mismos parámetros
+ * que HilosVirtualesCargaIT).
+ */
+public class PeliculaReactivaCargaIT {
+
+    private final int clientes = Integer.getInteger("carga.clientes", 1000);
+    private final int peticiones = Integer.getInteger("carga.peticiones", 20);
+    private final int filas = Integer.getInteger("carga.filas", 10_000);
+
+    private enum Variante { PLATAFORMA, VIRTUALES, REACTIVA }
+
+    @Test
+    public void testComparativaServletYReactiva() throws Exception {
+        Medida plataforma = medir(Variante.PLATAFORMA);
+        Medida virtuales = medir(Variante.VIRTUALES);
+        Medida reactiva = medir(Variante.REACTIVA);
+
+        System.out.printf("Carga con %d clientes x %d peticiones sobre %d peliculas%n", clientes, peticiones, filas);
+        System.out.println("  Servlet, hilos de plataforma: " + plataforma);
+        System.out.println("  Servlet, hilos virtuales:     " + virtuales);
+        System.out.println("  Reactiva (WebFlux + R2DBC):   " + reactiva);
+
+        assertThat(plataforma.resultado().errores()).isZero();
+        assertThat(virtuales.resultado().errores()).isZero();
+        assertThat(reactiva.resultado().errores()).isZero();
+    }
+
+    private Medida medir(Variante variante) throws InterruptedException {
+        SpringApplicationBuilder builder;
+        String baseDeDatos = "carga-" + UUID.randomUUID();
+        List<String> argumentos = new ArrayList<>(List.of("--server.port=0", "--logging.level.root=WARN"));
+        if (variante == Variante.REACTIVA) {
+            builder = new SpringApplicationBuilder(PeliculaReactivaApplication.class)
+                .profiles(PeliculaReactivaApplication.PERFIL);
+            argumentos.add("--spring.r2dbc.url=r2dbc:h2:mem:///" + baseDeDatos + ";DB_CLOSE_DELAY=-1");
+        } else {
+            builder = new SpringApplicationBuilder(Practica004Application.class);
+            if (variante == Variante.VIRTUALES) {
+                builder.profiles("hilos-virtuales");
+            }
+            argumentos.add("--spring.datasource.url=jdbc:h2:mem:" + baseDeDatos);
+            argumentos.add("--practica004.cache.tamano-maximo=0");
+        }
+        //Como argumentos, para que prevalezcan sobre application.properties
+        try (ConfigurableApplicationContext contexto = builder.run(argumentos.toArray(String[]::new))) {
+            if (variante == Variante.REACTIVA) {
+                sembrar(contexto.getBean(DatabaseClient.class));
+            } else {
+                sembrar(contexto.getBean(PeliculaLoteService.class));
+            }
+            GeneradorCarga generador = new GeneradorCarga("http://localhost:"
+                + ((WebServerApplicationContext) contexto).getWebServer().getPort());
+            Function<String, HttpRequest.Builder> lectura =
+                url -> GeneradorCarga.get(url, "/api/peliculas/" + (1 + ThreadLocalRandom.current().nextInt(filas)));
+            Function<String, HttpRequest.Builder> alta = url -> GeneradorCarga.post(url, "/api/peliculas",
+                "{\"titulo\":\"Carga " + UUID.randomUUID() + "\",\"director\":\"Director\",\"ano\":2000,"
+                    + "\"genero\":\"Drama\",\"disponible\":true}");
+            var mezcla = GeneradorCarga.mezcla(lectura, lectura, lectura, lectura, alta);
+            //Calentamiento, para no medir la compilación JIT
+            generador.ejecutar(Math.min(clientes, 50), peticiones, mezcla);
+
+            ThreadMXBean hilos = ManagementFactory.getThreadMXBean();
+            hilos.resetPeakThreadCount();
+            GeneradorCarga.Resultado resultado = generador.ejecutar(clientes, peticiones, mezcla);
+            return new Medida(resultado, hilos.getPeakThreadCount());
+        }
+    }
+
+    private void sembrar(PeliculaLoteService lotes) {
+        for (int inicio = 0; inicio < filas; inicio += 5000) {
+            List<Pelicula> peliculas = new ArrayList<>();
+            for (int i = inicio; i < Math.min(inicio + 5000, filas); i++) {
+                peliculas.add(pelicula(i));
+            }
+            lotes.saveAll(peliculas);
+        }
+    }
+
+    //Con ids 1..filas, como los que reparte Hibernate en la aplicación servlet
+    private void sembrar(DatabaseClient databaseClient) {
+        OffsetDateTime ahora = OffsetDateTime.now();
+        Flux.range(0, filas)
+            .concatMap(i -> {
+                Pelicula pelicula = pelicula(i);
+                return databaseClient.sql("""
+                        insert into pelicula (id, titulo, titulo_busqueda, director, ano, genero, disponible,
+                            version, ultima_modificacion)
+                        values (:id, :titulo, :tituloBusqueda, :director, :ano, :genero, true, 0, :ahora)""")
+                    .bind("id", i + 1L)
+                    .bind("titulo", pelicula.getTitulo())
+                    .bind("tituloBusqueda", Pelicula.normalizarTitulo(pelicula.getTitulo()))
+                    .bind("director", pelicula.getDirector())
+                    .bind("ano", pelicula.getAno())
+                    .bind("genero", pelicula.getGenero())
+                    .bind("ahora", ahora)
+                    .then();
+            })
+            .blockLast();
+        databaseClient.sql("alter sequence pelicula_seq restart with " + (filas + 50)).then().block();
+    }
+
+    private static Pelicula pelicula(int i) {
+        String[] generos = {"Drama", "Comedia", "Suspense", "Terror"};
+        return new Pelicula(null, "Pelicula " + i, "Director " + (i % 100), 1950 + i % 70,
+            generos[i % generos.length], true);
+    }
+
+    //Resultado de la carga y máximo de hilos vivos mientras duró
+    private record Medida(GeneradorCarga.Resultado resultado, int hilosMaximos) {
+
+        @Override
+        public String toString() {
+            return String.format("%s, %d hilos como maximo", resultado, hilosMaximos);
+        }
+    }
+}
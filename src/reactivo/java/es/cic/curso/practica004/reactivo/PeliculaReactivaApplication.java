@@ -0,0 +1,53 @@
+package es.cic.curso.practica004.reactivo;
+
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.flyway.FlywayAutoConfiguration;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernateJpaAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Profile;
+
+/*
+ * Variante reactiva (no bloqueante) de la API de películas: el mismo contrato
+ * /api/peliculas con WebFlux sobre Netty y R2DBC en lugar de Spring MVC y JPA,
+ * para atender muchas conexiones con pocos hilos.
+ * Es otra aplicación, no un modo de Practica004Application: WebFlux y Spring
+ * MVC no pueden servir en el mismo contexto. Comparte con ella el modelo
+ * (Pelicula, VersionPelicula, HuellaCatalogo), las excepciones y el esquema
+ * (las migraciones de db/migration), y solo incluye sus clases de este paquete.
+ * Sus fuentes están en src/reactivo y solo se compilan con el perfil Maven
+ * reactivo, que añade WebFlux y R2DBC; sin él el jar no los incluye.
+ * Arranca siempre con el perfil reactivo (application-reactivo.properties);
+ * todas sus clases llevan @Profile("reactivo") para que la aplicación servlet,
+ * que escanea todos los paquetes, no las cargue si se compilan juntas.
+ * Sus escrituras no publican PeliculaCambiada: no quedan en el registro de
+ * cambios (ni en /api/peliculas/cambios) y no invalidan la caché por id, las
+ * vistas de lectura ni los índices de una aplicación servlet, que seguiría
+ * sirviendo datos antiguos. Por eso no debe trabajar sobre una base de datos
+ * que esté usando a la vez una aplicación servlet.
+ * Se ejecuta con:
+ * mvn -Preactivo spring-boot:run
+ */
+@Profile(PeliculaReactivaApplication.PERFIL)
+@SpringBootApplication(exclude = {DataSourceAutoConfiguration.class, HibernateJpaAutoConfiguration.class,
+    FlywayAutoConfiguration.class})
+public class PeliculaReactivaApplication {
+
+    public static final String PERFIL = "reactivo";
+
+    /*
+     * Con Tomcat también en el classpath (lo usa la aplicación servlet) Spring
+     * Boot serviría WebFlux con Tomcat; se declara la fábrica de Netty para que
+     * las conexiones las atiendan sus pocos hilos de eventos.
+     */
+    @Bean
+    public NettyReactiveWebServerFactory nettyReactiveWebServerFactory() {
+        return new NettyReactiveWebServerFactory();
+    }
+
+    public static void main(String[] args) {
+        new SpringApplicationBuilder(PeliculaReactivaApplication.class).profiles(PERFIL).run(args);
+    }
+}
@@ -0,0 +1,154 @@
+package es.cic.curso.practica004.reactivo;
+
+import java.net.URI;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ServerWebExchange;
+
+import es.cic.curso.practica004.exception.PeliculaDuplicadaException;
+import es.cic.curso.practica004.exception.PeliculaModificadaException;
+import es.cic.curso.practica004.exception.PeliculaNotFoundException;
+import es.cic.curso.practica004.model.Pelicula;
+import es.cic.curso.practica004.model.VersionPelicula;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/*
+ * Controlador de la variante reactiva: las mismas rutas, códigos de estado y
+ * cabeceras que PeliculaController para listar, leer, crear, actualizar y
+ * borrar películas, pero ningún método bloquea: devuelven un Mono o un Flux
+ * y WebFlux escribe la respuesta cuando llegan los datos.
+ * Las excepciones del servicio se traducen igual que en PeliculaController
+ * (PeliculaNotFoundException 404, PeliculaModificadaException 412 y
+ * PeliculaDuplicadaException 409 con Location), con onErrorResume en lugar
+ * de try catch.
+ * El resto de operaciones de la API (páginas, búsquedas, lotes, PATCH,
+ * estadísticas, cambios, importación...) solo están en la aplicación servlet.
+ */
+@Profile(PeliculaReactivaApplication.PERFIL)
+@RestController
+@RequestMapping("/api/peliculas")
+public class PeliculaReactivaController {
+
+    @Autowired
+    private PeliculaReactivaService peliculaService;
+
+    /*
+     * OBTENER TODAS LAS PELICULAS
+     * Devuelve un Flux: las películas se serializan según se leen y WebFlux
+     * solo pide más filas a la base de datos cuando ha podido escribir las
+     * anteriores en la conexión (backpressure). Por defecto es un array JSON;
+     * con Accept: application/x-ndjson, una película JSON por línea.
+     * Lleva el ETag de la huella del catálogo; con If-None-Match igual se
+     * responde 304 (Not Modified) sin leer ninguna película.
+     */
+    @GetMapping(produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public Mono<ResponseEntity<Flux<Pelicula>>> getAllPeliculas() {
+        return peliculaService.findHuella().map(huella -> ResponseEntity.ok()
+            .eTag(huella.etag())
+            .header(HttpHeaders.VARY, HttpHeaders.ACCEPT)
+            .body(peliculaService.findAll()));
+    }
+
+    /*
+     * OBTENER UNA PELICULA POR SU ID
+     * 200 (OK) con ETag (la versión) y Last-Modified, o 404 (Not Found).
+     * Si la petición es condicional primero se lee solo la versión y, si no
+     * ha cambiado, se responde 304 (Not Modified) sin leer la película.
+     */
+    @GetMapping("/{id}")
+    public Mono<ResponseEntity<Pelicula>> getPeliculaById(@PathVariable Long id, ServerWebExchange exchange) {
+        HttpHeaders cabeceras = exchange.getRequest().getHeaders();
+        Mono<ResponseEntity<Pelicula>> respuesta;
+        if (cabeceras.getIfNoneMatch().isEmpty() && cabeceras.getIfModifiedSince() < 0) {
+            respuesta = peliculaService.findById(id).map(pelicula -> {
+                VersionPelicula version = VersionPelicula.de(pelicula);
+                return ResponseEntity.ok()
+                    .eTag(version.etag())
+                    .lastModified(version.ultimaModificacionMillis())
+                    .body(pelicula);
+            });
+        } else {
+            //checkNotModified ya añade ETag y Last-Modified a la respuesta
+            respuesta = peliculaService.findVersion(id).flatMap(version ->
+                (version.ultimaModificacion() == null
+                    ? exchange.checkNotModified(version.etag())
+                    : exchange.checkNotModified(version.etag(), version.ultimaModificacion()))
+                    ? Mono.empty()
+                    : peliculaService.findById(id).map(ResponseEntity::ok));
+        }
+        return respuesta.onErrorResume(PeliculaNotFoundException.class,
+            ex -> Mono.just(new ResponseEntity<>(HttpStatus.NOT_FOUND)));
+    }
+
+    /*
+     * CREAR UNA NUEVA PELICULA
+     * 201 (Created) con la película guardada, o 409 (Conflict) con la URL de
+     * la película que ya tiene ese título, director y año en Location.
+     */
+    @PostMapping
+    public Mono<ResponseEntity<Pelicula>> createPelicula(@RequestBody Pelicula pelicula) {
+        return peliculaService.save(pelicula)
+            .map(savedPelicula -> ResponseEntity.status(HttpStatus.CREATED).body(savedPelicula))
+            .onErrorResume(PeliculaDuplicadaException.class, ex -> Mono.just(conflicto(ex)));
+    }
+
+    /*
+     * ACTUALIZAR UNA PELICULA EXISTENTE
+     * 200 (OK) con la película actualizada, 404 (Not Found) si no existe,
+     * 412 (Precondition Failed) si If-Match no coincide con su versión y 409
+     * (Conflict) si choca con la clave natural de otra película. Con If-Match
+     * la respuesta lleva el ETag de la nueva versión.
+     */
+    @PutMapping("/{id}")
+    public Mono<ResponseEntity<Pelicula>> updatePelicula(@PathVariable Long id, @RequestBody Pelicula peliculaDetails,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        Long versionEsperada = VersionPelicula.deIfMatch(ifMatch);
+        return peliculaService.update(id, peliculaDetails, versionEsperada)
+            .map(updatedPelicula -> {
+                ResponseEntity.BodyBuilder respuesta = ResponseEntity.ok();
+                if (versionEsperada != null) {
+                    respuesta.eTag(new VersionPelicula(versionEsperada + 1, null).etag());
+                }
+                return respuesta.body(updatedPelicula);
+            })
+            .onErrorResume(PeliculaNotFoundException.class, ex -> Mono.just(new ResponseEntity<>(HttpStatus.NOT_FOUND)))
+            .onErrorResume(PeliculaModificadaException.class,
+                ex -> Mono.just(new ResponseEntity<>(HttpStatus.PRECONDITION_FAILED)))
+            .onErrorResume(PeliculaDuplicadaException.class, ex -> Mono.just(conflicto(ex)));
+    }
+
+    /*
+     * ELIMINAR UNA PELICULA
+     * 204 (No Content) si se borra, o 404 (Not Found) si no existe.
+     */
+    @DeleteMapping("/{id}")
+    public Mono<ResponseEntity<Void>> deletePelicula(@PathVariable Long id) {
+        return peliculaService.deleteById(id)
+            .then(Mono.just(new ResponseEntity<Void>(HttpStatus.NO_CONTENT)))
+            .onErrorResume(PeliculaNotFoundException.class, ex -> Mono.just(new ResponseEntity<>(HttpStatus.NOT_FOUND)));
+    }
+
+    //409 (Conflict) con la URL de la película que ya tiene esa clave natural
+    private static <T> ResponseEntity<T> conflicto(PeliculaDuplicadaException ex) {
+        ResponseEntity.BodyBuilder respuesta = ResponseEntity.status(HttpStatus.CONFLICT);
+        if (ex.getIdExistente() != null) {
+            respuesta.location(URI.create("/api/peliculas/" + ex.getIdExistente()));
+        }
+        return respuesta.build();
+    }
+}
@@ -0,0 +1,215 @@
+package es.cic.curso.practica004.reactivo;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Locale;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Service;
+
+import es.cic.curso.practica004.exception.PeliculaDuplicadaException;
+import es.cic.curso.practica004.exception.PeliculaModificadaException;
+import es.cic.curso.practica004.exception.PeliculaNotFoundException;
+import es.cic.curso.practica004.model.HuellaCatalogo;
+import es.cic.curso.practica004.model.Pelicula;
+import es.cic.curso.practica004.model.VersionPelicula;
+import es.cic.curso.practica004.service.PeliculaService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.r2dbc.spi.Readable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/*
+ * Servicio de películas de la variante reactiva. Hace lo mismo que
+ * PeliculaService, con las mismas excepciones, pero cada método devuelve un
+ * Mono o un Flux y las consultas van por R2DBC (DatabaseClient), sin
+ * bloquear el hilo que atiende la petición.
+ * Escribe las mismas columnas que Hibernate en la aplicación servlet:
+ * titulo_busqueda, ultima_modificacion y version (0 al crear y +1 en cada
+ * UPDATE), así que puede abrir una base de datos creada por ella.
+ * No tiene la caché por id ni las vistas de lectura de PeliculaService, y no
+ * publica PeliculaCambiada: no debe compartir la base de datos con una
+ * aplicación servlet en marcha (ver PeliculaReactivaApplication).
+ */
+@Profile(PeliculaReactivaApplication.PERFIL)
+@Service
+public class PeliculaReactivaService {
+
+    private static final String COLUMNAS = "id, titulo, director, ano, genero, disponible, version, ultima_modificacion";
+
+    private final DatabaseClient databaseClient;
+    private final MeterRegistry meterRegistry;
+
+    public PeliculaReactivaService(DatabaseClient databaseClient, MeterRegistry meterRegistry) {
+        this.databaseClient = databaseClient;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /*Todas las películas por orden de id. Las filas se leen del cursor a
+      medida que el suscriptor las pide (backpressure): un cliente lento no
+      hace que el catálogo se acumule en memoria.*/
+    public Flux<Pelicula> findAll() {
+        return databaseClient.sql("select " + COLUMNAS + " from pelicula order by id")
+            .map(PeliculaReactivaService::pelicula)
+            .all();
+    }
+
+    //Película por id, o PeliculaNotFoundException
+    public Mono<Pelicula> findById(Long id) {
+        return databaseClient.sql("select " + COLUMNAS + " from pelicula where id = :id")
+            .bind("id", id)
+            .map(PeliculaReactivaService::pelicula)
+            .one()
+            .switchIfEmpty(Mono.error(() -> noEncontrada(id, "findById")));
+    }
+
+    //Solo la versión y la fecha de modificación, para las peticiones condicionales
+    public Mono<VersionPelicula> findVersion(Long id) {
+        return databaseClient.sql("select version, ultima_modificacion from pelicula where id = :id")
+            .bind("id", id)
+            .map(fila -> new VersionPelicula(fila.get("version", Long.class), instante(fila)))
+            .one()
+            .switchIfEmpty(Mono.error(() -> noEncontrada(id, "findVersion")));
+    }
+
+    /*Huella del catálogo completo (ETag del listado), igual que
+      PeliculaRepository.findHuella. H2 devuelve sum() de un bigint como
+      numeric: se convierte a bigint para leerlo como Long.*/
+    public Mono<HuellaCatalogo> findHuella() {
+        return databaseClient.sql("""
+                select count(*) total, cast(coalesce(sum(id), 0) as bigint) suma_ids,
+                    cast(coalesce(sum(version), 0) as bigint) suma_versiones,
+                    max(ultima_modificacion) ultima_modificacion
+                from pelicula""")
+            .map(fila -> new HuellaCatalogo(fila.get("total", Long.class), fila.get("suma_ids", Long.class),
+                fila.get("suma_versiones", Long.class), instante(fila)))
+            .one();
+    }
+
+    /*Crea una película nueva (el id del cuerpo se ignora).
+      El id sale de pelicula_seq, la secuencia que Hibernate usa de 50 en 50
+      con el optimizador pooled: cada valor reserva para Hibernate los 49
+      anteriores, así que aquí se usa el propio valor, que nunca coincide con
+      uno de ellos. Por eso los ids creados por esta variante van de 50 en 50.
+      Si ya existe otra con el mismo título, director y año lanza
+      PeliculaDuplicadaException con el id de esa otra.*/
+    public Mono<Pelicula> save(Pelicula pelicula) {
+        Instant ahora = Instant.now();
+        return databaseClient.sql("select next value for pelicula_seq")
+            .map(fila -> fila.get(0, Long.class))
+            .one()
+            .flatMap(id -> enlazarCampos(databaseClient.sql("""
+                    insert into pelicula (id, titulo, titulo_busqueda, director, ano, genero, disponible,
+                        version, ultima_modificacion)
+                    values (:id, :titulo, :tituloBusqueda, :director, :ano, :genero, :disponible, 0, :ahora)""")
+                    .bind("id", id), pelicula, ahora)
+                .fetch()
+                .rowsUpdated()
+                .thenReturn(new Pelicula(id, pelicula.getTitulo(), pelicula.getDirector(), pelicula.getAno(),
+                    pelicula.getGenero(), pelicula.isDisponible(), 0L, ahora)))
+            .onErrorResume(DataIntegrityViolationException.class, ex -> duplicada(ex, pelicula));
+    }
+
+    /*Actualiza una película con un único UPDATE, como PeliculaService.update:
+      si no actualiza ninguna fila es que no existe (PeliculaNotFoundException)
+      o, con versionEsperada, que ha cambiado (PeliculaModificadaException).
+      Devuelve la película con los datos recibidos; no incluye la versión nueva.*/
+    public Mono<Pelicula> update(Long id, Pelicula datos, Long versionEsperada) {
+        String sql = """
+            update pelicula set titulo = :titulo, titulo_busqueda = :tituloBusqueda, director = :director,
+                ano = :ano, genero = :genero, disponible = :disponible, version = version + 1,
+                ultima_modificacion = :ahora
+            where id = :id""";
+        DatabaseClient.GenericExecuteSpec update = enlazarCampos(databaseClient.sql(versionEsperada == null
+            ? sql : sql + " and version = :version").bind("id", id), datos, Instant.now());
+        if (versionEsperada != null) {
+            update = update.bind("version", versionEsperada);
+        }
+        return update.fetch()
+            .rowsUpdated()
+            .onErrorResume(DataIntegrityViolationException.class, ex -> duplicada(ex, datos))
+            .flatMap(filas -> filas > 0 ? Mono.just(filas) : sinActualizar(id, versionEsperada))
+            .thenReturn(new Pelicula(id, datos.getTitulo(), datos.getDirector(), datos.getAno(),
+                datos.getGenero(), datos.isDisponible()));
+    }
+
+    //Borra una película con un único DELETE; si no borra nada es que no existía
+    public Mono<Void> deleteById(Long id) {
+        return databaseClient.sql("delete from pelicula where id = :id")
+            .bind("id", id)
+            .fetch()
+            .rowsUpdated()
+            .flatMap(filas -> filas > 0 ? Mono.<Void>empty() : Mono.error(noEncontrada(id, "deleteById")));
+    }
+
+    //Solo cuando falla se consulta si existe, para distinguir 404 de 412
+    private Mono<Long> sinActualizar(Long id, Long versionEsperada) {
+        if (versionEsperada == null) {
+            return Mono.error(noEncontrada(id, "update"));
+        }
+        return databaseClient.sql("select count(*) from pelicula where id = :id")
+            .bind("id", id)
+            .map(fila -> fila.get(0, Long.class))
+            .one()
+            .flatMap(existe -> Mono.error(existe > 0
+                ? new PeliculaModificadaException("La pelicula " + id + " ha cambiado")
+                : noEncontrada(id, "update")));
+    }
+
+    private static DatabaseClient.GenericExecuteSpec enlazarCampos(DatabaseClient.GenericExecuteSpec sql,
+            Pelicula pelicula, Instant ahora) {
+        sql = enlazar(sql, "titulo", pelicula.getTitulo());
+        sql = enlazar(sql, "tituloBusqueda", Pelicula.normalizarTitulo(pelicula.getTitulo()));
+        sql = enlazar(sql, "director", pelicula.getDirector());
+        sql = enlazar(sql, "genero", pelicula.getGenero());
+        return sql.bind("ano", pelicula.getAno())
+            .bind("disponible", pelicula.isDisponible())
+            .bind("ahora", OffsetDateTime.ofInstant(ahora, ZoneOffset.UTC));
+    }
+
+    //R2DBC no admite bind con null: hay que indicar el tipo
+    private static DatabaseClient.GenericExecuteSpec enlazar(DatabaseClient.GenericExecuteSpec sql,
+            String nombre, String valor) {
+        return valor == null ? sql.bindNull(nombre, String.class) : sql.bind(nombre, valor);
+    }
+
+    /*Convierte el choque con la clave natural en PeliculaDuplicadaException,
+      como PeliculaService; cualquier otra violación se propaga tal cual.*/
+    private <T> Mono<T> duplicada(DataIntegrityViolationException ex, Pelicula pelicula) {
+        String mensaje = ex.getMostSpecificCause().getMessage();
+        if (mensaje == null || !mensaje.toLowerCase(Locale.ROOT).contains(PeliculaService.CLAVE_NATURAL)) {
+            return Mono.error(ex);
+        }
+        String mensajeDuplicada = "Ya existe la pelicula " + pelicula.getTitulo() + " (" + pelicula.getDirector()
+            + ", " + pelicula.getAno() + ")";
+        return databaseClient.sql("select id from pelicula where titulo = :titulo and director = :director and ano = :ano")
+            .bind("titulo", pelicula.getTitulo())
+            .bind("director", pelicula.getDirector())
+            .bind("ano", pelicula.getAno())
+            .map(fila -> fila.get("id", Long.class))
+            .one()
+            .map(idExistente -> new PeliculaDuplicadaException(mensajeDuplicada, idExistente, ex))
+            .defaultIfEmpty(new PeliculaDuplicadaException(mensajeDuplicada, null, ex))
+            .flatMap(Mono::error);
+    }
+
+    //Igual que en PeliculaService: la excepción se cuenta en peliculas.no.encontradas
+    private PeliculaNotFoundException noEncontrada(Long id, String operacion) {
+        meterRegistry.counter("peliculas.no.encontradas", "operacion", operacion).increment();
+        return new PeliculaNotFoundException("Pelicula no encontrada con id" + id);
+    }
+
+    private static Pelicula pelicula(Readable fila) {
+        return new Pelicula(fila.get("id", Long.class), fila.get("titulo", String.class),
+            fila.get("director", String.class), fila.get("ano", Integer.class), fila.get("genero", String.class),
+            fila.get("disponible", Boolean.class), fila.get("version", Long.class), instante(fila));
+    }
+
+    private static Instant instante(Readable fila) {
+        OffsetDateTime valor = fila.get("ultima_modificacion", OffsetDateTime.class);
+        return valor == null ? null : valor.toInstant();
+    }
+}
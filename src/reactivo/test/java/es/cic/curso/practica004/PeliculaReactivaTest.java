@@ -0,0 +1,126 @@
+package es.cic.curso.practica004;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import es.cic.curso.practica004.model.Pelicula;
+import es.cic.curso.practica004.reactivo.PeliculaReactivaApplication;
+import reactor.core.publisher.Flux;
+
+/*
+ * Variante reactiva de la API: mismo contrato que PeliculaController
+ * (códigos de estado, ETag, If-Match y clave natural) con WebFlux y R2DBC.
+ */
+@SpringBootTest(classes = PeliculaReactivaApplication.class)
+@ActiveProfiles(PeliculaReactivaApplication.PERFIL)
+@AutoConfigureWebTestClient
+public class PeliculaReactivaTest {
+
+    private static final String EL_SUR =
+        "{\"titulo\":\"El sur\",\"director\":\"Víctor Erice\",\"ano\":1983,\"genero\":\"Drama\",\"disponible\":true}";
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @Autowired
+    private DatabaseClient databaseClient;
+
+    @AfterEach
+    public void tearDown() {
+        databaseClient.sql("delete from pelicula").then().block();
+    }
+
+    /*
+     * TEST CRUD
+     * Alta 201, lectura con ETag y 304 condicional, actualización con
+     * If-Match (412 con una versión antigua), borrado 204 y después 404.
+     */
+    @Test
+    public void testCrud() {
+        Pelicula creada = crear(EL_SUR).expectStatus().isCreated()
+            .expectBody(Pelicula.class).returnResult().getResponseBody();
+        assertThat(creada.getId()).isNotNull();
+        String url = "/api/peliculas/" + creada.getId();
+
+        webTestClient.get().uri(url).exchange()
+            .expectStatus().isOk()
+            .expectHeader().valueEquals("ETag", "\"0\"")
+            .expectBody().jsonPath("$.titulo").isEqualTo("El sur");
+        webTestClient.get().uri(url).header("If-None-Match", "\"0\"").exchange()
+            .expectStatus().isNotModified();
+
+        String cambiada = EL_SUR.replace("Drama", "Misterio");
+        webTestClient.put().uri(url).header("If-Match", "\"0\"").contentType(MediaType.APPLICATION_JSON)
+            .bodyValue(cambiada).exchange()
+            .expectStatus().isOk()
+            .expectHeader().valueEquals("ETag", "\"1\"");
+        webTestClient.put().uri(url).header("If-Match", "\"0\"").contentType(MediaType.APPLICATION_JSON)
+            .bodyValue(cambiada).exchange()
+            .expectStatus().isEqualTo(412);
+        webTestClient.get().uri(url).header("If-None-Match", "\"0\"").exchange()
+            .expectStatus().isOk()
+            .expectBody().jsonPath("$.genero").isEqualTo("Misterio");
+
+        webTestClient.delete().uri(url).exchange().expectStatus().isNoContent();
+        webTestClient.delete().uri(url).exchange().expectStatus().isNotFound();
+        webTestClient.get().uri(url).exchange().expectStatus().isNotFound();
+        webTestClient.put().uri(url).contentType(MediaType.APPLICATION_JSON).bodyValue(EL_SUR).exchange()
+            .expectStatus().isNotFound();
+    }
+
+    /*
+     * TEST CLAVE NATURAL
+     * Un alta con el mismo título, director y año devuelve 409 con la URL
+     * de la película que ya existe.
+     */
+    @Test
+    public void testClaveNatural() {
+        Pelicula creada = crear(EL_SUR).expectBody(Pelicula.class).returnResult().getResponseBody();
+
+        crear(EL_SUR).expectStatus().isEqualTo(409)
+            .expectHeader().valueEquals("Location", "/api/peliculas/" + creada.getId());
+    }
+
+    /*
+     * TEST LISTADO
+     * El listado sale como array JSON o como NDJSON, en orden de id, y con su
+     * ETag se responde 304 mientras no cambie el catálogo.
+     */
+    @Test
+    public void testListado() {
+        for (int ano = 1980; ano < 1990; ano++) {
+            crear(EL_SUR.replace("1983", String.valueOf(ano))).expectStatus().isCreated();
+        }
+
+        String etag = webTestClient.get().uri("/api/peliculas").exchange()
+            .expectStatus().isOk()
+            .expectBody().jsonPath("$.length()").isEqualTo(10)
+            .returnResult().getResponseHeaders().getETag();
+        webTestClient.get().uri("/api/peliculas").header("If-None-Match", etag).exchange()
+            .expectStatus().isNotModified();
+
+        Flux<Pelicula> ndjson = webTestClient.get().uri("/api/peliculas").accept(MediaType.APPLICATION_NDJSON)
+            .exchange()
+            .expectStatus().isOk()
+            .expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON)
+            .returnResult(Pelicula.class).getResponseBody();
+        List<Integer> anos = ndjson.map(Pelicula::getAno).collectList().block();
+        assertThat(anos).containsExactly(1980, 1981, 1982, 1983, 1984, 1985, 1986, 1987, 1988, 1989);
+    }
+
+    private WebTestClient.ResponseSpec crear(String json) {
+        return webTestClient.post().uri("/api/peliculas").contentType(MediaType.APPLICATION_JSON)
+            .bodyValue(json).exchange();
+    }
+}
@@ -0,0 +1,116 @@
+package es.cic.curso.practica004;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Instant;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+
+import es.cic.curso.practica004.lectura.CatalogoColumnar;
+import es.cic.curso.practica004.model.FiltroPeliculas;
+import es.cic.curso.practica004.model.Pelicula;
+import es.cic.curso.practica004.model.ResultadoBusqueda;
+
+/*
+ * Tests unitarios del catálogo columnar, sin contexto de Spring.
+ * Se ponen las películas directamente y se comprueban las lecturas.
+ */
+public class CatalogoColumnarTest {
+
+    private CatalogoColumnar catalogo;
+
+    @BeforeEach
+    public void setUp() {
+        catalogo = new CatalogoColumnar();
+        catalogo.poner(new Pelicula(1L, "El laberinto del fauno", "Guillermo del Toro", 2006, "Fantasía", true));
+        catalogo.poner(new Pelicula(3L, "Los otros", "Alejandro Amenábar", 2001, "Terror", false));
+        catalogo.poner(new Pelicula(2L, "Mar adentro", "Alejandro Amenábar", 2004, "Drama", true));
+    }
+
+    /*
+     * La película leída tiene los mismos campos que la guardada, aunque se
+     * haya insertado fuera de orden.
+     */
+    @Test
+    public void testFindById() {
+        Instant modificacion = Instant.parse("2024-05-01T10:15:30.123456Z");
+        catalogo.poner(new Pelicula(4L, "Tesis", null, 1996, "Suspense", true, 7L, modificacion));
+
+        Pelicula leida = catalogo.findById(2L).orElseThrow();
+        assertThat(leida.getTitulo()).isEqualTo("Mar adentro");
+        assertThat(leida.getDirector()).isEqualTo("Alejandro Amenábar");
+        assertThat(leida.getAno()).isEqualTo(2004);
+        assertThat(leida.getGenero()).isEqualTo("Drama");
+        assertThat(leida.isDisponible()).isTrue();
+
+        Pelicula conVersion = catalogo.findById(4L).orElseThrow();
+        assertThat(conVersion.getDirector()).isNull();
+        assertThat(conVersion.getVersion()).isEqualTo(7L);
+        assertThat(conVersion.getUltimaModificacion()).isEqualTo(modificacion);
+        assertThat(catalogo.findById(5L)).isEmpty();
+    }
+
+    /*
+     * Los filtros dan el mismo resultado que PeliculaSpecifications, con
+     * paginación y orden por id.
+     */
+    @Test
+    public void testBuscarConFiltros() {
+        FiltroPeliculas amenabar = new FiltroPeliculas(null, "Alejandro Amenábar", null, null, null, null);
+        ResultadoBusqueda resultado = catalogo.buscar(amenabar, PageRequest.of(0, 1, Sort.by("id").descending())).orElseThrow();
+        assertThat(resultado.contenido()).extracting(Pelicula::getId).containsExactly(3L);
+        assertThat(resultado.totalElementos()).isEqualTo(2);
+        assertThat(resultado.totalPaginas()).isEqualTo(2);
+
+        assertThat(catalogo.contar(new FiltroPeliculas("MAR", null, null, null, null, null))).isEqualTo(1);
+        assertThat(catalogo.contar(new FiltroPeliculas(null, null, null, true, 2005, null))).isEqualTo(1);
+        assertThat(catalogo.contar(new FiltroPeliculas(null, null, "Comedia", null, null, null))).isZero();
+
+        //El prefijo del título no distingue mayúsculas, tampoco fuera de ASCII
+        catalogo.poner(new Pelicula(5L, "Ñandú salvaje", null, 1990, null, true));
+        catalogo.poner(new Pelicula(6L, "İstanbul", null, 1990, null, true));
+        assertThat(catalogo.contar(new FiltroPeliculas("ñANDÚ", null, null, null, null, null))).isEqualTo(1);
+        assertThat(catalogo.contar(new FiltroPeliculas("İst", null, null, null, null, null))).isEqualTo(1);
+
+        //Con otro orden hay que usar JPA
+        assertThat(catalogo.buscar(amenabar, PageRequest.of(0, 10, Sort.by("titulo")))).isEmpty();
+    }
+
+    /*
+     * Al actualizar se reemplazan los campos y al eliminar la película deja
+     * de encontrarse. Una versión anterior no sobrescribe a una más reciente.
+     */
+    @Test
+    public void testActualizarYEliminar() {
+        catalogo.poner(new Pelicula(2L, "Mar adentro", "Alejandro Amenábar", 2004, "Biografía", false, 3L, null));
+        catalogo.poner(new Pelicula(2L, "Antigua", "Alejandro Amenábar", 2004, "Drama", true, 2L, null));
+        assertThat(catalogo.findById(2L).orElseThrow().getGenero()).isEqualTo("Biografía");
+        assertThat(catalogo.contar(new FiltroPeliculas(null, null, "Drama", null, null, null))).isZero();
+
+        catalogo.eliminar(2L);
+        assertThat(catalogo.findById(2L)).isEmpty();
+        assertThat(catalogo.existe(2L)).isFalse();
+        assertThat(catalogo.getNumeroPeliculas()).isEqualTo(2);
+    }
+
+    /*
+     * Las columnas crecen al llenarse y se reorganizan al eliminar más de la
+     * mitad de las filas, sin perder ninguna película.
+     */
+    @Test
+    public void testCrecerYReorganizar() {
+        for (long id = 10; id < 5010; id++) {
+            catalogo.poner(new Pelicula(id, "Película " + id, "Director " + id % 7, 2000, "Drama", id % 2 == 0));
+        }
+        for (long id = 10; id < 4010; id++) {
+            catalogo.eliminar(id);
+        }
+        assertThat(catalogo.getNumeroPeliculas()).isEqualTo(1003);
+        assertThat(catalogo.findById(4500L).orElseThrow().getTitulo()).isEqualTo("Película 4500");
+        assertThat(catalogo.findById(1L).orElseThrow().getTitulo()).isEqualTo("El laberinto del fauno");
+        assertThat(catalogo.contar(new FiltroPeliculas("película 45", null, null, null, null, null))).isEqualTo(100);
+    }
+}
@@ -0,0 +1,32 @@
+package es.cic.curso.practica004;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+/*
+ * StatementInspector de Hibernate para los tests: anota cada sentencia SQL
+ * que se ejecuta en el hilo actual. Se activa con la propiedad
+ * spring.jpa.properties.hibernate.session_factory.statement_inspector.
+ * Es por hilo para no contar las consultas de otros hilos (por ejemplo la
+ * construcción del índice de texto completo al arrancar).
+ */
+public class ContadorSentencias implements StatementInspector {
+
+    private static final ThreadLocal<List<String>> SENTENCIAS = ThreadLocal.withInitial(ArrayList::new);
+
+    @Override
+    public String inspect(String sql) {
+        SENTENCIAS.get().add(sql);
+        return sql;
+    }
+
+    public static void reiniciar() {
+        SENTENCIAS.get().clear();
+    }
+
+    public static List<String> sentencias() {
+        return List.copyOf(SENTENCIAS.get());
+    }
+}
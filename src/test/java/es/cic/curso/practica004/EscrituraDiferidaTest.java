@@ -0,0 +1,152 @@
+package es.cic.curso.practica004;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import es.cic.curso.practica004.model.EstadoEscritura;
+import es.cic.curso.practica004.model.Pelicula;
+import es.cic.curso.practica004.repository.PeliculaRepository;
+
+/*
+ * Modo de escritura diferida: POST responde 202 y la película se guarda en
+ * segundo plano. Antes de arrancar se deja en el diario una película que
+ * "quedó en la cola" en una caída anterior, que debe guardarse al arrancar.
+ */
+@SpringBootTest(properties = {
+    "practica004.escritura-diferida.habilitada=true",
+    "practica004.escritura-diferida.intervalo=50ms"
+})
+@AutoConfigureMockMvc
+public class EscrituraDiferidaTest {
+
+    @TempDir
+    static Path directorio;
+
+    @DynamicPropertySource
+    static void diario(DynamicPropertyRegistry registro) throws IOException {
+        Path diario = directorio.resolve("escrituras.ndjson");
+        Files.writeString(diario, """
+            {"tipo":"ALTA","seguimiento":"recuperada","pelicula":{"titulo":"Recuperada del diario","director":"Director","ano":2020,"genero":"Drama","disponible":true}}
+            {"tipo":"ALTA","seguimiento":"ya-guardada","pelicula":{"titulo":"Ya guardada","director":"Director","ano":2020,"genero":"Drama","disponible":true}}
+            {"tipo":"HECHAS","hechas":["ya-guardada"]}
+            {"tipo":"ALTA","seguimi""");
+        registro.add("practica004.escritura-diferida.diario", diario::toString);
+    }
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private PeliculaRepository peliculaRepository;
+
+    @AfterEach
+    public void tearDown() {
+        peliculaRepository.deleteAll();
+    }
+
+    /*
+     * TEST CREAR EN DIFERIDO
+     * POST devuelve 202 con el seguimiento; el estado pasa de PENDIENTE a
+     * GUARDADA con el id de la película, que ya se puede leer.
+     */
+    @Test
+    public void testCrearEnDiferido() throws Exception {
+        String respuesta = mockMvc.perform(post("/api/peliculas")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(new Pelicula(null, "Diferida", "Director", 2024, "Drama", true))))
+                .andExpect(status().isAccepted())
+                .andExpect(header().exists("Location"))
+                .andExpect(jsonPath("$.seguimiento").exists())
+                .andReturn().getResponse().getContentAsString();
+        String seguimiento = objectMapper.readTree(respuesta).get("seguimiento").asText();
+
+        JsonNode estado = esperarGuardada(seguimiento);
+        mockMvc.perform(get("/api/peliculas/{id}", estado.get("id").asLong()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.titulo").value("Diferida"));
+
+        mockMvc.perform(get("/api/peliculas/escrituras/{seguimiento}", "desconocido"))
+                .andExpect(status().isNotFound());
+    }
+
+    /*
+     * TEST RECUPERAR DEL DIARIO
+     * Solo se guarda la película pendiente; la ya anotada como hecha y la
+     * línea incompleta se ignoran.
+     */
+    @Test
+    public void testRecuperarDelDiario() throws Exception {
+        assertThat(esperarGuardada("recuperada").get("id").isNumber()).isTrue();
+        mockMvc.perform(get("/api/peliculas/escrituras/{seguimiento}", "ya-guardada"))
+                .andExpect(status().isNotFound());
+    }
+
+    /*
+     * TEST ESCRITURA DIFERIDA REPETIDA
+     * Un cliente que reenvía la misma película recibe DUPLICADA con el id de
+     * la que se guardó la primera vez, no un error genérico.
+     */
+    @Test
+    public void testEscrituraRepetidaDuplicada() throws Exception {
+        String pelicula = objectMapper.writeValueAsString(new Pelicula(null, "Repetida", "Director", 2024, "Drama", true));
+        JsonNode primera = esperar(enviar(pelicula), EstadoEscritura.Estado.GUARDADA);
+
+        JsonNode repetida = esperar(enviar(pelicula), EstadoEscritura.Estado.DUPLICADA);
+
+        assertThat(repetida.get("id").asLong()).isEqualTo(primera.get("id").asLong());
+        assertThat(peliculaRepository.findAll()).filteredOn(guardada -> "Repetida".equals(guardada.getTitulo()))
+            .hasSize(1);
+    }
+
+    private String enviar(String pelicula) throws Exception {
+        String respuesta = mockMvc.perform(post("/api/peliculas")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(pelicula))
+                .andExpect(status().isAccepted())
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readTree(respuesta).get("seguimiento").asText();
+    }
+
+    private JsonNode esperarGuardada(String seguimiento) throws Exception {
+        return esperar(seguimiento, EstadoEscritura.Estado.GUARDADA);
+    }
+
+    private JsonNode esperar(String seguimiento, EstadoEscritura.Estado esperado) throws Exception {
+        for (int intento = 0; intento < 100; intento++) {
+            String cuerpo = mockMvc.perform(get("/api/peliculas/escrituras/{seguimiento}", seguimiento))
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getContentAsString();
+            JsonNode estado = objectMapper.readTree(cuerpo);
+            if (esperado.name().equals(estado.get("estado").asText())) {
+                return estado;
+            }
+            Thread.sleep(50);
+        }
+        throw new AssertionError("La escritura " + seguimiento + " no ha llegado a " + esperado);
+    }
+}
@@ -0,0 +1,148 @@
+package es.cic.curso.practica004;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import es.cic.curso.practica004.estadisticas.EstadisticasCatalogo;
+import es.cic.curso.practica004.model.EstadisticasPeliculas;
+import es.cic.curso.practica004.model.Pelicula;
+import es.cic.curso.practica004.repository.PeliculaRepository;
+import es.cic.curso.practica004.service.PeliculaService;
+
+/*
+ * Estadísticas del catálogo: se actualizan con cada escritura sin recorrer
+ * el catálogo y coinciden con las que se obtienen al reconstruirlas.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+public class EstadisticasCatalogoTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private PeliculaService peliculaService;
+
+    @Autowired
+    private PeliculaRepository peliculaRepository;
+
+    @Autowired
+    private EstadisticasCatalogo estadisticasCatalogo;
+
+    @BeforeEach
+    public void setUp() throws InterruptedException {
+        //Con límite: si la carga falla el test falla en vez de quedarse esperando
+        long limite = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!estadisticasCatalogo.isListo()) {
+            if (System.nanoTime() - limite > 0) {
+                fail("Las estadisticas no han terminado de calcularse");
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    @AfterEach
+    public void tearDown() {
+        peliculaRepository.findAll().forEach(pelicula -> peliculaService.deleteById(pelicula.getId()));
+    }
+
+    /*
+     * TEST ESTADISTICAS INCREMENTALES
+     * Alta, actualización parcial y baja mueven la película entre grupos.
+     */
+    @Test
+    public void testEstadisticasIncrementales() throws Exception {
+        Pelicula mar = peliculaService.save(new Pelicula(null, "Mar adentro", "Alejandro Amenábar", 2004, "Drama", true));
+        peliculaService.save(new Pelicula(null, "Los otros", "Alejandro Amenábar", 2001, "Terror", false));
+        Pelicula tesis = peliculaService.save(new Pelicula(null, "Tesis", "Alejandro Amenábar", 1996, "Drama", true));
+
+        mockMvc.perform(get("/api/peliculas/stats"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.total").value(3))
+                .andExpect(jsonPath("$.disponibles").value(2))
+                .andExpect(jsonPath("$.porGenero[0].valor").value("Drama"))
+                .andExpect(jsonPath("$.porGenero[0].peliculas").value(2))
+                .andExpect(jsonPath("$.porDecada[0].valor").value("1990"))
+                .andExpect(jsonPath("$.porDecada[1].valor").value("2000"))
+                .andExpect(jsonPath("$.porDecada[1].peliculas").value(2));
+
+        mockMvc.perform(patch("/api/peliculas/{id}", tesis.getId())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"genero\":\"Suspense\",\"disponible\":false}"))
+                .andExpect(status().isNoContent());
+        mockMvc.perform(delete("/api/peliculas/{id}", mar.getId()))
+                .andExpect(status().isNoContent());
+
+        mockMvc.perform(get("/api/peliculas/stats"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.total").value(2))
+                .andExpect(jsonPath("$.disponibles").value(0))
+                .andExpect(jsonPath("$.porGenero.length()").value(2))
+                .andExpect(jsonPath("$.porDecada[1].peliculas").value(1));
+        mockMvc.perform(get("/api/peliculas/stats/directores"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].valor").value("Alejandro Amenábar"))
+                .andExpect(jsonPath("$[0].peliculas").value(2));
+    }
+
+    /*
+     * TEST ESCRITURAS CONCURRENTES
+     * Tras muchas escrituras a la vez, los agregados incrementales son iguales
+     * a los que se obtienen reconstruyendo desde la base de datos.
+     */
+    @Test
+    public void testEscriturasConcurrentes() throws Exception {
+        String[] generos = {"Drama", "Comedia", "Terror", null};
+        ExecutorService ejecutor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> tareas = new ArrayList<>();
+            for (int hilo = 0; hilo < 8; hilo++) {
+                int h = hilo;
+                tareas.add(ejecutor.submit(() -> {
+                    for (int i = 0; i < 50; i++) {
+                        Pelicula pelicula = peliculaService.save(new Pelicula(null, "Película " + h + "-" + i,
+                            "Director " + i % 5, 1950 + i, generos[i % generos.length], i % 3 == 0));
+                        if (i % 4 == 0) {
+                            peliculaService.patch(pelicula.getId(), Map.of("disponible", true), null);
+                        } else if (i % 7 == 0) {
+                            peliculaService.deleteById(pelicula.getId());
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> tarea : tareas) {
+                tarea.get();
+            }
+        } finally {
+            ejecutor.shutdown();
+        }
+
+        EstadisticasPeliculas incrementales = estadisticasCatalogo.getEstadisticas();
+        assertThat(incrementales.total()).isEqualTo(peliculaRepository.count());
+        estadisticasCatalogo.reconstruir();
+        assertThat(estadisticasCatalogo.getEstadisticas()).isEqualTo(incrementales);
+    }
+}
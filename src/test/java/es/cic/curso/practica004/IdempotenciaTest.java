@@ -0,0 +1,158 @@
+package es.cic.curso.practica004;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import es.cic.curso.practica004.repository.PeliculaRepository;
+import es.cic.curso.practica004.service.PeliculaService;
+
+/*
+ * Altas idempotentes: los reintentos con la misma Idempotency-Key reciben la
+ * respuesta original sin crear otra película, y la clave natural (título,
+ * director, año) impide duplicados aunque no se envíe la cabecera.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+public class IdempotenciaTest {
+
+    private static final String EL_SUR =
+        "{\"titulo\":\"El sur\",\"director\":\"Víctor Erice\",\"ano\":1983,\"genero\":\"Drama\",\"disponible\":true}";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private PeliculaService peliculaService;
+
+    @Autowired
+    private PeliculaRepository peliculaRepository;
+
+    @AfterEach
+    public void tearDown() {
+        peliculaRepository.findAll().forEach(pelicula -> peliculaService.deleteById(pelicula.getId()));
+    }
+
+    /*
+     * TEST REINTENTO CON LA MISMA CLAVE
+     * El reintento devuelve el mismo id, marcado como repetido; con otro
+     * cuerpo la misma clave se rechaza con 422.
+     */
+    @Test
+    public void testReintentoConLaMismaClave() throws Exception {
+        MockHttpServletResponse primera = crear("alta-1", EL_SUR);
+        assertThat(primera.getStatus()).isEqualTo(201);
+        assertThat(primera.getHeader("Idempotent-Replayed")).isNull();
+
+        MockHttpServletResponse repetida = crear("alta-1", EL_SUR);
+        assertThat(repetida.getStatus()).isEqualTo(201);
+        assertThat(repetida.getHeader("Idempotent-Replayed")).isEqualTo("true");
+        assertThat(id(repetida)).isEqualTo(id(primera));
+        assertThat(repetida.getHeader("Location")).isEqualTo(primera.getHeader("Location"));
+        assertThat(peliculaRepository.count()).isEqualTo(1);
+
+        assertThat(crear("alta-1", EL_SUR.replace("1983", "1984")).getStatus()).isEqualTo(422);
+        assertThat(peliculaRepository.count()).isEqualTo(1);
+    }
+
+    /*
+     * TEST REINTENTOS CONCURRENTES
+     * Varias peticiones a la vez con la misma clave crean una sola película
+     * y todas reciben el mismo id.
+     */
+    @Test
+    public void testReintentosConcurrentes() throws Exception {
+        ExecutorService ejecutor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<MockHttpServletResponse>> tareas = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                tareas.add(ejecutor.submit(() -> crear("alta-concurrente", EL_SUR)));
+            }
+            List<Long> ids = new ArrayList<>();
+            for (Future<MockHttpServletResponse> tarea : tareas) {
+                MockHttpServletResponse respuesta = tarea.get();
+                assertThat(respuesta.getStatus()).isEqualTo(201);
+                ids.add(id(respuesta));
+            }
+            assertThat(ids).containsOnly(ids.get(0));
+        } finally {
+            ejecutor.shutdown();
+        }
+        assertThat(peliculaRepository.count()).isEqualTo(1);
+    }
+
+    /*
+     * TEST CLAVE NATURAL DUPLICADA
+     * Sin Idempotency-Key, la misma película se rechaza con 409 y Location
+     * apunta a la que ya existe.
+     */
+    @Test
+    public void testClaveNaturalDuplicada() throws Exception {
+        long id = id(crear(null, EL_SUR));
+
+        mockMvc.perform(post("/api/peliculas")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(EL_SUR))
+                .andExpect(status().isConflict())
+                .andExpect(header().string("Location", "/api/peliculas/" + id));
+        assertThat(peliculaRepository.count()).isEqualTo(1);
+    }
+
+    /*
+     * TEST CUERPOS Y RUTAS ADMITIDOS
+     * Con Idempotency-Key un cuerpo de más de cuerpo-maximo (1MB) se rechaza
+     * con 413 sin crear nada. Los lotes no pasan por el filtro: el reintento
+     * se ejecuta otra vez en lugar de repetir la respuesta guardada.
+     */
+    @Test
+    public void testCuerposYRutasAdmitidos() throws Exception {
+        String grande = EL_SUR.replace("Drama", "x".repeat(1024 * 1024));
+        assertThat(crear("alta-grande", grande).getStatus()).isEqualTo(413);
+        assertThat(peliculaRepository.count()).isZero();
+
+        for (int i = 0; i < 2; i++) {
+            mockMvc.perform(post("/api/peliculas/batch")
+                    .header("Idempotency-Key", "lote-1")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content("[" + EL_SUR + "]"))
+                    .andExpect(status().isOk())
+                    .andExpect(header().doesNotExist("Idempotent-Replayed"));
+        }
+        assertThat(peliculaRepository.count()).isEqualTo(1);
+    }
+
+    private MockHttpServletResponse crear(String clave, String cuerpo) throws Exception {
+        var peticion = post("/api/peliculas")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(cuerpo);
+        if (clave != null) {
+            peticion.header("Idempotency-Key", clave);
+        }
+        return mockMvc.perform(peticion).andReturn().getResponse();
+    }
+
+    private long id(MockHttpServletResponse respuesta) throws Exception {
+        return objectMapper.readTree(respuesta.getContentAsString()).get("id").asLong();
+    }
+}
@@ -0,0 +1,70 @@
+package es.cic.curso.practica004;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import es.cic.curso.practica004.busqueda.IndiceTextoCompleto;
+import es.cic.curso.practica004.busqueda.IndiceTextoCompleto.Coincidencia;
+import es.cic.curso.practica004.model.Pelicula;
+
+/*
+ * Tests unitarios del índice de texto completo, sin contexto de Spring.
+ * Se indexan las películas directamente y se comprueban las búsquedas.
+ */
+public class IndiceTextoCompletoTest {
+
+    private IndiceTextoCompleto indice;
+
+    @BeforeEach
+    public void setUp() {
+        indice = new IndiceTextoCompleto();
+        indice.indexar(new Pelicula(1L, "El laberinto del fauno", "Guillermo del Toro", 2006, "Fantasía", true));
+        indice.indexar(new Pelicula(2L, "Mar adentro", "Alejandro Amenábar", 2004, "Drama", true));
+        indice.indexar(new Pelicula(3L, "Los otros", "Alejandro Amenábar", 2001, "Terror", true));
+        indice.indexar(new Pelicula(4L, "Amenábar: el documental", "Otro director", 2010, "Documental", false));
+    }
+
+    /*
+     * La búsqueda no distingue tildes ni mayúsculas, y una coincidencia en
+     * el título puntúa más que en el director.
+     */
+    @Test
+    public void testBuscarSinTildesYOrdenadoPorRelevancia() {
+        assertThat(indice.buscar("AMENABAR", 10)).extracting(Coincidencia::id).containsExactly(4L, 2L, 3L);
+    }
+
+    /*
+     * Todos los términos son obligatorios y el último se trata como prefijo.
+     */
+    @Test
+    public void testBuscarVariosTerminosConPrefijo() {
+        assertThat(indice.buscar("alejandro ade", 10)).extracting(Coincidencia::id).containsExactly(2L);
+        assertThat(indice.buscar("laberinto toro", 10)).extracting(Coincidencia::id).containsExactly(1L);
+        assertThat(indice.buscar("laberinto amenabar", 10)).isEmpty();
+    }
+
+    /*
+     * Las palabras vacías se ignoran y el límite recorta los resultados.
+     */
+    @Test
+    public void testPalabrasVaciasYLimite() {
+        assertThat(indice.buscar("de la", 10)).isEmpty();
+        assertThat(indice.buscar("amenabar", 1)).hasSize(1);
+    }
+
+    /*
+     * Al actualizar o eliminar una película se quitan sus términos anteriores.
+     */
+    @Test
+    public void testActualizarYEliminar() {
+        indice.indexar(new Pelicula(2L, "Tesis", "Alejandro Amenábar", 1996, "Suspense", true));
+        assertThat(indice.buscar("mar", 10)).isEmpty();
+        assertThat(indice.buscar("tesis", 10)).extracting(Coincidencia::id).containsExactly(2L);
+
+        indice.eliminar(2L);
+        assertThat(indice.buscar("tesis", 10)).isEmpty();
+        assertThat(indice.getNumeroDocumentos()).isEqualTo(3);
+    }
+}
@@ -0,0 +1,103 @@
+package es.cic.curso.practica004;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import es.cic.curso.practica004.lectura.CatalogoColumnar;
+import es.cic.curso.practica004.model.Pelicula;
+import es.cic.curso.practica004.repository.PeliculaRepository;
+
+/*
+ * Modo de lectura columnar: GET por id y las búsquedas se sirven del
+ * catálogo columnar sin lanzar SQL, y las escrituras de la API lo mantienen
+ * al día.
+ */
+@SpringBootTest(properties = {
+    "practica004.lectura.columnar.habilitada=true",
+    "spring.jpa.properties.hibernate.session_factory.statement_inspector=es.cic.curso.practica004.ContadorSentencias"
+})
+@AutoConfigureMockMvc
+public class LecturaColumnarTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private PeliculaRepository peliculaRepository;
+
+    @Autowired
+    private CatalogoColumnar catalogoColumnar;
+
+    private Pelicula pelicula;
+
+    @BeforeEach
+    public void setUp() throws InterruptedException {
+        //Con límite: si la carga falla el test falla en vez de quedarse esperando
+        long limite = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!catalogoColumnar.isListo()) {
+            if (System.nanoTime() - limite > 0) {
+                fail("El catalogo columnar no ha terminado de cargarse");
+            }
+            Thread.sleep(10);
+        }
+        pelicula = peliculaRepository.save(new Pelicula(null, "Título 1", "Director", 2024, "Suspense", true));
+        catalogoColumnar.poner(pelicula);
+        ContadorSentencias.reiniciar();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        peliculaRepository.findAll().forEach(p -> catalogoColumnar.eliminar(p.getId()));
+        peliculaRepository.deleteAll();
+    }
+
+    /*
+     * TEST LECTURAS SIN SQL
+     */
+    @Test
+    public void testLecturasSinSql() throws Exception {
+        mockMvc.perform(get("/api/peliculas/{id}", pelicula.getId()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.titulo").value("Título 1"));
+        mockMvc.perform(get("/api/peliculas/search").param("genero", "Suspense"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.contenido[0].id").value(pelicula.getId()));
+
+        assertThat(ContadorSentencias.sentencias()).isEmpty();
+    }
+
+    /*
+     * TEST ESCRITURAS SINCRONIZADAS
+     * PATCH y DELETE actualizan el catálogo al confirmarse.
+     */
+    @Test
+    public void testEscriturasSincronizadas() throws Exception {
+        mockMvc.perform(patch("/api/peliculas/{id}", pelicula.getId())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"genero\":\"Drama\"}"))
+                .andExpect(status().isNoContent());
+        mockMvc.perform(get("/api/peliculas/{id}", pelicula.getId()))
+                .andExpect(jsonPath("$.genero").value("Drama"));
+
+        mockMvc.perform(delete("/api/peliculas/{id}", pelicula.getId()))
+                .andExpect(status().isNoContent());
+        mockMvc.perform(get("/api/peliculas/{id}", pelicula.getId()))
+                .andExpect(status().isNotFound());
+    }
+}
@@ -0,0 +1,176 @@
+package es.cic.curso.practica004;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import es.cic.curso.practica004.model.Pelicula;
+import es.cic.curso.practica004.repository.PeliculaRepository;
+import es.cic.curso.practica004.service.LecturasCompartidas;
+import es.cic.curso.practica004.service.PeliculaService;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/*
+ * Lecturas compartidas: las lecturas iguales y simultáneas hacen una sola
+ * consulta. Cada prueba usa una operación distinta para que las métricas
+ * no se mezclen; la lectura queda bloqueada hasta que todas las demás
+ * peticiones se han unido a ella, así que el resultado no depende de cómo
+ * se repartan los hilos.
+ */
+@SpringBootTest
+public class LecturasCompartidasTest {
+
+    private static final int PETICIONES = 50;
+
+    @Autowired
+    private LecturasCompartidas lecturasCompartidas;
+
+    @Autowired
+    private PeliculaService peliculaService;
+
+    @Autowired
+    private PeliculaRepository peliculaRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private ExecutorService ejecutor;
+
+    @BeforeEach
+    public void setUp() {
+        ejecutor = Executors.newFixedThreadPool(PETICIONES);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        ejecutor.shutdownNow();
+        peliculaRepository.deleteAll();
+    }
+
+    /*
+     * TEST MANADA DE LECTURAS
+     * 50 lecturas simultáneas de la misma película hacen una sola consulta
+     * y todas reciben el mismo resultado; las métricas cuentan 1 consulta y
+     * 49 compartidas. Una lectura de otra película no se comparte.
+     */
+    @Test
+    public void testManadaDeLecturas() throws Exception {
+        AtomicInteger consultas = new AtomicInteger();
+        CountDownLatch liberar = new CountDownLatch(1);
+        Supplier<String> lectura = () -> {
+            consultas.incrementAndGet();
+            esperar(liberar);
+            return "El verdugo";
+        };
+
+        List<Future<String>> resultados = lanzar(PETICIONES, () -> lecturasCompartidas.compartir("manada", 7L, lectura));
+        esperarCompartidas("manada", PETICIONES - 1);
+        assertThat(lecturasCompartidas.compartir("manada", 8L, () -> "Plácido")).isEqualTo("Plácido");
+        liberar.countDown();
+
+        for (Future<String> resultado : resultados) {
+            assertThat(resultado.get(10, TimeUnit.SECONDS)).isSameAs("El verdugo");
+        }
+        assertThat(consultas).hasValue(1);
+        assertThat(contador("manada", "consulta")).isEqualTo(2);
+        assertThat(contador("manada", "compartida")).isEqualTo(PETICIONES - 1);
+    }
+
+    /*
+     * TEST ERROR COMPARTIDO
+     * Si la consulta falla, todas las lecturas que la esperaban reciben la
+     * misma excepción, y la siguiente lectura vuelve a consultar.
+     */
+    @Test
+    public void testErrorCompartido() throws Exception {
+        CountDownLatch liberar = new CountDownLatch(1);
+        List<Future<String>> resultados = lanzar(10, () -> lecturasCompartidas.<String>compartir("error", null, () -> {
+            esperar(liberar);
+            throw new IllegalStateException("Base de datos caída");
+        }));
+        esperarCompartidas("error", 9);
+        liberar.countDown();
+
+        for (Future<String> resultado : resultados) {
+            assertThatThrownBy(() -> resultado.get(10, TimeUnit.SECONDS))
+                .hasCauseInstanceOf(IllegalStateException.class);
+        }
+        assertThat(lecturasCompartidas.compartir("error", null, () -> "de nuevo")).isEqualTo("de nuevo");
+    }
+
+    /*
+     * TEST LECTURA DESPUES DE ESCRIBIR
+     * Una lectura que empieza después de confirmarse una escritura no se une
+     * a la consulta que ya estaba en curso, que podría no ver la escritura.
+     * Dentro de una transacción tampoco se comparte.
+     */
+    @Test
+    public void testLecturaDespuesDeEscribir() throws Exception {
+        CountDownLatch liberar = new CountDownLatch(1);
+        List<Future<String>> anteriores = lanzar(2, () -> lecturasCompartidas.<String>compartir("escritura", null, () -> {
+            esperar(liberar);
+            return "antes";
+        }));
+        esperarCompartidas("escritura", 1);
+
+        peliculaService.save(new Pelicula(null, "Calle Mayor", "Juan Antonio Bardem", 1956, "Drama", true));
+        assertThat(lecturasCompartidas.compartir("escritura", null, () -> "despues")).isEqualTo("despues");
+        String enTransaccion = transactionTemplate.execute(estado ->
+            lecturasCompartidas.compartir("escritura", null, () -> "en transaccion"));
+        assertThat(enTransaccion).isEqualTo("en transaccion");
+
+        liberar.countDown();
+        for (Future<String> anterior : anteriores) {
+            assertThat(anterior.get(10, TimeUnit.SECONDS)).isEqualTo("antes");
+        }
+    }
+
+    private <T> List<Future<T>> lanzar(int peticiones, Callable<T> tarea) {
+        List<Future<T>> futuros = new ArrayList<>();
+        for (int i = 0; i < peticiones; i++) {
+            futuros.add(ejecutor.submit(tarea));
+        }
+        return futuros;
+    }
+
+    private void esperarCompartidas(String operacion, long esperadas) throws InterruptedException {
+        for (int intento = 0; intento < 500 && contador(operacion, "compartida") < esperadas; intento++) {
+            Thread.sleep(10);
+        }
+        assertThat(contador(operacion, "compartida")).isEqualTo(esperadas);
+    }
+
+    private long contador(String operacion, String resultado) {
+        var contador = meterRegistry.find("practica004.lecturas")
+            .tags("operacion", operacion, "resultado", resultado).counter();
+        return contador == null ? 0 : (long) contador.count();
+    }
+
+    private static void esperar(CountDownLatch liberar) {
+        try {
+            liberar.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package es.cic.curso.practica004;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.RequestPostProcessor;
+
+import es.cic.curso.practica004.limites.LimitadorPeticiones;
+import es.cic.curso.practica004.model.Pelicula;
+import es.cic.curso.practica004.repository.PeliculaRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/*
+ * Límite de peticiones por cliente y descarte de carga.
+ * El cubo de cada cliente tiene 3 fichas y se repone muy despacio, y con
+ * una sola petición en curso ya se considera que hay presión, así que el
+ * listado completo siempre se descarta.
+ */
+@SpringBootTest(properties = {
+    "practica004.limites.habilitado=true",
+    "practica004.limites.capacidad=3",
+    "practica004.limites.claves=cliente-1,cliente-2,cliente-3",
+    "practica004.limites.reposicion=0.01",
+    "practica004.limites.descarte.peticiones-en-curso=1"
+})
+@AutoConfigureMockMvc
+public class LimitePeticionesTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private PeliculaRepository peliculaRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private Pelicula pelicula;
+
+    @BeforeEach
+    public void setUp() {
+        pelicula = peliculaRepository.save(new Pelicula(null, "Título 1", "Director", 2024, "Suspense", true));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        peliculaRepository.deleteAll();
+    }
+
+    /*
+     * TEST LIMITE POR CLIENTE
+     * Agotadas las fichas se responde 429 con Retry-After; otro cliente
+     * (otra API key) tiene su propio cubo.
+     */
+    @Test
+    public void testLimitePorCliente() throws Exception {
+        double limitadas = meterRegistry.get("practica004.limites.peticiones")
+            .tag("tipo", "lectura").tag("resultado", "limitada").counter().count();
+        for (int i = 0; i < 3; i++) {
+            mockMvc.perform(get("/api/peliculas/{id}", pelicula.getId()).header("X-API-Key", "cliente-1"))
+                    .andExpect(status().isOk());
+        }
+        mockMvc.perform(get("/api/peliculas/{id}", pelicula.getId()).header("X-API-Key", "cliente-1"))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().exists(HttpHeaders.RETRY_AFTER));
+        mockMvc.perform(get("/api/peliculas/{id}", pelicula.getId()).header("X-API-Key", "cliente-2"))
+                .andExpect(status().isOk());
+
+        assertThat(meterRegistry.get("practica004.limites.peticiones")
+            .tag("tipo", "lectura").tag("resultado", "limitada").counter().count()).isEqualTo(limitadas + 1);
+    }
+
+    /*
+     * TEST CLAVES DESCONOCIDAS
+     * Una API key que no está entre las conocidas no tiene cubo propio: gasta
+     * del de su IP, así que cambiar de clave en cada petición no sirve para
+     * saltarse el límite.
+     */
+    @Test
+    public void testClavesDesconocidasPorIp() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            mockMvc.perform(get("/api/peliculas/{id}", pelicula.getId())
+                    .header("X-API-Key", "inventada-" + i)
+                    .with(desde("10.0.0.7")))
+                    .andExpect(status().isOk());
+        }
+        mockMvc.perform(get("/api/peliculas/{id}", pelicula.getId())
+                .header("X-API-Key", "inventada-3")
+                .with(desde("10.0.0.7")))
+                .andExpect(status().isTooManyRequests());
+        mockMvc.perform(get("/api/peliculas/{id}", pelicula.getId())
+                .header("X-API-Key", "inventada-4")
+                .with(desde("10.0.0.8")))
+                .andExpect(status().isOk());
+    }
+
+    /*
+     * TEST DESCARTE DE CARGA
+     * Con presión se descartan las peticiones caras con 503, pero no las
+     * lecturas por id.
+     */
+    @Test
+    public void testDescarteDeCarga() throws Exception {
+        mockMvc.perform(get("/api/peliculas").header("X-API-Key", "cliente-3"))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string(HttpHeaders.RETRY_AFTER, "1"));
+        mockMvc.perform(get("/api/peliculas/{id}", pelicula.getId()).header("X-API-Key", "cliente-3"))
+                .andExpect(status().isOk());
+    }
+
+    /*
+     * TEST CUBO CONCURRENTE
+     * Con muchos hilos gastando a la vez del mismo cubo nunca se admiten más
+     * fichas que su capacidad.
+     */
+    @Test
+    public void testCuboConcurrente() throws Exception {
+        LimitadorPeticiones limitador = new LimitadorPeticiones(100, 0.001, 10);
+        AtomicInteger admitidas = new AtomicInteger();
+        Thread[] hilos = new Thread[8];
+        for (int h = 0; h < hilos.length; h++) {
+            hilos[h] = Thread.ofPlatform().start(() -> {
+                for (int i = 0; i < 1000; i++) {
+                    if (limitador.consumir("cliente", 1) == 0) {
+                        admitidas.incrementAndGet();
+                    }
+                }
+            });
+        }
+        for (Thread hilo : hilos) {
+            hilo.join();
+        }
+        assertThat(admitidas.get()).isEqualTo(100);
+    }
+
+    private static RequestPostProcessor desde(String ip) {
+        return request -> {
+            request.setRemoteAddr(ip);
+            return request;
+        };
+    }
+}
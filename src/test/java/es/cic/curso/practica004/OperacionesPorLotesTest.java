@@ -0,0 +1,93 @@
+package es.cic.curso.practica004;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import es.cic.curso.practica004.model.Pelicula;
+import es.cic.curso.practica004.model.ResultadoLote;
+import es.cic.curso.practica004.repository.PeliculaRepository;
+import es.cic.curso.practica004.service.PeliculaLoteService;
+import es.cic.curso.practica004.service.PeliculaService;
+
+/*
+ * Operaciones por lotes cuando falla un tramo. Sin @Transactional en la
+ * clase: cada tramo tiene que confirmarse o deshacerse por su cuenta.
+ */
+@SpringBootTest
+public class OperacionesPorLotesTest {
+
+    @Autowired
+    private PeliculaService peliculaService;
+
+    @Autowired
+    private PeliculaLoteService peliculaLoteService;
+
+    @Autowired
+    private PeliculaRepository peliculaRepository;
+
+    @AfterEach
+    public void tearDown() {
+        peliculaRepository.findAll().forEach(pelicula -> peliculaService.deleteById(pelicula.getId()));
+    }
+
+    /*
+     * TEST ACTUALIZACION POR LOTES CON UN ELEMENTO QUE FALLA
+     * La película del medio pasa a tener la clave natural de otra: el tramo
+     * falla, se repite elemento a elemento y solo esa queda como DUPLICADA,
+     * con el id de la otra.
+     */
+    @Test
+    public void testActualizarLoteConUnElementoQueFalla() {
+        List<ResultadoLote> creadas = peliculaLoteService.saveAll(List.of(
+            new Pelicula(null, "Primera", "Director", 2001, "Drama", true),
+            new Pelicula(null, "Segunda", "Director", 2002, "Drama", true),
+            new Pelicula(null, "Tercera", "Director", 2003, "Drama", true),
+            new Pelicula(null, "Ocupada", "Director", 2000, "Drama", true)));
+
+        List<ResultadoLote> resultados = peliculaLoteService.updateAll(List.of(
+            new Pelicula(creadas.get(0).id(), "Primera cambiada", "Director", 2001, "Drama", false),
+            new Pelicula(creadas.get(1).id(), "Ocupada", "Director", 2000, "Drama", false),
+            new Pelicula(creadas.get(2).id(), "Tercera cambiada", "Director", 2003, "Drama", false)));
+
+        assertThat(resultados).extracting(ResultadoLote::estado).containsExactly(
+            ResultadoLote.Estado.ACTUALIZADA, ResultadoLote.Estado.DUPLICADA, ResultadoLote.Estado.ACTUALIZADA);
+        assertThat(resultados).extracting(ResultadoLote::indice).containsExactly(0, 1, 2);
+        assertThat(resultados.get(1).id()).isEqualTo(creadas.get(3).id());
+        assertThat(peliculaRepository.findById(creadas.get(0).id()).orElseThrow().getTitulo())
+            .isEqualTo("Primera cambiada");
+        assertThat(peliculaRepository.findById(creadas.get(1).id()).orElseThrow().getTitulo())
+            .isEqualTo("Segunda");
+        assertThat(peliculaRepository.findById(creadas.get(2).id()).orElseThrow().getTitulo())
+            .isEqualTo("Tercera cambiada");
+    }
+
+    /*
+     * TEST REENVIAR UN LOTE
+     * Un cliente que reintenta un lote ya guardado, con una película nueva
+     * al final: las repetidas quedan como DUPLICADA con el id de la guardada
+     * la primera vez y solo se crea la nueva.
+     */
+    @Test
+    public void testReenviarLote() {
+        List<ResultadoLote> creadas = peliculaLoteService.saveAll(List.of(
+            new Pelicula(null, "Primera", "Director", 2001, "Drama", true),
+            new Pelicula(null, "Segunda", "Director", 2002, "Drama", true)));
+
+        List<ResultadoLote> reenviadas = peliculaLoteService.saveAll(List.of(
+            new Pelicula(null, "Primera", "Director", 2001, "Drama", true),
+            new Pelicula(null, "Segunda", "Director", 2002, "Drama", true),
+            new Pelicula(null, "Tercera", "Director", 2003, "Drama", true)));
+
+        assertThat(reenviadas).extracting(ResultadoLote::estado).containsExactly(
+            ResultadoLote.Estado.DUPLICADA, ResultadoLote.Estado.DUPLICADA, ResultadoLote.Estado.CREADA);
+        assertThat(reenviadas.get(0).id()).isEqualTo(creadas.get(0).id());
+        assertThat(reenviadas.get(1).id()).isEqualTo(creadas.get(1).id());
+        assertThat(peliculaRepository.count()).isEqualTo(3);
+    }
+}
@@ -2,29 +2,53 @@ package es.cic.curso.practica004;
 
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
 
+import es.cic.curso.practica004.busqueda.IndiceTextoCompleto;
 import es.cic.curso.practica004.model.Pelicula;
 import es.cic.curso.practica004.repository.PeliculaRepository;
+import es.cic.curso.practica004.service.PeliculaCache;
+import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.transaction.Transactional;
 
  /*
  * @SpringBootTest: Esta anotación le indica a Spring Boot que cargue el contexto 
  * de la aplicación completo para los tests de integración.
+ * @AutoConfigureObservability: Activa la exportación de métricas (Prometheus),
+ * que en los tests está desactivada por defecto.
  * @AutoConfigureMockMvc: Configura automáticamente el objeto MockMvc que se usa 
  * para hacer solicitudes HTTP simuladas.
  * @Transactional: Indica que cada test debe ejecutarse dentro de una transacción, 
@@ -33,6 +57,7 @@ import jakarta.transaction.Transactional;
  */
 @SpringBootTest
 @AutoConfigureMockMvc
+@AutoConfigureObservability
 @Transactional
 public class PeliculaControllerIntegrationTest {
 
@@ -53,6 +78,12 @@ public class PeliculaControllerIntegrationTest {
     @Autowired
     private ObjectMapper objectMapper;
 
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private IndiceTextoCompleto indiceTextoCompleto;
+
     private Pelicula pelicula;
 
     /*
@@ -148,6 +179,27 @@ public class PeliculaControllerIntegrationTest {
                 .andExpect(jsonPath("$.disponible").value(false));
     }
 
+    /*
+     * TEST CREAR PELICULA CON ID
+     * Un id en el cuerpo del POST se ignora: se crea otra película con un id
+     * nuevo y la existente no cambia.
+     */
+    @Test
+    public void testCreatePeliculaConIdLoIgnora() throws Exception {
+        Pelicula nuevaPelicula = new Pelicula(pelicula.getId(), "Con id", "Director", 2024, "Drama", true);
+
+        mockMvc.perform(post("/api/peliculas")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(nuevaPelicula)))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.titulo").value("Con id"))
+                .andExpect(jsonPath("$.id").value(not(pelicula.getId().intValue())));
+
+        assertThat(peliculaRepository.count()).isEqualTo(2);
+        assertThat(peliculaRepository.findById(pelicula.getId()).orElseThrow().getTitulo())
+                .isEqualTo(pelicula.getTitulo());
+    }
+
 
     /*
      * TEST ACTUALIZAR PELICULA
@@ -196,4 +248,439 @@ public class PeliculaControllerIntegrationTest {
                 .contentType(MediaType.APPLICATION_JSON))
                 .andExpect(status().isNotFound());
     }
-}
\ No newline at end of file
+
+    /*
+     * TEST OBTENER TODAS LAS PELICULAS
+     * El listado se escribe en streaming pero mantiene el formato de array JSON.
+     */
+    @Test
+    public void testGetAllPeliculas() throws Exception {
+        mockMvc.perform(get("/api/peliculas"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].titulo").value(pelicula.getTitulo()));
+    }
+
+    /*
+     * TEST OBTENER TODAS LAS PELICULAS EN NDJSON
+     * Con Accept: application/x-ndjson se devuelve una película por línea.
+     */
+    @Test
+    public void testGetAllPeliculasNdjson() throws Exception {
+        mockMvc.perform(get("/api/peliculas")
+                .accept(MediaType.APPLICATION_NDJSON))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON))
+                .andExpect(content().string(containsString("\"disponible\":true}\n")));
+    }
+
+    /*
+     * TEST FORMATOS BINARIOS
+     * Con Accept: application/cbor o application/x-jackson-smile se devuelve la
+     * misma información en ese formato, y fields limita los campos devueltos.
+     */
+    @Test
+    public void testFormatosBinarios() throws Exception {
+        byte[] cbor = mockMvc.perform(get("/api/peliculas")
+                .accept(MediaType.APPLICATION_CBOR))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_CBOR))
+                .andReturn().getResponse().getContentAsByteArray();
+        List<Pelicula> peliculas = new CBORMapper().readValue(cbor, new TypeReference<List<Pelicula>>() { });
+        assertThat(peliculas).extracting(Pelicula::getTitulo).containsExactly(pelicula.getTitulo());
+
+        byte[] smile = mockMvc.perform(get("/api/peliculas/{id}", pelicula.getId())
+                .param("fields", "id,titulo")
+                .accept(MediaType.valueOf("application/x-jackson-smile")))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsByteArray();
+        JsonNode nodo = new SmileMapper().readTree(smile);
+        assertThat(nodo.get("titulo").asText()).isEqualTo(pelicula.getTitulo());
+        assertThat(nodo.has("director")).isFalse();
+    }
+
+    /*
+     * TEST SELECCION DE CAMPOS
+     * ?fields=id,titulo devuelve solo esos campos, en el listado y por id.
+     */
+    @Test
+    public void testSeleccionDeCampos() throws Exception {
+        mockMvc.perform(get("/api/peliculas").param("fields", "id,titulo"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].titulo").value(pelicula.getTitulo()))
+                .andExpect(jsonPath("$[0].director").doesNotExist());
+
+        mockMvc.perform(get("/api/peliculas/{id}", pelicula.getId()).param("fields", "titulo"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.titulo").value(pelicula.getTitulo()))
+                .andExpect(jsonPath("$.id").doesNotExist());
+
+        mockMvc.perform(get("/api/peliculas/{id}", pelicula.getId()))
+                .andExpect(jsonPath("$.director").value(pelicula.getDirector()));
+    }
+
+    /*
+     * TEST PAGINACION POR CURSOR
+     * Se guardan dos películas más y se recorren con páginas de tamaño 2:
+     * la primera página trae un cursor y la segunda, la última, no.
+     */
+    @Test
+    public void testGetPeliculasPage() throws Exception {
+        peliculaRepository.save(new Pelicula(null, "Título 2", "Director", 2023, "Drama", true));
+        peliculaRepository.save(new Pelicula(null, "Título 3", "Director", 2022, "Drama", false));
+
+        MvcResult primera = mockMvc.perform(get("/api/peliculas/page").param("size", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.contenido", hasSize(2)))
+                .andExpect(jsonPath("$.contenido[0].titulo").value("Título 1"))
+                .andReturn();
+        String cursor = objectMapper.readTree(primera.getResponse().getContentAsString())
+                .get("siguienteCursor").asText();
+
+        mockMvc.perform(get("/api/peliculas/page").param("size", "2").param("cursor", cursor))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.contenido", hasSize(1)))
+                .andExpect(jsonPath("$.contenido[0].titulo").value("Título 3"))
+                .andExpect(jsonPath("$.siguienteCursor").value(nullValue()));
+    }
+
+    /*
+     * TEST PAGINACION CON CURSOR NO VALIDO
+     * .andExpect(status().isBadRequest()): Espera un 400 Bad Request.
+     */
+    @Test
+    public void testGetPeliculasPageCursorNoValido() throws Exception {
+        mockMvc.perform(get("/api/peliculas/page").param("cursor", "no-es-un-cursor"))
+                .andExpect(status().isBadRequest());
+    }
+
+    /*
+     * TEST CACHE DE PELICULAS POR ID
+     * La segunda lectura se sirve desde la caché aunque la fila se haya borrado
+     * directamente en el repositorio. En cambio, el borrado a través de la API
+     * invalida la entrada y la siguiente lectura devuelve 404. La primera
+     * lectura cuenta como fallo y como carga.
+     */
+    @Test
+    public void testGetPeliculaByIdUsaCache() throws Exception {
+        double aciertos = meterRegistry.get("cache.gets").tag("cache", PeliculaCache.NOMBRE)
+                .tag("result", "hit").functionCounter().count();
+        double fallos = meterRegistry.get("cache.gets").tag("cache", PeliculaCache.NOMBRE)
+                .tag("result", "miss").functionCounter().count();
+        double cargas = meterRegistry.get("cache.load").tag("cache", PeliculaCache.NOMBRE)
+                .tag("result", "success").functionCounter().count();
+
+        mockMvc.perform(get("/api/peliculas/{id}", pelicula.getId()))
+                .andExpect(status().isOk());
+        peliculaRepository.deleteById(pelicula.getId());
+        mockMvc.perform(get("/api/peliculas/{id}", pelicula.getId()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.titulo").value(pelicula.getTitulo()));
+
+        assertThat(meterRegistry.get("cache.gets").tag("cache", PeliculaCache.NOMBRE)
+                .tag("result", "hit").functionCounter().count()).isEqualTo(aciertos + 1);
+        assertThat(meterRegistry.get("cache.gets").tag("cache", PeliculaCache.NOMBRE)
+                .tag("result", "miss").functionCounter().count()).isEqualTo(fallos + 1);
+        assertThat(meterRegistry.get("cache.load").tag("cache", PeliculaCache.NOMBRE)
+                .tag("result", "success").functionCounter().count()).isEqualTo(cargas + 1);
+
+        Pelicula otra = peliculaRepository.save(new Pelicula(null, "Otra", "Director", 2024, "Drama", true));
+        mockMvc.perform(get("/api/peliculas/{id}", otra.getId()))
+                .andExpect(status().isOk());
+        mockMvc.perform(delete("/api/peliculas/{id}", otra.getId()))
+                .andExpect(status().isNoContent());
+        mockMvc.perform(get("/api/peliculas/{id}", otra.getId()))
+                .andExpect(status().isNotFound());
+    }
+
+    /*
+     * TEST OPERACIONES POR LOTES
+     * Se crean dos películas, se actualiza una existente y otra inexistente, y
+     * se borran por lotes. Cada elemento devuelve su propio resultado.
+     */
+    @Test
+    public void testOperacionesPorLotes() throws Exception {
+        List<Pelicula> nuevas = List.of(
+                new Pelicula(null, "Lote 1", "Director", 2020, "Drama", true),
+                new Pelicula(null, "Lote 2", "Director", 2021, "Drama", false));
+        mockMvc.perform(post("/api/peliculas/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(nuevas)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[0].estado").value("CREADA"))
+                .andExpect(jsonPath("$[1].indice").value(1));
+        assertThat(peliculaRepository.count()).isEqualTo(3);
+
+        List<Pelicula> cambios = List.of(
+                new Pelicula(pelicula.getId(), "Lote actualizado", "Director", 2024, "Drama", true),
+                new Pelicula(999_999L, "No existe", "Director", 2024, "Drama", true));
+        mockMvc.perform(put("/api/peliculas/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(cambios)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].estado").value("ACTUALIZADA"))
+                .andExpect(jsonPath("$[1].estado").value("NO_ENCONTRADA"));
+        assertThat(peliculaRepository.findById(pelicula.getId()).orElseThrow().getTitulo())
+                .isEqualTo("Lote actualizado");
+
+        mockMvc.perform(delete("/api/peliculas/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(List.of(pelicula.getId(), 999_999L))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].estado").value("ELIMINADA"))
+                .andExpect(jsonPath("$[1].estado").value("NO_ENCONTRADA"));
+        assertThat(peliculaRepository.count()).isEqualTo(2);
+    }
+
+    /*
+     * TEST BUSQUEDA CON FILTROS
+     * Combina prefijo de título sin distinguir mayúsculas, género y rango de
+     * años, ordenando por año descendente.
+     */
+    @Test
+    public void testSearchPeliculas() throws Exception {
+        peliculaRepository.save(new Pelicula(null, "Título 2", "Otro director", 2010, "Suspense", true));
+        peliculaRepository.save(new Pelicula(null, "Otra cosa", "Director", 2015, "Suspense", true));
+        peliculaRepository.save(new Pelicula(null, "TÍTULO 3", "Director", 1990, "Suspense", false));
+
+        mockMvc.perform(get("/api/peliculas/search")
+                .param("titulo", "tít")
+                .param("genero", "Suspense")
+                .param("anoDesde", "2000")
+                .param("sort", "ano,desc"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.totalElementos").value(2))
+                .andExpect(jsonPath("$.contenido[0].titulo").value("Título 1"))
+                .andExpect(jsonPath("$.contenido[1].titulo").value("Título 2"))
+                .andExpect(jsonPath("$.contenido[0].tituloBusqueda").doesNotExist());
+
+        mockMvc.perform(get("/api/peliculas/search")
+                .param("director", "Director")
+                .param("disponible", "false"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.contenido", hasSize(1)))
+                .andExpect(jsonPath("$.contenido[0].titulo").value("TÍTULO 3"));
+
+        mockMvc.perform(get("/api/peliculas/search").param("sort", "tituloBusqueda"))
+                .andExpect(status().isBadRequest());
+    }
+
+    /*
+     * TEST BUSQUEDA DE TEXTO COMPLETO
+     * Las escrituras de los tests no se confirman, así que las películas se
+     * añaden al índice directamente. La búsqueda ignora tildes y mayúsculas.
+     */
+    @Test
+    public void testSearchPeliculasFullText() throws Exception {
+        Pelicula otra = peliculaRepository.save(new Pelicula(null, "La lengua de las mariposas", "José Luis Cuerda", 1999, "Drama", true));
+        indiceTextoCompleto.indexar(pelicula);
+        indiceTextoCompleto.indexar(otra);
+        //Con límite: si la construcción falla el test falla en vez de quedarse esperando
+        long limite = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!indiceTextoCompleto.isListo()) {
+            if (System.nanoTime() - limite > 0) {
+                fail("El indice de texto completo no ha terminado de construirse");
+            }
+            Thread.sleep(10);
+        }
+
+        mockMvc.perform(get("/api/peliculas/search/fulltext").param("q", "JOSE mari"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].titulo").value("La lengua de las mariposas"));
+    }
+
+    /*
+     * TEST GET CONDICIONAL POR ID
+     * La primera lectura devuelve ETag y Last-Modified; repetirla con
+     * If-None-Match devuelve 304 sin cuerpo.
+     */
+    @Test
+    public void testGetPeliculaByIdCondicional() throws Exception {
+        MvcResult resultado = mockMvc.perform(get("/api/peliculas/{id}", pelicula.getId()))
+                .andExpect(status().isOk())
+                .andExpect(header().exists("Last-Modified"))
+                .andReturn();
+        String etag = resultado.getResponse().getHeader("ETag");
+        assertThat(etag).isEqualTo("\"" + pelicula.getVersion() + "\"");
+
+        mockMvc.perform(get("/api/peliculas/{id}", pelicula.getId()).header("If-None-Match", etag))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+        mockMvc.perform(get("/api/peliculas/{id}", pelicula.getId()).header("If-None-Match", "\"999\""))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.titulo").value(pelicula.getTitulo()));
+    }
+
+    /*
+     * TEST GET CONDICIONAL DEL LISTADO
+     * El ETag del listado cambia cuando se añade una película.
+     */
+    @Test
+    public void testGetAllPeliculasCondicional() throws Exception {
+        String etag = mockMvc.perform(get("/api/peliculas"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+
+        mockMvc.perform(get("/api/peliculas").header("If-None-Match", etag))
+                .andExpect(status().isNotModified());
+
+        peliculaRepository.save(new Pelicula(null, "Nueva", "Director", 2024, "Drama", true));
+        mockMvc.perform(get("/api/peliculas").header("If-None-Match", etag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)));
+    }
+
+    /*
+     * TEST ETAG POR REPRESENTACION
+     * Cada formato y selección de campos tiene su propio ETag, así que el de
+     * JSON no sirve para un 304 en CBOR. El 304 también lleva Vary: Accept.
+     * El ETag del listado es débil; el de una película sigue sirviendo para
+     * If-Match.
+     */
+    @Test
+    public void testETagPorRepresentacion() throws Exception {
+        String json = mockMvc.perform(get("/api/peliculas/{id}", pelicula.getId()))
+                .andReturn().getResponse().getHeader("ETag");
+        String cbor = mockMvc.perform(get("/api/peliculas/{id}", pelicula.getId())
+                .accept(MediaType.APPLICATION_CBOR))
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_CBOR))
+                .andReturn().getResponse().getHeader("ETag");
+        String campos = mockMvc.perform(get("/api/peliculas/{id}", pelicula.getId()).param("fields", "id"))
+                .andReturn().getResponse().getHeader("ETag");
+        assertThat(List.of(json, cbor, campos)).doesNotHaveDuplicates();
+
+        mockMvc.perform(get("/api/peliculas/{id}", pelicula.getId())
+                .accept(MediaType.APPLICATION_CBOR)
+                .header("If-None-Match", json))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/api/peliculas/{id}", pelicula.getId())
+                .accept(MediaType.APPLICATION_CBOR)
+                .header("If-None-Match", cbor))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("Vary", containsString("Accept")));
+
+        String listadoJson = mockMvc.perform(get("/api/peliculas"))
+                .andReturn().getResponse().getHeader("ETag");
+        String listadoNdjson = mockMvc.perform(get("/api/peliculas").accept(MediaType.APPLICATION_NDJSON))
+                .andReturn().getResponse().getHeader("ETag");
+        assertThat(listadoJson).startsWith("W/").isNotEqualTo(listadoNdjson);
+        mockMvc.perform(get("/api/peliculas")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .header("If-None-Match", listadoJson))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/api/peliculas")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .header("If-None-Match", listadoNdjson))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("Vary", containsString("Accept")));
+
+        mockMvc.perform(put("/api/peliculas/{id}", pelicula.getId())
+                .header("If-Match", cbor)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(
+                        new Pelicula(null, "Con ETag CBOR", "Director", 2024, "Drama", true))))
+                .andExpect(status().isOk());
+    }
+
+    /*
+     * TEST ACTUALIZAR CON IF-MATCH
+     * Con un ETag antiguo se devuelve 412 y no se escribe; con el actual se
+     * actualiza y se devuelve el ETag de la nueva versión.
+     */
+    @Test
+    public void testUpdatePeliculaIfMatch() throws Exception {
+        String etag = "\"" + pelicula.getVersion() + "\"";
+        Pelicula cambios = new Pelicula(null, "Con If-Match", "Director", 2024, "Suspense", true);
+
+        mockMvc.perform(put("/api/peliculas/{id}", pelicula.getId())
+                .header("If-Match", "\"" + (pelicula.getVersion() + 1) + "\"")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(cambios)))
+                .andExpect(status().isPreconditionFailed());
+
+        mockMvc.perform(put("/api/peliculas/{id}", pelicula.getId())
+                .header("If-Match", etag)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(cambios)))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"" + (Long.parseLong(etag.replace("\"", "")) + 1) + "\""))
+                .andExpect(jsonPath("$.titulo").value("Con If-Match"));
+    }
+
+    /*
+     * TEST ACTUALIZACION PARCIAL (PATCH)
+     * Solo cambia el campo enviado; el resto se conserva. Los campos
+     * desconocidos o con tipo incorrecto dan 400 y un id inexistente 404.
+     */
+    @Test
+    public void testPatchPelicula() throws Exception {
+        mockMvc.perform(patch("/api/peliculas/{id}", pelicula.getId())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"disponible\":false}"))
+                .andExpect(status().isNoContent());
+
+        mockMvc.perform(get("/api/peliculas/{id}", pelicula.getId()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.titulo").value(pelicula.getTitulo()))
+                .andExpect(jsonPath("$.disponible").value(false));
+
+        mockMvc.perform(patch("/api/peliculas/{id}", pelicula.getId())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"id\":5}"))
+                .andExpect(status().isBadRequest());
+
+        mockMvc.perform(patch("/api/peliculas/{id}", pelicula.getId())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"ano\":\"mil\"}"))
+                .andExpect(status().isBadRequest());
+
+        mockMvc.perform(patch("/api/peliculas/{id}", 999999L)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"disponible\":false}"))
+                .andExpect(status().isNotFound());
+    }
+
+    /*
+     * TEST ACTUALIZACION PARCIAL A NULL
+     * Un campo de texto se puede vaciar enviándolo como null.
+     */
+    @Test
+    public void testPatchPeliculaCampoANull() throws Exception {
+        mockMvc.perform(patch("/api/peliculas/{id}", pelicula.getId())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"director\":null}"))
+                .andExpect(status().isNoContent());
+
+        mockMvc.perform(get("/api/peliculas/{id}", pelicula.getId()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.titulo").value(pelicula.getTitulo()))
+                .andExpect(jsonPath("$.director").value(nullValue()));
+    }
+
+    /*
+     * TEST METRICAS PROMETHEUS
+     * Tras unas peticiones, /actuator/prometheus expone los tiempos por
+     * endpoint y por método del repositorio, las películas no encontradas,
+     * las sentencias y la espera de conexiones por petición y las
+     * estadísticas de Hibernate.
+     */
+    @Test
+    public void testMetricasPrometheus() throws Exception {
+        mockMvc.perform(get("/api/peliculas/{id}", pelicula.getId()))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/api/peliculas/{id}", 999999L))
+                .andExpect(status().isNotFound());
+
+        mockMvc.perform(get("/actuator/prometheus"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("http_server_requests_seconds_bucket")))
+                .andExpect(content().string(containsString("spring_data_repository_invocations_seconds_bucket")))
+                .andExpect(content().string(containsString("peliculas_no_encontradas_total{operacion=\"findById\"")))
+                .andExpect(content().string(containsString("peliculas_peticion_sentencias_bucket")))
+                .andExpect(content().string(containsString("peliculas_peticion_espera_conexion_seconds_bucket")))
+                .andExpect(content().string(containsString("hibernate_statements_total")));
+    }
+}
@@ -0,0 +1,45 @@
+package es.cic.curso.practica004;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+/*
+ * Perfil arranque: inicialización perezosa salvo el acceso a datos
+ * (ver ArranqueConfig).
+ */
+@SpringBootTest
+@ActiveProfiles("arranque")
+@AutoConfigureMockMvc
+public class PerfilArranqueTest {
+
+    @Autowired
+    private ConfigurableListableBeanFactory beanFactory;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    /*
+     * TEST INICIALIZACION PEREZOSA
+     * El DataSource y el EntityManagerFactory se crean al arrancar; el
+     * controlador no se crea hasta la primera petición, que se atiende igual.
+     */
+    @Test
+    public void testControladorPerezosoYDatosAlArrancar() throws Exception {
+        assertThat(beanFactory.containsSingleton("dataSource")).isTrue();
+        assertThat(beanFactory.containsSingleton("entityManagerFactory")).isTrue();
+        assertThat(beanFactory.containsSingleton("peliculaController")).isFalse();
+
+        mockMvc.perform(get("/api/peliculas/999999")).andExpect(status().isNotFound());
+
+        assertThat(beanFactory.containsSingleton("peliculaController")).isTrue();
+    }
+}
@@ -0,0 +1,87 @@
+package es.cic.curso.practica004;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import es.cic.curso.practica004.model.Pelicula;
+import es.cic.curso.practica004.repository.PeliculaRepository;
+
+/*
+ * Arranca la aplicación con el perfil persistente sobre un directorio
+ * temporal. Si la migración de Flyway no coincide con la entidad Pelicula,
+ * la validación de Hibernate hace fallar el arranque.
+ */
+@SpringBootTest
+@ActiveProfiles("persistente")
+public class PerfilPersistenteTest {
+
+    @TempDir
+    static Path directorio;
+
+    @DynamicPropertySource
+    static void directorioDatos(DynamicPropertyRegistry registro) {
+        registro.add("practica004.datos.directorio", () -> directorio.toString());
+    }
+
+    @Autowired
+    private PeliculaRepository peliculaRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /*
+     * TEST ESQUEMA CREADO POR LA MIGRACION
+     * Se aplica la migración V1, la base de datos queda en fichero y se
+     * puede guardar y leer una película.
+     */
+    @Test
+    public void testEsquemaMigradoYEnFichero() {
+        Boolean migrada = jdbcTemplate.queryForObject(
+            "select \"success\" from \"flyway_schema_history\" where \"version\" = '1'", Boolean.class);
+        assertThat(migrada).isTrue();
+        assertThat(Files.exists(directorio.resolve("practica004.mv.db"))).isTrue();
+
+        Pelicula guardada = peliculaRepository.save(new Pelicula(null, "Persistente", "Director", 2024, "Drama", true));
+        assertThat(peliculaRepository.findById(guardada.getId())).isPresent();
+        peliculaRepository.deleteById(guardada.getId());
+    }
+
+    /*
+     * TEST DUPLICADOS CONSERVADOS AL CREAR LA CLAVE NATURAL
+     * Sobre otra base de datos en memoria se migra hasta V3, se insertan dos
+     * películas con la misma clave natural y se aplica V4: se conserva la de
+     * menor id y la otra queda copiada en pelicula_duplicada.
+     */
+    @Test
+    public void testMigracionClaveNaturalConservaDuplicados() {
+        DriverManagerDataSource dataSource =
+            new DriverManagerDataSource("jdbc:h2:mem:migracion-v4;DB_CLOSE_DELAY=-1", "sa", "");
+        Flyway.configure().dataSource(dataSource).target("3").load().migrate();
+        JdbcTemplate plantilla = new JdbcTemplate(dataSource);
+        String insercion = "insert into pelicula (id, titulo, titulo_busqueda, director, ano, genero, disponible, version)"
+            + " values (?, 'Repetida', 'repetida', 'Director', 2000, 'Drama', true, 0)";
+        plantilla.update(insercion, 1L);
+        plantilla.update(insercion, 2L);
+
+        Flyway.configure().dataSource(dataSource).load().migrate();
+
+        assertThat(plantilla.queryForList("select id from pelicula", Long.class)).containsExactly(1L);
+        assertThat(plantilla.queryForList("select id, id_conservada from pelicula_duplicada"))
+            .containsExactly(Map.of("ID", 2L, "ID_CONSERVADA", 1L));
+        plantilla.execute("shutdown");
+    }
+}
@@ -0,0 +1,188 @@
+package es.cic.curso.practica004;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import es.cic.curso.practica004.cambios.RegistroCambios;
+import es.cic.curso.practica004.model.Pelicula;
+import es.cic.curso.practica004.repository.CambioPeliculaRepository;
+import es.cic.curso.practica004.repository.PeliculaRepository;
+import es.cic.curso.practica004.service.PeliculaService;
+
+/*
+ * Registro de cambios del catálogo: cada escritura de la API deja un cambio
+ * numerado en orden, que se puede leer por páginas o como Server-Sent Events.
+ */
+@SpringBootTest(properties = {
+    "practica004.cambios.habilitado=true",
+    "practica004.cambios.latido=200ms"
+})
+@AutoConfigureMockMvc
+public class RegistroCambiosTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private PeliculaRepository peliculaRepository;
+
+    @Autowired
+    private CambioPeliculaRepository cambioPeliculaRepository;
+
+    @Autowired
+    private RegistroCambios registroCambios;
+
+    @Autowired
+    private PeliculaService peliculaService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @AfterEach
+    public void tearDown() {
+        peliculaRepository.deleteAll();
+        cambioPeliculaRepository.deleteAll();
+    }
+
+    /*
+     * TEST CAMBIOS EN ORDEN
+     * Alta, actualización parcial y baja quedan registradas con secuencias
+     * consecutivas, y con since solo se devuelven las posteriores.
+     */
+    @Test
+    public void testCambiosEnOrden() throws Exception {
+        long desde = ultimaSecuencia();
+        long id = crear("Los lunes al sol");
+        mockMvc.perform(patch("/api/peliculas/{id}", id)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"genero\":\"Drama\"}"))
+                .andExpect(status().isNoContent());
+        mockMvc.perform(delete("/api/peliculas/{id}", id))
+                .andExpect(status().isNoContent());
+
+        mockMvc.perform(get("/api/peliculas/changes").param("since", Long.toString(desde)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.cambios.length()").value(3))
+                .andExpect(jsonPath("$.cambios[0].secuencia").value(desde + 1))
+                .andExpect(jsonPath("$.cambios[0].tipo").value("CREADA"))
+                .andExpect(jsonPath("$.cambios[0].datos.titulo").value("Los lunes al sol"))
+                .andExpect(jsonPath("$.cambios[1].secuencia").value(desde + 2))
+                .andExpect(jsonPath("$.cambios[1].tipo").value("PARCIAL"))
+                .andExpect(jsonPath("$.cambios[1].datos.genero").value("Drama"))
+                .andExpect(jsonPath("$.cambios[2].tipo").value("ELIMINADA"))
+                .andExpect(jsonPath("$.cambios[2].peliculaId").value(id))
+                .andExpect(jsonPath("$.ultimaSecuencia").value(desde + 3))
+                .andExpect(jsonPath("$.hayMas").value(false));
+
+        mockMvc.perform(get("/api/peliculas/changes")
+                .param("since", Long.toString(desde + 1))
+                .param("limit", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.cambios.length()").value(1))
+                .andExpect(jsonPath("$.cambios[0].tipo").value("PARCIAL"))
+                .andExpect(jsonPath("$.hayMas").value(true));
+    }
+
+    /*
+     * TEST CAMBIO EN LA MISMA TRANSACCION
+     * El cambio se anota en la transacción del alta: si no se puede anotar
+     * (aquí porque falta la fila del contador), la película tampoco se guarda.
+     */
+    @Test
+    public void testCambioEnLaMismaTransaccion() throws Exception {
+        long ultima = ultimaSecuencia();
+        jdbcTemplate.update("delete from contador_cambios");
+        try {
+            assertThatThrownBy(() -> peliculaService.save(
+                    new Pelicula(null, "Cerca de las estrellas", "Director", 2000, "Drama", true)))
+                .isInstanceOf(RuntimeException.class);
+        } finally {
+            jdbcTemplate.update("insert into contador_cambios (id, ultima) values (1, ?)", ultima);
+        }
+        assertThat(peliculaRepository.count()).isZero();
+        assertThat(cambioPeliculaRepository.count()).isZero();
+    }
+
+    /*
+     * TEST CAMBIOS PURGADOS
+     * Si los cambios posteriores a since ya no están se responde 410 (Gone).
+     */
+    @Test
+    public void testCambiosPurgados() throws Exception {
+        crear("Tesis");
+        crear("Abre los ojos");
+        long ultima = ultimaSecuencia();
+        cambioPeliculaRepository.deleteById(ultima - 1);
+
+        mockMvc.perform(get("/api/peliculas/changes").param("since", Long.toString(ultima - 2)))
+                .andExpect(status().isGone());
+        mockMvc.perform(get("/api/peliculas/changes").param("since", Long.toString(ultima - 1)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.cambios.length()").value(1));
+    }
+
+    /*
+     * TEST FLUJO DE CAMBIOS
+     * Una suscripción SSE recibe los cambios posteriores a Last-Event-ID,
+     * con la secuencia como id del evento.
+     */
+    @Test
+    public void testFlujoDeCambios() throws Exception {
+        long desde = ultimaSecuencia();
+        MvcResult resultado = mockMvc.perform(get("/api/peliculas/changes/stream")
+                .header("Last-Event-ID", Long.toString(desde))
+                .accept(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(status().isOk())
+                .andReturn();
+        assertThat(resultado.getRequest().isAsyncStarted()).isTrue();
+
+        crear("El espíritu de la colmena");
+
+        String eventos = "";
+        //El evento se escribe en otro hilo: se espera a que llegue entero
+        for (int intento = 0; intento < 100 && !eventos.contains("El espíritu de la colmena"); intento++) {
+            Thread.sleep(50);
+            eventos = resultado.getResponse().getContentAsString(StandardCharsets.UTF_8);
+        }
+        assertThat(eventos)
+            .contains("id:" + (desde + 1))
+            .contains("event:CREADA")
+            .contains("El espíritu de la colmena");
+    }
+
+    private long crear(String titulo) throws Exception {
+        String respuesta = mockMvc.perform(post("/api/peliculas")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"titulo\":\"" + titulo + "\",\"director\":\"Director\",\"ano\":2000,\"genero\":\"Drama\",\"disponible\":true}"))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readTree(respuesta).get("id").asLong();
+    }
+
+    private long ultimaSecuencia() {
+        return registroCambios.getUltimaSecuencia();
+    }
+}
@@ -0,0 +1,188 @@
+package es.cic.curso.practica004;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.cookie;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.nio.file.Path;
+import java.time.OffsetDateTime;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import es.cic.curso.practica004.model.Pelicula;
+import es.cic.curso.practica004.replicas.ComprobadorReplicas;
+import es.cic.curso.practica004.replicas.LecturaEnPrimariaFilter;
+import es.cic.curso.practica004.service.PeliculaCache;
+
+/*
+ * Separación de lecturas y escrituras con dos bases de datos H2 en fichero:
+ * la primaria y una réplica. Como no hay replicación real, la réplica tiene
+ * una película que no está en la primaria; así se ve a dónde va cada lectura.
+ * La "replicación" del latido la hace el test copiándolo a mano.
+ */
+@SpringBootTest(properties = "practica004.replicas.comprobacion=PT1H")
+@ActiveProfiles({"persistente", "replicas"})
+@AutoConfigureMockMvc
+public class ReplicasTest {
+
+    @TempDir
+    static Path directorio;
+
+    @DynamicPropertySource
+    static void directorioDatos(DynamicPropertyRegistry registro) {
+        registro.add("practica004.datos.directorio", () -> directorio.toString());
+    }
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private ComprobadorReplicas comprobadorReplicas;
+
+    @Autowired
+    private PeliculaCache peliculaCache;
+
+    private JdbcTemplate primaria;
+    private JdbcTemplate replica;
+
+    @BeforeEach
+    public void setUp() {
+        primaria = new JdbcTemplate(new DriverManagerDataSource(
+            "jdbc:h2:file:" + directorio + "/practica004", "sa", "password"));
+        replica = new JdbcTemplate(new DriverManagerDataSource(
+            "jdbc:h2:file:" + directorio + "/replica", "sa", "password"));
+        replica.update("""
+            insert into pelicula (id, titulo, titulo_busqueda, director, ano, genero, disponible, version)
+            values (999999, 'Solo en replica', 'solo en replica', 'Director', 2024, 'Drama', true, 0)""");
+        replicarLatido(0);
+        comprobadorReplicas.comprobar();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        primaria.update("delete from pelicula");
+        replica.update("delete from pelicula");
+        peliculaCache.invalidateAll();
+    }
+
+    /*
+     * TEST LAS LECTURAS VAN A LA REPLICA
+     */
+    @Test
+    public void testLecturasEnReplica() throws Exception {
+        assertThat(comprobadorReplicas.getDataSource().getEstadoReplicas().get(0).disponible()).isTrue();
+
+        mockMvc.perform(get("/api/peliculas/search").param("titulo", "Solo"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.totalElementos").value(1));
+    }
+
+    /*
+     * TEST LEE TUS ESCRITURAS
+     * Tras escribir, el cliente recibe la cookie y con ella lee de la primaria;
+     * otro cliente sin la cookie sigue leyendo de la réplica.
+     */
+    @Test
+    public void testLeeTusEscrituras() throws Exception {
+        MvcResult escritura = mockMvc.perform(post("/api/peliculas")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(new Pelicula(null, "Nueva", "Director", 2024, "Drama", true))))
+                .andExpect(status().isCreated())
+                .andExpect(cookie().exists(LecturaEnPrimariaFilter.COOKIE))
+                .andReturn();
+
+        mockMvc.perform(get("/api/peliculas/search").param("titulo", "Solo")
+                .cookie(escritura.getResponse().getCookie(LecturaEnPrimariaFilter.COOKIE)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.totalElementos").value(0));
+
+        mockMvc.perform(get("/api/peliculas/search").param("titulo", "Solo"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.totalElementos").value(1));
+    }
+
+    /*
+     * TEST LEE TUS ESCRITURAS CON LA CACHE LLENADA DESDE UNA REPLICA
+     * La película está en las dos bases de datos. El cliente A la modifica y
+     * la réplica sigue con la versión antigua; el cliente B, sin cookie, la
+     * lee de la réplica y la deja en la caché. Aun así A, con su cookie, lee
+     * la versión nueva de la primaria, y B sigue leyendo la antigua.
+     */
+    @Test
+    public void testLeeTusEscriturasConCacheDeReplica() throws Exception {
+        String insercion = """
+            insert into pelicula (id, titulo, titulo_busqueda, director, ano, genero, disponible, version)
+            values (999998, 'Antes', 'antes', 'Director', 2024, 'Drama', true, 0)""";
+        primaria.update(insercion);
+        replica.update(insercion);
+
+        MvcResult escritura = mockMvc.perform(put("/api/peliculas/999998")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(new Pelicula(999998L, "Despues", "Director", 2024, "Drama", true))))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        mockMvc.perform(get("/api/peliculas/999998"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.titulo").value("Antes"));
+
+        mockMvc.perform(get("/api/peliculas/999998")
+                .cookie(escritura.getResponse().getCookie(LecturaEnPrimariaFilter.COOKIE)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.titulo").value("Despues"));
+        mockMvc.perform(get("/api/peliculas/999998")
+                .header("If-None-Match", "\"0\"")
+                .cookie(escritura.getResponse().getCookie(LecturaEnPrimariaFilter.COOKIE)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.titulo").value("Despues"));
+
+        mockMvc.perform(get("/api/peliculas/999998"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.titulo").value("Antes"));
+    }
+
+    /*
+     * TEST REPLICA RETRASADA
+     * Si la réplica va más retrasada que el máximo deja de recibir lecturas.
+     */
+    @Test
+    public void testReplicaRetrasada() throws Exception {
+        replicarLatido(3600);
+        comprobadorReplicas.comprobar();
+
+        assertThat(comprobadorReplicas.getDataSource().getEstadoReplicas().get(0).disponible()).isFalse();
+        mockMvc.perform(get("/api/peliculas/search").param("titulo", "Solo"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.totalElementos").value(0));
+    }
+
+    //Copia a la réplica el latido de la primaria, atrasado los segundos indicados
+    private void replicarLatido(long retrasoSegundos) {
+        OffsetDateTime latido = primaria.queryForObject(
+            "select instante from latido_replicacion where id = 1", OffsetDateTime.class);
+        replica.update("update latido_replicacion set instante = ? where id = 1", latido.minusSeconds(retrasoSegundos));
+    }
+}
@@ -0,0 +1,139 @@
+package es.cic.curso.practica004;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import es.cic.curso.practica004.model.Pelicula;
+import es.cic.curso.practica004.repository.PeliculaRepository;
+
+/*
+ * Cuenta las sentencias SQL que lanza cada escritura con ContadorSentencias.
+ * Sin @Transactional: cada petición confirma su propia transacción, como en
+ * producción.
+ * Antes de hacer los UPDATE y DELETE directos, PUT costaba 2 sentencias
+ * (SELECT + UPDATE) y DELETE 3 (SELECT de existsById, SELECT de deleteById y
+ * DELETE); los tests "antes" reproducen esos caminos con el repositorio.
+ * Ahora PUT, PATCH y DELETE son una única sentencia.
+ */
+@SpringBootTest(properties =
+    "spring.jpa.properties.hibernate.session_factory.statement_inspector=es.cic.curso.practica004.ContadorSentencias")
+@AutoConfigureMockMvc
+public class SentenciasSqlTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private PeliculaRepository peliculaRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private Pelicula pelicula;
+
+    @BeforeEach
+    public void setUp() {
+        pelicula = peliculaRepository.save(new Pelicula(null, "Título 1", "Director", 2024, "Suspense", true));
+        ContadorSentencias.reiniciar();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        peliculaRepository.deleteAll();
+    }
+
+    /*
+     * TEST ANTES: ACTUALIZAR CON findById + save
+     */
+    @Test
+    public void testActualizarLeyendoAntes() {
+        transactionTemplate.executeWithoutResult(estado -> {
+            Pelicula leida = peliculaRepository.findById(pelicula.getId()).orElseThrow();
+            leida.setTitulo("Cambiado");
+            peliculaRepository.save(leida);
+        });
+
+        assertThat(ContadorSentencias.sentencias()).hasSize(2);
+    }
+
+    /*
+     * TEST ANTES: BORRAR CON existsById + deleteById
+     */
+    @Test
+    public void testBorrarComprobandoAntes() {
+        transactionTemplate.executeWithoutResult(estado -> {
+            assertThat(peliculaRepository.existsById(pelicula.getId())).isTrue();
+            peliculaRepository.deleteById(pelicula.getId());
+        });
+
+        assertThat(ContadorSentencias.sentencias()).hasSize(3);
+    }
+
+    /*
+     * TEST PUT: UN SOLO UPDATE
+     */
+    @Test
+    public void testPutUnaSentencia() throws Exception {
+        Pelicula cambios = new Pelicula(null, "Cambiado", "Otro", 2000, "Drama", false);
+
+        mockMvc.perform(put("/api/peliculas/{id}", pelicula.getId())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(cambios)))
+                .andExpect(status().isOk());
+
+        List<String> sentencias = ContadorSentencias.sentencias();
+        assertThat(sentencias).hasSize(1);
+        assertThat(sentencias.get(0)).startsWithIgnoringCase("update");
+    }
+
+    /*
+     * TEST PATCH: UN SOLO UPDATE CON LAS COLUMNAS CAMBIADAS
+     */
+    @Test
+    public void testPatchSoloColumnasCambiadas() throws Exception {
+        mockMvc.perform(patch("/api/peliculas/{id}", pelicula.getId())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"disponible\":false}"))
+                .andExpect(status().isNoContent());
+
+        List<String> sentencias = ContadorSentencias.sentencias();
+        assertThat(sentencias).hasSize(1);
+        assertThat(sentencias.get(0)).startsWithIgnoringCase("update")
+            .contains("disponible").doesNotContain("titulo").doesNotContain("director");
+    }
+
+    /*
+     * TEST DELETE: UN SOLO DELETE, TAMBIEN CUANDO NO EXISTE
+     */
+    @Test
+    public void testDeleteUnaSentencia() throws Exception {
+        mockMvc.perform(delete("/api/peliculas/{id}", pelicula.getId()))
+                .andExpect(status().isNoContent());
+        assertThat(ContadorSentencias.sentencias()).hasSize(1);
+
+        ContadorSentencias.reiniciar();
+        mockMvc.perform(delete("/api/peliculas/{id}", pelicula.getId()))
+                .andExpect(status().isNotFound());
+        assertThat(ContadorSentencias.sentencias()).hasSize(1);
+    }
+}
@@ -0,0 +1,145 @@
+package es.cic.curso.practica004;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import es.cic.curso.practica004.model.Pelicula;
+import es.cic.curso.practica004.model.ResultadoImportacion;
+import es.cic.curso.practica004.repository.PeliculaRepository;
+import es.cic.curso.practica004.service.PeliculaLoteService;
+import es.cic.curso.practica004.service.PeliculaService;
+import es.cic.curso.practica004.transferencia.ExportadorCatalogo;
+import es.cic.curso.practica004.transferencia.FormatoFichero;
+import es.cic.curso.practica004.transferencia.ImportadorCatalogo;
+
+/*
+ * Importación y exportación del catálogo en CSV y NDJSON. Los trozos son
+ * muy pequeños para que incluso ficheros de pocas líneas se lean en
+ * paralelo por varios hilos.
+ */
+@SpringBootTest(properties = {
+    "practica004.transferencia.tamano-trozo=1KB",
+    "practica004.transferencia.tamano-lote=7"
+})
+@AutoConfigureMockMvc
+public class TransferenciaTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private PeliculaService peliculaService;
+
+    @Autowired
+    private PeliculaLoteService peliculaLoteService;
+
+    @Autowired
+    private PeliculaRepository peliculaRepository;
+
+    @Autowired
+    private ImportadorCatalogo importadorCatalogo;
+
+    @Autowired
+    private ExportadorCatalogo exportadorCatalogo;
+
+    @TempDir
+    private Path directorio;
+
+    @AfterEach
+    public void tearDown() {
+        peliculaRepository.findAll().forEach(pelicula -> peliculaService.deleteById(pelicula.getId()));
+    }
+
+    /*
+     * TEST IDA Y VUELTA
+     * Se exporta a fichero en los dos formatos, se vacía el catálogo y al
+     * importar los ficheros vuelven las mismas películas, también con comas,
+     * comillas y campos nulos.
+     */
+    @Test
+    public void testIdaYVuelta() throws Exception {
+        List<Pelicula> peliculas = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            peliculas.add(new Pelicula(null, "Película " + i, "Director " + i % 7, 1950 + i % 70, "Drama", i % 2 == 0));
+        }
+        peliculas.add(new Pelicula(null, "Tú, \"yo\" y él", null, 2001, "", true));
+        peliculaLoteService.saveAll(peliculas);
+        List<String> originales = resumen();
+
+        for (FormatoFichero formato : FormatoFichero.values()) {
+            Path fichero = directorio.resolve("copia" + formato.getExtension());
+            assertThat(exportadorCatalogo.exportar(formato, fichero)).isEqualTo(201);
+            assertThat(Files.size(fichero)).isGreaterThan(4096);
+            tearDown();
+
+            ResultadoImportacion resultado = importadorCatalogo.importar(formato, fichero);
+            assertThat(resultado.leidas()).isEqualTo(201);
+            assertThat(resultado.creadas()).isEqualTo(201);
+            assertThat(resultado.rechazadas()).isZero();
+            assertThat(resultado.duplicadas()).isZero();
+            assertThat(resumen()).isEqualTo(originales);
+        }
+    }
+
+    /*
+     * TEST IMPORTAR POR LA API
+     * Las líneas no válidas y las películas repetidas se rechazan sin parar
+     * la importación; la exportación CSV se descarga como fichero.
+     */
+    @Test
+    public void testImportarPorLaApi() throws Exception {
+        String csv = """
+            titulo,director,ano,genero,disponible\r
+            Solas,Benito Zambrano,1999,Drama,true\r
+            Solas,Benito Zambrano,1999,Drama,true\r
+            Sin año,Nadie,,Drama,true\r
+            "El bola",Achero Mañas,2000,,false\r
+            """;
+        mockMvc.perform(post("/api/peliculas/import")
+                .contentType("text/csv")
+                .content(csv.getBytes(StandardCharsets.UTF_8)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.leidas").value(4))
+                .andExpect(jsonPath("$.creadas").value(2))
+                .andExpect(jsonPath("$.rechazadas").value(2))
+                .andExpect(jsonPath("$.duplicadas").value(1));
+
+        mockMvc.perform(post("/api/peliculas/import")
+                .param("format", "csv")
+                .content("nombre,ano\nSolas,1999\n"))
+                .andExpect(status().isBadRequest());
+
+        String exportado = mockMvc.perform(get("/api/peliculas/export").param("format", "csv"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Disposition", "attachment; filename=\"peliculas.csv\""))
+                .andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+        assertThat(exportado.lines()).hasSize(3);
+        assertThat(exportado).contains(",El bola,Achero Mañas,2000,,false");
+    }
+
+    //Películas del catálogo sin el id, en orden
+    private List<String> resumen() {
+        return peliculaRepository.findAll().stream()
+            .map(p -> p.getTitulo() + "|" + p.getDirector() + "|" + p.getAno() + "|" + p.getGenero() + "|" + p.isDisponible())
+            .sorted()
+            .toList();
+    }
+}